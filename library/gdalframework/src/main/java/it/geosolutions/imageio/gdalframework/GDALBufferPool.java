@@ -0,0 +1,75 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import it.geosolutions.imageio.utilities.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Thread safe pool of direct {@link ByteBuffer}s exchanged with GDAL through
+ * the <code>ReadRaster_Direct</code> and <code>WriteRaster_Direct</code>
+ * methods, sparing the allocation of native memory for each region read or
+ * written.
+ *
+ * <p>
+ * At most <code>it.geosolutions.imageio.gdalframework.buffers.max</code>
+ * idle buffers (twice the number of processors by default) no larger than
+ * <code>it.geosolutions.imageio.gdalframework.buffers.maxSize</code> bytes
+ * (16MB by default) are kept, the others being left to the garbage
+ * collector. Large regions are therefore exchanged in bands of rows fitting
+ * that size.
+ */
+final class GDALBufferPool {
+
+    private final static int MAX_BUFFERS = Integer.getInteger(
+            "it.geosolutions.imageio.gdalframework.buffers.max", Runtime
+                    .getRuntime().availableProcessors() * 2);
+
+    final static int MAX_BUFFER_SIZE = Integer.getInteger(
+            "it.geosolutions.imageio.gdalframework.buffers.maxSize",
+            16 * 1024 * 1024);
+
+    private final static BufferPool<ByteBuffer> BUFFERS = BufferPool
+            .newByteBufferPool(MAX_BUFFERS, MAX_BUFFER_SIZE);
+
+    private GDALBufferPool() {
+    }
+
+    /**
+     * Borrows a direct buffer in native byte order, whose limit is set to
+     * <code>size</code> and whose content is undefined.
+     */
+    static ByteBuffer getBuffer(final int size) {
+        ByteBuffer buffer = BUFFERS.poll(size);
+        if (buffer == null)
+            buffer = ByteBuffer.allocateDirect(size);
+        buffer.clear();
+        buffer.limit(size);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer obtained from {@link #getBuffer(int)}. It must not
+     * be used afterwards.
+     */
+    static void release(final ByteBuffer buffer) {
+        BUFFERS.offer(buffer);
+    }
+}
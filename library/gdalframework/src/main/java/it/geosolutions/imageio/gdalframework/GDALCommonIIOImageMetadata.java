@@ -44,7 +44,6 @@ import org.gdal.gdal.ColorTable;
 import org.gdal.gdal.Dataset;
 import org.gdal.gdal.Driver;
 import org.gdal.gdal.gdal;
-import org.gdal.gdalconst.gdalconst;
 import org.gdal.gdalconst.gdalconstConstants;
 import org.w3c.dom.Node;
 
@@ -103,7 +102,7 @@ public class GDALCommonIIOImageMetadata extends CoreCommonImageMetadata {
      */
     public GDALCommonIIOImageMetadata(String sDatasetName, String formatName,
             String formatClassName) {
-        this(GDALUtilities.acquireDataSet(sDatasetName, gdalconst.GA_ReadOnly), sDatasetName, formatName, formatClassName);
+        this(GDALDatasetPool.getInstance().acquire(sDatasetName), sDatasetName, formatName, formatClassName);
     }
 
     /**
@@ -178,8 +177,8 @@ public class GDALCommonIIOImageMetadata extends CoreCommonImageMetadata {
             if (initializationRequired) {
                 if (dataset != null)
                     try {
-                        // Closing the dataset
-                        GDALUtilities.closeDataSet(dataset);
+                        // Releasing the dataset
+                        GDALDatasetPool.getInstance().release(dataset);
                     } catch (Throwable e) {
                         if (LOGGER.isLoggable(Level.FINEST))
                             LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
@@ -487,7 +486,7 @@ public class GDALCommonIIOImageMetadata extends CoreCommonImageMetadata {
                 // Getting the number of GCPs
                 final int nGCP = getGcpNumber();
                 List<org.gdal.gdal.GCP> gcps = new Vector<org.gdal.gdal.GCP>(nGCP);
-                ds = GDALUtilities.acquireDataSet(getDatasetName(), gdalconst.GA_ReadOnly);
+                ds = GDALDatasetPool.getInstance().acquire(getDatasetName());
                 ds.GetGCPs((Vector<org.gdal.gdal.GCP>) gcps);
                 
                 // Scan GCPs
@@ -525,8 +524,8 @@ public class GDALCommonIIOImageMetadata extends CoreCommonImageMetadata {
             } finally {
                 if (ds != null) {
                     try {
-                        // Closing the dataset
-                        GDALUtilities.closeDataSet(ds);
+                        // Releasing the dataset
+                        GDALDatasetPool.getInstance().release(ds);
                     } catch (Throwable e) {
                         if (LOGGER.isLoggable(Level.FINEST))
                             LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
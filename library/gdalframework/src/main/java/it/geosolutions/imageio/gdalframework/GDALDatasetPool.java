@@ -0,0 +1,184 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gdal.gdal.Dataset;
+import org.gdal.gdalconst.gdalconst;
+
+/**
+ * Process wide pool of read-only GDAL {@link Dataset}s, sparing the driver
+ * probing and the header parsing when the same sources are opened over and
+ * over, as done by servers creating a new {@link GDALImageReader} for each
+ * request.
+ *
+ * <p>
+ * GDAL datasets are not thread safe, therefore a dataset obtained through
+ * {@link #acquire(String)} is checked out by the calling thread until it is
+ * given back through {@link #release(Dataset)}. Further acquisitions of the
+ * same source from the same thread get the same dataset and increment its
+ * reference count, while other threads get a different one. Datasets whose
+ * reference count drops to zero are kept idle, at most
+ * {@link #getMaxIdle()} of them and no longer than
+ * {@link #getIdleTimeout()} milliseconds. Idle datasets of files whose
+ * length or last modification time changed are closed rather than reused.
+ *
+ * <p>
+ * Expired idle datasets are closed by a daemon thread checking the pools
+ * every idle timeout, but not more than once a second, as well as whenever
+ * a dataset is acquired or released. {@link #purge()} closes them right
+ * away.
+ *
+ * <p>
+ * The shared instance returned by {@link #getInstance()} takes its limits
+ * from the <code>it.geosolutions.imageio.gdalframework.pool.maxIdle</code>
+ * (16 by default, 0 disabling pooling) and
+ * <code>it.geosolutions.imageio.gdalframework.pool.idleTimeout</code>
+ * (60000 by default) system properties.
+ */
+public final class GDALDatasetPool {
+
+    private final static Logger LOGGER = Logger
+            .getLogger("it.geosolutions.imageio.gdalframework");
+
+    private final static GDALDatasetPool INSTANCE = new GDALDatasetPool(
+            Integer.getInteger("it.geosolutions.imageio.gdalframework.pool.maxIdle", 16),
+            Long.getLong("it.geosolutions.imageio.gdalframework.pool.idleTimeout", 60000L));
+
+    private final ResourcePool<Dataset> pool;
+
+    /**
+     * Returns the shared pool.
+     */
+    public static GDALDatasetPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a pool.
+     *
+     * @param maxIdle
+     *                maximum number of idle datasets kept.
+     * @param idleTimeout
+     *                time (in milliseconds) after which idle datasets are
+     *                closed.
+     */
+    public GDALDatasetPool(final int maxIdle, final long idleTimeout) {
+        pool = new ResourcePool<Dataset>(maxIdle, idleTimeout) {
+            protected Dataset open(final String name) {
+                return GDALUtilities.acquireDataSet(name, gdalconst.GA_ReadOnly);
+            }
+
+            protected void close(final String name, final Dataset dataset) {
+                if (LOGGER.isLoggable(Level.FINE))
+                    LOGGER.fine("Closing pooled dataset " + name);
+                GDALUtilities.closeDataSet(dataset);
+            }
+        };
+    }
+
+    /**
+     * Acquires a read-only {@link Dataset} given the name of the dataset
+     * source, opening it only when no suitable pooled dataset is available.
+     *
+     * @param name
+     *                of the dataset source to be accessed (usually, a File
+     *                name).
+     * @return the acquired {@link Dataset}, to be given back through
+     *         {@link #release(Dataset)}, or <code>null</code> if it cannot
+     *         be opened.
+     */
+    public Dataset acquire(final String name) {
+        return pool.acquire(name);
+    }
+
+    /**
+     * Gives back a {@link Dataset} obtained through {@link #acquire(String)}.
+     * Datasets which do not come from this pool are simply closed.
+     *
+     * @param dataset
+     *                the {@link Dataset} to release.
+     */
+    public void release(final Dataset dataset) {
+        if (dataset == null)
+            throw new NullPointerException("The provided dataset is null");
+        if (!pool.release(dataset))
+            GDALUtilities.closeDataSet(dataset);
+    }
+
+    public int getMaxIdle() {
+        return pool.getMaxIdle();
+    }
+
+    public void setMaxIdle(final int maxIdle) {
+        pool.setMaxIdle(maxIdle);
+    }
+
+    public long getIdleTimeout() {
+        return pool.getIdleTimeout();
+    }
+
+    public void setIdleTimeout(final long idleTimeout) {
+        pool.setIdleTimeout(idleTimeout);
+    }
+
+    public int getIdleCount() {
+        return pool.getIdleCount();
+    }
+
+    public int getCheckedOutCount() {
+        return pool.getCheckedOutCount();
+    }
+
+    /**
+     * Returns the number of datasets opened by this pool.
+     */
+    public long getOpenedCount() {
+        return pool.getOpenedCount();
+    }
+
+    /**
+     * Returns the number of acquisitions served by an already open dataset.
+     */
+    public long getReusedCount() {
+        return pool.getReusedCount();
+    }
+
+    /**
+     * Returns the number of datasets closed by this pool.
+     */
+    public long getClosedCount() {
+        return pool.getClosedCount();
+    }
+
+    /**
+     * Closes the idle datasets exceeding the current limits, without
+     * waiting for the periodic check.
+     */
+    public void purge() {
+        pool.purge();
+    }
+
+    /**
+     * Closes all the idle datasets.
+     */
+    public void clear() {
+        pool.clear();
+    }
+}
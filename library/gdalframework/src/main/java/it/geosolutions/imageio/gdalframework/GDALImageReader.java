@@ -44,16 +44,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -68,7 +61,6 @@ import javax.imageio.stream.ImageInputStream;
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
 import org.gdal.gdal.gdal;
-import org.gdal.gdalconst.gdalconst;
 import org.gdal.gdalconst.gdalconstConstants;
 import org.gdal.osr.SpatialReference;
 
@@ -112,8 +104,6 @@ public abstract class GDALImageReader extends ImageReader {
      * {@link GDALCommonIIOImageMetadata}).
      */
     private ConcurrentHashMap<String,GDALCommonIIOImageMetadata> datasetMetadataMap = new ConcurrentHashMap<String,GDALCommonIIOImageMetadata>();
-    
-    private ConcurrentHashMap<String,Dataset> datasetsMap = new ConcurrentHashMap<String,Dataset>();
 
 	/**
      * Retrieves a {@link GDALCommonIIOImageMetadata} by index.
@@ -130,18 +120,6 @@ public abstract class GDALImageReader extends ImageReader {
         
         GDALCommonIIOImageMetadata retVal = datasetMetadataMap.get(datasetName);
         if (retVal == null) {
-            // do we need to create a dataset
-            Dataset ds = datasetsMap.get(datasetName);
-            if (ds == null) {
-                ds = GDALUtilities.acquireDataSet(datasetName, gdalconst.GA_ReadOnly);
-                Dataset dsOld = datasetsMap.putIfAbsent(datasetName, ds);
-                if (dsOld != null) {
-                    // abandon the DataSet we created
-                    GDALUtilities.closeDataSet(ds);
-                    ds = dsOld;
-                }
-            }
-
             // Add a new GDALCommonIIOImageMetadata to the HashMap
             final GDALCommonIIOImageMetadata datasetMetadataNew = createDatasetMetadata(datasetName);
             retVal = datasetMetadataMap.put(datasetName, datasetMetadataNew);
@@ -241,6 +219,17 @@ public abstract class GDALImageReader extends ImageReader {
     /**
      * Read data from the required region of the raster.
      * 
+     * <p>
+     * The selected bands are read through a single
+     * <code>ReadRaster_Direct</code> call into a pooled direct buffer in
+     * native byte order, laid out pixel interleaved or band sequential
+     * depending on the destination sample model, and then bulk transferred
+     * into the banks of the returned raster <code>DataBuffer</code>. Large
+     * regions are read in bands of rows no larger than the pooled buffers,
+     * whose boundaries fall on source rows when the region is subsampled.
+     * Bands are read one at a time only when a band of rows does not fit in
+     * a single buffer.
+     * 
      * @param destSM
      *                sample model for the image
      * @param dataset
@@ -262,14 +251,11 @@ public abstract class GDALImageReader extends ImageReader {
     	
         SampleModel sampleModel = null;
         DataBuffer imgBuffer = null;
-        Band pBand = null;        
+        Band pBand = null;
+        ByteBuffer buffer = null;
         try {
-	        int dstWidth = dstRegion.width;
-	        int dstHeight = dstRegion.height;
-	        int srcRegionXOffset = srcRegion.x;
-	        int srcRegionYOffset = srcRegion.y;
-	        int srcRegionWidth = srcRegion.width;
-	        int srcRegionHeight = srcRegion.height;
+	        final int dstWidth = dstRegion.width;
+	        final int dstHeight = dstRegion.height;
 	
 	        if (LOGGER.isLoggable(Level.FINE))
 	            LOGGER.fine("SourceRegion = " + srcRegion.toString());
@@ -277,14 +263,38 @@ public abstract class GDALImageReader extends ImageReader {
 	        // Getting number of bands
 	        final int nBands = selectedBands != null ? selectedBands.length
 	                : destSm.getNumBands();
-	
-	        int[] banks = new int[nBands];
-	        int[] offsets = new int[nBands];
+	        final int bandsMap[] = new int[nBands];
+	        for (int i = 0; i < nBands; i++)
+	            bandsMap[i] = (selectedBands != null ? selectedBands[i] : i) + 1;
 	
 	        // setting the number of pixels to read
 	        final int pixels = dstWidth * dstHeight;
-	        int bufferType = 0, bufferSize = 0;
-	        int typeSizeInBytes = 0; 
+
+		    // NOTE: Bands are not 0-base indexed, so we must add 1
+		    pBand = dataset.GetRasterBand(1);
+		
+		    // setting buffer properties
+		    final int bufferType = pBand.getDataType();
+		    final int typeSizeInBytes = gdal.GetDataTypeSize(bufferType) / 8;
+		    final int dataBufferType = getDataBufferType(bufferType);
+		    if (dataBufferType == DataBuffer.TYPE_UNDEFINED) {
+		        // TODO: Handle more cases if needed. Show the name of the type
+		        // instead of the numeric value.
+		        throw new IOException("The specified data type is actually unsupported: "
+		                + bufferType);
+		    }
+
+	        // The region is read in bands of rows fitting the pooled buffers.
+	        final GDALRowBands rowBands = new GDALRowBands(srcRegion.y,
+	                srcRegion.height, dstHeight, (long) dstWidth * typeSizeInBytes,
+	                nBands, GDALBufferPool.MAX_BUFFER_SIZE);
+	        final boolean readAllBands = rowBands.isReadAllBands();
+	        final int rows = rowBands.getRows();
+
+	        // splitBands = false -> pixel interleaved data in a single bank.
+	        // splitBands = true -> a bank for each band.
+	        final boolean splitBands = !readAllBands || (long) nBands * pixels > Integer.MAX_VALUE
+	                || destSm instanceof BandedSampleModel;
 
 	        // ////////////////////////////////////////////////////////////////////
 	        //
@@ -293,66 +303,53 @@ public abstract class GDALImageReader extends ImageReader {
 	        // -------------------------------------------------------------------
 	        //
 	        // ////////////////////////////////////////////////////////////////////
-         
-		    // NOTE: Bands are not 0-base indexed, so we must add 1
-		    pBand = dataset.GetRasterBand(1);
-		
-		    // setting buffer properties
-		    bufferType = pBand.getDataType();
-		    typeSizeInBytes = gdal.GetDataTypeSize(bufferType) / 8;
-		    bufferSize = nBands * pixels * typeSizeInBytes;
-        
-	        // splitBands = false -> I read n Bands at once.
-	        // splitBands = false -> I need to read 1 Band at a time.
-	        boolean splitBands = false;
-	
-	        if (bufferSize < 0 || destSm instanceof BandedSampleModel) {
-	            // The number resulting from the product
-	            // "numBands*pixels*gdal.GetDataTypeSize(buf_type) / 8"
-	            // may be negative (A very high number which is not
-	            // "int representable")
-	            // In such a case, we will read 1 band at a time.
-	            bufferSize = pixels * typeSizeInBytes;
-	            splitBands = true;
-	        }
-	        int dataBufferType = -1;
-	        byte[][] byteBands = new byte[nBands][];
-	        for (int k = 0; k < nBands; k++) {
-	
-	            // If I'm reading n Bands at once and I performed the first read,
-	            // I quit the loop
-	            if (k > 0 && !splitBands)
-	                break;
-	
-	            final byte[] dataBuffer = new byte[bufferSize];
-	
-	            final int returnVal;
-	            if (!splitBands) {
-	                // I can read nBands at once.
-	            	final int bandsMap[] = new int[nBands];
-	                if (selectedBands != null) {
-	                    for (int i = 0; i < nBands; i++)
-	                        bandsMap[i] = selectedBands[i] + 1;
-	                } else {
-	                	 for (int i = 0; i < nBands; i++)
-	                         bandsMap[i] = i + 1;
-	                }
-                    returnVal = dataset.ReadRaster(srcRegionXOffset,
-                            srcRegionYOffset, srcRegionWidth, srcRegionHeight,
-                            dstWidth, dstHeight, bufferType, dataBuffer, bandsMap,
-                            nBands * typeSizeInBytes, dstWidth * nBands
-                                    * typeSizeInBytes, typeSizeInBytes);
-                    byteBands[k] = dataBuffer;
-	            } else {
-	                // I need to read 1 band at a time.
+	        if (splitBands)
+	            imgBuffer = createDataBuffer(dataBufferType, pixels, nBands);
+	        else
+	            imgBuffer = createDataBuffer(dataBufferType, nBands * pixels, 1);
+
+	        buffer = GDALBufferPool.getBuffer(rowBands.getBufferSize());
+	        if (readAllBands) {
+	            // I can read nBands at once.
+	            for (int y = 0; y < dstHeight; y += rows) {
+	                final int bandRows = rowBands.getRows(y);
+	                final int bandPixels = bandRows * dstWidth;
+	                final int srcY = rowBands.getSourceY(y);
+	                final int srcRows = rowBands.getSourceRows(y);
+	                final int returnVal;
+	                if (!splitBands)
+	                    returnVal = dataset.ReadRaster_Direct(srcRegion.x, srcY,
+	                            srcRegion.width, srcRows, dstWidth, bandRows,
+	                            bufferType, buffer, bandsMap, nBands * typeSizeInBytes,
+	                            dstWidth * nBands * typeSizeInBytes, typeSizeInBytes);
+	                else
+	                    returnVal = dataset.ReadRaster_Direct(srcRegion.x, srcY,
+	                            srcRegion.width, srcRows, dstWidth, bandRows,
+	                            bufferType, buffer, bandsMap, typeSizeInBytes,
+	                            dstWidth * typeSizeInBytes, bandPixels * typeSizeInBytes);
+	                checkReturnValue(returnVal);
+	                if (!splitBands)
+	                    transfer(buffer, 0, imgBuffer, 0, y * dstWidth * nBands, bandPixels * nBands);
+	                else
+	                    for (int k = 0; k < nBands; k++)
+	                        transfer(buffer, k * bandPixels * typeSizeInBytes, imgBuffer, k,
+	                                y * dstWidth, bandPixels);
+	            }
+	        } else {
+	            // I need to read 1 band at a time.
+	            for (int k = 0; k < nBands; k++) {
 	            	Band rBand = null;
 	            	try{
-	            		rBand = dataset.GetRasterBand(k + 1);
-		                returnVal = rBand.ReadRaster(
-		                        srcRegionXOffset, srcRegionYOffset, srcRegionWidth,
-		                        srcRegionHeight, dstWidth, dstHeight, bufferType,
-		                        dataBuffer);
-		                byteBands[k] = dataBuffer;
+	            		rBand = dataset.GetRasterBand(bandsMap[k]);
+	            		for (int y = 0; y < dstHeight; y += rows) {
+	            		    final int bandRows = rowBands.getRows(y);
+	            		    final int srcY = rowBands.getSourceY(y);
+	            		    final int srcRows = rowBands.getSourceRows(y);
+	            		    checkReturnValue(rBand.ReadRaster_Direct(
+	            		            srcRegion.x, srcY, srcRegion.width, srcRows,
+	            		            dstWidth, bandRows, bufferType, buffer));
+	            		    transfer(buffer, 0, imgBuffer, k, y * dstWidth, bandRows * dstWidth);
+	            		}
 	            	} finally {
 	            		if (rBand != null){
 	            			try{
@@ -365,203 +362,32 @@ public abstract class GDALImageReader extends ImageReader {
 	            		}
 	            	}
 	            }
-	            if (returnVal == gdalconstConstants.CE_None) {
-	                if (!splitBands)
-	                    for (int band = 0; band < nBands; band++) {
-	                        banks[band] = band;
-	                        offsets[band] = band;
-	                    }
-	                else {
-	                    banks[k] = k;
-	                    offsets[k] = 0;
-	                }
-	            } else {
-	                // The read operation was not successfully computed.
-	                // Showing error messages.
-	                LOGGER.info(new StringBuilder("Last error: ").append(
-	                        gdal.GetLastErrorMsg()).toString());
-	                LOGGER.info(new StringBuilder("Last error number: ").append(
-	                        gdal.GetLastErrorNo()).toString());
-	                LOGGER.info(new StringBuilder("Last error type: ").append(
-	                        gdal.GetLastErrorType()).toString());
-	                throw new RuntimeException(gdal.GetLastErrorMsg());
-	            }
-	        }
-	        
-	        // ////////////////////////////////////////////////////////////////////
-	        //
-	        // -------------------------------------------------------------------
-	        // Raster Creation >>> Step 3: Setting DataBuffer
-	        // -------------------------------------------------------------------
-	        //
-	        // //////       //////////////////////////////////////////////////////////////
-	
-	        // /////////////////////////////////////////////////////////////////////
-	        //
-	        // TYPE BYTE
-	        //
-	        // /////////////////////////////////////////////////////////////////////
-	        if (bufferType == gdalconstConstants.GDT_Byte) {
-	            if (!splitBands) {
-	//                final byte[] bytes = new byte[nBands * pixels];
-	//                bands[0].get(bytes, 0, nBands * pixels);
-	                imgBuffer = new DataBufferByte(byteBands[0], nBands * pixels);
-	            } else {
-	//                final byte[][] bytes = new byte[nBands][];
-	//                for (int i = 0; i < nBands; i++) {
-	////                    bytes[i] = new byte[pixels];
-	//                    bands[i].get(bytes[i], 0, pixels);
-	//                }
-	                imgBuffer = new DataBufferByte(byteBands, pixels);
-	            }
-	            dataBufferType = DataBuffer.TYPE_BYTE;
-	        }
-	        else {
-	            ByteBuffer bands[] = new ByteBuffer[nBands];
-            for (int k = 0; (splitBands && k < nBands) || (k < 1 && !splitBands); k++) {
-	                bands[k]=ByteBuffer.wrap(byteBands[k],0,byteBands[k].length);
-	            }
-	            
-	            if (bufferType == gdalconstConstants.GDT_Int16
-	                || bufferType == gdalconstConstants.GDT_UInt16) {
-	            // ////////////////////////////////////////////////////////////////
-	            //
-	            // TYPE SHORT
-	            //
-	            // ////////////////////////////////////////////////////////////////
-	
-	            if (!splitBands) {
-	                // I get short values from the ByteBuffer using a view
-	                // of the ByteBuffer as a ShortBuffer
-	                // It is worth to create the view outside the loop.
-	                short[] shorts = new short[nBands * pixels];
-	                bands[0].order(ByteOrder.nativeOrder());
-	                final ShortBuffer buff = bands[0].asShortBuffer();
-	                buff.get(shorts, 0, nBands * pixels);
-	                if (bufferType == gdalconstConstants.GDT_Int16)
-	                    imgBuffer = new DataBufferShort(shorts, nBands * pixels);
-	                else
-	                    imgBuffer = new DataBufferUShort(shorts, nBands * pixels);
-	            } else {
-	                short[][] shorts = new short[nBands][];
-	                for (int i = 0; i < nBands; i++) {
-	                    shorts[i] = new short[pixels];
-	                    bands[i].order(ByteOrder.nativeOrder());
-	                    bands[i].asShortBuffer().get(shorts[i], 0, pixels);
-	                }
-	                if (bufferType == gdalconstConstants.GDT_Int16)
-	                    imgBuffer = new DataBufferShort(shorts, pixels);
-	                else
-	                    imgBuffer = new DataBufferUShort(shorts, pixels);
-	            }
-	            if (bufferType == gdalconstConstants.GDT_UInt16)
-	                dataBufferType = DataBuffer.TYPE_USHORT;
-	            else
-	                dataBufferType = DataBuffer.TYPE_SHORT;
-	        } else if (bufferType == gdalconstConstants.GDT_Int32
-	                || bufferType == gdalconstConstants.GDT_UInt32) {
-	            // ////////////////////////////////////////////////////////////////
-	            //
-	            // TYPE INT
-	            //
-	            // ////////////////////////////////////////////////////////////////
-	
-	            if (!splitBands) {
-	                // I get int values from the ByteBuffer using a view
-	                // of the ByteBuffer as an IntBuffer
-	                // It is worth to create the view outside the loop.
-	                int[] ints = new int[nBands * pixels];
-	                bands[0].order(ByteOrder.nativeOrder());
-	                final IntBuffer buff = bands[0].asIntBuffer();
-	                buff.get(ints, 0, nBands * pixels);
-	                imgBuffer = new DataBufferInt(ints, nBands * pixels);
-	            } else {
-	                int[][] ints = new int[nBands][];
-	                for (int i = 0; i < nBands; i++) {
-	                    ints[i] = new int[pixels];
-	                    bands[i].order(ByteOrder.nativeOrder());
-	                    bands[i].asIntBuffer().get(ints[i], 0, pixels);
-	                }
-	                imgBuffer = new DataBufferInt(ints, pixels);
-	            }
-	            dataBufferType = DataBuffer.TYPE_INT;
-	
-	        } else if (bufferType == gdalconstConstants.GDT_Float32) {
-	            // /////////////////////////////////////////////////////////////////////
-	            //
-	            // TYPE FLOAT
-	            //
-	            // /////////////////////////////////////////////////////////////////////
-	
-	            if (!splitBands) {
-	                // I get float values from the ByteBuffer using a view
-	                // of the ByteBuffer as a FloatBuffer
-	                // It is worth to create the view outside the loop.
-	                float[] floats = new float[nBands * pixels];
-	                bands[0].order(ByteOrder.nativeOrder());
-	                final FloatBuffer buff = bands[0].asFloatBuffer();
-	                buff.get(floats, 0, nBands * pixels);
-	                imgBuffer = new DataBufferFloat(floats, nBands * pixels);
-	            } else {
-	                float[][] floats = new float[nBands][];
-	                for (int i = 0; i < nBands; i++) {
-	                    floats[i] = new float[pixels];
-	                    bands[i].order(ByteOrder.nativeOrder());
-	                    bands[i].asFloatBuffer().get(floats[i], 0, pixels);
-	                }
-	                imgBuffer = new DataBufferFloat(floats, pixels);
-	            }
-	            dataBufferType = DataBuffer.TYPE_FLOAT;
-	        } else if (bufferType == gdalconstConstants.GDT_Float64) {
-	            // /////////////////////////////////////////////////////////////////////
-	            //
-	            // TYPE DOUBLE
-	            //
-	            // /////////////////////////////////////////////////////////////////////
-	
-	            if (!splitBands) {
-	                // I get double values from the ByteBuffer using a view
-	                // of the ByteBuffer as a DoubleBuffer
-	                // It is worth to create the view outside the loop.
-	                double[] doubles = new double[nBands * pixels];
-	                bands[0].order(ByteOrder.nativeOrder());
-	                final DoubleBuffer buff = bands[0].asDoubleBuffer();
-	                buff.get(doubles, 0, nBands * pixels);
-	                imgBuffer = new DataBufferDouble(doubles, nBands * pixels);
-	            } else {
-	                double[][] doubles = new double[nBands][];
-	                for (int i = 0; i < nBands; i++) {
-	                    doubles[i] = new double[pixels];
-	                    bands[i].order(ByteOrder.nativeOrder());
-	                    bands[i].asDoubleBuffer().get(doubles[i], 0, pixels);
-	                }
-	                imgBuffer = new DataBufferDouble(doubles, pixels);
-	            }
-	            dataBufferType = DataBuffer.TYPE_DOUBLE;
-	
-	        } else {
-	                // TODO: Handle more cases if needed. Show the name of the type
-	                // instead of the numeric value.
-	                LOGGER.info("The specified data type is actually unsupported: "
-	                        + bufferType);
-	            }
 	        }
 	
 	        // ////////////////////////////////////////////////////////////////////
 	        //
 	        // -------------------------------------------------------------------
-	        // Raster Creation >>> Step 4: Setting SampleModel
+	        // Raster Creation >>> Step 3: Setting SampleModel
 	        // -------------------------------------------------------------------
 	        //
 	        // ////////////////////////////////////////////////////////////////////
 	        // TODO: Fix this in compliance with the specified destSampleModel
-	        if (splitBands)
+	        if (splitBands) {
+	            final int[] banks = new int[nBands];
+	            final int[] offsets = new int[nBands];
+	            for (int k = 0; k < nBands; k++)
+	                banks[k] = k;
 	            sampleModel = new BandedSampleModel(dataBufferType, dstWidth,
 	                    dstHeight, dstWidth, banks, offsets);
-	        else
+	        } else {
+	            final int[] offsets = new int[nBands];
+	            for (int k = 0; k < nBands; k++)
+	                offsets[k] = k;
 	            sampleModel = new PixelInterleavedSampleModel(dataBufferType,
 	                    dstWidth, dstHeight, nBands, dstWidth * nBands, offsets);
+	        }
         } finally {
+        	GDALBufferPool.release(buffer);
         	if (pBand != null){
         		try{
                     // Closing the band
@@ -586,6 +412,96 @@ public abstract class GDALImageReader extends ImageReader {
         return Raster.createWritableRaster(sampleModel, imgBuffer, null);
     }
 
+    /**
+     * Returns the <code>DataBuffer</code> type matching a GDAL data type,
+     * <code>DataBuffer.TYPE_UNDEFINED</code> if not supported.
+     */
+    private static int getDataBufferType(final int gdalType) {
+        if (gdalType == gdalconstConstants.GDT_Byte)
+            return DataBuffer.TYPE_BYTE;
+        else if (gdalType == gdalconstConstants.GDT_Int16)
+            return DataBuffer.TYPE_SHORT;
+        else if (gdalType == gdalconstConstants.GDT_UInt16)
+            return DataBuffer.TYPE_USHORT;
+        else if (gdalType == gdalconstConstants.GDT_Int32
+                || gdalType == gdalconstConstants.GDT_UInt32)
+            return DataBuffer.TYPE_INT;
+        else if (gdalType == gdalconstConstants.GDT_Float32)
+            return DataBuffer.TYPE_FLOAT;
+        else if (gdalType == gdalconstConstants.GDT_Float64)
+            return DataBuffer.TYPE_DOUBLE;
+        return DataBuffer.TYPE_UNDEFINED;
+    }
+
+    private static DataBuffer createDataBuffer(final int dataBufferType,
+            final int size, final int numBanks) {
+        switch (dataBufferType) {
+        case DataBuffer.TYPE_BYTE:
+            return new DataBufferByte(size, numBanks);
+        case DataBuffer.TYPE_SHORT:
+            return new DataBufferShort(size, numBanks);
+        case DataBuffer.TYPE_USHORT:
+            return new DataBufferUShort(size, numBanks);
+        case DataBuffer.TYPE_INT:
+            return new DataBufferInt(size, numBanks);
+        case DataBuffer.TYPE_FLOAT:
+            return new DataBufferFloat(size, numBanks);
+        case DataBuffer.TYPE_DOUBLE:
+            return new DataBufferDouble(size, numBanks);
+        default:
+            throw new IllegalArgumentException("Unsupported data type: " + dataBufferType);
+        }
+    }
+
+    /**
+     * Bulk transfers <code>length</code> elements, starting at byte
+     * <code>position</code> of the native ordered <code>buffer</code>, into a
+     * bank of the <code>DataBuffer</code> starting at element
+     * <code>offset</code>.
+     */
+    private static void transfer(final ByteBuffer buffer, final int position,
+            final DataBuffer db, final int bank, final int offset, final int length) {
+        buffer.clear();
+        buffer.position(position);
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            buffer.get(((DataBufferByte) db).getData(bank), offset, length);
+            break;
+        case DataBuffer.TYPE_SHORT:
+            buffer.asShortBuffer().get(((DataBufferShort) db).getData(bank), offset, length);
+            break;
+        case DataBuffer.TYPE_USHORT:
+            buffer.asShortBuffer().get(((DataBufferUShort) db).getData(bank), offset, length);
+            break;
+        case DataBuffer.TYPE_INT:
+            buffer.asIntBuffer().get(((DataBufferInt) db).getData(bank), offset, length);
+            break;
+        case DataBuffer.TYPE_FLOAT:
+            buffer.asFloatBuffer().get(((DataBufferFloat) db).getData(bank), offset, length);
+            break;
+        case DataBuffer.TYPE_DOUBLE:
+            buffer.asDoubleBuffer().get(((DataBufferDouble) db).getData(bank), offset, length);
+            break;
+        }
+    }
+
+    /**
+     * Checks the value returned by a GDAL read operation.
+     */
+    private static void checkReturnValue(final int returnVal) {
+        if (returnVal != gdalconstConstants.CE_None) {
+            // The read operation was not successfully computed.
+            // Showing error messages.
+            LOGGER.info(new StringBuilder("Last error: ").append(
+                    gdal.GetLastErrorMsg()).toString());
+            LOGGER.info(new StringBuilder("Last error number: ").append(
+                    gdal.GetLastErrorNo()).toString());
+            LOGGER.info(new StringBuilder("Last error type: ").append(
+                    gdal.GetLastErrorType()).toString());
+            throw new RuntimeException(gdal.GetLastErrorMsg());
+        }
+    }
+
     /**
      * Tries to retrieve the Dataset Source for the ImageReader's input.
      */
@@ -696,11 +612,11 @@ public abstract class GDALImageReader extends ImageReader {
         if (imageInputStream != null) {
             if (datasetSource != null) {
             	mainDatasetName=datasetSource.getAbsolutePath();
-                mainDataSet = GDALUtilities.acquireDataSet(datasetSource.getAbsolutePath(), gdalconstConstants.GA_ReadOnly);    
+                mainDataSet = GDALDatasetPool.getInstance().acquire(mainDatasetName);
             }else if (uriSource != null){
                 final String urisource = uriSource.toString();
                 mainDatasetName=urisource;
-                mainDataSet = GDALUtilities.acquireDataSet(urisource, gdalconstConstants.GA_ReadOnly);    
+                mainDataSet = GDALDatasetPool.getInstance().acquire(urisource);
             }
             if (mainDataSet != null) {
             	isInputDecodable = ((GDALImageReaderSpi) this.getOriginatingProvider()).isDecodable(mainDataSet);
@@ -708,46 +624,50 @@ public abstract class GDALImageReader extends ImageReader {
                 isInputDecodable = false;
         }
         if (isInputDecodable){
-        	// cache dataset
-        	datasetsMap.put(mainDatasetName, mainDataSet);
-        	
-        	// input is decodable
-        	super.setInput(imageInputStream, seekForwardOnly, ignoreMetadata);
-        	
-            // Listing available subdatasets
-            final List<String> subdatasets = mainDataSet.GetMetadata_List(GDALUtilities.GDALMetadataDomain.SUBDATASETS);
-
-            // setting the number of subdatasets
-            // It is worth to remind that the subdatasets vector
-            // contains both Subdataset's Name and Subdataset's Description
-            // Thus we need to divide its size by two.
-            nSubdatasets = subdatasets.size() / 2;
-
-            // Some formats supporting subdatasets may have no subdatasets.
-            // As an instance, the HDF4ImageReader may read HDF4Images
-            // which are single datasets containing no subdatasets.
-            // Thus, theDataset is simply the main dataset.
-            if (nSubdatasets == 0) {
-                nSubdatasets = 1;
-                datasetNames = new String[1];
-                datasetNames[0] = mainDatasetName;
-                datasetMetadataMap.put(datasetNames[0], this.createDatasetMetadata(mainDatasetName));
-                
-            } else {
-                datasetNames = new String[nSubdatasets + 1];
-                for (int i = 0; i < nSubdatasets; i++) {
-                    final String subdatasetName = (subdatasets.get(i * 2)).toString();
-                    final int nameStartAt = subdatasetName.lastIndexOf("_NAME=") + 6;
-                    datasetNames[i] = subdatasetName.substring(nameStartAt);
-                }
-                datasetNames[nSubdatasets] = mainDatasetName;
-                datasetMetadataMap.put(datasetNames[nSubdatasets], createDatasetMetadata(mainDataSet, datasetNames[nSubdatasets]));
-            }     
-            // clean list
-            subdatasets.clear();
-        	
+            try {
+                // input is decodable
+                super.setInput(imageInputStream, seekForwardOnly, ignoreMetadata);
+
+                // Listing available subdatasets
+                final List<String> subdatasets = mainDataSet.GetMetadata_List(GDALUtilities.GDALMetadataDomain.SUBDATASETS);
+
+                // setting the number of subdatasets
+                // It is worth to remind that the subdatasets vector
+                // contains both Subdataset's Name and Subdataset's Description
+                // Thus we need to divide its size by two.
+                nSubdatasets = subdatasets.size() / 2;
+
+                // Some formats supporting subdatasets may have no subdatasets.
+                // As an instance, the HDF4ImageReader may read HDF4Images
+                // which are single datasets containing no subdatasets.
+                // Thus, theDataset is simply the main dataset.
+                if (nSubdatasets == 0) {
+                    nSubdatasets = 1;
+                    datasetNames = new String[1];
+                    datasetNames[0] = mainDatasetName;
+                    datasetMetadataMap.put(datasetNames[0], this.createDatasetMetadata(mainDatasetName));
+
+                } else {
+                    datasetNames = new String[nSubdatasets + 1];
+                    for (int i = 0; i < nSubdatasets; i++) {
+                        final String subdatasetName = (subdatasets.get(i * 2)).toString();
+                        final int nameStartAt = subdatasetName.lastIndexOf("_NAME=") + 6;
+                        datasetNames[i] = subdatasetName.substring(nameStartAt);
+                    }
+                    datasetNames[nSubdatasets] = mainDatasetName;
+                    datasetMetadataMap.put(datasetNames[nSubdatasets], createDatasetMetadata(mainDataSet, datasetNames[nSubdatasets]));
+                }     
+                // clean list
+                subdatasets.clear();
+            } finally {
+                // give the dataset back, it will be acquired again when reading
+                GDALDatasetPool.getInstance().release(mainDataSet);
+            }
         }
         else {
+            if (mainDataSet != null)
+                GDALDatasetPool.getInstance().release(mainDataSet);
+
             StringBuilder sb = new StringBuilder();
             if (imageInputStream == null)
             {
@@ -781,15 +701,6 @@ public abstract class GDALImageReader extends ImageReader {
         // Cleaning HashMap
         datasetMetadataMap.clear();
         datasetNames = null;
-        
-        // releasing the other datasets
-        Set<Entry<String, Dataset>> elements = datasetsMap.entrySet();
-        for(Entry<String, Dataset> e:elements){
-        	GDALUtilities.closeDataSet(e.getValue());
-        }
-        if (datasetsMap != null) {
-            datasetsMap.clear();
-        }
     }
 
     /**
@@ -855,7 +766,7 @@ public abstract class GDALImageReader extends ImageReader {
         int width = item.getWidth();
         int height = item.getHeight();
         
-        final Dataset originalDataset = datasetsMap.get(item.getDatasetName());
+        final Dataset originalDataset = GDALDatasetPool.getInstance().acquire(item.getDatasetName());
         if (originalDataset == null)
             throw new IOException("Error while acquiring the input dataset " + item.getDatasetName());
         
@@ -1018,6 +929,7 @@ public abstract class GDALImageReader extends ImageReader {
         	if (warpedDataset != null) {
         		GDALUtilities.closeDataSet(warpedDataset);
         	}
+        	GDALDatasetPool.getInstance().release(originalDataset);
         }
     }
 
@@ -38,7 +38,6 @@ import javax.imageio.spi.ServiceRegistry;
 
 import org.gdal.gdal.Dataset;
 import org.gdal.gdal.Driver;
-import org.gdal.gdalconst.gdalconst;
 
 /**
  * The abstract service provider interface (SPI) for {@link GDALImageReader}s.
@@ -182,7 +181,7 @@ public abstract class GDALImageReaderSpi extends ImageReaderSpi {
         // Checking if this specific SPI can decode the provided input
         Dataset ds =null;
         try {
-            ds = GDALUtilities.acquireDataSet(sourceFile.getAbsolutePath(),gdalconst.GA_ReadOnly);
+            ds = GDALDatasetPool.getInstance().acquire(sourceFile.getAbsolutePath());
             isInputDecodable = isDecodable(ds);
 
         } catch (Throwable e) {
@@ -192,8 +191,8 @@ public abstract class GDALImageReaderSpi extends ImageReaderSpi {
         finally{
         	if(ds!=null)
         		try{
-                    // Closing the dataset
-                    GDALUtilities.closeDataSet(ds);
+                    // Releasing the dataset
+                    GDALDatasetPool.getInstance().release(ds);
         		}catch (Throwable e) {
 					if(LOGGER.isLoggable(Level.FINEST))
 						LOGGER.log(Level.FINEST,e.getLocalizedMessage(),e);
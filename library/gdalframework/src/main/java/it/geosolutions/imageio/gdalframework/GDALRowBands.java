@@ -0,0 +1,150 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+/**
+ * Splits the read of a source region, resampled to a destination height, in
+ * bands of rows fitting a buffer of a given size.
+ *
+ * <p>
+ * Each band starts on a destination row mapping exactly to a source row, so
+ * that the bands are resampled the same way the whole region would be: bands
+ * are made of a multiple of <code>dstHeight / gcd(srcHeight, dstHeight)</code>
+ * rows, the smallest run of destination rows covering a whole number of
+ * source rows. When such a run does not fit in the buffer for all the raster
+ * bands at once, the raster bands have to be read one at a time.
+ */
+final class GDALRowBands {
+
+    private final int srcY;
+
+    private final int srcHeight;
+
+    private final int dstHeight;
+
+    private final int rowStep;
+
+    private final boolean readAllBands;
+
+    private final long rowSize;
+
+    private final int rows;
+
+    /**
+     * @param srcY
+     *                the first row of the source region
+     * @param srcHeight
+     *                the height of the source region
+     * @param dstHeight
+     *                the height of the destination region
+     * @param bandRowSize
+     *                the size in bytes of a destination row of a single
+     *                raster band
+     * @param nBands
+     *                the number of raster bands read
+     * @param maxBufferSize
+     *                the size in bytes of the largest buffer which is kept
+     *                for reuse
+     */
+    GDALRowBands(final int srcY, final int srcHeight, final int dstHeight,
+            final long bandRowSize, final int nBands, final int maxBufferSize) {
+        this.srcY = srcY;
+        this.srcHeight = srcHeight;
+        this.dstHeight = dstHeight;
+        rowStep = dstHeight / gcd(srcHeight, dstHeight);
+        readAllBands = rowStep * bandRowSize * nBands <= Integer.MAX_VALUE;
+        rowSize = readAllBands ? nBands * bandRowSize : bandRowSize;
+        final int maxRows = (int) Math.min(dstHeight, maxBufferSize / rowSize);
+        rows = Math.max(rowStep, maxRows / rowStep * rowStep);
+    }
+
+    /**
+     * Returns <code>true</code> if all the raster bands are read at once,
+     * <code>false</code> if they have to be read one at a time.
+     */
+    boolean isReadAllBands() {
+        return readAllBands;
+    }
+
+    /**
+     * Returns the number of destination rows mapping to a whole number of
+     * source rows, of which the band heights are multiples.
+     */
+    int getRowStep() {
+        return rowStep;
+    }
+
+    /**
+     * Returns the size in bytes of a destination row as read, that is of all
+     * the raster bands if {@link #isReadAllBands()}, of a single one
+     * otherwise.
+     */
+    long getRowSize() {
+        return rowSize;
+    }
+
+    /**
+     * Returns the number of destination rows of each band but the last one,
+     * which may be shorter.
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the size in bytes of the buffer needed to read a band.
+     */
+    int getBufferSize() {
+        return (int) (rows * rowSize);
+    }
+
+    /**
+     * Returns the number of destination rows of the band starting at
+     * destination row <code>y</code>.
+     */
+    int getRows(final int y) {
+        return Math.min(rows, dstHeight - y);
+    }
+
+    /**
+     * Returns the source row of the band starting at destination row
+     * <code>y</code>.
+     */
+    int getSourceY(final int y) {
+        return srcY + (int) ((long) y * srcHeight / dstHeight);
+    }
+
+    /**
+     * Returns the number of source rows of the band starting at destination
+     * row <code>y</code>.
+     */
+    int getSourceRows(final int y) {
+        return (int) ((long) getRows(y) * srcHeight / dstHeight);
+    }
+
+    /**
+     * Returns the greatest common divisor of two non negative integers.
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            final int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+}
@@ -49,7 +49,6 @@ import javax.media.jai.RasterFactory;
 import org.gdal.gdal.Dataset;
 import org.gdal.gdal.Driver;
 import org.gdal.gdal.gdal;
-import org.gdal.gdalconst.gdalconst;
 import org.gdal.gdalconst.gdalconstConstants;
 
 import com.sun.media.imageioimpl.common.ImageUtil;
@@ -308,14 +307,14 @@ public final class GDALUtilities {
      * @return a <code>List</code> containing any metadata found.
      */
     public static List<String> getGDALImageMetadata(String dataSetName) {
-        final Dataset ds = acquireDataSet(dataSetName, gdalconst.GA_ReadOnly);
+        final Dataset ds = GDALDatasetPool.getInstance().acquire(dataSetName);
         final List<String> gdalImageMetadata;
         if (ds != null) {
             try {
                 gdalImageMetadata = ds.GetMetadata_List("");
             } finally {
-                // Closing the dataset
-                closeDataSet(ds);
+                // Releasing the dataset
+                GDALDatasetPool.getInstance().release(ds);
             }
         } else {
             gdalImageMetadata = null;
@@ -486,7 +485,7 @@ public final class GDALUtilities {
     public static List getGDALStreamMetadata(String datasetName) {
         Dataset ds = null;
         try {
-            ds = acquireDataSet(datasetName, gdalconst.GA_ReadOnly);
+            ds = GDALDatasetPool.getInstance().acquire(datasetName);
             return ds.GetMetadata_List("SUBDATASETS");
         } catch (Exception e) {
             if (LOGGER.isLoggable(Level.WARNING)) {
@@ -496,8 +495,8 @@ public final class GDALUtilities {
         } finally {
             if (ds != null) {
                 try {
-                    // Closing the dataset
-                    GDALUtilities.closeDataSet(ds);
+                    // Releasing the dataset
+                    GDALDatasetPool.getInstance().release(ds);
                 } catch (Throwable e) {
                     if (LOGGER.isLoggable(Level.FINE))
                         LOGGER.log(Level.FINE, e.getLocalizedMessage(), e);
@@ -0,0 +1,236 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+/**
+ * Groups the native blocks of a dataset being written into chunks, and
+ * gathers the data of each chunk from the tiles of the source image.
+ *
+ * <p>
+ * Blocks are grouped first along X, then along Y when a chunk spans the
+ * whole width, into chunks of at most a given size in bytes, a chunk being
+ * never smaller than a block. The chunks of the last column and of the last
+ * row are cut at the dataset edges.
+ */
+final class GDALWriteChunks {
+
+    private final int width;
+
+    private final int height;
+
+    private final int chunkWidth;
+
+    private final int chunkHeight;
+
+    /**
+     * @param width
+     *                the width of the dataset
+     * @param height
+     *                the height of the dataset
+     * @param blockWidth
+     *                the width of the native blocks of the dataset
+     * @param blockHeight
+     *                the height of the native blocks of the dataset
+     * @param pixelSize
+     *                the size in bytes of a pixel, all bands included
+     * @param maxChunkSize
+     *                the maximum size in bytes of a chunk
+     */
+    GDALWriteChunks(final int width, final int height, int blockWidth,
+            int blockHeight, final int pixelSize, final int maxChunkSize) {
+        this.width = width;
+        this.height = height;
+        blockWidth = Math.max(1, Math.min(blockWidth, width));
+        blockHeight = Math.max(1, Math.min(blockHeight, height));
+        int chunkWidth = blockWidth;
+        while (chunkWidth < width
+                && (long) (chunkWidth + blockWidth) * blockHeight * pixelSize <= maxChunkSize)
+            chunkWidth += blockWidth;
+        this.chunkWidth = Math.min(chunkWidth, width);
+        int chunkHeight = blockHeight;
+        while (this.chunkWidth == width && chunkHeight < height
+                && (long) width * (chunkHeight + blockHeight) * pixelSize <= maxChunkSize)
+            chunkHeight += blockHeight;
+        this.chunkHeight = Math.min(chunkHeight, height);
+    }
+
+    /**
+     * Returns the width of the chunks, but the ones of the last column which
+     * may be narrower.
+     */
+    int getChunkWidth() {
+        return chunkWidth;
+    }
+
+    /**
+     * Returns the height of the chunks, but the ones of the last row which
+     * may be shorter.
+     */
+    int getChunkHeight() {
+        return chunkHeight;
+    }
+
+    /**
+     * Sets the provided rectangle to the bounds of the chunk whose upper left
+     * corner is at <code>x</code>, <code>y</code>, a multiple of the chunk
+     * width and height respectively.
+     *
+     * @return the provided rectangle
+     */
+    Rectangle getChunk(final int x, final int y, final Rectangle chunk) {
+        chunk.setBounds(x, y, Math.min(chunkWidth, width - x), Math.min(
+                chunkHeight, height - y));
+        return chunk;
+    }
+
+    /**
+     * Loads in the provided buffer, pixel interleaved, the data of the source
+     * tiles which are mapped on the specified chunk of the destination
+     * dataset.
+     *
+     * @param image
+     *                the input image containing data which need to be written
+     * @param sourceRegion
+     *                the rectangle used to clip the source image dimensions
+     * @param chunk
+     *                the destination region to be loaded
+     * @param xSubsamplingFactor
+     *                the subsamplingFactor along X
+     * @param ySubsamplingFactor
+     *                the subsamplingFactor along Y
+     * @param nBands
+     *                the number of bands
+     * @param typeSizeInBytes
+     *                the size of a data element
+     * @param buffer
+     *                the buffer where to store the loaded data
+     */
+    static void load(final RenderedImage image,
+            final Rectangle sourceRegion, final Rectangle chunk,
+            final int xSubsamplingFactor, final int ySubsamplingFactor,
+            final int nBands, final int typeSizeInBytes, final ByteBuffer buffer) {
+
+        // //
+        //
+        // Source area covered by the chunk
+        //
+        // //
+        final int srcMinX = sourceRegion.x + chunk.x * xSubsamplingFactor;
+        final int srcMinY = sourceRegion.y + chunk.y * ySubsamplingFactor;
+        final Rectangle srcArea = new Rectangle(srcMinX, srcMinY,
+                (chunk.width - 1) * xSubsamplingFactor + 1, (chunk.height - 1)
+                        * ySubsamplingFactor + 1);
+
+        final int tileWidth = image.getTileWidth();
+        final int tileHeight = image.getTileHeight();
+        final int minTileX = toTileIndex(srcArea.x, image.getTileGridXOffset(), tileWidth);
+        final int minTileY = toTileIndex(srcArea.y, image.getTileGridYOffset(), tileHeight);
+        final int maxTileX = toTileIndex(srcArea.x + srcArea.width - 1, image.getTileGridXOffset(), tileWidth);
+        final int maxTileY = toTileIndex(srcArea.y + srcArea.height - 1, image.getTileGridYOffset(), tileHeight);
+
+        Object data = null;
+        for (int ty = minTileY; ty <= maxTileY; ty++) {
+            for (int tx = minTileX; tx <= maxTileX; tx++) {
+                final Raster tile = image.getTile(tx, ty);
+                final Rectangle bounds = tile.getBounds().intersection(srcArea);
+                if (bounds.isEmpty())
+                    continue;
+
+                // //
+                //
+                // First sampled column and row of the tile, and their
+                // position in the chunk
+                //
+                // //
+                final int firstX = srcMinX
+                        + (bounds.x - srcMinX + xSubsamplingFactor - 1)
+                        / xSubsamplingFactor * xSubsamplingFactor;
+                final int firstY = srcMinY
+                        + (bounds.y - srcMinY + ySubsamplingFactor - 1)
+                        / ySubsamplingFactor * ySubsamplingFactor;
+                final int endX = bounds.x + bounds.width;
+                final int endY = bounds.y + bounds.height;
+                if (firstX >= endX || firstY >= endY)
+                    continue;
+                final int columns = (endX - 1 - firstX) / xSubsamplingFactor + 1;
+                final int span = (columns - 1) * xSubsamplingFactor + 1;
+                final int dstX = (firstX - srcMinX) / xSubsamplingFactor;
+
+                // Contiguous rows are loaded at once
+                final int rows = ySubsamplingFactor == 1 ? endY - firstY : 1;
+                if (data != null && Array.getLength(data) < span * rows * nBands)
+                    data = null;
+                for (int y = firstY; y < endY; y += rows * ySubsamplingFactor) {
+                    data = tile.getDataElements(firstX, y, span, rows, data);
+                    for (int r = 0; r < rows; r++) {
+                        final int offset = r * span * nBands;
+                        if (xSubsamplingFactor > 1) {
+                            // Compacting the sampled pixels at the beginning of the row
+                            for (int i = 1; i < columns; i++)
+                                System.arraycopy(data, offset + i
+                                        * xSubsamplingFactor * nBands, data,
+                                        offset + i * nBands, nBands);
+                        }
+                        final int dstY = (y - srcMinY) / ySubsamplingFactor + r;
+                        put(buffer, ((dstY * chunk.width) + dstX) * nBands
+                                * typeSizeInBytes, data, offset, columns * nBands);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the tile containing the specified pixel coordinate.
+     */
+    private static int toTileIndex(int p, final int tileGridOffset,
+            final int tileSize) {
+        p -= tileGridOffset;
+        if (p < 0)
+            p += 1 - tileSize; // force round to -infinity
+        return p / tileSize;
+    }
+
+    /**
+     * Bulk stores <code>length</code> data elements, starting at
+     * <code>offset</code> of the provided primitive array, at byte
+     * <code>position</code> of the native ordered <code>buffer</code>.
+     */
+    private static void put(final ByteBuffer buffer, final int position,
+            final Object data, final int offset, final int length) {
+        buffer.clear();
+        buffer.position(position);
+        if (data instanceof byte[])
+            buffer.put((byte[]) data, offset, length);
+        else if (data instanceof short[])
+            buffer.asShortBuffer().put((short[]) data, offset, length);
+        else if (data instanceof int[])
+            buffer.asIntBuffer().put((int[]) data, offset, length);
+        else if (data instanceof float[])
+            buffer.asFloatBuffer().put((float[]) data, offset, length);
+        else if (data instanceof double[])
+            buffer.asDoubleBuffer().put((double[]) data, offset, length);
+        else
+            throw new IllegalArgumentException("Unsupported data type");
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bookkeeping of {@link GDALDatasetPool}, independent of the native
+ * resources being pooled.
+ *
+ * <p>
+ * A resource is checked out by the thread acquiring it until it is released.
+ * Further acquisitions of the same source from the same thread get the same
+ * resource and increment its reference count, while other threads get a
+ * different one. Resources whose reference count drops to zero are kept
+ * idle, at most {@link #getMaxIdle()} of them and no longer than
+ * {@link #getIdleTimeout()} milliseconds: a daemon thread shared by all the
+ * pools closes the expired ones every idle timeout, and {@link #purge()}
+ * does it on demand. Idle resources whose source has a different
+ * {@link #getStamp(String) stamp} than when opened are closed rather than
+ * reused.
+ *
+ * @param <T>
+ *            the type of the pooled resources
+ */
+abstract class ResourcePool<T> {
+
+    /** Shortest period of the idle resources checks, in milliseconds. */
+    private final static long MIN_PURGE_PERIOD = 1000;
+
+    private final static ScheduledExecutorService PURGER = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "GDALDatasetPool-purger");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Purges a pool until it is garbage collected, so that the shared thread
+     * does not keep it reachable.
+     */
+    private final static class PurgeTask implements Runnable {
+
+        private final WeakReference<ResourcePool<?>> pool;
+
+        private volatile ScheduledFuture<?> future;
+
+        private PurgeTask(final ResourcePool<?> pool) {
+            this.pool = new WeakReference<ResourcePool<?>>(pool);
+        }
+
+        public void run() {
+            final ResourcePool<?> pool = this.pool.get();
+            if (pool != null)
+                pool.purge();
+            else if (future != null)
+                future.cancel(false);
+        }
+    }
+
+    /**
+     * A pooled resource.
+     */
+    private final static class Entry<T> {
+
+        private final String name;
+
+        private final long stamp;
+
+        private final T resource;
+
+        private Thread owner;
+
+        private int references;
+
+        private long lastUsed;
+
+        private Entry(final String name, final long stamp, final T resource) {
+            this.name = name;
+            this.stamp = stamp;
+            this.resource = resource;
+        }
+    }
+
+    /** Checked out resources. */
+    private final Map<T, Entry<T>> checkedOut = new IdentityHashMap<T, Entry<T>>();
+
+    /** Idle resources, least recently released first. */
+    private final LinkedList<Entry<T>> idle = new LinkedList<Entry<T>>();
+
+    private volatile int maxIdle;
+
+    private volatile long idleTimeout;
+
+    private PurgeTask purgeTask;
+
+    private final AtomicLong opened = new AtomicLong();
+
+    private final AtomicLong reused = new AtomicLong();
+
+    private final AtomicLong closed = new AtomicLong();
+
+    /**
+     * @param maxIdle
+     *                maximum number of idle resources kept.
+     * @param idleTimeout
+     *                time (in milliseconds) after which idle resources are
+     *                closed.
+     */
+    ResourcePool(final int maxIdle, final long idleTimeout) {
+        setMaxIdle(maxIdle);
+        setIdleTimeout(idleTimeout);
+    }
+
+    /**
+     * Opens a new resource.
+     *
+     * @return the resource, or <code>null</code> if it cannot be opened.
+     */
+    protected abstract T open(String name);
+
+    /**
+     * Closes a resource which is no longer pooled.
+     */
+    protected abstract void close(String name, T resource);
+
+    /**
+     * Returns a value changing whenever the source is modified, computed
+     * from the length and the last modification time of plain files and 0
+     * for other sources.
+     */
+    protected long getStamp(final String name) {
+        final File file = new File(name);
+        if (!file.isFile())
+            return 0;
+        return file.lastModified() * 31 + file.length();
+    }
+
+    /**
+     * Returns the current time in milliseconds, against which the idle
+     * timeout is checked.
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Acquires the resource of a source, opening it only when no suitable
+     * pooled resource is available.
+     *
+     * @return the acquired resource, to be given back through
+     *         {@link #release(Object)}, or <code>null</code> if it cannot be
+     *         opened.
+     */
+    T acquire(final String name) {
+        if (name == null)
+            throw new IllegalArgumentException("Provided parameter is null:name");
+        final long stamp = getStamp(name);
+        final Thread thread = Thread.currentThread();
+        final List<Entry<T>> expired = new ArrayList<Entry<T>>();
+        try {
+            synchronized (this) {
+                // already checked out by this thread
+                for (Entry<T> entry : checkedOut.values()) {
+                    if (entry.owner == thread && entry.stamp == stamp
+                            && entry.name.equals(name)) {
+                        entry.references++;
+                        reused.incrementAndGet();
+                        return entry.resource;
+                    }
+                }
+
+                // idle, most recently released first
+                evict(expired);
+                for (Iterator<Entry<T>> it = idle.descendingIterator(); it.hasNext();) {
+                    final Entry<T> entry = it.next();
+                    if (!entry.name.equals(name))
+                        continue;
+                    it.remove();
+                    if (entry.stamp != stamp) {
+                        // the source has been modified
+                        expired.add(entry);
+                        continue;
+                    }
+                    checkOut(entry, thread);
+                    reused.incrementAndGet();
+                    return entry.resource;
+                }
+            }
+        } finally {
+            close(expired);
+        }
+
+        final T resource = open(name);
+        if (resource == null)
+            return null;
+        opened.incrementAndGet();
+        final Entry<T> entry = new Entry<T>(name, stamp, resource);
+        synchronized (this) {
+            checkOut(entry, thread);
+        }
+        return resource;
+    }
+
+    /**
+     * Gives back a resource obtained through {@link #acquire(String)}.
+     *
+     * @return <code>false</code> if the resource does not come from this
+     *         pool.
+     */
+    boolean release(final T resource) {
+        final List<Entry<T>> expired = new ArrayList<Entry<T>>();
+        try {
+            synchronized (this) {
+                final Entry<T> entry = checkedOut.get(resource);
+                if (entry == null)
+                    return false;
+                if (--entry.references > 0)
+                    return true;
+                checkedOut.remove(resource);
+                entry.owner = null;
+                entry.lastUsed = currentTimeMillis();
+                idle.addLast(entry);
+                evict(expired);
+            }
+        } finally {
+            close(expired);
+        }
+        return true;
+    }
+
+    int getMaxIdle() {
+        return maxIdle;
+    }
+
+    void setMaxIdle(final int maxIdle) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle < 0");
+        this.maxIdle = maxIdle;
+        purge();
+    }
+
+    long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    void setIdleTimeout(final long idleTimeout) {
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException("idleTimeout < 0");
+        this.idleTimeout = idleTimeout;
+        synchronized (this) {
+            if (purgeTask != null)
+                purgeTask.future.cancel(false);
+            final long period = Math.max(MIN_PURGE_PERIOD, idleTimeout);
+            purgeTask = new PurgeTask(this);
+            purgeTask.future = PURGER.scheduleWithFixedDelay(purgeTask,
+                    period, period, TimeUnit.MILLISECONDS);
+        }
+        purge();
+    }
+
+    synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    synchronized int getCheckedOutCount() {
+        return checkedOut.size();
+    }
+
+    long getOpenedCount() {
+        return opened.get();
+    }
+
+    long getReusedCount() {
+        return reused.get();
+    }
+
+    long getClosedCount() {
+        return closed.get();
+    }
+
+    /**
+     * Closes the idle resources exceeding the current limits.
+     */
+    void purge() {
+        final List<Entry<T>> expired = new ArrayList<Entry<T>>();
+        synchronized (this) {
+            evict(expired);
+        }
+        close(expired);
+    }
+
+    /**
+     * Closes all the idle resources.
+     */
+    void clear() {
+        final List<Entry<T>> entries;
+        synchronized (this) {
+            entries = new ArrayList<Entry<T>>(idle);
+            idle.clear();
+        }
+        close(entries);
+    }
+
+    private void checkOut(final Entry<T> entry, final Thread thread) {
+        entry.owner = thread;
+        entry.references = 1;
+        checkedOut.put(entry.resource, entry);
+    }
+
+    /**
+     * Moves the idle entries exceeding the current limits to the provided
+     * list. Must be called while holding the lock.
+     */
+    private void evict(final List<Entry<T>> expired) {
+        final long limit = currentTimeMillis() - idleTimeout;
+        while (!idle.isEmpty()
+                && (idle.size() > maxIdle || idle.getFirst().lastUsed < limit)) {
+            expired.add(idle.removeFirst());
+        }
+    }
+
+    private void close(final List<Entry<T>> entries) {
+        for (Entry<T> entry : entries) {
+            close(entry.name, entry.resource);
+            closed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the bands of rows a region is read in, which do not need GDAL.
+ */
+public class GDALRowBandsTest {
+
+    /**
+     * Checks that the bands cover the destination and the source regions
+     * without gaps nor overlaps, that each band starts on the source row a
+     * read of the whole region would map it to and that the bands fit the
+     * buffer whenever a run of rowStep rows does.
+     */
+    private static GDALRowBands checkBands(final int srcY, final int srcHeight,
+            final int dstHeight, final long bandRowSize, final int nBands,
+            final int maxBufferSize) {
+        final GDALRowBands bands = new GDALRowBands(srcY, srcHeight, dstHeight,
+                bandRowSize, nBands, maxBufferSize);
+        final int rowStep = bands.getRowStep();
+        assertEquals(0, dstHeight % rowStep);
+        assertEquals(0, ((long) rowStep * srcHeight) % dstHeight);
+        assertEquals(0, bands.getRows() % rowStep);
+        if (bands.getRows() > rowStep)
+            assertTrue(bands.getBufferSize() <= maxBufferSize);
+        assertEquals(bands.isReadAllBands() ? nBands * bandRowSize
+                : bandRowSize, bands.getRowSize());
+
+        int nextSrcY = srcY;
+        int y = 0;
+        while (y < dstHeight) {
+            final int rows = bands.getRows(y);
+            assertTrue(rows > 0);
+            assertEquals(0, rows % rowStep);
+            assertTrue(rows * bands.getRowSize() <= bands.getBufferSize());
+            assertEquals(nextSrcY, bands.getSourceY(y));
+            assertEquals(srcY + (int) ((long) y * srcHeight / dstHeight),
+                    bands.getSourceY(y));
+            // the band maps to a whole number of source rows
+            assertEquals((long) rows * srcHeight,
+                    (long) bands.getSourceRows(y) * dstHeight);
+            nextSrcY += bands.getSourceRows(y);
+            y += rows;
+        }
+        assertEquals(dstHeight, y);
+        assertEquals(srcY + srcHeight, nextSrcY);
+        return bands;
+    }
+
+    @Test
+    public void testOddHeights() {
+        // not subsampled, bands of 11 rows of 3 raster bands and a last one
+        // of 10 rows
+        GDALRowBands bands = checkBands(0, 1001, 1001, 30, 3, 1000);
+        assertEquals(1, bands.getRowStep());
+        assertEquals(11, bands.getRows());
+        assertEquals(10, bands.getRows(1001 - 10));
+
+        // a single row
+        bands = checkBands(17, 1, 1, 30, 3, 1000);
+        assertEquals(1, bands.getRows());
+        assertEquals(17, bands.getSourceY(0));
+
+        // the whole region fits
+        bands = checkBands(5, 999, 999, 10, 1, 16 * 1024 * 1024);
+        assertEquals(999, bands.getRows());
+    }
+
+    @Test
+    public void testSubsampled() {
+        // integer subsampling, any destination row maps to a source row
+        GDALRowBands bands = checkBands(3, 999, 333, 40, 2, 1000);
+        assertEquals(1, bands.getRowStep());
+        assertEquals(12, bands.getRows());
+        assertEquals(3 + 12 * 3, bands.getSourceY(12));
+
+        // 1001 source rows to 715, every 5 destination rows map to 7 source
+        // rows
+        bands = checkBands(0, 1001, 715, 40, 2, 1000);
+        assertEquals(5, bands.getRowStep());
+        assertEquals(10, bands.getRows());
+        assertEquals(14, bands.getSourceRows(0));
+        assertEquals(14, bands.getSourceY(10));
+
+        // odd heights with no common divisor, the whole region is a single
+        // run, read in one band even if larger than the pooled buffers
+        bands = checkBands(0, 1000, 333, 40, 2, 1000);
+        assertEquals(333, bands.getRowStep());
+        assertEquals(333, bands.getRows());
+        assertEquals(1000, bands.getSourceRows(0));
+    }
+
+    @Test
+    public void testBandsReadOneAtATime() {
+        // a run of 5 rows of 4 raster bands exceeds a buffer
+        final GDALRowBands bands = checkBands(0, 1001, 715, 1 << 27, 4,
+                16 * 1024 * 1024);
+        assertFalse(bands.isReadAllBands());
+        assertEquals(1 << 27, bands.getRowSize());
+        assertEquals(5, bands.getRows());
+
+        assertTrue(checkBands(0, 1001, 715, 1 << 20, 4, 16 * 1024 * 1024)
+                .isReadAllBands());
+    }
+}
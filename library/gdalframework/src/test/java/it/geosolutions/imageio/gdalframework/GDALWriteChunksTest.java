@@ -0,0 +1,363 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Vector;
+
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.Driver;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
+import org.junit.Test;
+
+/**
+ * Checks the chunks a dataset is written in and the gathering of their data
+ * from the source tiles. Only {@link #testWriteData()} needs GDAL.
+ */
+public class GDALWriteChunksTest extends AbstractGDALTest {
+
+    private final static int BANDS = 2;
+
+    /**
+     * Two bands int image made of 7x5 tiles whose grid is not at the origin,
+     * each sample encoding its own coordinates.
+     */
+    private final static class TestImage implements RenderedImage {
+
+        private final static int MIN_X = -3, MIN_Y = 2, WIDTH = 40,
+                HEIGHT = 30, TILE_WIDTH = 7, TILE_HEIGHT = 5;
+
+        private final SampleModel sampleModel = new PixelInterleavedSampleModel(
+                DataBuffer.TYPE_INT, TILE_WIDTH, TILE_HEIGHT, BANDS,
+                TILE_WIDTH * BANDS, new int[] { 0, 1 });
+
+        static int sample(final int x, final int y, final int b) {
+            return (x + 100) * 10000 + (y + 100) * 10 + b;
+        }
+
+        public Raster getTile(final int tileX, final int tileY) {
+            final int x0 = MIN_X + tileX * TILE_WIDTH;
+            final int y0 = MIN_Y + tileY * TILE_HEIGHT;
+            final WritableRaster tile = Raster.createWritableRaster(
+                    sampleModel, new Point(x0, y0));
+            for (int y = y0; y < y0 + TILE_HEIGHT; y++)
+                for (int x = x0; x < x0 + TILE_WIDTH; x++)
+                    for (int b = 0; b < BANDS; b++)
+                        tile.setSample(x, y, b, sample(x, y, b));
+            return tile;
+        }
+
+        public int getMinX() {
+            return MIN_X;
+        }
+
+        public int getMinY() {
+            return MIN_Y;
+        }
+
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        public int getHeight() {
+            return HEIGHT;
+        }
+
+        public int getTileWidth() {
+            return TILE_WIDTH;
+        }
+
+        public int getTileHeight() {
+            return TILE_HEIGHT;
+        }
+
+        public int getTileGridXOffset() {
+            return MIN_X;
+        }
+
+        public int getTileGridYOffset() {
+            return MIN_Y;
+        }
+
+        public int getMinTileX() {
+            return 0;
+        }
+
+        public int getMinTileY() {
+            return 0;
+        }
+
+        public int getNumXTiles() {
+            return (WIDTH + TILE_WIDTH - 1) / TILE_WIDTH;
+        }
+
+        public int getNumYTiles() {
+            return (HEIGHT + TILE_HEIGHT - 1) / TILE_HEIGHT;
+        }
+
+        public SampleModel getSampleModel() {
+            return sampleModel;
+        }
+
+        public ColorModel getColorModel() {
+            return null;
+        }
+
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        public Object getProperty(final String name) {
+            return java.awt.Image.UndefinedProperty;
+        }
+
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        public Raster getData() {
+            throw new UnsupportedOperationException();
+        }
+
+        public Raster getData(final Rectangle rect) {
+            throw new UnsupportedOperationException();
+        }
+
+        public WritableRaster copyData(final WritableRaster raster) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Checks that the chunks of a dataset cover it exactly once and returns
+     * them as {width, height} pairs, row by row.
+     */
+    private static int[][] checkChunks(final int width, final int height,
+            final int blockWidth, final int blockHeight, final int pixelSize,
+            final int maxChunkSize) {
+        final GDALWriteChunks chunks = new GDALWriteChunks(width, height,
+                blockWidth, blockHeight, pixelSize, maxChunkSize);
+        final int chunkWidth = chunks.getChunkWidth();
+        final int chunkHeight = chunks.getChunkHeight();
+        assertTrue(chunkWidth > 0 && chunkWidth <= width);
+        assertTrue(chunkHeight > 0 && chunkHeight <= height);
+        final int fullBlockWidth = Math.max(1, Math.min(blockWidth, width));
+        final int fullBlockHeight = Math.max(1, Math.min(blockHeight, height));
+        // more than one block only when it fits
+        if (chunkWidth > fullBlockWidth || chunkHeight > fullBlockHeight)
+            assertTrue((long) chunkWidth * chunkHeight * pixelSize <= maxChunkSize);
+        // grown along Y only when spanning the whole width
+        if (chunkHeight > fullBlockHeight)
+            assertEquals(width, chunkWidth);
+
+        final int[] covered = new int[width * height];
+        final int columns = (width + chunkWidth - 1) / chunkWidth;
+        final int rows = (height + chunkHeight - 1) / chunkHeight;
+        final int[][] sizes = new int[columns * rows][];
+        final Rectangle chunk = new Rectangle();
+        int i = 0;
+        for (int y = 0; y < height; y += chunkHeight) {
+            for (int x = 0; x < width; x += chunkWidth) {
+                chunks.getChunk(x, y, chunk);
+                assertEquals(x, chunk.x);
+                assertEquals(y, chunk.y);
+                for (int r = chunk.y; r < chunk.y + chunk.height; r++)
+                    for (int c = chunk.x; c < chunk.x + chunk.width; c++)
+                        covered[r * width + c]++;
+                sizes[i++] = new int[] { chunk.width, chunk.height };
+            }
+        }
+        for (int count : covered)
+            assertEquals(1, count);
+        return sizes;
+    }
+
+    @Test
+    public void testChunks() {
+        // two 16x16 blocks per chunk, cut at the edges of a 37x23 dataset
+        int[][] sizes = checkChunks(37, 23, 16, 16, 3, 16 * 16 * 3 * 2);
+        assertEquals(4, sizes.length);
+        assertEquals(32, sizes[0][0]);
+        assertEquals(16, sizes[0][1]);
+        assertEquals(5, sizes[1][0]);
+        assertEquals(16, sizes[1][1]);
+        assertEquals(32, sizes[2][0]);
+        assertEquals(7, sizes[2][1]);
+        assertEquals(5, sizes[3][0]);
+        assertEquals(7, sizes[3][1]);
+
+        // whole rows of blocks, the last one cut
+        sizes = checkChunks(40, 50, 16, 16, 1, 48 * 16);
+        assertEquals(4, sizes.length);
+        assertEquals(40, sizes[0][0]);
+        assertEquals(16, sizes[0][1]);
+        assertEquals(2, sizes[3][1]);
+        sizes = checkChunks(40, 50, 16, 16, 1, 40 * 32);
+        assertEquals(2, sizes.length);
+        assertEquals(32, sizes[0][1]);
+        assertEquals(18, sizes[1][1]);
+
+        // the whole dataset
+        sizes = checkChunks(37, 23, 16, 16, 3, 1 << 20);
+        assertEquals(1, sizes.length);
+        assertEquals(37, sizes[0][0]);
+        assertEquals(23, sizes[0][1]);
+
+        // a chunk is never smaller than a block
+        sizes = checkChunks(37, 23, 16, 16, 3, 10);
+        assertEquals(6, sizes.length);
+        assertEquals(16, sizes[0][0]);
+        assertEquals(16, sizes[0][1]);
+
+        // unknown block size
+        sizes = checkChunks(5, 3, 0, 0, 1, 1);
+        assertEquals(15, sizes.length);
+    }
+
+    @Test
+    public void testSingleRow() {
+        // strip blocks larger than the dataset
+        int[][] sizes = checkChunks(37, 1, 256, 16, 4, 1 << 20);
+        assertEquals(1, sizes.length);
+        assertEquals(37, sizes[0][0]);
+        assertEquals(1, sizes[0][1]);
+
+        // blocks cut to a single row
+        sizes = checkChunks(37, 1, 16, 16, 4, 10);
+        assertEquals(3, sizes.length);
+        assertEquals(16, sizes[0][0]);
+        assertEquals(16, sizes[1][0]);
+        assertEquals(5, sizes[2][0]);
+        assertEquals(1, sizes[2][1]);
+    }
+
+    /**
+     * Loads every chunk of the image subsampled from the source region and
+     * checks the buffer contents.
+     */
+    private static void checkLoad(final Rectangle sourceRegion,
+            final int xSubsampling, final int ySubsampling,
+            final int blockWidth, final int blockHeight, final int maxChunkSize) {
+        final RenderedImage image = new TestImage();
+        final int width = (sourceRegion.width + xSubsampling - 1) / xSubsampling;
+        final int height = (sourceRegion.height + ySubsampling - 1) / ySubsampling;
+        final int pixelSize = BANDS * 4;
+        final GDALWriteChunks chunks = new GDALWriteChunks(width, height,
+                blockWidth, blockHeight, pixelSize, maxChunkSize);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(
+                chunks.getChunkWidth() * chunks.getChunkHeight() * pixelSize)
+                .order(ByteOrder.nativeOrder());
+        final Rectangle chunk = new Rectangle();
+        for (int y = 0; y < height; y += chunks.getChunkHeight()) {
+            for (int x = 0; x < width; x += chunks.getChunkWidth()) {
+                chunks.getChunk(x, y, chunk);
+                GDALWriteChunks.load(image, sourceRegion, chunk, xSubsampling,
+                        ySubsampling, BANDS, 4, buffer);
+                buffer.clear();
+                final IntBuffer data = buffer.asIntBuffer();
+                for (int r = 0; r < chunk.height; r++)
+                    for (int c = 0; c < chunk.width; c++)
+                        for (int b = 0; b < BANDS; b++)
+                            assertEquals(TestImage.sample(sourceRegion.x
+                                    + (chunk.x + c) * xSubsampling,
+                                    sourceRegion.y + (chunk.y + r) * ySubsampling, b),
+                                    data.get((r * chunk.width + c) * BANDS + b));
+            }
+        }
+    }
+
+    @Test
+    public void testLoad() {
+        final Rectangle sourceRegion = new Rectangle(0, 3, 35, 28);
+        checkLoad(sourceRegion, 1, 1, 16, 16, 16 * 16 * 8);
+        checkLoad(sourceRegion, 2, 3, 4, 4, 4 * 4 * 8 * 2);
+        checkLoad(sourceRegion, 3, 2, 1, 1, 1);
+        checkLoad(new Rectangle(-3, 2, 40, 1), 1, 1, 16, 16, 1 << 20);
+        checkLoad(new Rectangle(-3, 31, 40, 1), 4, 1, 16, 16, 16 * 8);
+    }
+
+    /**
+     * Writes the test image in tiled and stripped GeoTIFFs through GDAL and
+     * reads it back.
+     */
+    @Test
+    public void testWriteData() throws IOException {
+        if (!isGDALAvailable)
+            return;
+        final Driver driver = gdal.GetDriverByName("GTiff");
+        assertNotNull(driver);
+        checkWriteData(driver, new Rectangle(0, 3, 37, 23), new String[] {
+                "TILED=YES", "BLOCKXSIZE=16", "BLOCKYSIZE=16" });
+        checkWriteData(driver, new Rectangle(0, 3, 37, 23), null);
+        checkWriteData(driver, new Rectangle(-3, 7, 37, 1), null);
+    }
+
+    private void checkWriteData(final Driver driver,
+            final Rectangle sourceRegion, final String[] options)
+            throws IOException {
+        final File file = File.createTempFile("chunks", ".tif");
+        Dataset dataset = null;
+        try {
+            dataset = driver.Create(file.getAbsolutePath(), sourceRegion.width,
+                    sourceRegion.height, BANDS, gdalconstConstants.GDT_Int32,
+                    options);
+            assertNotNull(dataset);
+            // a chunk of two blocks at most
+            GDALImageWriter.writeData(dataset, new TestImage(), sourceRegion,
+                    BANDS, gdalconstConstants.GDT_Int32, 1, 1,
+                    16 * 16 * BANDS * 4 * 2);
+
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(
+                    sourceRegion.width * sourceRegion.height * BANDS * 4)
+                    .order(ByteOrder.nativeOrder());
+            assertEquals(gdalconstConstants.CE_None, dataset.ReadRaster_Direct(
+                    0, 0, sourceRegion.width, sourceRegion.height,
+                    sourceRegion.width, sourceRegion.height,
+                    gdalconstConstants.GDT_Int32, buffer, new int[] { 1, 2 },
+                    BANDS * 4, sourceRegion.width * BANDS * 4, 4));
+            final IntBuffer data = buffer.asIntBuffer();
+            for (int y = 0; y < sourceRegion.height; y++)
+                for (int x = 0; x < sourceRegion.width; x++)
+                    for (int b = 0; b < BANDS; b++)
+                        assertEquals(TestImage.sample(sourceRegion.x + x,
+                                sourceRegion.y + y, b), data.get((y
+                                * sourceRegion.width + x) * BANDS + b));
+        } finally {
+            if (dataset != null)
+                GDALUtilities.closeDataSet(dataset);
+            file.delete();
+        }
+    }
+}
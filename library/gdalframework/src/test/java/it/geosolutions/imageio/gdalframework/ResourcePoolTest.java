@@ -0,0 +1,244 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.gdalframework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks the bookkeeping of the dataset pool on plain objects, without GDAL.
+ */
+public class ResourcePoolTest {
+
+    private final static class Resource {
+
+        private final String name;
+
+        private volatile boolean closed;
+
+        private Resource(final String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Pool with settable stamps and clock.
+     */
+    private final static class TestPool extends ResourcePool<Resource> {
+
+        private final Map<String, Long> stamps = new HashMap<String, Long>();
+
+        private volatile long now;
+
+        private TestPool(final int maxIdle, final long idleTimeout) {
+            super(maxIdle, idleTimeout);
+        }
+
+        protected Resource open(final String name) {
+            return name.startsWith("missing") ? null : new Resource(name);
+        }
+
+        protected void close(final String name, final Resource resource) {
+            assertEquals(name, resource.name);
+            assertFalse(resource.closed);
+            resource.closed = true;
+        }
+
+        protected long getStamp(final String name) {
+            final Long stamp = stamps.get(name);
+            return stamp != null ? stamp.longValue() : 0;
+        }
+
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void testReferenceCount() {
+        final TestPool pool = new TestPool(4, 60000);
+        final Resource a = pool.acquire("a");
+        assertSame(a, pool.acquire("a"));
+        assertEquals(1, pool.getCheckedOutCount());
+        assertEquals(1, pool.getOpenedCount());
+        assertEquals(1, pool.getReusedCount());
+
+        assertTrue(pool.release(a));
+        assertEquals(1, pool.getCheckedOutCount());
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(pool.release(a));
+        assertEquals(0, pool.getCheckedOutCount());
+        assertEquals(1, pool.getIdleCount());
+        assertFalse(a.closed);
+
+        // idle, handed out again
+        assertSame(a, pool.acquire("a"));
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(pool.release(a));
+
+        // not from this pool
+        assertFalse(pool.release(new Resource("a")));
+        assertNull(pool.acquire("missing"));
+        assertEquals(1, pool.getOpenedCount());
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        final TestPool pool = new TestPool(4, 60000);
+        final Resource a = pool.acquire("a");
+        final Resource[] other = new Resource[1];
+        final Thread thread = new Thread() {
+            public void run() {
+                other[0] = pool.acquire("a");
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotSame(a, other[0]);
+        assertEquals(2, pool.getCheckedOutCount());
+
+        // released by a different thread than the acquiring one
+        assertTrue(pool.release(other[0]));
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(pool.release(a));
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, pool.getOpenedCount());
+    }
+
+    @Test
+    public void testModifiedSource() {
+        final TestPool pool = new TestPool(4, 60000);
+        pool.stamps.put("a", 1L);
+        final Resource a = pool.acquire("a");
+
+        // a checked out resource is not shared once modified
+        pool.stamps.put("a", 2L);
+        final Resource b = pool.acquire("a");
+        assertNotSame(a, b);
+        pool.release(b);
+        pool.release(a);
+        assertEquals(2, pool.getIdleCount());
+
+        // the stale resource is closed rather than handed out
+        assertSame(b, pool.acquire("a"));
+        pool.stamps.put("a", 3L);
+        final Resource c = pool.acquire("a");
+        assertTrue(a.closed);
+        assertNotSame(b, c);
+        assertFalse(b.closed);
+        assertEquals(1, pool.getClosedCount());
+    }
+
+    @Test
+    public void testLimits() {
+        final TestPool pool = new TestPool(2, 1000);
+        final Resource a = pool.acquire("a");
+        final Resource b = pool.acquire("b");
+        final Resource c = pool.acquire("c");
+        pool.now = 100;
+        pool.release(a);
+        pool.now = 200;
+        pool.release(b);
+        pool.now = 300;
+        pool.release(c);
+
+        // least recently released first
+        assertEquals(2, pool.getIdleCount());
+        assertTrue(a.closed);
+        assertFalse(b.closed);
+
+        // expired on purge, without acquiring nor releasing
+        pool.now = 1201;
+        pool.purge();
+        assertTrue(b.closed);
+        assertFalse(c.closed);
+        assertEquals(1, pool.getIdleCount());
+
+        pool.setMaxIdle(0);
+        assertTrue(c.closed);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(3, pool.getClosedCount());
+
+        pool.setMaxIdle(2);
+        final Resource d = pool.acquire("d");
+        pool.release(d);
+        pool.clear();
+        assertTrue(d.closed);
+    }
+
+    @Test
+    public void testPurgedOnTimer() throws InterruptedException {
+        final TestPool pool = new TestPool(4, 100);
+        final Resource a = pool.acquire("a");
+        pool.release(a);
+        pool.now = 1000;
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!a.closed && System.currentTimeMillis() < deadline)
+            Thread.sleep(50);
+        assertTrue(a.closed);
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testStamp() throws IOException {
+        final ResourcePool<Resource> pool = new ResourcePool<Resource>(4, 60000) {
+            protected Resource open(final String name) {
+                return new Resource(name);
+            }
+
+            protected void close(final String name, final Resource resource) {
+                resource.closed = true;
+            }
+        };
+        final File file = File.createTempFile("pool", ".bin");
+        try {
+            assertEquals(0, pool.getStamp(file.getParent()));
+            assertEquals(0, pool.getStamp(file.getPath() + ".missing"));
+
+            file.setLastModified(1000000000000L);
+            final long empty = pool.getStamp(file.getPath());
+            assertEquals(1000000000000L * 31, empty);
+
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[10]);
+            } finally {
+                out.close();
+            }
+            file.setLastModified(1000000000000L);
+            final long written = pool.getStamp(file.getPath());
+            assertEquals(empty + 10, written);
+
+            file.setLastModified(1000000002000L);
+            assertTrue(written != pool.getStamp(file.getPath()));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -170,34 +170,82 @@ class MatFileInputStream
     public ByteBuffer readToByteBuffer(ByteBuffer dest, int elements,
                     ByteStorageSupport<?> storage) throws IOException
     {
-        
         int bytesAllocated = storage.getBytesAllocated();
-        int size = elements * storage.getBytesAllocated();
+        int start = buf.position();
+        elements = Math.min( elements, dest.remaining() / bytesAllocated );
+        
+        transferTo( dest, elements, storage );
+        buf.position( start + elements * bytesPerElement( type ) );
+        dest.rewind();
+        return dest;
+    }
+    
+    /**
+     * Reads <code>elements</code> elements into a <code>{@link ByteBuffer}</code>,
+     * starting at its current position. Unlike
+     * <code>{@link #readToByteBuffer(ByteBuffer, int, ByteStorageSupport)}</code>
+     * the destination is not rewound, so that an array can be filled by
+     * successive calls.
+     * <p>
+     * When data is stored with the same bit layout of the destination, it is
+     * bulk copied (swapping bytes when needed), otherwise each element is
+     * converted on its own.
+     * 
+     * @param dest
+     *            the destination <code>{@link ByteBuffer}</code>
+     * @param elements
+     *            the number of elements to read into a buffer
+     * @param storage
+     *            the backing <code>{@link ByteStorageSupport}</code> that
+     *            gives information how data should be interpreted
+     * @throws IOException
+     *             if buffer is under-fed, or another IO problem occurs
+     */
+    void transferTo(ByteBuffer dest, int elements,
+                    ByteStorageSupport<?> storage) throws IOException
+    {
+        Class<?> clazz = storage.getStorageClazz();
+        final DataType dataType = getDataType(clazz); 
+        int size = bytesPerElement( type );
         
         //direct buffer copy
-        if ( MatDataTypes.sizeOf(type) == bytesAllocated && buf.order().equals(dest.order()) )
+        if ( size == storage.getBytesAllocated() && dataType == getDataType( type ) )
         {
-            int bufMaxSize = 1024;
-            int bufSize = Math.min(buf.remaining(), bufMaxSize);
-            int bufPos = buf.position();
-            
-            byte[] tmp = new byte[ bufSize ];
+            int length = elements * size;
+            ByteBuffer src = buf.slice();
+            src.limit( length );
+            src.order( buf.order() );
+            ByteBuffer dst = dest.slice();
+            dst.order( dest.order() );
             
-            while ( dest.remaining() > 0 )
+            if ( size == 1 || buf.order().equals( dest.order() ) )
             {
-                int length = Math.min(dest.remaining(), tmp.length);
-                buf.get( tmp, 0, length );
-                dest.put( tmp, 0, length );
+                dst.put( src );
             }
-            buf.position( bufPos + size );
+            else
+            {
+                //same layout, different endianness: let typed views swap bytes
+                switch ( size )
+                {
+                    case 2:
+                        dst.asShortBuffer().put( src.asShortBuffer() );
+                        break;
+                    case 4:
+                        dst.asIntBuffer().put( src.asIntBuffer() );
+                        break;
+                    default:
+                        dst.asLongBuffer().put( src.asLongBuffer() );
+                        break;
+                }
+            }
+            buf.position( buf.position() + length );
+            dest.position( dest.position() + length );
         }
         else
         {
             //because Matlab writes data not respectively to the declared
             //matrix type, the reading is not straight forward (as above)
-            Class<?> clazz = storage.getStorageClazz();
-            final DataType dataType = getDataType(clazz); 
-            while ( dest.remaining() > 0 )
+            for ( int i = 0; i < elements; i++ )
             {
             	switch (dataType){
             	case DOUBLE:
@@ -220,8 +268,58 @@ class MatFileInputStream
             	}
             }
         }
-        dest.rewind();
-        return dest;
+    }
+    
+    /**
+     * Returns the number of bytes of a single element of the given type.
+     * <p>
+     * <i>Note: unlike <code>MatDataTypes.sizeOf(int)</code> this
+     * method takes into account single precision and 64 bit types.</i>
+     * 
+     * @param type - <code>MatDataTypes</code>
+     * @return the number of bytes of an element
+     */
+    static int bytesPerElement( int type )
+    {
+        switch ( type )
+        {
+            case MatDataTypes.miSINGLE:
+                return 4;
+            case MatDataTypes.miINT64:
+            case MatDataTypes.miUINT64:
+                return 8;
+            default:
+                return MatDataTypes.sizeOf( type );
+        }
+    }
+    
+    /**
+     * Returns the storage data type sharing the bit layout of the given MAT
+     * type, if any.
+     * 
+     * @param type - <code>MatDataTypes</code>
+     * @return the storage data type or <code>DataType.UNSUPPORTED</code>
+     */
+    private final static DataType getDataType( int type )
+    {
+        switch ( type )
+        {
+            case MatDataTypes.miINT8:
+            case MatDataTypes.miUINT8:
+                return DataType.BYTE;
+            case MatDataTypes.miINT32:
+            case MatDataTypes.miUINT32:
+                return DataType.INTEGER;
+            case MatDataTypes.miINT64:
+            case MatDataTypes.miUINT64:
+                return DataType.LONG;
+            case MatDataTypes.miSINGLE:
+                return DataType.FLOAT;
+            case MatDataTypes.miDOUBLE:
+                return DataType.DOUBLE;
+            default:
+                return DataType.UNSUPPORTED;
+        }
     }
 
     private final static DataType getDataType(Class<?> clazz) {
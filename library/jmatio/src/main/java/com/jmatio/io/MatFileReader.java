@@ -10,14 +10,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import com.jmatio.common.MatDataTypes;
@@ -50,6 +55,12 @@ import com.jmatio.types.MLUInt8;
  * 
  * //or get the collection of all arrays that were stored in the file
  * Map content = mfr.getContent();
+ * 
+ * //for big files holding many arrays, only index the file and read
+ * //each array on demand when it is first requested
+ * MatFileReader lazy = new MatFileReader();
+ * lazy.readLazily( new File( "mat_file.mat" ), new MatFileFilter(), MatFileReader.HEAP_BYTE_BUFFER );
+ * MLArray onDemand = lazy.getMLArray( "my_array" );
  * </pre></code>
  * 
  * @see com.jmatio.io.io.io.MatFileFilter
@@ -71,6 +82,33 @@ public class MatFileReader {
     public static final int HEAP_BYTE_BUFFER = 4;
 
     private final static int DEFAULT_ACCESS_METHOD = HEAP_BYTE_BUFFER;
+
+    /**
+     * Number of bytes initially read (or inflated) to find the name of a
+     * top level array while scanning a file lazily.
+     */
+    private final static int ARRAY_HEADER_PREFIX_SIZE = 256;
+
+    /**
+     * Location of a top level array which has not been read yet.
+     */
+    private final static class MatElement {
+        /** position of the element data within the file, right after its tag */
+        final long offset;
+
+        /** size of the element data */
+        final int size;
+
+        /** <code>true</code> for <code>miCOMPRESSED</code> elements */
+        final boolean compressed;
+
+        MatElement(final long offset, final int size, final boolean compressed) {
+            this.offset = offset;
+            this.size = size;
+            this.compressed = compressed;
+        }
+    }
+
     /**
      * MAT-file header
      */
@@ -93,6 +131,45 @@ public class MatFileReader {
      */
     private MatFileFilter filter;
 
+    /**
+     * Arrays found by {@link #readLazily(File, MatFileFilter, int)} which
+     * have not been requested yet.
+     */
+    private Map<String, MatElement> elements;
+
+    /**
+     * Allocation policy used to read lazily indexed arrays.
+     */
+    private int lazyPolicy = DEFAULT_ACCESS_METHOD;
+
+    /**
+     * <code>Inflater</code> reused for all the compressed elements.
+     */
+    private Inflater inflater;
+
+    /**
+     * Inflated bytes of the compressed element being read which have not
+     * been consumed yet.
+     */
+    private ByteBuffer inflatedWindow;
+
+    /**
+     * Compressed bytes of the element being read which have not been fed to
+     * the inflater yet.
+     */
+    private ByteBuffer compressedSource;
+
+    /**
+     * Number of bytes inflated so far from the element being read.
+     */
+    private long inflatedBytes;
+
+    /**
+     * Copy of the compressed bytes, used when they are not backed by an
+     * accessible array (direct and memory mapped buffers).
+     */
+    private byte[] compressedInput;
+
     /**
      * Creates instance of <code>MatFileReader</code> and reads MAT-file from
      * location given as <code>fileName</code>.
@@ -212,6 +289,13 @@ public class MatFileReader {
         if (data!=null && !data.isEmpty()){
             data.clear();
         }
+        elements = null;
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+        inflatedWindow = null;
+        compressedInput = null;
     }
 
     private boolean init() throws IOException {
@@ -325,9 +409,8 @@ public class MatFileReader {
             MatFileFilter filter, int policy) throws IOException {
         this.filter = filter;
         // clear the results
-        for (String key : data.keySet()) {
-            data.remove(key);
-        }
+        data.clear();
+        elements = null;
 
         FileChannel roChannel = null;
         EnhancedRandomAccessFile raFile = null;
@@ -343,53 +426,10 @@ public class MatFileReader {
             // or deleting until the VM stops working. In real life I need to
             // open
             // and update files
-            switch (policy) {
-            case DIRECT_BYTE_BUFFER:
-                buf = ByteBuffer.allocateDirect((int) roChannel.size());
-                roChannel.read(buf, 0);
-                buf.rewind();
-                break;
-            case HEAP_BYTE_BUFFER:
-                final int filesize = (int) roChannel.size();
-//                System.gc();
-                buf = ByteBuffer.allocate(filesize);
-
-                // The following two methods couldn't be used (at least under MS
-                // Windows)
-                // since they are implemented in a suboptimal way. Each of them
-                // allocates its own _direct_ buffer of exactly the same size,
-                // the buffer passed as parameter has, reads data into it and
-                // only afterwards moves data into the buffer passed as
-                // parameter.
-                // roChannel.read(buf, 0); // ends up in outOfMemory
-                // raFile.readFully(buf.array()); // ends up in outOfMemory
-                final int numberOfBlocks = filesize / DIRECT_BUFFER_LIMIT
-                        + ((filesize % DIRECT_BUFFER_LIMIT) > 0 ? 1 : 0);
-                if (numberOfBlocks > 1) {
-                    ByteBuffer tempByteBuffer = ByteBuffer
-                            .allocateDirect(DIRECT_BUFFER_LIMIT);
-                    for (int block = 0; block < numberOfBlocks; block++) {
-                        tempByteBuffer.clear();
-                        roChannel.read(tempByteBuffer, block
-                                * DIRECT_BUFFER_LIMIT);
-                        tempByteBuffer.flip();
-                        buf.put(tempByteBuffer);
-                    }
-                    tempByteBuffer = null;
-                } else
-                    roChannel.read(buf, 0);
-
-                buf.rewind();
-                break;
-            case MEMORY_MAPPED_FILE:
-                buf = roChannel.map(FileChannel.MapMode.READ_ONLY, 0,
-                        (int) roChannel.size());
+            buf = readBuffer(roChannel, 0, (int) roChannel.size(), policy);
+            if (policy == MEMORY_MAPPED_FILE) {
                 bufferWeakRef = new WeakReference<MappedByteBuffer>(
                         (MappedByteBuffer) buf);
-                break;
-            default:
-                throw new IllegalArgumentException(
-                        "Unknown file allocation policy");
             }
             // read in file header
             readHeader(buf);
@@ -408,28 +448,683 @@ public class MatFileReader {
             if (raFile != null) {
                 raFile.close();
             }
-            if (buf != null && bufferWeakRef != null
-                    && policy == MEMORY_MAPPED_FILE) {
-                try {
-                    clean(buf);
-                } catch (Exception e) {
-                    int GC_TIMEOUT_MS = 1000;
-                    buf = null;
-                    long start = System.currentTimeMillis();
-                    while (bufferWeakRef.get() != null) {
-                        if (System.currentTimeMillis() - start > GC_TIMEOUT_MS) {
-                            break; // a hell cannot be unmapped - hopefully GC
-                                    // will
-                            // do it's job later
-                        }
-                        System.gc();
-                        Thread.yield();
+            buf = null;
+            if (bufferWeakRef != null) {
+                unmap(bufferWeakRef);
+            }
+        }
+
+    }
+
+    /**
+     * Reads the content of a MAT-file lazily.
+     * <p>
+     * Only the top level tags of the file are scanned: for each array matching
+     * the filter, the position of its data is recorded, while compressed
+     * elements are inflated just as much as needed to find the array name.
+     * Arrays are actually read (using the given allocation policy) the first
+     * time they are requested through {@link #getMLArray(String)}, or all at
+     * once by {@link #getContent()}.
+     * <p>
+     * This is convenient for big files holding many arrays when only a few of
+     * them are needed.
+     * 
+     * @param file
+     *                a valid MAT-file file to be read
+     * @param filter
+     *                the array filter applied during reading
+     * @param policy
+     *                the file memory allocation policy used when reading the
+     *                single arrays
+     * @return the names of the arrays available in the file
+     * @see #read(File, MatFileFilter, int)
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    public synchronized Set<String> readLazily(File file,
+            MatFileFilter filter, int policy) throws IOException {
+        if (policy != MEMORY_MAPPED_FILE && policy != DIRECT_BYTE_BUFFER
+                && policy != HEAP_BYTE_BUFFER) {
+            throw new IllegalArgumentException("Unknown file allocation policy");
+        }
+        this.filter = filter;
+        this.inputFile = file;
+        this.lazyPolicy = policy;
+        // clear the results
+        data.clear();
+        elements = null;
+
+        final Map<String, MatElement> index = new LinkedHashMap<String, MatElement>();
+        final Inflater inflater = getInflater();
+        FileChannel roChannel = null;
+        EnhancedRandomAccessFile raFile = null;
+        try {
+            raFile = new EnhancedRandomAccessFile(file, "r");
+            roChannel = raFile.getChannel();
+            final long length = roChannel.size();
+
+            // read in file header
+            final ByteBuffer header = ByteBuffer.allocate(128);
+            readFully(roChannel, header, 0, header.capacity());
+            readHeader(header);
+
+            final ByteBuffer tagBuffer = ByteBuffer.allocate(8);
+            tagBuffer.order(byteOrder);
+            long position = header.capacity();
+            while (position < length) {
+                readFully(roChannel, tagBuffer, position, tagBuffer.capacity());
+                final ISMatTag tag = new ISMatTag(tagBuffer);
+                final long offset = position + tagBuffer.capacity();
+                if (offset + tag.size > length) {
+                    throw new MatlabIOException("Truncated data element: " + tag);
+                }
+                final String name;
+                switch (tag.type) {
+                case MatDataTypes.miCOMPRESSED:
+                    name = readCompressedArrayName(roChannel, offset, tag.size, inflater);
+                    break;
+                case MatDataTypes.miMATRIX:
+                    name = readArrayName(roChannel, offset, tag.size);
+                    break;
+                default:
+                    throw new MatlabIOException("Incorrect data tag: " + tag);
+                }
+                if (filter.matches(name)) {
+                    // same as read(), a later array overrides a previous one
+                    // having the same name
+                    index.remove(name);
+                    index.put(name, new MatElement(offset, tag.size,
+                            tag.type == MatDataTypes.miCOMPRESSED));
+                }
+                position = offset + tag.size;
+            }
+            elements = index;
+            return Collections.unmodifiableSet(index.keySet());
+        } finally {
+            if (roChannel != null) {
+                roChannel.close();
+            }
+            if (raFile != null) {
+                raFile.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a region of a 2D numeric array, taking one row every
+     * <code>rowStride</code> rows and one column every
+     * <code>columnStride</code> columns (a hyperslab).
+     * <p>
+     * When the array has been indexed by
+     * {@link #readLazily(File, MatFileFilter, int)}, it has not been read yet
+     * and it is not compressed, only the requested samples are read from the
+     * file: with the {@link #MEMORY_MAPPED_FILE} policy the spanned portion of
+     * the file is mapped, otherwise the needed portion of each column is read
+     * on its own. Otherwise the whole array is read (if needed) and the region
+     * is copied from it.
+     * 
+     * @param name
+     *                array name
+     * @param row
+     *                the first row to read
+     * @param column
+     *                the first column to read
+     * @param rows
+     *                the number of rows of the source region
+     * @param columns
+     *                the number of columns of the source region
+     * @param rowStride
+     *                the distance between two rows to be read
+     * @param columnStride
+     *                the distance between two columns to be read
+     * @return an array of the same class, holding
+     *         <code>(rows - 1) / rowStride + 1</code> rows and
+     *         <code>(columns - 1) / columnStride + 1</code> columns, or
+     *         <code>null</code> if the file contains no content for this
+     *         name.
+     * @throws IOException
+     *                 if error occurs during file processing
+     * @throws IllegalArgumentException
+     *                 if the array is not numeric or the region exceeds its
+     *                 bounds
+     */
+    public synchronized MLNumericArray<?> readHyperslab(String name, int row,
+            int column, int rows, int columns, int rowStride, int columnStride)
+            throws IOException {
+        if (row < 0 || column < 0 || rows < 1 || columns < 1 || rowStride < 1
+                || columnStride < 1) {
+            throw new IllegalArgumentException("Invalid hyperslab");
+        }
+        final int[] dims = new int[] { (rows - 1) / rowStride + 1,
+                (columns - 1) / columnStride + 1 };
+        final MatElement element = elements != null ? elements.get(name) : null;
+        if (element != null && !element.compressed) {
+            final MLNumericArray<?> hyperslab = readHyperslab(element, dims,
+                    row, column, rowStride, columnStride);
+            if (hyperslab != null) {
+                return hyperslab;
+            }
+        }
+
+        final MLArray array = getMLArray(name);
+        if (array == null) {
+            return null;
+        }
+        if (!(array instanceof MLNumericArray)) {
+            throw new IllegalArgumentException(name + " is not a numeric array");
+        }
+        final MLNumericArray<?> hyperslab = createNumericArray(name, dims,
+                array.getType(), array.getFlags());
+        ((MLNumericArray<?>) array).copyRegion(hyperslab, row, column,
+                rowStride, columnStride);
+        return hyperslab;
+    }
+
+    /**
+     * Reads a hyperslab of an uncompressed array straight from the input
+     * file.
+     * 
+     * @param element
+     *                the location of the array
+     * @param dims
+     *                the dimensions of the hyperslab
+     * @param row
+     *                the first row to read
+     * @param column
+     *                the first column to read
+     * @param rowStride
+     *                the distance between two rows to be read
+     * @param columnStride
+     *                the distance between two columns to be read
+     * @return the hyperslab or <code>null</code> if the array layout does not
+     *         allow reading it directly
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private MLNumericArray<?> readHyperslab(final MatElement element,
+            final int[] dims, final int row, final int column,
+            final int rowStride, final int columnStride) throws IOException {
+        FileChannel roChannel = null;
+        EnhancedRandomAccessFile raFile = null;
+        try {
+            raFile = new EnhancedRandomAccessFile(inputFile, "r");
+            roChannel = raFile.getChannel();
+
+            // read the header, up to the real data tag
+            final ByteBuffer header = readArrayHeader(roChannel,
+                    element.offset, element.size, 8);
+            final int[] flags = readFlags(header);
+            final int[] arrayDims = readDimension(header);
+            final String name = readName(header);
+            final int attributes = (flags.length != 0) ? flags[0] : 0;
+            final MLNumericArray<?> hyperslab = createNumericArray(name, dims,
+                    attributes & 0xff, attributes);
+            if (hyperslab == null) {
+                throw new IllegalArgumentException(name + " is not a numeric array");
+            }
+            if (arrayDims.length != 2) {
+                return null;
+            }
+            final int m = arrayDims[0];
+            if (row + (dims[0] - 1) * rowStride >= m
+                    || column + (dims[1] - 1) * columnStride >= arrayDims[1]) {
+                throw new IllegalArgumentException("Region exceeds the array bounds");
+            }
+
+            // read real
+            long offset = element.offset + header.position();
+            offset = readHyperslabData(roChannel, offset, hyperslab
+                    .getRealByteBuffer(), hyperslab, dims[0], dims[1], m,
+                    arrayDims[1], row,
+                    column, rowStride, columnStride);
+            // read complex
+            if (offset > 0 && hyperslab.isComplex()) {
+                offset = readHyperslabData(roChannel, offset, hyperslab
+                        .getImaginaryByteBuffer(), hyperslab, dims[0],
+                        dims[1], m, arrayDims[1],
+                        row, column, rowStride, columnStride);
+            }
+            return offset > 0 ? hyperslab : null;
+        } finally {
+            if (roChannel != null) {
+                roChannel.close();
+            }
+            if (raFile != null) {
+                raFile.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a hyperslab of the real or imaginary data of an uncompressed
+     * array.
+     * 
+     * @param roChannel
+     *                the file channel
+     * @param offset
+     *                the position of the data tag
+     * @param dest
+     *                the hyperslab buffer
+     * @param storage
+     *                the hyperslab
+     * @param rows
+     *                the number of rows of the hyperslab
+     * @param columns
+     *                the number of columns of the hyperslab
+     * @param m
+     *                the number of rows of the array
+     * @param n
+     *                the number of columns of the array
+     * @param row
+     *                the first row to read
+     * @param column
+     *                the first column to read
+     * @param rowStride
+     *                the distance between two rows to be read
+     * @param columnStride
+     *                the distance between two columns to be read
+     * @return the position following the data (and its padding) or
+     *         <code>-1</code> if data is not laid out as expected
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private long readHyperslabData(final FileChannel roChannel,
+            final long offset, final ByteBuffer dest,
+            final ByteStorageSupport<?> storage, final int rows,
+            final int columns, final int m, final int n,
+            final int row, final int column, final int rowStride,
+            final int columnStride) throws IOException {
+        final ByteBuffer tagBuffer = ByteBuffer.allocate(8);
+        tagBuffer.order(byteOrder);
+        readFully(roChannel, tagBuffer, offset, tagBuffer.capacity());
+        final ISMatTag tag = new ISMatTag(tagBuffer);
+        final int elementSize = MatFileInputStream.bytesPerElement(tag.type);
+        if (tag.compressed || tag.size != (long) m * n * elementSize) {
+            return -1;
+        }
+        final long dataOffset = offset + tagBuffer.capacity();
+        final int run = ((rows - 1) * rowStride + 1) * elementSize;
+        final long columnBytes = (long) m * elementSize;
+
+        ByteBuffer buf = null;
+        WeakReference<MappedByteBuffer> bufferWeakRef = null;
+        try {
+            final long start = (column * (long) m + row) * elementSize;
+            if (lazyPolicy == MEMORY_MAPPED_FILE) {
+                // map just the spanned columns
+                final long length = (long) (columns - 1) * columnStride
+                        * columnBytes + run;
+                buf = roChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset
+                        + start, length);
+                bufferWeakRef = new WeakReference<MappedByteBuffer>(
+                        (MappedByteBuffer) buf);
+            } else {
+                buf = lazyPolicy == DIRECT_BYTE_BUFFER ? ByteBuffer
+                        .allocateDirect(run) : ByteBuffer.allocate(run);
+            }
+            buf.order(byteOrder);
+            final MatFileInputStream mfis = new MatFileInputStream(buf,
+                    tag.type);
+
+            dest.clear();
+            for (int j = 0; j < columns; j++) {
+                final long columnStart = (long) j * columnStride * columnBytes;
+                int position = 0;
+                if (bufferWeakRef != null) {
+                    position = (int) columnStart;
+                } else {
+                    readFully(roChannel, buf, dataOffset + start + columnStart,
+                            run);
+                }
+                if (rowStride == 1) {
+                    buf.position(position);
+                    mfis.transferTo(dest, rows, storage);
+                } else {
+                    for (int i = 0; i < rows; i++) {
+                        buf.position(position + i * rowStride * elementSize);
+                        mfis.transferTo(dest, 1, storage);
                     }
                 }
             }
+            dest.rewind();
+        } finally {
+            buf = null;
+            if (bufferWeakRef != null) {
+                unmap(bufferWeakRef);
+            }
+        }
+        return dataOffset + tag.size + tag.padding;
+    }
+
+    /**
+     * Reads a lazily indexed array from the input file.
+     * 
+     * @param element
+     *                the location of the array
+     * @return the array
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private MLArray readElement(final MatElement element) throws IOException {
+        FileChannel roChannel = null;
+        EnhancedRandomAccessFile raFile = null;
+        ByteBuffer buf = null;
+        WeakReference<MappedByteBuffer> bufferWeakRef = null;
+        try {
+            raFile = new EnhancedRandomAccessFile(inputFile, "r");
+            roChannel = raFile.getChannel();
+            buf = readBuffer(roChannel, element.offset, element.size, lazyPolicy);
+            if (lazyPolicy == MEMORY_MAPPED_FILE) {
+                bufferWeakRef = new WeakReference<MappedByteBuffer>(
+                        (MappedByteBuffer) buf);
+            }
+            buf.order(byteOrder);
+
+            if (element.compressed) {
+                return inflateMatrix(buf, element.size, false);
+            }
+            final MLArray array = readMatrix(buf, false);
+            final int toread = element.size - buf.position();
+            if (toread != 0) {
+                throw new MatlabIOException("Matrix was not red fully! "
+                        + toread + " remaining in the buffer.");
+            }
+            return array;
+        } finally {
+            if (roChannel != null) {
+                roChannel.close();
+            }
+            if (raFile != null) {
+                raFile.close();
+            }
             buf = null;
+            if (bufferWeakRef != null) {
+                unmap(bufferWeakRef);
+            }
+        }
+    }
+
+    /**
+     * Reads a portion of the file into a <code>ByteBuffer</code> allocated
+     * according to the given policy.
+     * 
+     * @param roChannel
+     *                the file channel
+     * @param position
+     *                the position of the first byte to be read
+     * @param size
+     *                the number of bytes to be read
+     * @param policy
+     *                the file memory allocation policy
+     * @return the buffer, rewound
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private static ByteBuffer readBuffer(final FileChannel roChannel,
+            final long position, final int size, final int policy)
+            throws IOException {
+        final ByteBuffer buf;
+        switch (policy) {
+        case DIRECT_BYTE_BUFFER:
+            buf = ByteBuffer.allocateDirect(size);
+            roChannel.read(buf, position);
+            buf.rewind();
+            break;
+        case HEAP_BYTE_BUFFER:
+//            System.gc();
+            buf = ByteBuffer.allocate(size);
+
+            // The following two methods couldn't be used (at least under MS
+            // Windows)
+            // since they are implemented in a suboptimal way. Each of them
+            // allocates its own _direct_ buffer of exactly the same size,
+            // the buffer passed as parameter has, reads data into it and
+            // only afterwards moves data into the buffer passed as
+            // parameter.
+            // roChannel.read(buf, 0); // ends up in outOfMemory
+            // raFile.readFully(buf.array()); // ends up in outOfMemory
+            final int numberOfBlocks = size / DIRECT_BUFFER_LIMIT
+                    + ((size % DIRECT_BUFFER_LIMIT) > 0 ? 1 : 0);
+            if (numberOfBlocks > 1) {
+                ByteBuffer tempByteBuffer = ByteBuffer
+                        .allocateDirect(DIRECT_BUFFER_LIMIT);
+                for (int block = 0; block < numberOfBlocks; block++) {
+                    tempByteBuffer.clear();
+                    // do not read past the requested portion
+                    tempByteBuffer.limit(Math.min(DIRECT_BUFFER_LIMIT, size
+                            - block * DIRECT_BUFFER_LIMIT));
+                    roChannel.read(tempByteBuffer, position + (long) block
+                            * DIRECT_BUFFER_LIMIT);
+                    tempByteBuffer.flip();
+                    buf.put(tempByteBuffer);
+                }
+                tempByteBuffer = null;
+            } else
+                roChannel.read(buf, position);
+
+            buf.rewind();
+            break;
+        case MEMORY_MAPPED_FILE:
+            buf = roChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            break;
+        default:
+            throw new IllegalArgumentException(
+                    "Unknown file allocation policy");
         }
+        return buf;
+    }
 
+    /**
+     * Reads <code>length</code> bytes found in the file at the given position
+     * at the beginning of the given buffer. The buffer is flipped before
+     * returning.
+     * 
+     * @param roChannel
+     *                the file channel
+     * @param buf
+     *                the buffer to be filled
+     * @param position
+     *                the position of the first byte to be read
+     * @param length
+     *                the number of bytes to be read
+     * @throws IOException
+     *                 if the end of file is reached before filling the buffer
+     */
+    private static void readFully(final FileChannel roChannel,
+            final ByteBuffer buf, final long position, final int length)
+            throws IOException {
+        buf.clear();
+        buf.limit(length);
+        while (buf.hasRemaining()) {
+            if (roChannel.read(buf, position + buf.position()) < 0) {
+                throw new MatlabIOException("Unexpected end of file");
+            }
+        }
+        buf.flip();
+    }
+
+    /**
+     * Reads the name of an uncompressed top level array, reading only the
+     * beginning of the array.
+     * 
+     * @param roChannel
+     *                the file channel
+     * @param offset
+     *                the position of the array data, right after its tag
+     * @param size
+     *                the size of the array data
+     * @return the array name
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private String readArrayName(final FileChannel roChannel,
+            final long offset, final int size) throws IOException {
+        return peekArrayName(readArrayHeader(roChannel, offset, size, 0), false);
+    }
+
+    /**
+     * Reads the beginning of an uncompressed top level array, up to its name
+     * plus <code>trailing</code> bytes.
+     * 
+     * @param roChannel
+     *                the file channel
+     * @param offset
+     *                the position of the array data, right after its tag
+     * @param size
+     *                the size of the array data
+     * @param trailing
+     *                the number of bytes needed after the array name
+     * @return the buffer, rewound
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private ByteBuffer readArrayHeader(final FileChannel roChannel,
+            final long offset, final int size, final int trailing)
+            throws IOException {
+        int length = Math.min(ARRAY_HEADER_PREFIX_SIZE, size);
+        while (true) {
+            final ByteBuffer buf = ByteBuffer.allocate(length);
+            buf.order(byteOrder);
+            readFully(roChannel, buf, offset, length);
+            if (peekArrayName(buf, false) != null
+                    && (buf.remaining() >= trailing || length == size)) {
+                buf.rewind();
+                return buf;
+            }
+            if (length == size) {
+                throw new MatlabIOException("Incomplete array header");
+            }
+            length = (int) Math.min(2L * length, size);
+        }
+    }
+
+    /**
+     * Reads the name of a compressed top level array, inflating only the
+     * beginning of the array.
+     * 
+     * @param roChannel
+     *                the file channel
+     * @param offset
+     *                the position of the compressed data, right after its tag
+     * @param size
+     *                the size of the compressed data
+     * @param inflater
+     *                the <code>Inflater</code> to use
+     * @return the array name
+     * @throws IOException
+     *                 if error occurs during file processing
+     */
+    private String readCompressedArrayName(final FileChannel roChannel,
+            final long offset, final int size, final Inflater inflater)
+            throws IOException {
+        inflater.reset();
+        final ByteBuffer in = ByteBuffer.allocate(ARRAY_HEADER_PREFIX_SIZE);
+        byte[] out = new byte[ARRAY_HEADER_PREFIX_SIZE];
+        int read = 0;
+        int inflated = 0;
+        while (true) {
+            if (inflater.needsInput()) {
+                if (read == size) {
+                    throw new MatlabIOException("Incomplete array header");
+                }
+                readFully(roChannel, in, offset + read, Math.min(in.capacity(), size - read));
+                read += in.limit();
+                inflater.setInput(in.array(), 0, in.limit());
+            }
+            if (inflated == out.length) {
+                final byte[] tmp = new byte[out.length * 2];
+                System.arraycopy(out, 0, tmp, 0, inflated);
+                out = tmp;
+            }
+            final int n;
+            try {
+                n = inflater.inflate(out, inflated, out.length - inflated);
+            } catch (DataFormatException e) {
+                throw new MatlabIOException("Could not decompress data: " + e);
+            }
+            inflated += n;
+            if (n > 0) {
+                final ByteBuffer buf = ByteBuffer.wrap(out, 0, inflated);
+                buf.order(byteOrder);
+                final String name = peekArrayName(buf, true);
+                if (name != null) {
+                    return name;
+                }
+            }
+            if (inflater.finished()) {
+                throw new MatlabIOException("Incomplete array header");
+            }
+            if (n == 0 && inflater.needsDictionary()) {
+                throw new MatlabIOException("Could not decompress data: preset dictionary required");
+            }
+        }
+    }
+
+    /**
+     * Tries to read an array name from the beginning of an array.
+     * 
+     * @param buf
+     *                the beginning of the array
+     * @param tagged
+     *                <code>true</code> if the buffer starts with the
+     *                <code>miMATRIX</code> tag
+     * @return the array name or <code>null</code> if the buffer does not
+     *         contain the whole array header
+     * @throws IOException
+     *                 if this is not a valid array
+     */
+    private String peekArrayName(final ByteBuffer buf, final boolean tagged)
+            throws IOException {
+        try {
+            if (tagged) {
+                final ISMatTag tag = new ISMatTag(buf);
+                if (tag.type != MatDataTypes.miMATRIX) {
+                    throw new MatlabIOException("Incorrect data tag: " + tag);
+                }
+            }
+            readFlags(buf);
+            readDimension(buf);
+            final ISMatTag tag = new ISMatTag(buf);
+            if (buf.remaining() < tag.size + tag.padding) {
+                return null;
+            }
+            return new String(tag.readToCharArray());
+        } catch (BufferUnderflowException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // skipping the padding of a sub-element went past the limit
+            return null;
+        }
+    }
+
+    /**
+     * Releases a memory mapped buffer, which should not be referenced
+     * anymore.
+     * 
+     * @param bufferWeakRef
+     *                a weak reference to the buffer
+     */
+    private void unmap(final WeakReference<MappedByteBuffer> bufferWeakRef) {
+        MappedByteBuffer buf = bufferWeakRef.get();
+        if (buf == null) {
+            return;
+        }
+        try {
+            clean(buf);
+        } catch (Exception e) {
+            int GC_TIMEOUT_MS = 1000;
+            buf = null;
+            long start = System.currentTimeMillis();
+            while (bufferWeakRef.get() != null) {
+                if (System.currentTimeMillis() - start > GC_TIMEOUT_MS) {
+                    break; // a hell cannot be unmapped - hopefully GC
+                            // will
+                    // do it's job later
+                }
+                System.gc();
+                Thread.yield();
+            }
+        }
     }
 
     /**
@@ -492,7 +1187,20 @@ public class MatFileReader {
      *         specified name, or null if the file contains no content for this
      *         name.
      */
-    public MLArray getMLArray(String name) {
+    public synchronized MLArray getMLArray(String name) {
+        if (elements != null) {
+            final MatElement element = elements.get(name);
+            if (element != null) {
+                try {
+                    data.put(name, readElement(element));
+                    // forget the element only once read, so that a failed
+                    // read can be retried
+                    elements.remove(name);
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to read array " + name, e);
+                }
+            }
+        }
         return data.get(name);
     }
 
@@ -504,7 +1212,13 @@ public class MatFileReader {
      * 
      * @return - a <code>Map</code> of MLArrays mapped with their names.
      */
-    public Map<String, MLArray> getContent() {
+    public synchronized Map<String, MLArray> getContent() {
+        if (elements != null) {
+            // read the arrays not requested yet
+            for (String name : elements.keySet().toArray(new String[elements.size()])) {
+                getMLArray(name);
+            }
+        }
         return data;
     }
 
@@ -598,6 +1312,303 @@ public class MatFileReader {
         return out;
     }
 
+    /**
+     * Returns the <code>Inflater</code> shared by all the compressed
+     * elements, reset.
+     * 
+     * @return the <code>Inflater</code>
+     */
+    private Inflater getInflater() {
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        inflater.reset();
+        return inflater;
+    }
+
+    /**
+     * Reads a compressed (<code>miCOMPRESSED</code>) array. Stream marker is
+     * being set at +<code>numOfBytes</code> position of the stream.
+     * <p>
+     * Only the array header is inflated on its own: the data of numeric
+     * arrays is inflated chunk by chunk straight into the buffers of the
+     * array, so that no copy of the whole inflated element is ever made.
+     * Other arrays are fully inflated and then read.
+     * 
+     * @param buf -
+     *                input byte buffer
+     * @param numOfBytes -
+     *                number of compressed bytes
+     * @param isRoot -
+     *                when <code>true</code> informs that if this is a top
+     *                level matrix
+     * @return - <code>MLArray</code> or <code>null</code> if matrix does
+     *         not match <code>filter</code>
+     * @throws IOException
+     *                 when error occurs while reading or inflating the buffer.
+     */
+    private MLArray inflateMatrix(final ByteBuffer buf, final int numOfBytes,
+            final boolean isRoot) throws IOException {
+        if (buf.remaining() < numOfBytes) {
+            throw new MatlabIOException(
+                    "Compressed buffer length miscalculated!");
+        }
+        final int start = buf.position();
+        getInflater();
+        if (inflatedWindow == null) {
+            inflatedWindow = ByteBuffer.allocate(INFLATER_BUFFER_SIZE);
+        }
+        inflatedWindow.clear();
+        inflatedWindow.flip();
+        inflatedWindow.order(byteOrder);
+        inflatedBytes = 0;
+        compressedSource = buf.slice();
+        compressedSource.limit(numOfBytes);
+        buf.position(start + numOfBytes);
+        try {
+            fillInflatedWindow();
+
+            // read the header, which is expected to fit in the window
+            final ISMatTag tag;
+            final int[] flags;
+            final int[] dims;
+            final String name;
+            try {
+                tag = new ISMatTag(inflatedWindow);
+                if (tag.type != MatDataTypes.miMATRIX) {
+                    throw new MatlabIOException("Incorrect data tag: " + tag);
+                }
+                flags = readFlags(inflatedWindow);
+                dims = readDimension(inflatedWindow);
+                name = readName(inflatedWindow);
+            } catch (BufferUnderflowException e) {
+                return inflateMatrixFully(buf, start, numOfBytes, isRoot);
+            } catch (IllegalArgumentException e) {
+                return inflateMatrixFully(buf, start, numOfBytes, isRoot);
+            }
+
+            // if this array is filtered out there is nothing else to inflate
+            if (isRoot && !filter.matches(name)) {
+                return null;
+            }
+
+            final int attributes = (flags.length != 0) ? flags[0] : 0;
+            final MLNumericArray<?> array = createNumericArray(name, dims,
+                    attributes & 0xff, attributes);
+            if (array == null) {
+                return inflateMatrixFully(buf, start, numOfBytes, isRoot);
+            }
+            // read real
+            inflateNumericData(array.getRealByteBuffer(), array);
+            // read complex
+            if (array.isComplex()) {
+                inflateNumericData(array.getImaginaryByteBuffer(), array);
+            }
+
+            final long toread = 8 + tag.size
+                    - (inflatedBytes - inflatedWindow.remaining());
+            if (toread != 0) {
+                throw new MatlabIOException("Matrix was not red fully! "
+                        + toread + " remaining in the buffer.");
+            }
+            return array;
+        } finally {
+            compressedSource = null;
+        }
+    }
+
+    /**
+     * Reads a compressed array inflating it completely before reading it.
+     * 
+     * @param buf -
+     *                input byte buffer
+     * @param start -
+     *                position of the compressed data
+     * @param numOfBytes -
+     *                number of compressed bytes
+     * @param isRoot -
+     *                when <code>true</code> informs that if this is a top
+     *                level matrix
+     * @return - <code>MLArray</code> or <code>null</code> if matrix does
+     *         not match <code>filter</code>
+     * @throws IOException
+     *                 when error occurs while reading or inflating the buffer.
+     */
+    private MLArray inflateMatrixFully(final ByteBuffer buf, final int start,
+            final int numOfBytes, final boolean isRoot) throws IOException {
+        final int end = buf.position();
+        buf.position(start);
+        final ByteBuffer matrix = inflate(buf, numOfBytes);
+        buf.position(end);
+
+        final ISMatTag tag = new ISMatTag(matrix);
+        if (tag.type != MatDataTypes.miMATRIX) {
+            throw new MatlabIOException("Incorrect data tag: " + tag);
+        }
+        final int pos = matrix.position();
+        final MLArray array = readMatrix(matrix, isRoot);
+        if (array != null) {
+            final int toread = tag.size - (matrix.position() - pos);
+            if (toread != 0) {
+                throw new MatlabIOException("Matrix was not red fully! "
+                        + toread + " remaining in the buffer.");
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Inflates the real or imaginary data of a numeric array straight into
+     * the given buffer.
+     * 
+     * @param dest
+     *                the array buffer
+     * @param storage
+     *                the array
+     * @throws IOException
+     *                 when error occurs while inflating the data.
+     */
+    private void inflateNumericData(final ByteBuffer dest,
+            final ByteStorageSupport<?> storage) throws IOException {
+        requireInflated(8);
+        final ISMatTag tag = new ISMatTag(inflatedWindow);
+        final int elementSize = MatFileInputStream.bytesPerElement(tag.type);
+        final int elements = Math.min(tag.size / elementSize, dest.remaining()
+                / storage.getBytesAllocated());
+        final MatFileInputStream mfis = new MatFileInputStream(inflatedWindow,
+                tag.type);
+
+        int remaining = elements;
+        while (remaining > 0) {
+            requireInflated(elementSize);
+            final int n = Math.min(remaining, inflatedWindow.remaining()
+                    / elementSize);
+            mfis.transferTo(dest, n, storage);
+            remaining -= n;
+        }
+        dest.rewind();
+        // skip what has not been read and padding
+        skipInflated(tag.size - elements * elementSize + tag.padding);
+    }
+
+    /**
+     * Makes sure that at least <code>length</code> inflated bytes are
+     * available in the window.
+     * 
+     * @param length
+     *                the number of bytes needed
+     * @throws IOException
+     *                 if the compressed data ends before
+     */
+    private void requireInflated(final int length) throws IOException {
+        if (inflatedWindow.remaining() < length) {
+            fillInflatedWindow();
+            if (inflatedWindow.remaining() < length) {
+                throw new MatlabIOException(
+                        "Could not decompress data: unexpected end of data");
+            }
+        }
+    }
+
+    /**
+     * Skips <code>length</code> inflated bytes.
+     * 
+     * @param length
+     *                the number of bytes to be skipped
+     * @throws IOException
+     *                 if the compressed data ends before
+     */
+    private void skipInflated(int length) throws IOException {
+        while (length > 0) {
+            requireInflated(1);
+            final int n = Math.min(length, inflatedWindow.remaining());
+            inflatedWindow.position(inflatedWindow.position() + n);
+            length -= n;
+        }
+    }
+
+    /**
+     * Keeps the inflated bytes not consumed yet and inflates as many bytes
+     * as they fit in the window.
+     * 
+     * @throws IOException
+     *                 if the compressed data is corrupted
+     */
+    private void fillInflatedWindow() throws IOException {
+        inflatedWindow.compact();
+        final byte[] out = inflatedWindow.array();
+        int pos = inflatedWindow.position();
+        try {
+            while (pos < out.length && !inflater.finished()) {
+                if (inflater.needsInput()) {
+                    final int length = compressedSource.remaining();
+                    if (length == 0) {
+                        break;
+                    }
+                    if (compressedSource.hasArray()) {
+                        inflater.setInput(compressedSource.array(),
+                                compressedSource.arrayOffset()
+                                        + compressedSource.position(), length);
+                        compressedSource.position(compressedSource.limit());
+                    } else {
+                        if (compressedInput == null) {
+                            compressedInput = new byte[INFLATER_BUFFER_SIZE];
+                        }
+                        final int n = Math.min(length, compressedInput.length);
+                        compressedSource.get(compressedInput, 0, n);
+                        inflater.setInput(compressedInput, 0, n);
+                    }
+                }
+                final int n = inflater.inflate(out, pos, out.length - pos);
+                if (n == 0 && inflater.needsDictionary()) {
+                    throw new MatlabIOException(
+                            "Could not decompress data: preset dictionary required");
+                }
+                pos += n;
+                inflatedBytes += n;
+            }
+        } catch (DataFormatException e) {
+            throw new MatlabIOException("Could not decompress data: " + e);
+        }
+        inflatedWindow.position(pos);
+        inflatedWindow.flip();
+    }
+
+    /**
+     * Creates an empty numeric array.
+     * 
+     * @param name
+     *                array name
+     * @param dims
+     *                array dimensions
+     * @param type
+     *                array class
+     * @param attributes
+     *                array flags
+     * @return the array or <code>null</code> if the class is not numeric
+     */
+    private static MLNumericArray<?> createNumericArray(final String name,
+            final int[] dims, final int type, final int attributes) {
+        switch (type) {
+        case MLArray.mxDOUBLE_CLASS:
+            return new MLDouble(name, dims, type, attributes);
+        case MLArray.mxSINGLE_CLASS:
+            return new MLSingle(name, dims, type, attributes);
+        case MLArray.mxUINT8_CLASS:
+            return new MLUInt8(name, dims, type, attributes);
+        case MLArray.mxINT8_CLASS:
+            return new MLInt8(name, dims, type, attributes);
+        case MLArray.mxINT64_CLASS:
+            return new MLInt64(name, dims, type, attributes);
+        case MLArray.mxINT32_CLASS:
+            return new MLInt32(name, dims, type, attributes);
+        case MLArray.mxUINT64_CLASS:
+            return new MLUInt64(name, dims, type, attributes);
+        default:
+            return null;
+        }
+    }
+
     /**
      * Reads data form byte buffer. Searches for either
      * <code>miCOMPRESSED</code> data or <code>miMATRIX</code> data.
@@ -617,8 +1628,10 @@ public class MatFileReader {
         ISMatTag tag = new ISMatTag(buf);
         switch (tag.type) {
         case MatDataTypes.miCOMPRESSED:
-            // inflate and recur
-            readData(inflate(buf, tag.size));
+            MLArray array = inflateMatrix(buf, tag.size, true);
+            if (array != null) {
+                data.put(array.getName(), array);
+            }
             break;
         case MatDataTypes.miMATRIX:
 
@@ -1124,7 +2137,7 @@ public class MatFileReader {
         public void readToByteBuffer(ByteBuffer buff,
                 ByteStorageSupport<?> storage) throws IOException {
             MatFileInputStream mfis = new MatFileInputStream(buf, type);
-            int elements = size / sizeOf();
+            int elements = size / MatFileInputStream.bytesPerElement(type);
             mfis.readToByteBuffer(buff, elements, storage);
             // skip padding
             if (padding > 0) {
@@ -296,6 +296,72 @@ public abstract class MLNumericArray<T extends Number> extends MLArray
         return real;
     }
     
+    /**
+     * Copies a region of this matrix into another array of the same class,
+     * which receives <code>dest.getM()</code> rows and <code>dest.getN()</code>
+     * columns.
+     * <p>
+     * Rows and columns are taken starting from (<code>row</code>,
+     * <code>column</code>) and moving of <code>rowStride</code> rows and
+     * <code>columnStride</code> columns at a time.
+     * 
+     * @param dest - the destination array
+     * @param row - the first row to copy
+     * @param column - the first column to copy
+     * @param rowStride - the distance between two copied rows
+     * @param columnStride - the distance between two copied columns
+     */
+    public void copyRegion( MLNumericArray<?> dest, int row, int column, int rowStride, int columnStride )
+    {
+        if ( dest.getBytesAllocated() != getBytesAllocated() || dest.isComplex() != isComplex() )
+        {
+            throw new IllegalArgumentException("Destination array is not of the same class");
+        }
+        if ( row < 0 || column < 0 || rowStride < 1 || columnStride < 1
+                || row + (dest.getM() - 1) * rowStride >= getM()
+                || column + (dest.getN() - 1) * columnStride >= getN() )
+        {
+            throw new IllegalArgumentException("Region exceeds the array bounds");
+        }
+        copyRegion( real, dest.real, dest.getM(), dest.getN(), row, column, rowStride, columnStride );
+        if ( isComplex() )
+        {
+            copyRegion( imaginary, dest.imaginary, dest.getM(), dest.getN(), row, column, rowStride, columnStride );
+        }
+    }
+    
+    private void copyRegion( ByteBuffer src, ByteBuffer dest, int rows, int columns, 
+                             int row, int column, int rowStride, int columnStride )
+    {
+        final int bytesAllocated = getBytesAllocated();
+        final int m = getM();
+        src = src.duplicate();
+        dest = dest.duplicate();
+        dest.clear();
+        for ( int j = 0; j < columns; j++ )
+        {
+            int index = (column + j * columnStride) * m + row;
+            if ( rowStride == 1 )
+            {
+                //contiguous rows
+                src.clear();
+                src.position( getByteOffset( index ) );
+                src.limit( src.position() + rows * bytesAllocated );
+                dest.put( src );
+            }
+            else
+            {
+                for ( int i = 0; i < rows; i++, index += rowStride )
+                {
+                    src.clear();
+                    src.position( getByteOffset( index ) );
+                    src.limit( src.position() + bytesAllocated );
+                    dest.put( src );
+                }
+            }
+        }
+    }
+    
     /* (non-Javadoc)
      * @see com.jmatio.io.io.types.MLArray#contentToString()
      */
@@ -2,16 +2,24 @@ package com.jmatio.io;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import it.geosolutions.resources.TestData;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.InflaterInputStream;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -170,6 +178,205 @@ public class MatIOTest
         assertEquals("Test if only one array was red", 1, content.size() );
         
     }
+    /**
+     * Tests lazy reading
+     * 
+     * @throws IOException
+     */
+    @Test 
+    public void testLazyReading() throws IOException
+    {
+        //1. First create arrays
+        final File fileW = TestData.temp(this,"lazy.mat");
+        fileW.deleteOnExit();
+        String fileName = fileW.getAbsolutePath();
+
+        MLDouble mlDouble = new MLDouble( "doublearr", new double[] { 1.3, 2.0, 3.0, 4.0, 5.0, 6.0 }, 3 );
+        MLChar mlChar = new MLChar( "dummy", "I am dummy" );
+        MLUInt8 mlUInt8 = new MLUInt8( "bytearr", new int[] { 64, 32 } );
+        
+        //2. write arrays to file
+        ArrayList<MLArray> list = new ArrayList<MLArray>();
+        list.add( mlDouble );
+        list.add( mlChar );
+        list.add( mlUInt8 );
+        new MatFileWriter( fileName, list );
+        
+        //3. index the file, skipping one array
+        MatFileFilter filter = new MatFileFilter();
+        filter.addArrayName( "doublearr" );
+        filter.addArrayName( "bytearr" );
+        
+        MatFileReader mfr = new MatFileReader();
+        Collection<String> names = mfr.readLazily( fileW, filter, MatFileReader.HEAP_BYTE_BUFFER );
+        assertEquals("Test if only filtered arrays were indexed", 2, names.size() );
+        assertTrue( names.contains( "doublearr" ) );
+        assertTrue( names.contains( "bytearr" ) );
+        
+        //4. arrays are read on demand
+        assertEquals("Test if value red from file equals value stored", mlUInt8, mfr.getMLArray( "bytearr" ) );
+        assertEquals("Test if filtered array is not available", null, mfr.getMLArray( "dummy" ) );
+        
+        //5. remaining arrays are read when the whole content is requested
+        Map<String, MLArray> content = mfr.getContent();
+        assertEquals("Test if only filtered arrays were red", 2, content.size() );
+        assertEquals("Test if value red from file equals value stored", mlDouble, content.get( "doublearr" ) );
+        
+        //6. Matlab created file, with the memory mapped policy
+        mfr = new MatFileReader();
+        mfr.readLazily( TestData.file(this,"matnativedouble.mat"), new MatFileFilter(), MatFileReader.MEMORY_MAPPED_FILE );
+        assertEquals("Test if value red from file equals value stored", 
+                new MLDouble( "arr", new double[] { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0 }, 3 ), mfr.getMLArray( "arr" ) );
+    }
+
+    /**
+     * Tests that a lazily indexed array can still be read after a failed read
+     * 
+     * @throws IOException
+     */
+    @Test 
+    public void testLazyReadingAfterFailure() throws IOException
+    {
+        final File fileW = TestData.temp(this,"lazyfailure.mat");
+        fileW.deleteOnExit();
+        final File moved = new File(fileW.getAbsolutePath() + ".moved");
+        moved.deleteOnExit();
+
+        MLDouble mlDouble = new MLDouble( "doublearr", new double[] { 1.3, 2.0, 3.0, 4.0, 5.0, 6.0 }, 3 );
+        ArrayList<MLArray> list = new ArrayList<MLArray>();
+        list.add( mlDouble );
+        new MatFileWriter( fileW.getAbsolutePath(), list );
+
+        MatFileReader mfr = new MatFileReader();
+        mfr.readLazily( fileW, new MatFileFilter(), MatFileReader.HEAP_BYTE_BUFFER );
+
+        //1. the file is temporarily unavailable, making the read fail
+        assertTrue( fileW.renameTo( moved ) );
+        try {
+            mfr.getMLArray( "doublearr" );
+            fail( "Reading a missing file should fail" );
+        } catch (RuntimeException e) {
+            assertTrue( e.getCause() instanceof IOException );
+        }
+
+        //2. the array is still indexed and read once the file is back
+        assertTrue( moved.renameTo( fileW ) );
+        assertEquals("Test if value red from file equals value stored", mlDouble, mfr.getMLArray( "doublearr" ) );
+        assertEquals("Test if value red from file equals value stored", mlDouble, mfr.getContent().get( "doublearr" ) );
+    }
+
+    /**
+     * Tests reading of complex arrays, whose data is inflated straight into
+     * the array buffers, with all the allocation policies.
+     * 
+     * @throws IOException
+     */
+    @Test 
+    public void testComplexArray() throws IOException
+    {
+        final File fileW = TestData.temp(this,"complex.mat");
+        fileW.deleteOnExit();
+        final String name = "complexarr";
+        final int SIZE = 300;
+        
+        MLDouble mlDouble = new MLDouble( name, new int[] { SIZE, SIZE }, MLArray.mxDOUBLE_CLASS, MLArray.mtFLAG_COMPLEX );
+        for ( int i = 0; i < SIZE*SIZE; i++ )
+        {
+            mlDouble.setReal( (double)i / 3, i );
+            mlDouble.setImaginary( (double)-i, i );
+        }
+        ArrayList<MLArray> list = new ArrayList<MLArray>();
+        list.add( mlDouble );
+        new MatFileWriter( fileW, list );
+        
+        for ( int policy : new int[] { MatFileReader.HEAP_BYTE_BUFFER, MatFileReader.DIRECT_BYTE_BUFFER } )
+        {
+            MatFileReader mfr = new MatFileReader();
+            mfr.read( fileW, policy );
+            assertEquals("Test if value red from file equals value stored", mlDouble, mfr.getMLArray( name ) );
+            
+            mfr = new MatFileReader();
+            mfr.readLazily( fileW, new MatFileFilter(), policy );
+            assertEquals("Test if value red from file equals value stored", mlDouble, mfr.getMLArray( name ) );
+        }
+    }
+
+    /**
+     * Tests hyperslab reading, from compressed and uncompressed files.
+     * 
+     * @throws IOException
+     */
+    @Test 
+    public void testHyperslab() throws IOException
+    {
+        final File fileW = TestData.temp(this,"hyperslab.mat");
+        fileW.deleteOnExit();
+        final String name = "hyperslab";
+        final int M = 37;
+        final int N = 23;
+        
+        MLDouble mlDouble = new MLDouble( name, new int[] { M, N }, MLArray.mxDOUBLE_CLASS, MLArray.mtFLAG_COMPLEX );
+        for ( int i = 0; i < M*N; i++ )
+        {
+            mlDouble.setReal( (double)i, i );
+            mlDouble.setImaginary( (double)-i, i );
+        }
+        ArrayList<MLArray> list = new ArrayList<MLArray>();
+        list.add( mlDouble );
+        list.add( new MLChar( "dummy", "I am dummy" ) );
+        new MatFileWriter( fileW, list );
+        
+        //MatFileWriter always compresses arrays, inflate them to get an uncompressed file
+        final File uncompressed = TestData.temp(this,"hyperslab-uncompressed.mat");
+        uncompressed.deleteOnExit();
+        DataInputStream in = new DataInputStream( new FileInputStream( fileW ) );
+        DataOutputStream out = new DataOutputStream( new FileOutputStream( uncompressed ) );
+        byte[] header = new byte[128];
+        in.readFully( header );
+        out.write( header );
+        ByteOrder order = header[126] == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        byte[] tag = new byte[8];
+        while ( in.read( tag ) == tag.length )
+        {
+            int size = ByteBuffer.wrap( tag, 4, 4 ).order( order ).getInt();
+            byte[] compressed = new byte[size];
+            in.readFully( compressed );
+            InflaterInputStream iis = new InflaterInputStream( new ByteArrayInputStream( compressed ) );
+            byte[] buffer = new byte[4096];
+            int n;
+            while ( (n = iis.read( buffer )) > 0 )
+            {
+                out.write( buffer, 0, n );
+            }
+        }
+        in.close();
+        out.close();
+        
+        for ( File file : new File[] { fileW, uncompressed } )
+        {
+            for ( int policy : new int[] { MatFileReader.HEAP_BYTE_BUFFER, MatFileReader.DIRECT_BYTE_BUFFER, MatFileReader.MEMORY_MAPPED_FILE } )
+            {
+                MatFileReader mfr = new MatFileReader();
+                mfr.readLazily( file, new MatFileFilter(), policy );
+                
+                MLNumericArray<?> hyperslab = mfr.readHyperslab( name, 3, 2, 30, 20, 4, 3 );
+                assertEquals( 8, hyperslab.getM() );
+                assertEquals( 7, hyperslab.getN() );
+                for ( int i = 0; i < 8; i++ )
+                {
+                    for ( int j = 0; j < 7; j++ )
+                    {
+                        assertEquals( mlDouble.getReal( 3 + i * 4, 2 + j * 3 ), hyperslab.getReal( i, j ) );
+                        assertEquals( mlDouble.getImaginary( 3 + i * 4, 2 + j * 3 ), hyperslab.getImaginary( i, j ) );
+                    }
+                }
+                
+                hyperslab = mfr.readHyperslab( name, 0, 0, M, N, 1, 1 );
+                assertEquals("Test if value red from file equals value stored", mlDouble, hyperslab );
+            }
+        }
+    }
+
     /**
      * Test <code>MatFileFilter</code> options
      */
@@ -0,0 +1,217 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.utilities;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread safe cache of idle buffers, sparing the allocation of a new buffer
+ * for each image, or region, being encoded or decoded.
+ *
+ * <p>
+ * At most {@link #getMaxBuffers()} idle buffers whose capacity does not
+ * exceed {@link #getMaxBufferSize()} are kept. A request is served by the
+ * smallest idle buffer large enough, and when the cache is full a released
+ * buffer replaces the smallest idle one, if smaller, so that the cache keeps
+ * the buffers most likely to serve the next requests.
+ *
+ * @param <T>
+ *            the type of the buffers
+ */
+public abstract class BufferPool<T> {
+
+	private final List<T> buffers = new ArrayList<T>();
+
+	private volatile int maxBuffers;
+
+	private volatile int maxBufferSize;
+
+	/**
+	 * @param maxBuffers
+	 *            the maximum number of idle buffers kept.
+	 * @param maxBufferSize
+	 *            the capacity above which released buffers are not kept.
+	 */
+	protected BufferPool(final int maxBuffers, final int maxBufferSize) {
+		setMaxBuffers(maxBuffers);
+		setMaxBufferSize(maxBufferSize);
+	}
+
+	/**
+	 * Returns a pool of <code>byte[]</code> buffers.
+	 */
+	public static BufferPool<byte[]> newByteArrayPool(final int maxBuffers,
+			final int maxBufferSize) {
+		return new BufferPool<byte[]>(maxBuffers, maxBufferSize) {
+			protected int capacity(final byte[] buffer) {
+				return buffer.length;
+			}
+		};
+	}
+
+	/**
+	 * Returns a pool of {@link ByteBuffer}s.
+	 */
+	public static BufferPool<ByteBuffer> newByteBufferPool(
+			final int maxBuffers, final int maxBufferSize) {
+		return new BufferPool<ByteBuffer>(maxBuffers, maxBufferSize) {
+			protected int capacity(final ByteBuffer buffer) {
+				return buffer.capacity();
+			}
+		};
+	}
+
+	/**
+	 * Returns the capacity of a buffer.
+	 */
+	protected abstract int capacity(T buffer);
+
+	/**
+	 * Takes the smallest idle buffer whose capacity is at least
+	 * <code>size</code>.
+	 *
+	 * @return the buffer, whose content is undefined, or <code>null</code> if
+	 *         no idle buffer is large enough.
+	 */
+	public T poll(final int size) {
+		synchronized (buffers) {
+			int best = -1;
+			for (int i = 0; i < buffers.size(); i++) {
+				final int capacity = capacity(buffers.get(i));
+				if (capacity >= size
+						&& (best < 0 || capacity < capacity(buffers.get(best))))
+					best = i;
+			}
+			return best >= 0 ? buffers.remove(best) : null;
+		}
+	}
+
+	/**
+	 * Gives back a buffer, which must not be used afterwards.
+	 *
+	 * @return <code>false</code> if a buffer was dropped, either the given
+	 *         one or a smaller idle one making room for it.
+	 */
+	public boolean offer(final T buffer) {
+		if (buffer == null)
+			return true;
+		final int capacity = capacity(buffer);
+		if (capacity > maxBufferSize)
+			return false;
+		synchronized (buffers) {
+			if (buffers.size() < maxBuffers) {
+				buffers.add(buffer);
+				return true;
+			}
+			int smallest = -1;
+			for (int i = 0; i < buffers.size(); i++) {
+				if (smallest < 0
+						|| capacity(buffers.get(i)) < capacity(buffers.get(smallest)))
+					smallest = i;
+			}
+			if (smallest >= 0 && capacity(buffers.get(smallest)) < capacity)
+				buffers.set(smallest, buffer);
+		}
+		return false;
+	}
+
+	public int getMaxBuffers() {
+		return maxBuffers;
+	}
+
+	/**
+	 * Sets the maximum number of idle buffers kept. Exceeding idle buffers
+	 * are dropped by the next {@link #trim()}.
+	 */
+	public void setMaxBuffers(final int maxBuffers) {
+		if (maxBuffers < 0)
+			throw new IllegalArgumentException("maxBuffers < 0");
+		this.maxBuffers = maxBuffers;
+	}
+
+	public int getMaxBufferSize() {
+		return maxBufferSize;
+	}
+
+	/**
+	 * Sets the capacity above which buffers are not kept. Exceeding idle
+	 * buffers are dropped by the next {@link #trim()}.
+	 */
+	public void setMaxBufferSize(final int maxBufferSize) {
+		if (maxBufferSize < 0)
+			throw new IllegalArgumentException("maxBufferSize < 0");
+		this.maxBufferSize = maxBufferSize;
+	}
+
+	/**
+	 * Returns the number of idle buffers.
+	 */
+	public int getIdleBuffers() {
+		synchronized (buffers) {
+			return buffers.size();
+		}
+	}
+
+	/**
+	 * Returns the total capacity of the idle buffers.
+	 */
+	public long getIdleCapacity() {
+		long capacity = 0;
+		synchronized (buffers) {
+			for (T buffer : buffers)
+				capacity += capacity(buffer);
+		}
+		return capacity;
+	}
+
+	/**
+	 * Drops the idle buffers exceeding the current limits.
+	 *
+	 * @return the number of buffers dropped.
+	 */
+	public int trim() {
+		int dropped = 0;
+		synchronized (buffers) {
+			for (int i = buffers.size() - 1; i >= 0; i--) {
+				if (capacity(buffers.get(i)) > maxBufferSize) {
+					buffers.remove(i);
+					dropped++;
+				}
+			}
+			while (buffers.size() > maxBuffers) {
+				buffers.remove(buffers.size() - 1);
+				dropped++;
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Drops all the idle buffers.
+	 *
+	 * @return the number of buffers dropped.
+	 */
+	public int clear() {
+		synchronized (buffers) {
+			final int dropped = buffers.size();
+			buffers.clear();
+			return dropped;
+		}
+	}
+}
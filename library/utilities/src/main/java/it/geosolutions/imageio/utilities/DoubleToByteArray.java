@@ -0,0 +1,381 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.utilities;
+
+import java.math.BigInteger;
+
+/**
+ * Utility Class used to convert doubles into their ASCII representation,
+ * written straight into a byte array without allocating any object.
+ *
+ * <p>
+ * Differently from {@link NumberToByteArray}, the representation is the
+ * shortest sequence of digits which parses back exactly to the original
+ * double, computed through the Ryu algorithm by Ulf Adams ("Ryu: fast
+ * float-to-string conversion", PLDI 2018). The output uses the same layout as
+ * {@link Double#toString(double)}, that is plain notation for magnitudes in
+ * [10<sup>-3</sup>, 10<sup>7</sup>) and computerized scientific notation
+ * otherwise.
+ */
+public final class DoubleToByteArray {
+
+	/** Maximum number of bytes needed to represent a double. */
+	public static final int MAX_LENGTH = 25;
+
+	private static final int DOUBLE_MANTISSA_BITS = 52;
+
+	private static final long DOUBLE_MANTISSA_MASK = (1L << DOUBLE_MANTISSA_BITS) - 1;
+
+	private static final int DOUBLE_EXPONENT_BITS = 11;
+
+	private static final int DOUBLE_EXPONENT_MASK = (1 << DOUBLE_EXPONENT_BITS) - 1;
+
+	private static final int DOUBLE_EXPONENT_BIAS = (1 << (DOUBLE_EXPONENT_BITS - 1)) - 1;
+
+	private static final int POS_TABLE_SIZE = 326;
+
+	private static final int NEG_TABLE_SIZE = 291;
+
+	private static final int POW5_BITCOUNT = 121;
+
+	private static final int POW5_QUARTER_BITCOUNT = 31;
+
+	private static final int POW5_INV_BITCOUNT = 122;
+
+	private static final int POW5_INV_QUARTER_BITCOUNT = 31;
+
+	/** 5^i split in four 31 bits limbs, most significant first. */
+	private static final int[][] POW5_SPLIT = new int[POS_TABLE_SIZE][4];
+
+	/** 2^k / 5^i split in four 31 bits limbs, most significant first. */
+	private static final int[][] POW5_INV_SPLIT = new int[NEG_TABLE_SIZE][4];
+
+	static {
+		final BigInteger mask = BigInteger.ONE.shiftLeft(POW5_QUARTER_BITCOUNT).subtract(BigInteger.ONE);
+		final BigInteger invMask = BigInteger.ONE.shiftLeft(POW5_INV_QUARTER_BITCOUNT).subtract(BigInteger.ONE);
+		final BigInteger five = BigInteger.valueOf(5);
+		for (int i = 0; i < Math.max(POS_TABLE_SIZE, NEG_TABLE_SIZE); i++) {
+			final BigInteger pow = five.pow(i);
+			final int pow5len = pow.bitLength();
+			if (i < POS_TABLE_SIZE) {
+				for (int j = 0; j < 4; j++) {
+					final int shift = pow5len - POW5_BITCOUNT + (3 - j) * POW5_QUARTER_BITCOUNT;
+					POW5_SPLIT[i][j] = (shift >= 0 ? pow.shiftRight(shift) : pow.shiftLeft(-shift)).and(mask).intValue();
+				}
+			}
+			if (i < NEG_TABLE_SIZE) {
+				// floor(log_2 5^i) is pow5len - 1
+				final int j = pow5len - 1 + POW5_INV_BITCOUNT;
+				final BigInteger inv = BigInteger.ONE.shiftLeft(j).divide(pow).add(BigInteger.ONE);
+				for (int k = 0; k < 4; k++) {
+					final BigInteger limb = inv.shiftRight((3 - k) * POW5_INV_QUARTER_BITCOUNT);
+					POW5_INV_SPLIT[i][k] = (k == 0 ? limb : limb.and(invMask)).intValue();
+				}
+			}
+		}
+	}
+
+	private static final byte[] NaN = { 78, 97, 78 };
+
+	private static final byte[] POSITIVE_INFINITY = { 73, 110, 102, 105, 110, 105, 116, 121 };
+
+	private DoubleToByteArray() {
+	}
+
+	/**
+	 * Appends the shortest representation of the provided double to a
+	 * {@link FastByteArrayWrapper}.
+	 *
+	 * @param ba
+	 *            the {@link FastByteArrayWrapper} to append to.
+	 * @param d
+	 *            the double to represent.
+	 */
+	public static void append(final FastByteArrayWrapper ba, final double d) {
+		ba.ensureRemaining(MAX_LENGTH);
+		ba.count = format(d, ba.buf, ba.count);
+	}
+
+	/**
+	 * Writes the shortest representation of the provided double into a byte
+	 * array.
+	 *
+	 * @param d
+	 *            the double to represent.
+	 * @param buffer
+	 *            the destination array, which needs at least
+	 *            {@link #MAX_LENGTH} bytes available starting from
+	 *            <code>offset</code>.
+	 * @param offset
+	 *            the position of the first byte to write.
+	 * @return the position following the last written byte.
+	 */
+	public static int format(final double d, final byte[] buffer, int offset) {
+		final long bits = Double.doubleToLongBits(d);
+		final int ieeeExponent = (int) ((bits >>> DOUBLE_MANTISSA_BITS) & DOUBLE_EXPONENT_MASK);
+		final long ieeeMantissa = bits & DOUBLE_MANTISSA_MASK;
+		if (ieeeExponent == DOUBLE_EXPONENT_MASK) {
+			if (ieeeMantissa != 0) {
+				System.arraycopy(NaN, 0, buffer, offset, NaN.length);
+				return offset + NaN.length;
+			}
+			if (bits < 0)
+				buffer[offset++] = '-';
+			System.arraycopy(POSITIVE_INFINITY, 0, buffer, offset, POSITIVE_INFINITY.length);
+			return offset + POSITIVE_INFINITY.length;
+		}
+		if (bits < 0)
+			buffer[offset++] = '-';
+		if (ieeeExponent == 0 && ieeeMantissa == 0) {
+			buffer[offset++] = '0';
+			buffer[offset++] = '.';
+			buffer[offset++] = '0';
+			return offset;
+		}
+
+		// //
+		//
+		// Fast path for integral values in the plain notation range, which
+		// are very common in grids.
+		//
+		// //
+		final double abs = Math.abs(d);
+		if (abs < 1E7 && abs == (long) abs) {
+			offset = appendDigits((long) abs, digits((long) abs), buffer, offset);
+			buffer[offset++] = '.';
+			buffer[offset++] = '0';
+			return offset;
+		}
+
+		// //
+		//
+		// Ryu: compute the interval of the decimal representations which
+		// parse back to this double and pick the shortest one within it.
+		//
+		// //
+		int e2;
+		long m2;
+		if (ieeeExponent == 0) {
+			e2 = 1 - DOUBLE_EXPONENT_BIAS - DOUBLE_MANTISSA_BITS - 2;
+			m2 = ieeeMantissa;
+		} else {
+			e2 = ieeeExponent - DOUBLE_EXPONENT_BIAS - DOUBLE_MANTISSA_BITS - 2;
+			m2 = ieeeMantissa | (1L << DOUBLE_MANTISSA_BITS);
+		}
+		final boolean acceptBounds = (m2 & 1) == 0;
+
+		final long mv = 4 * m2;
+		final int mmShift = ((m2 != (1L << DOUBLE_MANTISSA_BITS)) || (ieeeExponent <= 1)) ? 1 : 0;
+		final long mp = mv + 2;
+		final long mm = mv - 1 - mmShift;
+
+		long dv, dp, dm;
+		final int e10;
+		boolean dmIsTrailingZeros = false;
+		boolean dvIsTrailingZeros = false;
+		if (e2 >= 0) {
+			final int q = ((e2 * 78913) >>> 18) - (e2 > 3 ? 1 : 0);
+			final int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+			final int i = -e2 + q + k;
+			dv = mulPow5InvDivPow2(mv, q, i);
+			dp = mulPow5InvDivPow2(mp, q, i);
+			dm = mulPow5InvDivPow2(mm, q, i);
+			e10 = q;
+			if (q <= 21) {
+				if (mv % 5 == 0) {
+					dvIsTrailingZeros = multipleOfPowerOf5(mv, q);
+				} else if (acceptBounds) {
+					dmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+				} else {
+					dp -= multipleOfPowerOf5(mp, q) ? 1 : 0;
+				}
+			}
+		} else {
+			final int q = ((-e2 * 732923) >>> 20) - (-e2 > 1 ? 1 : 0);
+			final int i = -e2 - q;
+			final int k = pow5bits(i) - POW5_BITCOUNT;
+			final int j = q - k;
+			dv = mulPow5divPow2(mv, i, j);
+			dp = mulPow5divPow2(mp, i, j);
+			dm = mulPow5divPow2(mm, i, j);
+			e10 = q + e2;
+			if (q <= 1) {
+				dvIsTrailingZeros = true;
+				if (acceptBounds) {
+					dmIsTrailingZeros = mmShift == 1;
+				} else {
+					--dp;
+				}
+			} else if (q < 63) {
+				dvIsTrailingZeros = (mv & ((1L << q) - 1)) == 0;
+			}
+		}
+
+		int removed = 0;
+		int lastRemovedDigit = 0;
+		long output;
+		if (dmIsTrailingZeros || dvIsTrailingZeros) {
+			while (dp / 10 > dm / 10) {
+				dmIsTrailingZeros &= dm % 10 == 0;
+				dvIsTrailingZeros &= lastRemovedDigit == 0;
+				lastRemovedDigit = (int) (dv % 10);
+				dp /= 10;
+				dv /= 10;
+				dm /= 10;
+				removed++;
+			}
+			if (dmIsTrailingZeros && acceptBounds) {
+				while (dm % 10 == 0) {
+					dvIsTrailingZeros &= lastRemovedDigit == 0;
+					lastRemovedDigit = (int) (dv % 10);
+					dp /= 10;
+					dv /= 10;
+					dm /= 10;
+					removed++;
+				}
+			}
+			if (dvIsTrailingZeros && lastRemovedDigit == 5 && dv % 2 == 0) {
+				// round to even
+				lastRemovedDigit = 4;
+			}
+			output = dv + ((dv == dm && !(dmIsTrailingZeros && acceptBounds)) || lastRemovedDigit >= 5 ? 1 : 0);
+		} else {
+			while (dp / 10 > dm / 10) {
+				lastRemovedDigit = (int) (dv % 10);
+				dp /= 10;
+				dv /= 10;
+				dm /= 10;
+				removed++;
+			}
+			output = dv + (dv == dm || lastRemovedDigit >= 5 ? 1 : 0);
+		}
+		// strip trailing zeros left by the rounding, if any
+		while (output % 10 == 0 && output != 0) {
+			output /= 10;
+			removed++;
+		}
+		final int olength = digits(output);
+		final int exponent = e10 + removed + olength - 1;
+
+		// //
+		//
+		// Layout, same as Double.toString
+		//
+		// //
+		if (exponent >= -3 && exponent < 7) {
+			if (exponent >= 0) {
+				if (olength <= exponent + 1) {
+					offset = appendDigits(output, olength, buffer, offset);
+					for (int i = olength; i <= exponent; i++)
+						buffer[offset++] = '0';
+					buffer[offset++] = '.';
+					buffer[offset++] = '0';
+				} else {
+					// digits after the decimal point
+					final int fraction = olength - exponent - 1;
+					offset = appendDigits(output, olength, buffer, offset + 1) ;
+					System.arraycopy(buffer, offset - olength, buffer, offset - olength - 1, exponent + 1);
+					buffer[offset - fraction - 1] = '.';
+				}
+			} else {
+				buffer[offset++] = '0';
+				buffer[offset++] = '.';
+				for (int i = -1; i > exponent; i--)
+					buffer[offset++] = '0';
+				offset = appendDigits(output, olength, buffer, offset);
+			}
+		} else {
+			// d.ddddE[-]x
+			offset = appendDigits(output, olength, buffer, offset + 1);
+			final int first = offset - olength;
+			buffer[first - 1] = buffer[first];
+			buffer[first] = '.';
+			if (olength == 1)
+				buffer[offset++] = '0';
+			buffer[offset++] = 'E';
+			int exp = exponent;
+			if (exp < 0) {
+				buffer[offset++] = '-';
+				exp = -exp;
+			}
+			offset = appendDigits(exp, digits(exp), buffer, offset);
+		}
+		return offset;
+	}
+
+	/**
+	 * Writes the <code>length</code> decimal digits of a non negative
+	 * number.
+	 */
+	private static int appendDigits(long value, final int length, final byte[] buffer, final int offset) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			buffer[i] = (byte) ('0' + (value % 10));
+			value /= 10;
+		}
+		return offset + length;
+	}
+
+	/** Number of decimal digits of a non negative number. */
+	private static int digits(final long v) {
+		long p = 10;
+		for (int i = 1; i < 19; i++) {
+			if (v < p)
+				return i;
+			p *= 10;
+		}
+		return 19;
+	}
+
+	/** Ceil of log<sub>2</sub>(5<sup>e</sup>), 1 for e = 0. */
+	private static int pow5bits(final int e) {
+		return ((e * 1217359) >>> 19) + 1;
+	}
+
+	private static boolean multipleOfPowerOf5(long value, final int q) {
+		int count = 0;
+		while (value > 0 && value % 5 == 0) {
+			value /= 5;
+			count++;
+		}
+		return count >= q;
+	}
+
+	/** Computes floor(m * 5^i / 2^j); m has at most 55 bits. */
+	private static long mulPow5divPow2(final long m, final int i, final int j) {
+		return mulShift(m, POW5_SPLIT[i], j);
+	}
+
+	/** Computes floor(m * 2^k / 5^i / 2^j) for the table exponent k; m has at most 55 bits. */
+	private static long mulPow5InvDivPow2(final long m, final int i, final int j) {
+		return mulShift(m, POW5_INV_SPLIT[i], j);
+	}
+
+	private static long mulShift(final long m, final int[] factor, final int j) {
+		final long mHigh = m >>> 31;
+		final long mLow = m & 0x7fffffff;
+		final long bits13 = mHigh * factor[0];
+		final long bits03 = mLow * factor[0];
+		final long bits12 = mHigh * factor[1];
+		final long bits02 = mLow * factor[1];
+		final long bits11 = mHigh * factor[2];
+		final long bits01 = mLow * factor[2];
+		final long bits10 = mHigh * factor[3];
+		final long bits00 = mLow * factor[3];
+		final int actualShift = j - 3 * 31 - 21;
+		return ((((((((bits00 >>> 31) + bits01 + bits10) >>> 31) + bits02 + bits11) >>> 31) + bits03 + bits12) >>> 21) + (bits13 << 10)) >>> actualShift;
+	}
+}
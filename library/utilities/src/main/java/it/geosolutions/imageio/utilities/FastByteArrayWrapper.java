@@ -150,6 +150,22 @@ public class FastByteArrayWrapper {
         write(b, 0, b.length);
     }
 
+    /**
+     * Makes sure that at least <code>len</code> more bytes can be written
+     * into the inner buffer without growing it.
+     * 
+     * @param len
+     *                the number of bytes which need to be available.
+     */
+    public void ensureRemaining(int len) {
+        int newcount = count + len;
+        if (newcount > buf.length) {
+            byte newbuf[] = new byte[Math.max(buf.length << 1, newcount)];
+            System.arraycopy(buf, 0, newbuf, 0, count);
+            buf = newbuf;
+        }
+    }
+
     /**
      * Resets the <code>count</code> field of this byte array wrapper to zero,
      * so that all currently accumulated values in the byte array is discarded.
@@ -90,6 +90,16 @@ public final class NumberToByteArray {
 			108, 109, 110, 111, 112, 113, 114, 115, 116, 117, 118, 119, 120,
 			121, 122 };
 
+	/** The ASCII digits of the numbers from 00 to 99. */
+	private static final byte[] DIGIT_PAIRS = new byte[200];
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[2 * i] = byteForDigit[i / 10];
+			DIGIT_PAIRS[2 * i + 1] = byteForDigit[i % 10];
+		}
+	}
+
 	// And required double related constants.
 	private static final long DoubleSignMask = 0x8000000000000000L;
 
@@ -445,6 +455,61 @@ public final class NumberToByteArray {
 		}
 	}
 
+	/**
+	 * Returns the number of characters of the decimal representation of the
+	 * specified int, sign included.
+	 */
+	public static int length(int i) {
+		long v = i;
+		int length = 1;
+		if (v < 0) {
+			v = -v;
+			length++;
+		}
+		while (v >= 10) {
+			v /= 10;
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Appends the decimal representation of the specified int, whose
+	 * {@link #length(int)} is already known, writing its digits backwards two
+	 * at a time.
+	 * 
+	 * @param ba
+	 *            the wrapper to append to
+	 * @param i
+	 *            the int to append
+	 * @param length
+	 *            the number of characters of the int, as returned by
+	 *            {@link #length(int)}
+	 */
+	public static void appendInt(FastByteArrayWrapper ba, int i, int length) {
+		ba.ensureRemaining(length);
+		final byte[] buf = ba.buf;
+		long v = i;
+		if (v < 0) {
+			buf[ba.count] = '-';
+			v = -v;
+		}
+		int pos = ba.count += length;
+		while (v >= 100) {
+			final int pair = (int) (v % 100) << 1;
+			v /= 100;
+			buf[--pos] = DIGIT_PAIRS[pair + 1];
+			buf[--pos] = DIGIT_PAIRS[pair];
+		}
+		if (v >= 10) {
+			final int pair = (int) v << 1;
+			buf[--pos] = DIGIT_PAIRS[pair + 1];
+			buf[--pos] = DIGIT_PAIRS[pair];
+		} else {
+			buf[--pos] = byteForDigit[(int) v];
+		}
+	}
+
 	private static void appendFractDigits(FastByteArrayWrapper ba, long i,
 			int decimalOffset) throws IOException {
 		long mag = tenthPower(i);
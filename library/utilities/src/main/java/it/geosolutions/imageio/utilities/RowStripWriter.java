@@ -0,0 +1,175 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.utilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writes strips of rows of an image formatted as text.
+ *
+ * <p>
+ * The rows of a strip are formatted by a {@link RowFormatter} into reusable
+ * {@link FastByteArrayWrapper}s, which are written out with a single write
+ * each. When more than one thread is requested, the rows of a strip are split
+ * into runs formatted in parallel and written out in order. The formatting
+ * threads are daemon threads shared by all the instances, so that no thread
+ * pool is created for each image being written.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class RowStripWriter {
+
+	/**
+	 * Formats the rows of the strip being written.
+	 */
+	public interface RowFormatter {
+
+		/**
+		 * Appends <code>rows</code> rows of the current strip, starting from
+		 * row <code>firstRow</code>, to the provided buffer. It may be called
+		 * concurrently for disjoint runs of rows.
+		 *
+		 * @param firstRow
+		 *            the index of the first row to format within the strip.
+		 * @param rows
+		 *            the number of rows to format.
+		 * @param out
+		 *            the buffer to append to.
+		 */
+		void format(int firstRow, int rows, FastByteArrayWrapper out);
+	}
+
+	/** Formatting threads, created on demand and dropped once idle. */
+	private static final ExecutorService EXECUTOR = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "RowStripWriter-"
+							+ count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final int threads;
+
+	private final FastByteArrayWrapper[] buffers;
+
+	private final List<Future<FastByteArrayWrapper>> results;
+
+	/**
+	 * @param threads
+	 *            the number of threads formatting the rows of each strip, 1
+	 *            to format them in the calling thread.
+	 * @param maxRows
+	 *            the maximum number of rows of a strip.
+	 * @param rowSize
+	 *            the expected number of bytes of a formatted row, used to
+	 *            size the buffers.
+	 */
+	public RowStripWriter(final int threads, final int maxRows, final int rowSize) {
+		this.threads = Math.max(1, Math.min(maxRows, threads));
+		final int bufferSize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(32,
+				((long) maxRows / this.threads + 1) * rowSize));
+		buffers = new FastByteArrayWrapper[this.threads];
+		for (int i = 0; i < this.threads; i++)
+			buffers[i] = new FastByteArrayWrapper(bufferSize);
+		results = new ArrayList<Future<FastByteArrayWrapper>>(this.threads);
+	}
+
+	/**
+	 * Returns the number of threads formatting the rows of each strip.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Formats the rows of a strip and writes them to the provided stream.
+	 *
+	 * @param formatter
+	 *            the {@link RowFormatter} of the strip.
+	 * @param rows
+	 *            the number of rows of the strip.
+	 * @param out
+	 *            the stream to write to.
+	 * @throws IOException
+	 *             if the rows cannot be formatted or written.
+	 */
+	public void write(final RowFormatter formatter, final int rows,
+			final ImageOutputStream out) throws IOException {
+		if (threads == 1 || rows == 1) {
+			final FastByteArrayWrapper buffer = buffers[0];
+			buffer.reset();
+			formatter.format(0, rows, buffer);
+			out.write(buffer.getByteArray(), 0, buffer.size());
+			return;
+		}
+
+		final int run = (rows + threads - 1) / threads;
+		results.clear();
+		for (int i = 0, firstRow = 0; firstRow < rows; i++, firstRow += run) {
+			final FastByteArrayWrapper buffer = buffers[i];
+			final int first = firstRow;
+			final int runRows = Math.min(run, rows - firstRow);
+			results.add(EXECUTOR.submit(new Callable<FastByteArrayWrapper>() {
+				public FastByteArrayWrapper call() {
+					buffer.reset();
+					formatter.format(first, runRows, buffer);
+					return buffer;
+				}
+			}));
+		}
+		boolean written = false;
+		try {
+			for (Future<FastByteArrayWrapper> result : results) {
+				final FastByteArrayWrapper buffer;
+				try {
+					buffer = result.get();
+				} catch (InterruptedException e) {
+					final IOException ioe = new IOException("Interrupted while formatting the rows");
+					ioe.initCause(e);
+					throw ioe;
+				} catch (ExecutionException e) {
+					final IOException ioe = new IOException("Unable to format the rows");
+					ioe.initCause(e.getCause());
+					throw ioe;
+				}
+				out.write(buffer.getByteArray(), 0, buffer.size());
+			}
+			written = true;
+		} finally {
+			// do not leave runs formatting into buffers which may be reused
+			if (!written)
+				for (Future<FastByteArrayWrapper> result : results)
+					result.cancel(true);
+		}
+	}
+}
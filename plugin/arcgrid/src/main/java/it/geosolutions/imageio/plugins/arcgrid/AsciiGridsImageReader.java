@@ -16,9 +16,11 @@
  */
 package it.geosolutions.imageio.plugins.arcgrid;
 
+import it.geosolutions.imageio.plugins.arcgrid.raster.AsciiGridIndex;
 import it.geosolutions.imageio.plugins.arcgrid.raster.AsciiGridRaster;
 import it.geosolutions.imageio.plugins.arcgrid.raster.AsciiGridRaster.AsciiGridRasterType;
 import it.geosolutions.imageio.plugins.arcgrid.spi.AsciiGridsImageReaderSpi;
+import it.geosolutions.imageio.stream.input.FileImageInputStreamExt;
 import it.geosolutions.imageio.utilities.Utilities;
 
 import java.awt.Rectangle;
@@ -130,6 +132,13 @@ public final class AsciiGridsImageReader extends ImageReader {
 	/** The {@link AsciiGridsImageMetadata} associated to this reader. */
 	private AsciiGridsImageMetadata metadata;
 
+	/**
+	 * The file whose {@link AsciiGridIndex} is maintained by this reader, or
+	 * <code>null</code> when sidecar indexes are disabled or the input is not
+	 * a plain file.
+	 */
+	private File indexedFile;
+
 	/**
 	 * Constructor.
 	 * 
@@ -190,9 +199,11 @@ public final class AsciiGridsImageReader extends ImageReader {
 		// ImageInputStream?
 		// 
 		// ////////////////////////////////////////////////////////////////////
-		if (input instanceof ImageInputStream)
+		if (input instanceof ImageInputStream) {
 			imageInputStream = (ImageInputStream) input;
-		else
+			if (input instanceof FileImageInputStreamExt)
+				indexedFile = ((FileImageInputStreamExt) input).getFile();
+		} else
 
 		// ////////////////////////////////////////////////////////////////////
 		//
@@ -217,6 +228,7 @@ public final class AsciiGridsImageReader extends ImageReader {
 				throw new IllegalArgumentException(
 							"Input file does not exists!");
 			}
+			indexedFile = inFile;
 		} else
 
 		// ////////////////////////////////////////////////////////////////////
@@ -233,6 +245,7 @@ public final class AsciiGridsImageReader extends ImageReader {
 				throw new IllegalArgumentException(
 						"Input file does not exists!");
 			}
+			indexedFile = inFile;
 		} else {
 			// is not something we can decode
 			if (LOGGER.isLoggable(Level.SEVERE))
@@ -269,25 +282,40 @@ public final class AsciiGridsImageReader extends ImageReader {
 		}
 		imageInputStream.mark();
 
-		try {
-
-			// Header Parsing to check if it is an EsriAsciiGridRaster
-			rasterReader = AsciiGridRasterType.ESRI.createAsciiGridRaster(imageInputStream, this);
-			rasterReader.parseHeader();
-		} catch (IOException e) {
+		// ////////////////////////////////////////////////////////////////////
+		//
+		// Sidecar index?
+		// 
+		// ////////////////////////////////////////////////////////////////////
+		if (indexedFile != null && !AsciiGridIndex.isEnabled())
+			indexedFile = null;
+		final AsciiGridIndex index = indexedFile != null ? AsciiGridIndex.load(indexedFile) : null;
+		if (index != null) {
+			if (LOGGER.isLoggable(Level.FINE))
+				LOGGER.fine("Using index for " + indexedFile);
+			rasterReader = index.getRasterType().createAsciiGridRaster(imageInputStream, this);
+			rasterReader.restore(index);
+		} else {
 			try {
 
-				// Header Parsing to know if it is a GrassAsciiGridRaster
-				rasterReader = AsciiGridRasterType.GRASS.createAsciiGridRaster(imageInputStream, this);
+				// Header Parsing to check if it is an EsriAsciiGridRaster
+				rasterReader = AsciiGridRasterType.ESRI.createAsciiGridRaster(imageInputStream, this);
 				rasterReader.parseHeader();
-			} catch (IOException e1) {
-				// Input cannot be decoded
-				if (LOGGER.isLoggable(Level.SEVERE))
-					LOGGER.log(Level.SEVERE, e1.getLocalizedMessage(), e1);
-				final IllegalArgumentException ex = new IllegalArgumentException(
-						"Unable to parse the header for the provided input");
-				ex.initCause(e1);
-				throw ex;
+			} catch (IOException e) {
+				try {
+
+					// Header Parsing to know if it is a GrassAsciiGridRaster
+					rasterReader = AsciiGridRasterType.GRASS.createAsciiGridRaster(imageInputStream, this);
+					rasterReader.parseHeader();
+				} catch (IOException e1) {
+					// Input cannot be decoded
+					if (LOGGER.isLoggable(Level.SEVERE))
+						LOGGER.log(Level.SEVERE, e1.getLocalizedMessage(), e1);
+					final IllegalArgumentException ex = new IllegalArgumentException(
+							"Unable to parse the header for the provided input");
+					ex.initCause(e1);
+					throw ex;
+				}
 			}
 		}
 
@@ -645,7 +673,25 @@ public final class AsciiGridsImageReader extends ImageReader {
 					.info("readRaster(final int imageIndex, ImageReadParam param)");
 		if (param == null)
 			param = getDefaultReadParam();
-		return rasterReader.readRaster(param);
+		final Raster raster = rasterReader.readRaster(param);
+		if (indexedFile != null && !rasterReader.isAborting())
+			updateIndex();
+		return raster;
+	}
+
+	/**
+	 * Stores the sidecar {@link AsciiGridIndex} for the current input once
+	 * the {@link AsciiGridRaster} has learnt enough about it. Failures are
+	 * not fatal since the index is just an accelerator.
+	 */
+	private void updateIndex() {
+		try {
+			if (rasterReader.updateIndex(indexedFile) && LOGGER.isLoggable(Level.FINE))
+				LOGGER.fine("Stored index for " + indexedFile);
+		} catch (IOException e) {
+			if (LOGGER.isLoggable(Level.WARNING))
+				LOGGER.log(Level.WARNING, "Unable to store index for " + indexedFile, e);
+		}
 	}
 
 	/**
@@ -841,6 +887,7 @@ public final class AsciiGridsImageReader extends ImageReader {
 		imageType = null;
 		imageSize = -1;
 		metadata = null;
+		indexedFile = null;
 	}
 
 	public void processImageProgress(float percentageDone) {
@@ -33,8 +33,6 @@ import javax.imageio.spi.ImageWriterSpi;
 import javax.imageio.stream.ImageOutputStream;
 import javax.imageio.stream.ImageOutputStreamImpl;
 import javax.media.jai.PlanarImage;
-import javax.media.jai.iterator.RectIter;
-import javax.media.jai.iterator.RectIterFactory;
 
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
@@ -286,15 +284,10 @@ public final class AsciiGridsImageWriter extends ImageWriter {
 	 * @throws IOException
 	 */
 	private void writeRaster() throws IOException {
-		// we need to cobble rasters of the same row together in order to
-		// respect the way our writer works.
-
-		final RectIter iterator = RectIterFactory.create(inputRenderedImage,
-				null);
-		// writing
-		final Double noDataDouble = new Double(rasterWriter.getNoData());
+		// rows are loaded in strips spanning the whole image width in order
+		// to respect the way our writer works.
 		final String noDataMarker = rasterWriter.getNoDataMarker();
-		rasterWriter.writeRaster(iterator, noDataDouble, noDataMarker);
+		rasterWriter.writeRaster(inputRenderedImage, rasterWriter.getNoData(), noDataMarker);
 	}
 
 	/**
@@ -0,0 +1,313 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.plugins.arcgrid.raster;
+
+import it.geosolutions.imageio.plugins.arcgrid.raster.AsciiGridRaster.AsciiGridRasterType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent sidecar index for an ASCII grid file.
+ *
+ * <p>
+ * Since an ASCII grid does not allow random access to its samples, the first
+ * full scan of a file is used to learn the stream position of each row. This
+ * class stores those positions, together with the header parse results and
+ * the min/max statistics, in a small binary file (<code>file.asc.idx</code>)
+ * next to the source, so that subsequent readers can skip header parsing and
+ * seek straight to the first row of a requested region.
+ *
+ * <p>
+ * The index is validated against the length and the last modification time
+ * of the source file and silently ignored when stale. Its usage is disabled
+ * by default and can be enabled by setting the
+ * {@link #INDEX_ENABLED_KEY} system property to <code>true</code>.
+ */
+public final class AsciiGridIndex {
+
+	private final static Logger LOGGER = Logger.getLogger(AsciiGridIndex.class.toString());
+
+	/** System property enabling the usage of sidecar index files. */
+	public static final String INDEX_ENABLED_KEY = "it.geosolutions.imageio.arcgrid.index";
+
+	/** Suffix appended to the source file name to obtain the index file name. */
+	public static final String INDEX_SUFFIX = ".idx";
+
+	/** Magic number opening each index file, "AGIX". */
+	private final static int MAGIC = 0x41474958;
+
+	/** Version of the index file layout. */
+	private final static int VERSION = 1;
+
+	/** Length of the indexed source file. */
+	private long sourceLength;
+
+	/** Last modification time of the indexed source file. */
+	private long sourceLastModified;
+
+	private AsciiGridRasterType rasterType;
+
+	private int nCols;
+
+	private int nRows;
+
+	private long dataStartAt;
+
+	private double xllCellCoordinate;
+
+	private double yllCellCoordinate;
+
+	private double cellSizeX;
+
+	private double cellSizeY;
+
+	private boolean isCorner;
+
+	private double noData;
+
+	/** <code>true</code> if min and max have been computed over all the samples. */
+	private boolean statisticsAvailable;
+
+	private double minValue;
+
+	private double maxValue;
+
+	/**
+	 * Stream positions of the first byte of each row, or of the whitespaces
+	 * immediately preceding it.
+	 */
+	private long[] rowOffsets;
+
+	private AsciiGridIndex() {
+	}
+
+	/**
+	 * Tells whether sidecar indexes should be used.
+	 *
+	 * @return <code>true</code> if the {@link #INDEX_ENABLED_KEY} system
+	 *         property has been set to <code>true</code>.
+	 */
+	public static boolean isEnabled() {
+		return Boolean.getBoolean(INDEX_ENABLED_KEY);
+	}
+
+	/**
+	 * Returns the index file associated to the provided ASCII grid file.
+	 *
+	 * @param source
+	 *            the ASCII grid file.
+	 * @return the sidecar index file (which may not exist).
+	 */
+	public static File getIndexFile(final File source) {
+		return new File(source.getParentFile(), source.getName() + INDEX_SUFFIX);
+	}
+
+	/**
+	 * Builds an index from the state of an {@link AsciiGridRaster} whose row
+	 * positions are all known.
+	 *
+	 * @param raster
+	 *            the {@link AsciiGridRaster} to index.
+	 * @param source
+	 *            the ASCII grid file read by the raster.
+	 * @return the index.
+	 */
+	static AsciiGridIndex create(final AsciiGridRaster raster, final File source) {
+		final AsciiGridIndex index = new AsciiGridIndex();
+		index.sourceLength = source.length();
+		index.sourceLastModified = source.lastModified();
+		index.rasterType = raster.getRasterType();
+		index.nCols = raster.nCols;
+		index.nRows = raster.nRows;
+		index.dataStartAt = raster.dataStartAt;
+		index.xllCellCoordinate = raster.xllCellCoordinate;
+		index.yllCellCoordinate = raster.yllCellCoordinate;
+		index.cellSizeX = raster.cellSizeX;
+		index.cellSizeY = raster.cellSizeY;
+		index.isCorner = raster.isCorner;
+		index.noData = raster.noData;
+		index.statisticsAvailable = raster.isStatisticsComplete();
+		index.minValue = raster.minValue;
+		index.maxValue = raster.maxValue;
+		index.rowOffsets = raster.rowOffsets.clone();
+		return index;
+	}
+
+	/**
+	 * Loads the index associated to the provided ASCII grid file.
+	 *
+	 * @param source
+	 *            the ASCII grid file.
+	 * @return the index, or <code>null</code> if it does not exist, it cannot
+	 *         be decoded or it is stale.
+	 */
+	public static AsciiGridIndex load(final File source) {
+		final File indexFile = getIndexFile(source);
+		if (!indexFile.isFile() || !indexFile.canRead())
+			return null;
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			final AsciiGridIndex index = new AsciiGridIndex();
+			index.sourceLength = in.readLong();
+			index.sourceLastModified = in.readLong();
+			if (index.sourceLength != source.length()
+					|| index.sourceLastModified != source.lastModified()) {
+				if (LOGGER.isLoggable(Level.FINE))
+					LOGGER.fine("Ignoring stale index " + indexFile);
+				return null;
+			}
+			index.rasterType = AsciiGridRasterType.valueOf(in.readUTF());
+			index.nCols = in.readInt();
+			index.nRows = in.readInt();
+			index.dataStartAt = in.readLong();
+			index.xllCellCoordinate = in.readDouble();
+			index.yllCellCoordinate = in.readDouble();
+			index.cellSizeX = in.readDouble();
+			index.cellSizeY = in.readDouble();
+			index.isCorner = in.readBoolean();
+			index.noData = in.readDouble();
+			index.statisticsAvailable = in.readBoolean();
+			index.minValue = in.readDouble();
+			index.maxValue = in.readDouble();
+			final int rows = in.readInt();
+			if (rows != index.nRows || index.nCols <= 0 || index.nRows <= 0
+					|| index.rasterType == AsciiGridRasterType.UNDEFINED)
+				return null;
+			index.rowOffsets = new long[rows];
+			for (int i = 0; i < rows; i++)
+				index.rowOffsets[i] = in.readLong();
+			return index;
+		} catch (IOException e) {
+			if (LOGGER.isLoggable(Level.FINE))
+				LOGGER.log(Level.FINE, "Unable to load index " + indexFile, e);
+			return null;
+		} catch (IllegalArgumentException e) {
+			if (LOGGER.isLoggable(Level.FINE))
+				LOGGER.log(Level.FINE, "Unable to load index " + indexFile, e);
+			return null;
+		} finally {
+			if (in != null)
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+		}
+	}
+
+	/**
+	 * Writes this index next to the provided ASCII grid file.
+	 *
+	 * <p>
+	 * The index is first written to a temporary file which is then renamed,
+	 * so that concurrent readers never see a partially written index.
+	 *
+	 * @param source
+	 *            the ASCII grid file.
+	 * @throws IOException
+	 *             in case the index cannot be written.
+	 */
+	public void store(final File source) throws IOException {
+		final File indexFile = getIndexFile(source);
+		final File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sourceLength);
+			out.writeLong(sourceLastModified);
+			out.writeUTF(rasterType.name());
+			out.writeInt(nCols);
+			out.writeInt(nRows);
+			out.writeLong(dataStartAt);
+			out.writeDouble(xllCellCoordinate);
+			out.writeDouble(yllCellCoordinate);
+			out.writeDouble(cellSizeX);
+			out.writeDouble(cellSizeY);
+			out.writeBoolean(isCorner);
+			out.writeDouble(noData);
+			out.writeBoolean(statisticsAvailable);
+			out.writeDouble(minValue);
+			out.writeDouble(maxValue);
+			out.writeInt(rowOffsets.length);
+			for (int i = 0; i < rowOffsets.length; i++)
+				out.writeLong(rowOffsets[i]);
+		} finally {
+			out.close();
+		}
+		if (indexFile.exists() && !indexFile.delete() || !tempFile.renameTo(indexFile)) {
+			tempFile.delete();
+			throw new IOException("Unable to write index " + indexFile);
+		}
+	}
+
+	/**
+	 * Restores the header parse results, the row positions and the statistics
+	 * stored in this index into the provided {@link AsciiGridRaster}.
+	 *
+	 * @param raster
+	 *            the {@link AsciiGridRaster} to initialize.
+	 */
+	void restore(final AsciiGridRaster raster) {
+		raster.nCols = nCols;
+		raster.nRows = nRows;
+		raster.dataStartAt = dataStartAt;
+		raster.xllCellCoordinate = xllCellCoordinate;
+		raster.yllCellCoordinate = yllCellCoordinate;
+		raster.cellSizeX = cellSizeX;
+		raster.cellSizeY = cellSizeY;
+		raster.isCorner = isCorner;
+		raster.noData = noData;
+		raster.rowOffsets = rowOffsets.clone();
+		if (statisticsAvailable) {
+			raster.minValue = minValue;
+			raster.maxValue = maxValue;
+		}
+		raster.setIndexState(statisticsAvailable);
+	}
+
+	/**
+	 * The type of the indexed raster, ESRI or GRASS.
+	 *
+	 * @return the {@link AsciiGridRasterType} of the indexed file.
+	 */
+	public AsciiGridRasterType getRasterType() {
+		return rasterType;
+	}
+
+	/**
+	 * Tells whether min and max values have been computed over the whole
+	 * file.
+	 *
+	 * @return <code>true</code> if statistics are available.
+	 */
+	public boolean isStatisticsAvailable() {
+		return statisticsAvailable;
+	}
+}
@@ -18,12 +18,17 @@ package it.geosolutions.imageio.plugins.arcgrid.raster;
 
 import it.geosolutions.imageio.plugins.arcgrid.AsciiGridsImageReader;
 import it.geosolutions.imageio.plugins.arcgrid.AsciiGridsImageWriter;
+import it.geosolutions.imageio.utilities.FastByteArrayWrapper;
+import it.geosolutions.imageio.utilities.RowStripWriter;
 import it.geosolutions.imageio.utilities.StringToDouble;
 
 import java.awt.Rectangle;
+import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.logging.Logger;
@@ -145,6 +150,15 @@ public abstract class AsciiGridRaster {
 
 	private final static int MAX_VALUE_LENGTH = 40;
 
+	/** Number of samples loaded and formatted at once while writing. */
+	private final static int STRIP_SAMPLES = 256 * 1024;
+
+	/**
+	 * System property setting the number of threads used to format rows
+	 * while writing, 1 by default.
+	 */
+	public final static String WRITER_THREADS_KEY = "it.geosolutions.imageio.arcgrid.writer.threads";
+
 	/** max value found in the file */
 	protected double maxValue = Double.MIN_VALUE;
 
@@ -214,6 +228,29 @@ public abstract class AsciiGridRaster {
 	 */
 	protected TreeMap<Long,Long> tileMarker = new TreeMap<Long,Long>();
 
+	/**
+	 * Stream positions of the rows of the raster, learned while scanning the
+	 * file or restored from an {@link AsciiGridIndex}. Each position points
+	 * to the first byte of the first sample of a row or to the whitespaces
+	 * preceding it. A value of 0 means that the position is still unknown.
+	 */
+	protected long[] rowOffsets;
+
+	/**
+	 * The rows whose samples have all been used to compute
+	 * <code>minValue</code> and <code>maxValue</code>.
+	 */
+	private BitSet statisticsRows;
+
+	/** <code>true</code> if min and max have been computed over the whole file */
+	private boolean statisticsComplete;
+
+	/** <code>true</code> if an {@link AsciiGridIndex} for the current row positions exists */
+	private boolean indexStored;
+
+	/** <code>true</code> if the stored {@link AsciiGridIndex} also contains statistics */
+	private boolean indexStoredWithStatistics;
+
 	/** the width of a tile */
 	protected int tileWidth = -1;
 
@@ -496,6 +533,70 @@ public abstract class AsciiGridRaster {
 		return dataStartAt;
 	}
 
+	/**
+	 * Tells whether <code>minValue</code> and <code>maxValue</code> have been
+	 * computed over all the samples of the file.
+	 * 
+	 * @return <code>true</code> if min and max are the statistics of the
+	 *         whole file.
+	 */
+	final public boolean isStatisticsComplete() {
+		synchronized (tileTreeMutex) {
+			return statisticsComplete;
+		}
+	}
+
+	/**
+	 * Initializes this {@link AsciiGridRaster} from a previously stored
+	 * {@link AsciiGridIndex}, in place of parsing the header.
+	 * 
+	 * @param index
+	 *            the {@link AsciiGridIndex} of the file to read.
+	 */
+	public void restore(final AsciiGridIndex index) {
+		synchronized (tileTreeMutex) {
+			index.restore(this);
+		}
+	}
+
+	/**
+	 * Called by {@link AsciiGridIndex} once the state of this raster has been
+	 * restored.
+	 */
+	void setIndexState(final boolean withStatistics) {
+		indexStored = true;
+		indexStoredWithStatistics = withStatistics;
+		statisticsComplete = withStatistics;
+	}
+
+	/**
+	 * Stores an {@link AsciiGridIndex} for the provided file as soon as the
+	 * positions of all the rows are known. The index is stored again once the
+	 * min/max statistics become available.
+	 * 
+	 * @param source
+	 *            the ASCII grid file read by this raster.
+	 * @return <code>true</code> if a new index has been written.
+	 * @throws IOException
+	 *             in case the index cannot be written.
+	 */
+	public boolean updateIndex(final File source) throws IOException {
+		final AsciiGridIndex index;
+		synchronized (tileTreeMutex) {
+			if (rowOffsets == null
+					|| (indexStored && (indexStoredWithStatistics || !statisticsComplete)))
+				return false;
+			for (int i = 0; i < rowOffsets.length; i++)
+				if (rowOffsets[i] <= 0)
+					return false;
+			index = AsciiGridIndex.create(this, source);
+			indexStored = true;
+			indexStoredWithStatistics = statisticsComplete;
+		}
+		index.store(source);
+		return true;
+	}
+
 	/**
 	 * This method reads data values from the ImageInputStream and returns a
 	 * raster having these data values as samples. When image is tiled or
@@ -636,6 +737,12 @@ public abstract class AsciiGridRaster {
 		int prevCh = -1;
 		long samplesCounted = 0;
 		long streamPosition = 0;
+		synchronized (tileTreeMutex) {
+			if (rowOffsets == null) {
+				rowOffsets = new long[nRows];
+				rowOffsets[0] = dataStartAt;
+			}
+		}
 		// /////////////////////////////////////////////////////////////////////
 		//
 		//
@@ -662,8 +769,15 @@ public abstract class AsciiGridRaster {
 			synchronized (tileTreeMutex) {
 				Long markedPos = tileMarker.get(samplesToThrowAwayBeforeFirstValidSample);
 
+				// Case 0: the position of the first row is known, either
+				// from a previous scan or from the sidecar index
+				if (rowOffsets[srcRegionYOffset] > 0) {
+
+					imageIS.seek(rowOffsets[srcRegionYOffset]);
+					samplesCounted = samplesToThrowAwayBeforeFirstValidSample;
+
 				// Case 1: Exact key
-				if (markedPos != null) {
+				} else if (markedPos != null) {
 
 					imageIS.seek(markedPos);
 					samplesCounted = samplesToThrowAwayBeforeFirstValidSample;
@@ -724,7 +838,11 @@ public abstract class AsciiGridRaster {
 			final int tileW = getTileWidth();
 			Long key;
 			Long val;
-			while (samplesCounted < samplesToThrowAwayBeforeFirstValidSample) {
+			// every stored position (dataStartAt, row offsets, tile markers)
+			// points before the first byte of a sample, hence the first
+			// non-whitespace byte we find starts the sample to be counted
+			prevCh = 32;
+			while (true) {
 
 				ch = imageIS.read(); // Filling the Buffer
 				if (ch == -1)
@@ -742,28 +860,42 @@ public abstract class AsciiGridRaster {
 				if ((ch != 32) && (ch != 10) && (ch != 13) && (ch != 9)) {
 					if ((prevCh == 32) || (prevCh == 10) || (prevCh == 13)
 							|| (prevCh == 9)) {
-						samplesCounted++;
+						// we are on the first byte of the sample having
+						// index samplesCounted
+						final long sampleStart = streamPosition - 1;
+						if (samplesCounted % nCols == 0) {
+							synchronized (tileTreeMutex) {
+								rowOffsets[(int) (samplesCounted / nCols)] = sampleStart;
+							}
+						}
 
-						// Another space was counted. If the number of
-						// spaces counted is multiple of the Size of
-						// tile (tile Heigth*tile Width), I store a new
-						// couple in the TreeMap. This is useful when I
-						// dont load tiles in order. If, par example, I
-						// load in advance data values which are related
+						// If the number of samples counted is multiple of
+						// the Size of tile (tile Heigth*tile Width), I
+						// store a new couple in the TreeMap. This is useful
+						// when I dont load tiles in order. If, par example,
+						// I load in advance data values which are related
 						// to the last tile, I need to scan the whole
 						// file and I need to counts a great number of
 						// spaces. Thus, during this counting process, it is
 						// useful to annotate stream positions in the
 						// tileMarker
-						if ((samplesCounted % (tileH * tileW)) == 0) {
+						if (samplesCounted > 0 && (samplesCounted % (tileH * tileW)) == 0) {
 							key = Long.valueOf(samplesCounted);
-							val = Long.valueOf(streamPosition);
+							val = Long.valueOf(sampleStart);
 							synchronized (tileTreeMutex) {
 								if (!tileMarker.containsKey(key)) {
 									tileMarker.put(key, val);
 								}
 							}
 						}
+
+						if (samplesCounted == samplesToThrowAwayBeforeFirstValidSample) {
+							// positioning back on the first byte of the
+							// first valid sample
+							imageIS.seek(sampleStart);
+							break;
+						}
+						samplesCounted++;
 					}
 				}
 
@@ -822,6 +954,10 @@ public abstract class AsciiGridRaster {
 		long tempCol = 0, tempRow = 0;
 
 		final double noDataValue = getNoData();
+		// min and max collected by this read are valid statistics for a row
+		// only if all of its samples are taken into account
+		final boolean collectRowStatistics = !doSubsampling
+				&& srcRegionXOffset == 0 && srcRegionWidth == nCols;
 		final StringToDouble doubleConverter = StringToDouble.acquire();
 		// final StringToDouble doubleConverter = StringToDouble.acquire();
 		// If I need to load 10 samples, I need to count 9 spaces
@@ -870,6 +1006,24 @@ public abstract class AsciiGridRaster {
 					raster.setSample((int)rasterX, (int)rasterY, 0, value);
 				}
 			}
+			if (tempCol == nCols - 1) {
+				// end of a row, the stream is now positioned before the
+				// first sample of the next one
+				final int row = (int) (srcRegionYOffset + tempRow);
+				synchronized (tileTreeMutex) {
+					if (row + 1 < nRows && rowOffsets[row + 1] <= 0)
+						rowOffsets[row + 1] = imageIS.getStreamPosition();
+					if (collectRowStatistics && !statisticsComplete) {
+						if (statisticsRows == null)
+							statisticsRows = new BitSet(nRows);
+						statisticsRows.set(row);
+						if (statisticsRows.cardinality() == nRows) {
+							statisticsComplete = true;
+							statisticsRows = null;
+						}
+					}
+				}
+			}
 			// sample found
 			samplesCounted++;
 
@@ -907,81 +1061,6 @@ public abstract class AsciiGridRaster {
 		return raster;
 	}
 
-	// /**
-	// * Writes the raster
-	// *
-	// * @param iterator
-	// * A <code>RectIterator</code> built on Lines and Pixels of the
-	// * Raster which need to be written.
-	// * @param noDataDouble
-	// * the value representing noData.
-	// * @param noDataMarker
-	// * a <code>String</code> which need to be printed when founding
-	// * a noData value
-	// * @throws IOException
-	// */
-	//
-	// public void writeRaster(RectIter iterator, Double noDataDouble,
-	// String noDataMarker) throws IOException {
-	//
-	// final boolean hasListeners = writer.isHasListeners();
-	// final int pixelsToWrite = hasListeners ? (writer.getNColumns() * writer
-	// .getNRows()) : 0;
-	// int pixelsWritten = 0;
-	// int perc = 0;
-	// int iPerc = 1;
-	//
-	// if (hasListeners && abortRequired) {
-	// return;
-	// }
-	//
-	// double sample;
-	// byte[] noDataMarkerBytes = noDataMarker.getBytes();
-	// byte[] newLineBytes = newline.getBytes();
-	// final NumberToByteArray ntba = new NumberToByteArray();
-	// final FastByteArrayWrapper fba = new FastByteArrayWrapper();
-	// while (!iterator.finishedLines()) {
-	// while (!iterator.finishedPixels()) {
-	// sample = iterator.getSampleDouble();
-	// pixelsWritten++;
-	// if (hasListeners) {
-	// perc = (int) (((pixelsWritten * 1.0f) / pixelsToWrite) * 1000);
-	//
-	// if ((perc % (25 * iPerc) == 0) && (int) perc > 0) {
-	// if (abortRequired) {
-	// return;
-	// }
-	// writer.processImageProgress(perc / 10f);
-	// iPerc++;
-	// }
-	// }
-	//
-	// // writing the sample
-	// if ((noDataDouble.compareTo(new Double(sample)) != 0)
-	// && !Double.isNaN(sample) && !Double.isInfinite(sample)) {
-	// fba.reset();
-	// ntba.append(fba, sample);
-	// imageOS.write(fba.getByteArray(), 0, fba.size());
-	// } else {
-	// imageOS.write(noDataMarkerBytes);
-	// }
-	//
-	// iterator.nextPixel();
-	//
-	// // space
-	// if (!iterator.finishedPixels())
-	// imageOS.write(32);
-	//
-	// }
-	//
-	// imageOS.write(newLineBytes);
-	// iterator.nextLine();
-	// iterator.startPixels();
-	//
-	// }
-	//
-	// }
-
 	/**
 	 * Writes the raster
 	 * 
@@ -1000,53 +1079,108 @@ public abstract class AsciiGridRaster {
 			String noDataMarker) throws IOException {
 
 		final boolean hasListeners = writer.isHasListeners();
-		final int pixelsToWrite = hasListeners ? (writer.getNColumns() * writer
-				.getNRows()) : 0;
-		int pixelsWritten = 0;
+		final int columns = writer.getNColumns();
+		final int rows = writer.getNRows();
 		int perc = 0;
 		int iPerc = 1;
 
 		if (hasListeners && abortRequired) {
 			return;
 		}
-		String sampleString;
-		double sample;
+		final AsciiGridRowFormatter formatter = new AsciiGridRowFormatter(
+				noDataDouble.doubleValue(), noDataMarker);
+		final FastByteArrayWrapper buffer = new FastByteArrayWrapper(Math.max(32, columns * 8));
+		double[] row = new double[Math.max(1, columns)];
+		int rowsWritten = 0;
 		while (!iterator.finishedLines()) {
+			int i = 0;
 			while (!iterator.finishedPixels()) {
-				sample = iterator.getSampleDouble();
-				sampleString = Double.toString(sample);
-				pixelsWritten++;
-				if (hasListeners) {
-					perc = (int) (((pixelsWritten * 1.0f) / pixelsToWrite) * 1000);
-
-					if ((perc % (25 * iPerc) == 0) && (int) perc > 0) {
-						if (abortRequired) {
-							return;
-						}
-						writer.processImageProgress(perc / 10f);
-						iPerc++;
+				if (i == row.length) {
+					final double[] newRow = new double[row.length * 2];
+					System.arraycopy(row, 0, newRow, 0, i);
+					row = newRow;
+				}
+				row[i++] = iterator.getSampleDouble();
+				iterator.nextPixel();
+			}
+			buffer.reset();
+			formatter.format(row, 0, i, 1, buffer);
+			imageOS.write(buffer.getByteArray(), 0, buffer.size());
+			rowsWritten++;
+			if (hasListeners) {
+				perc = (int) (((rowsWritten * 1.0f) / rows) * 1000);
+				if ((perc % (25 * iPerc) == 0) && (int) perc > 0) {
+					if (abortRequired) {
+						return;
 					}
+					writer.processImageProgress(perc / 10f);
+					iPerc++;
 				}
+			}
+			iterator.nextLine();
+			iterator.startPixels();
+		}
+	}
 
-				// writing the sample
-				if ((noDataDouble.compareTo(new Double(sample)) != 0)
-						&& !Double.isNaN(sample) && !Double.isInfinite(sample)) {
-					imageOS.writeBytes(sampleString);
-				} else {
-					imageOS.writeBytes(noDataMarker);
-				}
+	/**
+	 * Writes the raster.
+	 * 
+	 * <p>
+	 * Rows are loaded from the source image in strips, formatted straight
+	 * into a reusable byte buffer and written out with a single write per
+	 * strip. When the <code>{@value #WRITER_THREADS_KEY}</code> system
+	 * property is greater than 1, the rows of each strip are formatted in
+	 * parallel by that number of threads.
+	 * 
+	 * @param image
+	 *            the {@link RenderedImage} to write, only its first band is
+	 *            written.
+	 * @param noData
+	 *            the value representing noData.
+	 * @param noDataMarker
+	 *            a <code>String</code> which need to be printed when founding
+	 *            a noData value
+	 * @throws IOException
+	 */
+	public void writeRaster(final RenderedImage image, final double noData,
+			final String noDataMarker) throws IOException {
 
-				iterator.nextPixel();
+		final boolean hasListeners = writer.isHasListeners();
+		if (hasListeners && abortRequired) {
+			return;
+		}
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int minX = image.getMinX();
+		final int minY = image.getMinY();
+		final int stripHeight = Math.max(1, Math.min(height, STRIP_SAMPLES / width));
+		final double[] samples = new double[stripHeight * width];
+		final AsciiGridRowFormatter formatter = new AsciiGridRowFormatter(noData, noDataMarker);
+		final RowStripWriter.RowFormatter stripFormatter = new RowStripWriter.RowFormatter() {
+			public void format(int firstRow, int rows, FastByteArrayWrapper out) {
+				formatter.format(samples, firstRow * width, width, rows, out);
+			}
+		};
 
-				// space
-				if (!iterator.finishedPixels())
-					imageOS.write(32);
+		// //
+		//
+		// Parallel formatting of the rows of each strip?
+		//
+		// //
+		final RowStripWriter stripWriter = new RowStripWriter(
+				Integer.getInteger(WRITER_THREADS_KEY, 1).intValue(), stripHeight, width * 8);
+		for (int y = 0; y < height; y += stripHeight) {
+			final int rows = Math.min(stripHeight, height - y);
+			image.getData(new Rectangle(minX, minY + y, width, rows))
+					.getSamples(minX, minY + y, width, rows, 0, samples);
+			stripWriter.write(stripFormatter, rows, imageOS);
 
+			if (hasListeners) {
+				if (abortRequired) {
+					return;
+				}
+				writer.processImageProgress(((y + rows) * 100f) / height);
 			}
-
-			imageOS.writeBytes(newline);
-			iterator.nextLine();
-			iterator.startPixels();
 		}
 	}
 
@@ -0,0 +1,90 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.plugins.arcgrid.raster;
+
+import it.geosolutions.imageio.utilities.DoubleToByteArray;
+import it.geosolutions.imageio.utilities.FastByteArrayWrapper;
+
+/**
+ * Formats rows of samples of an ASCII grid straight into a byte buffer.
+ *
+ * <p>
+ * Samples are written using the shortest representation which parses back to
+ * the same value, noData samples (as well as NaN and infinite ones) are
+ * replaced by the noData marker, samples are separated by a single space and
+ * rows are terminated by the OS-dependent line separator.
+ *
+ * <p>
+ * Instances are immutable and can be shared among threads formatting
+ * different rows, each one with its own {@link FastByteArrayWrapper}.
+ */
+final class AsciiGridRowFormatter {
+
+	/** Bits of the noData value, to compare samples as {@link Double#compareTo} does. */
+	private final long noDataBits;
+
+	private final byte[] noDataMarker;
+
+	private final byte[] newline;
+
+	/**
+	 * @param noData
+	 *            the value representing noData.
+	 * @param noDataMarker
+	 *            the <code>String</code> to write in place of noData values.
+	 */
+	AsciiGridRowFormatter(final double noData, final String noDataMarker) {
+		this.noDataBits = Double.doubleToLongBits(noData);
+		this.noDataMarker = noDataMarker.getBytes();
+		this.newline = AsciiGridRaster.newline.getBytes();
+	}
+
+	/**
+	 * Appends <code>rows</code> rows to the provided buffer.
+	 *
+	 * @param samples
+	 *            the samples, row after row.
+	 * @param offset
+	 *            the index of the first sample of the first row to format.
+	 * @param width
+	 *            the number of samples of each row.
+	 * @param rows
+	 *            the number of rows to format.
+	 * @param out
+	 *            the buffer to append to.
+	 */
+	void format(final double[] samples, int offset, final int width,
+			final int rows, final FastByteArrayWrapper out) {
+		for (int row = 0; row < rows; row++) {
+			// the worst case for a row, so that the buffer grows just once
+			out.ensureRemaining(width
+					* (Math.max(DoubleToByteArray.MAX_LENGTH, noDataMarker.length) + 1)
+					+ newline.length);
+			for (int i = 0; i < width; i++, offset++) {
+				final double sample = samples[offset];
+				if (i > 0)
+					out.write(32);
+				if (Double.doubleToLongBits(sample) != noDataBits
+						&& !Double.isNaN(sample) && !Double.isInfinite(sample))
+					DoubleToByteArray.append(out, sample);
+				else
+					out.write(noDataMarker, 0, noDataMarker.length);
+			}
+			out.write(newline, 0, newline.length);
+		}
+	}
+}
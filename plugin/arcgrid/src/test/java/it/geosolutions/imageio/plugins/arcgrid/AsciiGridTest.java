@@ -17,26 +17,41 @@
 package it.geosolutions.imageio.plugins.arcgrid;
 
 import it.geosolutions.imageio.plugins.arcgrid.AsciiGridsImageMetadata.RasterSpaceType;
+import it.geosolutions.imageio.plugins.arcgrid.raster.AsciiGridIndex;
 import it.geosolutions.imageio.plugins.arcgrid.raster.AsciiGridRaster;
+import it.geosolutions.imageio.plugins.arcgrid.spi.AsciiGridsImageReaderSpi;
+import it.geosolutions.imageio.plugins.arcgrid.spi.AsciiGridsImageWriterSpi;
 import it.geosolutions.imageio.utilities.ImageIOUtilities;
 import it.geosolutions.resources.TestData;
 
 import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.media.jai.JAI;
 import javax.media.jai.ParameterBlockJAI;
 import javax.media.jai.RenderedOp;
@@ -103,6 +118,12 @@ public class AsciiGridTest extends TestCase {
         // Read an ESRI ArcGrid file and write it back to GRASS
         suite.addTest(new AsciiGridTest("testReadAsEsriAndWriteAsGrass"));
 
+        // Read an ArcGrid file through its sidecar index
+        suite.addTest(new AsciiGridTest("testIndexedRead"));
+
+        // Write the same raster with one and more formatting threads
+        suite.addTest(new AsciiGridTest("testWriteThreads"));
+
         return suite;
     }
 
@@ -248,6 +269,118 @@ public class AsciiGridTest extends TestCase {
         assertTrue(error[0], result);
     }
 
+    /**
+     * Read an ArcGrid file through its sidecar index
+     */
+    public void testIndexedRead() throws FileNotFoundException, IOException {
+        final File testFile = TestData.file(this, "095b_dem_90m.asc");
+        final File indexFile = AsciiGridIndex.getIndexFile(testFile);
+        indexFile.delete();
+        final Rectangle region = new Rectangle(10, 200, 50, 40);
+        System.setProperty(AsciiGridIndex.INDEX_ENABLED_KEY, "true");
+        try {
+            // a full scan stores the index
+            AsciiGridsImageReader reader = new AsciiGridsImageReader(new AsciiGridsImageReaderSpi());
+            reader.setInput(testFile);
+            reader.readRaster(0, null);
+            final double min = reader.getRasterReader().getMinValue();
+            final double max = reader.getRasterReader().getMaxValue();
+            assertTrue(reader.getRasterReader().isStatisticsComplete());
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            final Raster expected = reader.readRaster(0, param);
+            reader.dispose();
+            assertTrue(indexFile.exists());
+
+            // a new reader restores header, statistics and row positions
+            reader = new AsciiGridsImageReader(new AsciiGridsImageReaderSpi());
+            reader.setInput(testFile);
+            final AsciiGridRaster raster = reader.getRasterReader();
+            assertTrue(raster.isStatisticsComplete());
+            assertEquals(min, raster.getMinValue(), DELTA);
+            assertEquals(max, raster.getMaxValue(), DELTA);
+            param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            final Raster indexed = reader.readRaster(0, param);
+            reader.dispose();
+            assertEquals(expected.getWidth(), indexed.getWidth());
+            assertEquals(expected.getHeight(), indexed.getHeight());
+            for (int y = 0; y < expected.getHeight(); y++)
+                for (int x = 0; x < expected.getWidth(); x++)
+                    assertEquals(expected.getSampleDouble(x, y, 0), indexed.getSampleDouble(x, y, 0), DELTA);
+        } finally {
+            System.clearProperty(AsciiGridIndex.INDEX_ENABLED_KEY);
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * Write the same raster formatting its rows with one and more threads
+     */
+    public void testWriteThreads() throws IOException {
+        final int width = 300;
+        final int height = 1000;
+        final double noData = -9999;
+        final double[] specials = { noData, Double.NaN, Double.NEGATIVE_INFINITY,
+                -0.5, -1.25E-5, 3.0E-4, 1.0E7, 6.02214076E23, Double.MIN_NORMAL,
+                -Double.MAX_VALUE };
+        final ComponentColorModel cm = new ComponentColorModel(
+                ColorSpace.getInstance(ColorSpace.CS_GRAY), false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_DOUBLE);
+        final WritableRaster raster = cm.createCompatibleWritableRaster(width, height);
+
+        // the output of the writer formatting each sample through Double.toString
+        final String noDataMarker = Double.toString(noData);
+        final StringBuilder expected = new StringBuilder();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final double value = (x + y) % 7 == 0 ? specials[(x * 31 + y) % specials.length]
+                        : (x - 150) * 0.25 + y * 1.5E-3;
+                raster.setSample(x, y, 0, value);
+                if (x > 0)
+                    expected.append(' ');
+                if (value == noData || Double.isNaN(value) || Double.isInfinite(value))
+                    expected.append(noDataMarker);
+                else
+                    expected.append(Double.toString(value));
+            }
+            expected.append(AsciiGridRaster.newline);
+        }
+        final BufferedImage image = new BufferedImage(cm, raster, false, null);
+
+        final byte[] single = write(image, noData, 1);
+        final byte[] parallel = write(image, noData, 4);
+        assertTrue("Rows formatted in parallel differ", Arrays.equals(single, parallel));
+        final String written = new String(single, "US-ASCII");
+        assertTrue("Unexpected samples", written.endsWith(expected.toString()));
+    }
+
+    private static byte[] write(final RenderedImage image, final double noData,
+            final int threads) throws IOException {
+        final String previous = System.getProperty(AsciiGridRaster.WRITER_THREADS_KEY);
+        System.setProperty(AsciiGridRaster.WRITER_THREADS_KEY, Integer.toString(threads));
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ImageOutputStream stream = new MemoryCacheImageOutputStream(bytes);
+            final ImageWriter writer = new AsciiGridsImageWriterSpi().createWriterInstance();
+            try {
+                writer.setOutput(stream);
+                final AsciiGridsImageMetadata metadata = new AsciiGridsImageMetadata(
+                        image.getWidth(), image.getHeight(), 1, 1, 0, 0, true, false, noData);
+                writer.write(null, new IIOImage(image, null, metadata), null);
+            } finally {
+                stream.close();
+                writer.dispose();
+            }
+            return bytes.toByteArray();
+        } finally {
+            if (previous != null)
+                System.setProperty(AsciiGridRaster.WRITER_THREADS_KEY, previous);
+            else
+                System.clearProperty(AsciiGridRaster.WRITER_THREADS_KEY);
+        }
+    }
+
     /**
      * Read a GRASS, compressed (GZ) file
      */
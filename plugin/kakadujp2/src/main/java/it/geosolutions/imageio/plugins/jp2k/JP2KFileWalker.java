@@ -19,27 +19,28 @@ package it.geosolutions.imageio.plugins.jp2k;
 import it.geosolutions.imageio.plugins.jp2k.box.BoxUtilities;
 import it.geosolutions.imageio.plugins.jp2k.box.JP2KFileBox;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeModel;
 
-import kdu_jni.Jp2_family_src;
-import kdu_jni.Jp2_input_box;
-import kdu_jni.Jp2_locator;
-import kdu_jni.KduException;
-
 /**
  * Parses a JP2K File into a TreeModel of boxes.
  * 
  * <p>
  * Note that for the moment we are doing basic parsing which means that we try
- * to recognize as many boxes as possible but we uses the {@link Jp2_family_src}
- * object from kakadu. In the future we should allow this file walker to walk
- * through fragmented codestream as in general JPX files.
+ * to recognize as many boxes as possible. Only the box headers are read while
+ * walking the file, the content of each box being read by its
+ * {@link LazyJP2KBox} when needed, therefore no Kakadu machinery is involved.
+ * In the future we should allow this file walker to walk through fragmented
+ * codestream as in general JPX files.
  * 
  * @author Simone Giannecchini, GeoSolutions
  * 
@@ -65,11 +66,6 @@ class JP2KFileWalker {
      */
     private String fileName;
 
-    /**
-     * Object used to parse the underlying file.
-     */
-    private Jp2_family_src familySource;
-
     /**
      * 
      */
@@ -84,19 +80,11 @@ class JP2KFileWalker {
         if (this.initialized)
             return;
 
-        // //
-        //
-        // create needed kakadu machinery
-        //
-        // //
-        familySource = new Jp2_family_src();
-        final Jp2_input_box inputBox = new Jp2_input_box();
-        final Jp2_locator locator = new Jp2_locator();
         List<? extends Throwable> exceptions = Collections.emptyList();
-
+        ImageInputStream stream = null;
         try {
-            // open the family
-            familySource.Open(fileName);
+            // open the file
+            stream = new FileImageInputStream(new File(fileName));
 
             // create the needed objects
             final JP2KFileBox box = new JP2KFileBox();
@@ -107,31 +95,20 @@ class JP2KFileWalker {
             this.tree.addTreeModelListener(controller);
 
             // recursive parsing
-            if (inputBox.Open(familySource, locator)) {
-                parse(inputBox, box, 0);
-            }
+            parse(stream, box, 0, stream.length());
             
             controller.checkTreeConsistency();
-            // clean up
-            inputBox.Close();
+            this.initialized = true;
 
-        } catch (KduException e) {
+        } catch (IOException e) {
             throw new RuntimeException(
-                    "Error caused by a Kakadu exception during Box management! ",
+                    "Error caused by an I/O exception during Box management! ",
                     e);
         } finally {
             // clean up
             try {
-                familySource.Close();
-            } catch (Exception e) {
-                if (LOGGER.isLoggable(Level.FINEST))
-                    LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
-            }
-
-            try {
-                if (inputBox != null)
-                    inputBox.Close();
-
+                if (stream != null)
+                    stream.close();
             } catch (Exception e) {
                 if (LOGGER.isLoggable(Level.FINEST))
                     LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
@@ -145,35 +122,51 @@ class JP2KFileWalker {
     }
 
     /**
-     * Parses this box, his brothers as well as his children recursively.
+     * Parses the boxes found between two positions of the file, as well as
+     * their children recursively.
      * 
-     * @param inputBox
-     *                the box to begin the parsing with.
+     * @param stream
+     *                the stream to read the box headers from.
      * @param parent
-     *                the parent box to which attach this box as well as its
-     *                brothers.
-     * @param index
-     *                the index at which this box should be attached in his
-     *                father's children list.
-     * @throws KduException
-     *                 in case any problem with the low level machinery happens.
+     *                the parent box to which attach the boxes.
+     * @param start
+     *                the position of the first box.
+     * @param end
+     *                the position where the last box ends, the end of the
+     *                file for the top level boxes.
+     * @throws IOException
+     *                 in case the box headers cannot be read.
      */
-    private void parse(final Jp2_input_box inputBox, final JP2KBox parent,
-            int index) throws KduException {
-        final Jp2_input_box childBox = new Jp2_input_box();
-        try {
+    private void parse(final ImageInputStream stream, final JP2KBox parent,
+            final long start, final long end) throws IOException {
+        int index = 0;
+        long position = start;
+        while (position + 8 <= end) {
 
             // //
             //
             // get the info for this box
             //
             // //
-            final int boxtype = (int) (0xffffffff & inputBox.Get_box_type());
+            stream.seek(position);
+            long boxLength = stream.readUnsignedInt();
+            final int boxtype = stream.readInt();
+            int headerLength = 8;
+            if (boxLength == 1) {
+                boxLength = stream.readLong();
+                headerLength = 16;
+            } else if (boxLength == 0) {
+                // the box extends up to the end of its container
+                boxLength = end - position;
+            }
+            if (boxLength < headerLength || position + boxLength > end) {
+                throw new IOException("Invalid length for box "
+                        + BoxUtilities.getTypeString(boxtype));
+            }
             final String typeString = BoxUtilities.getTypeString(boxtype);
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.fine("Found box " + typeString);
             }
-            LazyJP2KBox currentBox = null;
 
             // //
             //
@@ -181,71 +174,35 @@ class JP2KFileWalker {
             //
             // //
             if (BoxUtilities.boxNames.containsKey(boxtype)) {
-                final Jp2_locator locator = inputBox.Get_locator();
 
                 // created a lazily loaded box
-                currentBox = new LazyJP2KBox(this.fileName, boxtype, locator);
+                final LazyJP2KBox currentBox = new LazyJP2KBox(this.fileName,
+                        boxtype, position + headerLength, boxLength
+                                - headerLength);
                 parent.insert(currentBox, index++);
                 this.tree.nodesWereInserted(parent, new int[] { index - 1 });
+
+                // //
+                //
+                // check children
+                //
+                // //
+                if (BoxUtilities.SUPERBOX_NAMES.contains(typeString)) {
+                    parse(stream, currentBox, position + headerLength,
+                            position + boxLength);
+                }
             } else {
                 if (LOGGER.isLoggable(Level.INFO)) {
                     LOGGER.info("Box of type " + typeString + " cannot be handled by this file type reader");
                 }
             }
 
-            // //
-            //
-            // check children
-            //
-            // //
-            // reopen box
-            if (BoxUtilities.SUPERBOX_NAMES.contains(typeString)) {
-                if (childBox.Open(inputBox)) {
-                    if (childBox.Exists()) {
-                        parse(childBox, currentBox, 0);
-                    }
-                    // close box
-                    childBox.Close();
-                }
-            }
-
             // //
             //
             // check next
             //
             // //
-            // close box
-            inputBox.Close();
-            if (inputBox.Open_next()) {
-                if (inputBox.Exists()) {
-                    parse(inputBox, parent, index);
-                }
-
-            }
-
-        } catch (KduException e) {
-            throw new RuntimeException(
-                    "Error caused by a Kakadu exception during Box management! ",
-                    e);
-        } finally {
-            // clean up
-            try {
-                if (childBox != null)
-                    childBox.Close();
-
-            } catch (Exception e) {
-                if (LOGGER.isLoggable(Level.FINEST))
-                    LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
-            }
-
-            try {
-                if (inputBox != null)
-                    inputBox.Close();
-
-            } catch (Exception e) {
-                if (LOGGER.isLoggable(Level.FINEST))
-                    LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
-            }
+            position += boxLength;
         }
     }
 
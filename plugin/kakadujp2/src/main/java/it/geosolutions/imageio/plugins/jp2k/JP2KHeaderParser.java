@@ -0,0 +1,401 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.plugins.jp2k;
+
+import it.geosolutions.imageio.plugins.jp2k.box.BoxUtilities;
+import it.geosolutions.imageio.plugins.jp2k.box.ContiguousCodestreamBox;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Pure Java parser of the JP2 box headers and of the SIZ and COD/COC marker
+ * segments of the codestreams, providing the properties needed to answer
+ * size, tiling and resolution questions without opening the file through
+ * Kakadu.
+ *
+ * <p>
+ * Only the box headers are read, skipping the box contents, and only the
+ * main header of each codestream is parsed, together with the first
+ * tile-part header which may override the number of quality layers and
+ * decomposition levels. Parsed files are cached, at most
+ * <code>it.geosolutions.imageio.plugins.jp2k.headerCacheSize</code> of them
+ * (256 by default), and the cached entries are discarded as soon as the
+ * length or the last modification time of the file changes.
+ *
+ * <p>
+ * JPX files whose codestreams are referenced through fragment tables are
+ * not supported, in which case {@link #parse(File, boolean)} returns
+ * <code>null</code> and the Kakadu machinery has to be used instead.
+ */
+final class JP2KHeaderParser {
+
+    /** {@link Logger} for this {@link JP2KHeaderParser}. */
+    private final static Logger LOGGER = Logger.getLogger("JP2KHeaderParser");
+
+    private final static int CACHE_SIZE = Integer.getInteger(
+            "it.geosolutions.imageio.plugins.jp2k.headerCacheSize", 256);
+
+    /** Fragment table box type, 'ftbl'. */
+    private final static int FRAGMENT_TABLE_BOX_TYPE = 0x6674626c;
+
+    private final static int SOC = 0xFF4F;
+
+    private final static int SIZ = 0xFF51;
+
+    private final static int COD = 0xFF52;
+
+    private final static int COC = 0xFF53;
+
+    private final static int SOT = 0xFF90;
+
+    private final static int SOD = 0xFF93;
+
+    private final static int EOC = 0xFFD9;
+
+    private final static Map<String, Header> CACHE = new LinkedHashMap<String, Header>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Header> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The properties of a codestream, as found in its headers.
+     */
+    final static class CodestreamHeader {
+
+        private final int width;
+
+        private final int height;
+
+        private final int tileWidth;
+
+        private final int tileHeight;
+
+        private final int[] bitsPerComponent;
+
+        private final boolean signed;
+
+        private final int sourceDWTLevels;
+
+        private final int qualityLayers;
+
+        private CodestreamHeader(final int width, final int height,
+                final int tileWidth, final int tileHeight,
+                final int[] bitsPerComponent, final boolean signed,
+                final int sourceDWTLevels, final int qualityLayers) {
+            this.width = width;
+            this.height = height;
+            this.tileWidth = tileWidth;
+            this.tileHeight = tileHeight;
+            this.bitsPerComponent = bitsPerComponent;
+            this.signed = signed;
+            this.sourceDWTLevels = sourceDWTLevels;
+            this.qualityLayers = qualityLayers;
+        }
+
+        /**
+         * Sets the size-related, component and resolution properties of the
+         * provided {@link JP2KCodestreamProperties}, as done by the reader
+         * through Kakadu.
+         */
+        void setProperties(final JP2KCodestreamProperties codestreamP) {
+            int tw = tileWidth;
+            int th = tileHeight;
+
+            // Tuning tiles in case the tile size is greater than the
+            // maximum integer
+            if ((float) tw * th >= Integer.MAX_VALUE) {
+                th = 1024;
+                tw = 1024;
+            }
+            codestreamP.setTileWidth(tw);
+            codestreamP.setTileHeight(th);
+            codestreamP.setWidth(width);
+            codestreamP.setHeight(height);
+
+            final int nComponents = bitsPerComponent.length;
+            int maxBitDepth = -1;
+            final int[] componentIndexes = new int[nComponents];
+            for (int i = 0; i < nComponents; i++) {
+                if (maxBitDepth < bitsPerComponent[i]) {
+                    maxBitDepth = bitsPerComponent[i];
+                }
+                componentIndexes[i] = i;
+            }
+            codestreamP.setNumComponents(nComponents);
+            codestreamP.setBitsPerComponent(bitsPerComponent.clone());
+            codestreamP.setComponentIndexes(componentIndexes);
+            codestreamP.setMaxBitDepth(maxBitDepth);
+            codestreamP.setSigned(signed);
+            codestreamP.setSourceDWTLevels(sourceDWTLevels);
+            codestreamP.setMaxSupportedSubSamplingFactor(1 << sourceDWTLevels);
+            codestreamP.setMaxAvailableQualityLayers(qualityLayers);
+        }
+    }
+
+    /**
+     * The codestreams found in a file.
+     */
+    final static class Header {
+
+        private final long length;
+
+        private final long lastModified;
+
+        private final boolean rawSource;
+
+        private final CodestreamHeader[] codestreams;
+
+        private Header(final long length, final long lastModified,
+                final boolean rawSource, final CodestreamHeader[] codestreams) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.rawSource = rawSource;
+            this.codestreams = codestreams;
+        }
+
+        /**
+         * Tells whether the file is a raw codestream rather than a JP2 family
+         * file.
+         */
+        boolean isRawSource() {
+            return rawSource;
+        }
+
+        int getNumCodestreams() {
+            return codestreams.length;
+        }
+
+        CodestreamHeader getCodestream(final int index) {
+            return codestreams[index];
+        }
+    }
+
+    private JP2KHeaderParser() {
+    }
+
+    /**
+     * Parses the headers of the provided file.
+     *
+     * @param file
+     *                the JP2 family file or raw codestream to parse.
+     * @param cache
+     *                whether the result should be looked up in and stored
+     *                into the cache, temporary files should not be.
+     * @return the parsed {@link Header} or <code>null</code> if the file
+     *         cannot be handled by this parser.
+     */
+    static Header parse(final File file, final boolean cache) {
+        final String key = file.getAbsolutePath();
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        if (cache) {
+            synchronized (CACHE) {
+                final Header header = CACHE.get(key);
+                if (header != null && header.length == length
+                        && header.lastModified == lastModified) {
+                    return header;
+                }
+            }
+        }
+
+        Header header = null;
+        ImageInputStream stream = null;
+        try {
+            stream = new FileImageInputStream(file);
+            header = parse(stream, length, lastModified);
+        } catch (IOException e) {
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.log(Level.FINE, "Unable to parse the headers of "
+                        + key, e);
+        } catch (RuntimeException e) {
+            // malformed headers
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.log(Level.FINE, "Unable to parse the headers of "
+                        + key, e);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    if (LOGGER.isLoggable(Level.FINEST))
+                        LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
+                }
+            }
+        }
+
+        if (cache && header != null) {
+            synchronized (CACHE) {
+                CACHE.put(key, header);
+            }
+        }
+        return header;
+    }
+
+    private static Header parse(final ImageInputStream stream,
+            final long length, final long lastModified) throws IOException {
+        if (stream.readUnsignedShort() == SOC) {
+            stream.seek(0);
+            return new Header(length, lastModified, true,
+                    new CodestreamHeader[] { parseCodestream(stream) });
+        }
+
+        // //
+        //
+        // Look for the contiguous codestream boxes at the top level
+        //
+        // //
+        final List<CodestreamHeader> codestreams = new ArrayList<CodestreamHeader>();
+        long position = 0;
+        while (position + 8 <= length) {
+            stream.seek(position);
+            long boxLength = stream.readUnsignedInt();
+            final int boxType = stream.readInt();
+            int headerLength = 8;
+            if (boxLength == 1) {
+                boxLength = stream.readLong();
+                headerLength = 16;
+            } else if (boxLength == 0) {
+                boxLength = length - position;
+            }
+            if (boxLength < headerLength) {
+                throw new IOException("Invalid length for box "
+                        + BoxUtilities.getTypeString(boxType));
+            }
+
+            if (boxType == ContiguousCodestreamBox.BOX_TYPE) {
+                codestreams.add(parseCodestream(stream));
+            } else if (boxType == FRAGMENT_TABLE_BOX_TYPE) {
+                return null;
+            }
+            position += boxLength;
+        }
+
+        if (codestreams.isEmpty())
+            return null;
+        return new Header(length, lastModified, false, codestreams
+                .toArray(new CodestreamHeader[codestreams.size()]));
+    }
+
+    /**
+     * Parses the main header of the codestream starting at the current
+     * position of the stream.
+     */
+    private static CodestreamHeader parseCodestream(final ImageInputStream stream)
+            throws IOException {
+        if (stream.readUnsignedShort() != SOC)
+            throw new IOException("Missing SOC marker");
+
+        // SIZ is required to follow SOC
+        if (stream.readUnsignedShort() != SIZ)
+            throw new IOException("Missing SIZ marker");
+        long next = stream.getStreamPosition() + stream.readUnsignedShort();
+        stream.skipBytes(2); // Rsiz
+        final long xsiz = stream.readUnsignedInt();
+        final long ysiz = stream.readUnsignedInt();
+        final long xosiz = stream.readUnsignedInt();
+        final long yosiz = stream.readUnsignedInt();
+        final long xtsiz = stream.readUnsignedInt();
+        final long ytsiz = stream.readUnsignedInt();
+        final long xtosiz = stream.readUnsignedInt();
+        final long ytosiz = stream.readUnsignedInt();
+        final int nComponents = stream.readUnsignedShort();
+        final int[] bitsPerComponent = new int[nComponents];
+        boolean signed = false;
+        for (int i = 0; i < nComponents; i++) {
+            final int ssiz = stream.readUnsignedByte();
+            bitsPerComponent[i] = (ssiz & 0x7F) + 1;
+            signed |= (ssiz & 0x80) != 0;
+            stream.skipBytes(2); // XRsiz, YRsiz
+        }
+
+        // the first tile, clipped to the image area
+        final long tileWidth = Math.min(xtosiz + xtsiz, xsiz)
+                - Math.max(xtosiz, xosiz);
+        final long tileHeight = Math.min(ytosiz + ytsiz, ysiz)
+                - Math.max(ytosiz, yosiz);
+
+        // //
+        //
+        // Main header and first tile-part header coding styles
+        //
+        // //
+        int layers = -1;
+        int levels = -1;
+        final int[] componentLevels = new int[nComponents];
+        for (int i = 0; i < nComponents; i++)
+            componentLevels[i] = -1;
+        boolean tilePart = false;
+        while (true) {
+            stream.seek(next);
+            final int marker = stream.readUnsignedShort();
+            if (marker == SOD || marker == EOC)
+                break;
+            if (marker == SOT) {
+                if (tilePart)
+                    break;
+                tilePart = true;
+            }
+            final int segmentLength = stream.readUnsignedShort();
+            next = stream.getStreamPosition() + segmentLength - 2;
+            if (marker == COD) {
+                stream.skipBytes(2); // Scod, progression order
+                layers = stream.readUnsignedShort();
+                stream.skipBytes(1); // multiple component transform
+                final int codLevels = stream.readUnsignedByte();
+                levels = tilePart && levels >= 0 ? Math.min(levels, codLevels)
+                        : codLevels;
+            } else if (marker == COC) {
+                final int component = nComponents < 257 ? stream
+                        .readUnsignedByte() : stream.readUnsignedShort();
+                stream.skipBytes(1); // Scoc
+                final int cocLevels = stream.readUnsignedByte();
+                if (component < nComponents) {
+                    componentLevels[component] = tilePart
+                            && componentLevels[component] >= 0 ? Math.min(
+                            componentLevels[component], cocLevels) : cocLevels;
+                }
+            }
+        }
+        if (levels < 0 || layers < 0)
+            throw new IOException("Missing COD marker");
+
+        int minLevels = levels;
+        for (int i = 0; i < nComponents; i++) {
+            if (componentLevels[i] >= 0 && componentLevels[i] < minLevels)
+                minLevels = componentLevels[i];
+        }
+
+        return new CodestreamHeader((int) (xsiz - xosiz), (int) (ysiz - yosiz),
+                (int) tileWidth, (int) tileHeight, bitsPerComponent, signed,
+                minLevels, layers);
+    }
+}
@@ -265,6 +265,14 @@ public class JP2KKakaduImageReader extends ImageReader {
         //
         // ///////////////////////////////////////////////////////////
         JP2KCodestreamProperties codestreamP = multipleCodestreams.get(imageIndex);
+        if (codestreamP.getColorModel() == null || codestreamP.getSampleModel() == null) {
+            try {
+                initializeSampleModelAndColorModel(codestreamP);
+            } catch (KduException kdue) {
+                throw new RuntimeException(
+                        "Error while setting sample and color model", kdue);
+            }
+        }
         final int maxAvailableQualityLayers = codestreamP.getMaxAvailableQualityLayers();
         final int[] componentIndexes = codestreamP.getComponentIndexes();
         final int nComponents = codestreamP.getNumComponents();
@@ -857,9 +865,39 @@ public class JP2KKakaduImageReader extends ImageReader {
 
         // //
         //
-        // Open it up
+        // Open it up, through the headers when possible
         //
         // //
+        final JP2KHeaderParser.Header header = JP2KHeaderParser.parse(
+                inputFile, !deleteInputFile);
+        if (header != null) {
+            isRawSource = header.isRawSource();
+            numImages = header.getNumCodestreams();
+            if (!isRawSource)
+                fileWalker = new JP2KFileWalker(this.fileName);
+            for (int cs = 0; cs < numImages; cs++) {
+                final JP2KCodestreamProperties codestreamP = new JP2KCodestreamProperties();
+                header.getCodestream(cs).setProperties(codestreamP);
+                multipleCodestreams.add(codestreamP);
+            }
+        } else {
+            openWithKakadu();
+        }
+
+        // //
+        //
+        // Setting input for superclass
+        //
+        // //
+        super.setInput(input, seekForwardOnly, ignoreMetadata);
+    }
+
+    /**
+     * Initializes the codestreams properties by opening the input file
+     * through Kakadu, for the sources {@link JP2KHeaderParser} cannot
+     * handle.
+     */
+    private void openWithKakadu() {
         Kdu_simple_file_source rawSource = null; // Must be disposed last
         final Jp2_family_src familySource = new Jp2_family_src(); // Dispose
         // last
@@ -980,7 +1018,6 @@ public class JP2KKakaduImageReader extends ImageReader {
                 codestream.Open_tile(tileCoords);
                 codestreamP.setMaxAvailableQualityLayers(codestream
                         .Get_max_tile_layers());
-                initializeSampleModelAndColorModel(codestreamP);
                 codestream.Destroy();
                 multipleCodestreams.add(codestreamP);
 
@@ -1035,13 +1072,6 @@ public class JP2KKakaduImageReader extends ImageReader {
                 }
             }
         }
-
-        // //
-        //
-        // Setting input for superclass
-        //
-        // //
-        super.setInput(input, seekForwardOnly, ignoreMetadata);
     }
 
     /**
@@ -18,11 +18,15 @@ package it.geosolutions.imageio.plugins.jp2k;
 
 import it.geosolutions.imageio.plugins.jp2k.box.BoxUtilities;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.tree.DefaultMutableTreeNode;
 
 import kdu_jni.Jp2_family_src;
@@ -34,6 +38,11 @@ import kdu_jni.KduException;
  * {@link JP2KBox} which is loaded lazily, which means only when the content is
  * needed.
  * 
+ * <p>
+ * The box is located either through a Kakadu {@link Jp2_locator} or through
+ * the position and length of its content in the file, in which case the
+ * content is read with plain Java I/O.
+ * 
  * @author Simone Giannecchini, GeoSolutions
  * 
  */
@@ -64,6 +73,11 @@ class LazyJP2KBox extends DefaultMutableTreeNode implements JP2KBoxMetadata {
 
     private final Jp2_locator locator;
 
+    /** Position of the content in the file, used when there is no locator. */
+    private final long contentOffset;
+
+    private final long contentLength;
+
     private int type;
 
     private SoftReference<? extends JP2KBox> boxRef;
@@ -85,6 +99,29 @@ class LazyJP2KBox extends DefaultMutableTreeNode implements JP2KBoxMetadata {
         this.filename = filename;
         this.locator = locator;
         this.type = type;
+        this.contentOffset = -1;
+        this.contentLength = -1;
+    }
+
+    /**
+     * Build a new {@link LazyJP2KBox} whose content is read without Kakadu.
+     * 
+     * @param filename
+     *                the input filename
+     * @param type
+     *                the box type
+     * @param contentOffset
+     *                the position of the box content in the file.
+     * @param contentLength
+     *                the length of the box content.
+     */
+    LazyJP2KBox(final String filename, final int type,
+            final long contentOffset, final long contentLength) {
+        this.filename = filename;
+        this.locator = null;
+        this.type = type;
+        this.contentOffset = contentOffset;
+        this.contentLength = contentLength;
     }
 
     /**
@@ -103,7 +140,10 @@ class LazyJP2KBox extends DefaultMutableTreeNode implements JP2KBoxMetadata {
 
     private synchronized JP2KBox loadBox() {
         JP2KBox retVal = this.boxRef == null ? null : this.boxRef.get();
-        if (retVal == null) {
+        if (retVal == null && locator == null) {
+            retVal = BoxUtilities.createBox(type, readContent());
+            this.boxRef = new SoftReference<JP2KBox>(retVal);
+        } else if (retVal == null) {
             final Jp2_family_src familySource = new Jp2_family_src();
             final Jp2_input_box box = new Jp2_input_box();
             try {
@@ -145,6 +185,36 @@ class LazyJP2KBox extends DefaultMutableTreeNode implements JP2KBoxMetadata {
 
     }
 
+    /**
+     * Reads the content of this box from the file.
+     */
+    private byte[] readContent() {
+        if (contentLength > Integer.MAX_VALUE)
+            throw new IllegalStateException("Box "
+                    + BoxUtilities.getTypeString(type) + " is too large");
+        ImageInputStream stream = null;
+        try {
+            stream = new FileImageInputStream(new File(filename));
+            final byte[] content = new byte[(int) contentLength];
+            stream.seek(contentOffset);
+            stream.readFully(content);
+            return content;
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    "Error while reading the content of the box "
+                            + BoxUtilities.getTypeString(type), e);
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    if (LOGGER.isLoggable(Level.FINEST))
+                        LOGGER.log(Level.FINEST, e.getLocalizedMessage(), e);
+                }
+            }
+        }
+    }
+
     /**
      * @see it.geosolutions.imageio.plugins.jp2k.box.JP2KBox#getExtraLength()
      */
@@ -196,6 +266,8 @@ class LazyJP2KBox extends DefaultMutableTreeNode implements JP2KBoxMetadata {
     @Override
     public Object clone() {
 //        LazyJP2KBox newBox = (LazyJP2KBox)super.clone();
+        if (this.locator == null)
+            return new LazyJP2KBox(filename, type, contentOffset, contentLength);
         Jp2_locator locator = new Jp2_locator();
         try {
             final long filePos = this.locator.Get_file_pos();
@@ -26,6 +26,7 @@ import java.io.IOException;
 
 import javax.imageio.metadata.IIOMetadata;
 
+import org.junit.Assert;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
@@ -110,6 +111,47 @@ public class JP2BoxesTest extends AbstractJP2KakaduTestCase {
 
     }
 
+    @org.junit.Test
+    public void testHeaders() throws IOException {
+        File file = TestData.file(this, fileName);
+
+        // headers are parsed without any native machinery
+        final JP2KHeaderParser.Header header = JP2KHeaderParser.parse(file, true);
+        Assert.assertNotNull(header);
+        Assert.assertFalse(header.isRawSource());
+        Assert.assertEquals(1, header.getNumCodestreams());
+        Assert.assertSame(header, JP2KHeaderParser.parse(file, true));
+
+        final JP2KCodestreamProperties codestreamP = new JP2KCodestreamProperties();
+        header.getCodestream(0).setProperties(codestreamP);
+        Assert.assertEquals(640, codestreamP.getWidth());
+        Assert.assertEquals(480, codestreamP.getHeight());
+        Assert.assertEquals(3, codestreamP.getNumComponents());
+        Assert.assertEquals(8, codestreamP.getMaxBitDepth());
+        Assert.assertEquals(5, codestreamP.getSourceDWTLevels());
+        Assert.assertEquals(8, codestreamP.getMaxAvailableQualityLayers());
+
+        final JP2KCodestreamProperties rawP = new JP2KCodestreamProperties();
+        final JP2KHeaderParser.Header rawHeader = JP2KHeaderParser.parse(
+                TestData.file(this, "raw.j2c"), false);
+        Assert.assertTrue(rawHeader.isRawSource());
+        rawHeader.getCodestream(0).setProperties(rawP);
+        Assert.assertEquals(128, rawP.getWidth());
+        Assert.assertEquals(128, rawP.getHeight());
+
+        if (!runTests)
+            return;
+        JP2KKakaduImageReader reader = new JP2KKakaduImageReader(
+                new JP2KKakaduImageReaderSpi());
+        reader.setInput(file);
+        Assert.assertEquals(1, reader.getNumImages(false));
+        Assert.assertEquals(640, reader.getWidth(0));
+        Assert.assertEquals(480, reader.getHeight(0));
+        Assert.assertEquals(5, reader.getSourceDWTLevels(0));
+        Assert.assertNotNull(reader.getStreamMetadata());
+        reader.dispose();
+    }
+
     public static void displayImageIOMetadata(Node root) {
         displayMetadata(root, 0);
     }
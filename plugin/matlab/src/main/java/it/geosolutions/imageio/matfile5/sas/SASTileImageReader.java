@@ -31,6 +31,7 @@ import java.awt.image.DataBufferDouble;
 import java.awt.image.DataBufferFloat;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
@@ -45,7 +46,6 @@ import javax.imageio.metadata.IIOMetadata;
 
 import com.jmatio.io.MatFileFilter;
 import com.jmatio.io.MatFileReader;
-import com.jmatio.types.MLArray;
 import com.jmatio.types.MLDouble;
 import com.jmatio.types.MLNumericArray;
 
@@ -87,14 +87,17 @@ public class SASTileImageReader extends MatFileImageReader {
     protected synchronized void initialize() {
         if (!isInitialized) {
             final Object datainput = super.getInput();
-            final String fileName = getDatasetSource(datainput).getAbsolutePath();
+            final File file = getDatasetSource(datainput);
 
             final MatFileFilter filter = new MatFileFilter();
             initFilter(filter, SASTileMetadata.getFilterElements());
 
             try {
 
-                matReader = new MatFileReader(fileName, filter, true);
+                // SAS tiles hold many big variables: only index them and
+                // read the needed ones on demand
+                matReader = new MatFileReader();
+                matReader.readLazily(file, filter, MatFileReader.HEAP_BYTE_BUFFER);
                 sasTile = new SASTileMetadata(matReader);
                 dataArrays = new LinkedList<String>();
                 dataArrays.add(sasTile.isLogScale() ? SASTileMetadata.SAS_TILE_LOG :SASTileMetadata.SAS_TILE_RAW);
@@ -226,14 +229,22 @@ public class SASTileImageReader extends MatFileImageReader {
         // Reading data
         //
         // ////////////////////////////////////////////////////////////////////
-        final Rectangle roi = new Rectangle(srcRegionXOffset, srcRegionYOffset, srcRegionWidth, srcRegionHeight);
-
-        final MLArray mlArrayRetrived = matReader.getMLArray(dataArrays.get(imageIndex));
-        final ByteBuffer real = ((MLNumericArray<Number>) mlArrayRetrived).getRealByteBuffer();
-        final ByteBuffer imaginary = ((MLNumericArray<Number>) mlArrayRetrived).getImaginaryByteBuffer();
+        // //
+        //
+        // Matrix rows are image rows and matrix columns are image columns:
+        // only read the requested region, subsampled. Uncompressed
+        // variables are read straight from the file.
+        //
+        // //
+        final MLNumericArray<?> mlArrayRetrived = matReader.readHyperslab(dataArrays.get(imageIndex),
+                srcRegionYOffset + ySubsamplingOffset, srcRegionXOffset + xSubsamplingOffset,
+                srcRegionHeight - ySubsamplingOffset, srcRegionWidth - xSubsamplingOffset,
+                ySubsamplingFactor, xSubsamplingFactor);
+        final ByteBuffer real = mlArrayRetrived.getRealByteBuffer();
+        final ByteBuffer imaginary = mlArrayRetrived.getImaginaryByteBuffer();
         
         final boolean isDouble = (mlArrayRetrived instanceof MLDouble)? true : false;
-        final int imageSize = width * height;
+        final int imageSize = dstWidth * dstHeight;
         
         // //
         //
@@ -252,8 +263,8 @@ public class SASTileImageReader extends MatFileImageReader {
         // 1, 4, 7, 2, 5, 8, 3, 6, 9
         //
         // //
-        final int smWidth = height;
-        final int smHeight = width;
+        final int smWidth = dstHeight;
+        final int smHeight = dstWidth;
         final BandedSampleModel sampleModel = new BandedSampleModel(isDouble?DataBuffer.TYPE_DOUBLE:DataBuffer.TYPE_FLOAT, smWidth, smHeight, 2);
         
         final ColorModel cm = ImageIOUtilities.createColorModel(sampleModel);
@@ -282,27 +293,12 @@ public class SASTileImageReader extends MatFileImageReader {
     	        final DataBufferFloat dbb = new DataBufferFloat(dataArray, imageSize);
     	        originalRasterData = Raster.createWritableRaster(sampleModel,dbb, null);
         }
-        BufferedImage data = new BufferedImage(cm, originalRasterData, false,null);
+        final BufferedImage data = new BufferedImage(cm, originalRasterData, false,null);
 
-        //
-        // CROP
-        //
-        if (srcRegion != null) {
-            
-            //Transpose haven't been executed yet.
-            //the actual image has x-y swapped.
-            
-            final int x = roi.y;
-            final int y = roi.x;
-            final int w = roi.height;
-            final int h = roi.width;
-            data = data.getSubimage(x, y, w, h);
-        } 
-        
-        //Tuneup the image read param to use the adjusted one
+        //Tuneup the image read param: region and subsampling have already
+        //been applied, only transposition and flipping are left
         final ImageReadParam tunedParam = getDefaultReadParam();
-        tunedParam.setSourceSubsampling(xSubsamplingFactor, ySubsamplingFactor, xSubsamplingOffset, ySubsamplingOffset);
-        tunedParam.setSourceRegion(roi);
+        tunedParam.setSourceRegion(new Rectangle(0, 0, dstWidth, dstHeight));
         
         AffineTransform transform = getAffineTransform(tunedParam);	
 			
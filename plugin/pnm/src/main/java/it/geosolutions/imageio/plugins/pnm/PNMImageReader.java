@@ -90,7 +90,6 @@ import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.StringTokenizer;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -154,10 +153,6 @@ public class PNMImageReader extends ImageReader {
 	/** The original image height. */
 	private int height;
 
-	private String aLine;
-
-	private StringTokenizer token;
-
 	private PNMMetadata metadata;
 
 	/**
@@ -331,11 +326,15 @@ public class PNMImageReader extends ImageReader {
 
 			gotHeader = true;
 
-			// Store the stream position where the image data starts
-			while ((b = iis.readByte()) == '\n' || b == '\r' || b == '#'
-					|| b == ' ')
-				;
-			imageDataOffset = iis.getStreamPosition() - 1;
+			// Store the stream position where the image data starts. A
+			// single whitespace separates the header from raw data, whose
+			// first byte may look like a whitespace too, while further
+			// whitespaces and comments before ASCII data are skipped along
+			// with the samples
+			if (b == '#')
+				while (iis.readByte() != '\n')
+					;
+			imageDataOffset = iis.getStreamPosition();
 		}
 	}
 
@@ -406,6 +405,7 @@ public class PNMImageReader extends ImageReader {
 
 		// read header
 		readHeader();
+		iis.seek(imageDataOffset);
 
 		Rectangle sourceRegion = new Rectangle(0, 0, 0, 0);
 		Rectangle destinationRegion = new Rectangle(0, 0, 0, 0);
@@ -423,7 +423,7 @@ public class PNMImageReader extends ImageReader {
 		boolean seleBand = (sourceBands != null) && (destBands != null);
 		boolean noTransform = destinationRegion.equals(new Rectangle(0, 0,
 				width, height))
-				|| seleBand;
+				&& !seleBand;
 
 		// The RAWBITS format can only support byte image data, which means
 		// maxValue should be less than 0x100. In case there's a conflict,
@@ -483,8 +483,6 @@ public class PNMImageReader extends ImageReader {
 			sampleModel = sampleModel.createCompatibleSampleModel(
 					destinationRegion.x + destinationRegion.width,
 					destinationRegion.y + destinationRegion.height);
-			if (seleBand)
-				sampleModel = sampleModel.createSubsetSampleModel(sourceBands);
 
 			raster = Raster.createWritableRaster(sampleModel, new Point());
 			bi = new BufferedImage(colorModel, raster, false, null);
@@ -501,6 +499,8 @@ public class PNMImageReader extends ImageReader {
 		int j = 0;
 		int k = 0;
 		int i=0;
+		final IntegerTokenizer tokenizer = isRaw(variant) ? null
+				: new IntegerTokenizer(iis);
 		switch (variant) {
 		case PBM_RAW: {
 
@@ -519,9 +519,6 @@ public class PNMImageReader extends ImageReader {
 				int destLS = raster.getWidth() + 7 >> 3;
 
 				int readLength = sourceRegion.width + 7 >> 3;
-				int offset = sourceRegion.y * originalLS;
-				iis.skipBytes(offset + skip);
-				offset = originalLS * (scaleY - 1) + originalLS - readLength;
 				byte[] lineData = new byte[readLength];
 
 				int bitoff = destinationRegion.x & 7;
@@ -529,22 +526,25 @@ public class PNMImageReader extends ImageReader {
 				
 				for (i = 0, j = 0, k = destinationRegion.y * destLS
 						+ (destinationRegion.x >> 3); i < destinationRegionHeight; i++, j += scaleY) {
+					// Seek to the requested bytes of the row
+					iis.seek(imageDataOffset + (long) (sourceRegion.y + j)
+							* originalLS + skip);
 					if (reformat) {
-						iis.read(lineData, 0, readLength);
-						int mask1 = (255 << bitoff) & 255;
-						int mask2 = ~mask1 & 255;
+						// Shifting the bits right by bitoff
+						iis.readFully(lineData, 0, readLength);
 						int shift = 8 - bitoff;
 
-						int n = 0;
 						int m = k;
-						for (; n < readLength - 1; n++, m++)
-							buf[m] = (byte) (((lineData[n] & mask2) << shift) | (lineData[n + 1] & mask1) >> bitoff);
-						buf[m] = (byte) ((lineData[n] & mask2) << shift);
+						buf[m] = (byte) (buf[m] & ~(0xFF >> bitoff) | (lineData[0] & 0xFF) >> bitoff);
+						m++;
+						for (int n = 1; n < readLength; n++, m++)
+							buf[m] = (byte) ((lineData[n - 1] & 0xFF) << shift | (lineData[n] & 0xFF) >> bitoff);
+						if (bitoff + sourceRegion.width > readLength << 3)
+							buf[m] = (byte) ((lineData[readLength - 1] & 0xFF) << shift);
 					} else {
-						iis.read(buf, k, readLength);
+						iis.readFully(buf, k, readLength);
 					}
 
-					iis.skipBytes(offset);
 					k += destLS;
 
 					processImageUpdate(bi, 0, i, destinationRegionWidth, 1, 1,
@@ -553,22 +553,25 @@ public class PNMImageReader extends ImageReader {
 				}
 			} else {
 				int originalLS = width + 7 >> 3;
-				byte[] data = new byte[originalLS];
-				iis.skipBytes(sourceRegion.y * originalLS);
+				// Only the bytes containing the source region columns are read
+				int firstByte = sourceRegion.x >> 3;
+				int readLength = (sourceRegion.x + sourceRegion.width - 1 >> 3)
+						- firstByte + 1;
+				byte[] data = new byte[readLength];
 				int destLS = bi.getWidth() + 7 >> 3;
-				int offset = originalLS * (scaleY - 1);
 				int dsx = destLS * destinationRegion.y
 						+ (destinationRegion.x >> 3);
 				int n = dsx;
 				for (i = 0, j = 0; i < destinationRegionHeight; i++, j += scaleY) {
-					iis.read(data, 0, originalLS);
-					iis.skipBytes(offset);
+					iis.seek(imageDataOffset + (long) (sourceRegion.y + j)
+							* originalLS + firstByte);
+					iis.readFully(data, 0, readLength);
 
 					int b = 0;
 					int pos = 7 - (destinationRegion.x & 7);
 					for (int m = sourceRegion.x; m < sourceRegion.x
 							+ sourceRegion.width; m += scaleX) {
-						b |= (data[m >> 3] >> (7 - (m & 7)) & 1) << pos;
+						b |= (data[(m >> 3) - firstByte] >> (7 - (m & 7)) & 1) << pos;
 						pos--;
 						if (pos == -1) {
 							buf[n++] = (byte) b;
@@ -597,7 +600,7 @@ public class PNMImageReader extends ImageReader {
 					int b = 0;
 					int pos = 7;
 					for (j = 0; j < width; j++) {
-						b |= (readInteger(iis) & 1) << pos;
+						b |= (tokenizer.nextInt() & 1) << pos;
 						pos--;
 						if (pos == -1) {
 							buf[n++] = (byte) b;
@@ -611,7 +614,7 @@ public class PNMImageReader extends ImageReader {
 					processImageProgress(100.0F * i / height);
 				}
 			else {
-				skipInteger(iis, sourceRegion.y * width + sourceRegion.x);
+				tokenizer.skip((long) sourceRegion.y * width + sourceRegion.x);
 				int skipX = scaleX - 1;
 				int skipY = (scaleY - 1) * width + width
 						- destinationRegionWidth * scaleX;
@@ -622,20 +625,20 @@ public class PNMImageReader extends ImageReader {
 					int b = 0;
 					int pos = 7 - (destinationRegion.x & 7);
 					for (j = 0; j < destinationRegionWidth; j++) {
-						b |= (readInteger(iis) & 1) << pos;
+						b |= (tokenizer.nextInt() & 1) << pos;
 						pos--;
 						if (pos == -1) {
 							buf[n++] = (byte) b;
 							b = 0;
 							pos = 7;
 						}
-						skipInteger(iis, skipX);
+						tokenizer.skip(skipX);
 					}
 					if (pos != 7)
 						buf[n++] = (byte) b;
 
 					n += destinationRegion.x >> 3;
-					skipInteger(iis, skipY);
+					tokenizer.skip(skipY);
 					processImageUpdate(bi, 0, i, destinationRegionWidth, 1, 1,
 							1, destBands);
 					processImageProgress(100.0F * i / destinationRegionHeight);
@@ -652,7 +655,7 @@ public class PNMImageReader extends ImageReader {
 			int skipY = (scaleY * width - destinationRegion.width * scaleX)
 					* numBands;
 			int dsx = (bi.getWidth() * destinationRegion.y + destinationRegion.x)
-					* numBands;
+					* numSourceBands;
 			switch (dataType) {
 			case DataBuffer.TYPE_BYTE:
 				DataBufferByte bbuf = (DataBufferByte) raster.getDataBuffer();
@@ -665,23 +668,33 @@ public class PNMImageReader extends ImageReader {
 								destBands);
 						processImageProgress(100.0F);
 					} else {
-						iis.skipBytes(sourceRegion.y * width * numBands);
-						int skip = (scaleY - 1) * width * numBands;
-						byte[] data = new byte[width * numBands];
+						// Only the source region columns of the sampled rows
+						// are read, seeking to each of them
+						final long lineStride = (long) width * numBands;
+						final int readLength = ((destinationRegionWidth - 1)
+								* scaleX + 1) * numBands;
+						final boolean direct = scaleX == 1 && !seleBand;
+						byte[] data = direct ? null : new byte[readLength];
 						int pixelStride = scaleX * numBands;
-						int sx = sourceRegion.x * numBands;
 						 i = 0;
 						for (int n = dsx; i < destinationRegionHeight; i++) {
-							iis.read(data);
-							for (j = sourceRegion.x, k = sx; j < sourceRegion.x
-									+ sourceRegion.width; j += scaleX, k += pixelStride) {
-								for (int m = 0; m < numSourceBands; m++)
-									byteArray[n + destBands[m]] = data[k
-											+ sourceBands[m]];
-								n += numSourceBands;
+							iis.seek(imageDataOffset
+									+ (sourceRegion.y + (long) i * scaleY)
+									* lineStride + sourceRegion.x * numBands);
+							if (direct) {
+								iis.readFully(byteArray, n, readLength);
+								n += readLength;
+							} else {
+								iis.readFully(data, 0, readLength);
+								for (j = sourceRegion.x, k = 0; j < sourceRegion.x
+										+ sourceRegion.width; j += scaleX, k += pixelStride) {
+									for (int m = 0; m < numSourceBands; m++)
+										byteArray[n + destBands[m]] = data[k
+												+ sourceBands[m]];
+									n += numSourceBands;
+								}
 							}
-							n += destinationRegion.x * numBands;
-							iis.skipBytes(skip);
+							n += destinationRegion.x * numSourceBands;
 							processImageUpdate(bi, 0, i,
 									destinationRegionWidth, 1, 1, 1, destBands);
 							processImageProgress(100.0F * i
@@ -689,7 +702,7 @@ public class PNMImageReader extends ImageReader {
 						}
 					}
 				} else {
-					skipInteger(iis, (sourceRegion.y * width + sourceRegion.x)
+					tokenizer.skip(((long) sourceRegion.y * width + sourceRegion.x)
 							* numBands);
 					 i = 0;
 					if (seleBand) {
@@ -698,14 +711,14 @@ public class PNMImageReader extends ImageReader {
 						for (int n = dsx; i < destinationRegionHeight; i++) {
 							for (j = 0; j < destinationRegionWidth; j++) {
 								for (k = 0; k < numBands; k++)
-									data[k] = (byte) readInteger(iis);
+									data[k] = (byte) tokenizer.nextInt();
 								for (k = 0; k < numSourceBands; k++)
 									byteArray[n + destBands[k]] = data[sourceBands[k]];
 								n += numSourceBands;
-								skipInteger(iis, skipX);
+								tokenizer.skip(skipX);
 							}
 							n += destinationRegion.x * numSourceBands;
-							skipInteger(iis, skipY);
+							tokenizer.skip(skipY);
 							processImageUpdate(bi, 0, i,
 									destinationRegionWidth, 1, 1, 1, destBands);
 							processImageProgress(100.0F * i
@@ -715,11 +728,11 @@ public class PNMImageReader extends ImageReader {
 						for (int  n = dsx; i < destinationRegionHeight; i++) {
 							for (j = 0; j < destinationRegionWidth; j++) {
 								for (k = 0; k < numBands; k++)
-									byteArray[n++] = (byte) readInteger(iis);
-								skipInteger(iis, skipX);
+									byteArray[n++] = (byte) tokenizer.nextInt();
+								tokenizer.skip(skipX);
 							}
 							n += destinationRegion.x * numSourceBands;
-							skipInteger(iis, skipY);
+							tokenizer.skip(skipY);
 							processImageUpdate(bi, 0, i,
 									destinationRegionWidth, 1, 1, 1, destBands);
 							processImageProgress(100.0F * i
@@ -732,22 +745,22 @@ public class PNMImageReader extends ImageReader {
 				DataBufferUShort sbuf = (DataBufferUShort) raster
 						.getDataBuffer();
 				short[] shortArray = sbuf.getData();
-				skipInteger(iis, sourceRegion.y * width * numBands
-						+ sourceRegion.x);
+				tokenizer.skip(((long) sourceRegion.y * width + sourceRegion.x)
+						* numBands);
 				 i = 0;
 				if (seleBand) {
 					short[] data = new short[numBands];
 					for (int n = dsx; i < destinationRegionHeight; i++) {
 						for (j = 0; j < destinationRegionWidth; j++) {
 							for (k = 0; k < numBands; k++)
-								data[k] = (short) readInteger(iis);
+								data[k] = (short) tokenizer.nextInt();
 							for (k = 0; k < numSourceBands; k++)
 								shortArray[n + destBands[k]] = data[sourceBands[k]];
 							n += numSourceBands;
-							skipInteger(iis, skipX);
+							tokenizer.skip(skipX);
 						}
 						n += destinationRegion.x * numSourceBands;
-						skipInteger(iis, skipY);
+						tokenizer.skip(skipY);
 						processImageUpdate(bi, 0, i, destinationRegionWidth, 1,
 								1, 1, destBands);
 						processImageProgress(100.0F * i
@@ -757,11 +770,11 @@ public class PNMImageReader extends ImageReader {
 					for (int n = dsx; i < destinationRegionHeight; i++) {
 						for (j = 0; j < destinationRegionWidth; j++) {
 							for (k = 0; k < numBands; k++)
-								shortArray[n++] = (short) readInteger(iis);
-							skipInteger(iis, skipX);
+								shortArray[n++] = (short) tokenizer.nextInt();
+							tokenizer.skip(skipX);
 						}
 						n += destinationRegion.x * numSourceBands;
-						skipInteger(iis, skipY);
+						tokenizer.skip(skipY);
 						processImageUpdate(bi, 0, i, destinationRegionWidth, 1,
 								1, 1, destBands);
 						processImageProgress(100.0F * i
@@ -772,22 +785,22 @@ public class PNMImageReader extends ImageReader {
 			case DataBuffer.TYPE_INT:
 				DataBufferInt ibuf = (DataBufferInt) raster.getDataBuffer();
 				int[] intArray = ibuf.getData();
-				skipInteger(iis, sourceRegion.y * width * numBands
-						+ sourceRegion.x);
+				tokenizer.skip(((long) sourceRegion.y * width + sourceRegion.x)
+						* numBands);
 				 i = 0;
 				if (seleBand) {
 					int[] data = new int[numBands];
 					for (int  n = dsx; i < destinationRegionHeight; i++) {
 						for (j = 0; j < destinationRegionWidth; j++) {
 							for (k = 0; k < numBands; k++)
-								data[k] = readInteger(iis);
+								data[k] = tokenizer.nextInt();
 							for (k = 0; k < numSourceBands; k++)
 								intArray[n + destBands[k]] = data[sourceBands[k]];
 							n += numSourceBands;
-							skipInteger(iis, skipX);
+							tokenizer.skip(skipX);
 						}
 						n += destinationRegion.x * numSourceBands;
-						skipInteger(iis, skipY);
+						tokenizer.skip(skipY);
 						processImageUpdate(bi, 0, i, destinationRegionWidth, 1,
 								1, 1, destBands);
 						processImageProgress(100.0F * i
@@ -798,11 +811,11 @@ public class PNMImageReader extends ImageReader {
 					for (int n = dsx; i < destinationRegionHeight; i++) {
 						for (j = 0; j < destinationRegionWidth; j++) {
 							for (k = 0; k < numSourceBands; k++)
-								intArray[n++] = readInteger(iis);
-							skipInteger(iis, skipX);
+								intArray[n++] = tokenizer.nextInt();
+							tokenizer.skip(skipX);
 						}
 						n += destinationRegion.x * numSourceBands;
-						skipInteger(iis, skipY);
+						tokenizer.skip(skipY);
 						processImageUpdate(bi, 0, i, destinationRegionWidth, 1,
 								1, 1, destBands);
 						processImageProgress(100.0F * i
@@ -856,46 +869,106 @@ public class PNMImageReader extends ImageReader {
 		stream.reset();
 	}
 
-	/** Reads the next integer. */
-	private int readInteger(ImageInputStream stream) throws IOException {
-		boolean foundDigit = false;
-
-		while (aLine == null) {
-			aLine = stream.readLine();
-			if (aLine == null)
-				return 0;
-			int pos = aLine.indexOf("#");
-			if (pos == 0)
-				aLine = null;
-			else if (pos > 0)
-				aLine = aLine.substring(0, pos - 1);
-
-			if (aLine != null)
-				token = new StringTokenizer(aLine);
+	/**
+	 * Reads the whitespace separated integers of the ASCII variants from a
+	 * buffered chunk of the stream, ignoring comments as well as tokens which
+	 * are not integers.
+	 */
+	private static final class IntegerTokenizer {
+
+		private static final int BUFFER_SIZE = 64 * 1024;
+
+		private final ImageInputStream stream;
+
+		private final byte[] buffer = new byte[BUFFER_SIZE];
+
+		private int position;
+
+		private int limit;
+
+		IntegerTokenizer(ImageInputStream stream) {
+			this.stream = stream;
 		}
 
-		String s;
-		while (token.hasMoreTokens()) {
-			s = token.nextToken();
+		/** Returns the next integer, 0 at the end of the stream. */
+		int nextInt() throws IOException {
+			while (nextToken()) {
+				int value = 0;
+				boolean valid = true;
+				for (;;) {
+					if (position == limit && !fill())
+						break;
+					final byte b = buffer[position];
+					if (isSeparator(b))
+						break;
+					if (b >= '0' && b <= '9')
+						value = value * 10 + b - '0';
+					else
+						valid = false;
+					position++;
+				}
+				if (valid)
+					return value;
+			}
+			return 0;
+		}
 
-			try {
-				return new Integer(s).intValue();
-			} catch (NumberFormatException e) {
-				continue;
+		/** Skips the next <code>num</code> integers. */
+		void skip(long num) throws IOException {
+			while (num > 0 && nextToken()) {
+				boolean valid = true;
+				for (;;) {
+					if (position == limit && !fill())
+						break;
+					final byte b = buffer[position];
+					if (isSeparator(b))
+						break;
+					if (b < '0' || b > '9')
+						valid = false;
+					position++;
+				}
+				if (valid)
+					num--;
 			}
 		}
 
-		if (!foundDigit) {
-			aLine = null;
-			return readInteger(stream);
+		/**
+		 * Moves to the first byte of the next token, skipping whitespaces and
+		 * comments. Returns <code>false</code> at the end of the stream.
+		 */
+		private boolean nextToken() throws IOException {
+			for (;;) {
+				if (position == limit && !fill())
+					return false;
+				final byte b = buffer[position];
+				if (b == '#') {
+					// Skip the comment up to the end of the line
+					do {
+						position++;
+						if (position == limit && !fill())
+							return false;
+					} while (buffer[position] != '\n' && buffer[position] != '\r');
+				} else if (isSeparator(b))
+					position++;
+				else
+					return true;
+			}
 		}
 
-		return 0;
-	}
+		/** Reads the next chunk. Returns <code>false</code> at the end of the stream. */
+		private boolean fill() throws IOException {
+			position = 0;
+			limit = stream.read(buffer, 0, BUFFER_SIZE);
+			if (limit <= 0) {
+				limit = 0;
+				return false;
+			}
+			return true;
+		}
 
-	private void skipInteger(ImageInputStream stream, int num)
-			throws IOException {
-		for (int i = 0; i < num; i++)
-			readInteger(stream);
+		private static boolean isSeparator(byte b) {
+			return b == ' ' || b == '\n' || b == '\r' || b == '\t'
+					|| b == '\f' || b == 0x0B || b == '#';
+		}
 	}
 }
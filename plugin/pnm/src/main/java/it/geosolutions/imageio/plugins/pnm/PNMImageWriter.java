@@ -73,6 +73,10 @@
  */
 package it.geosolutions.imageio.plugins.pnm;
 
+import it.geosolutions.imageio.utilities.FastByteArrayWrapper;
+import it.geosolutions.imageio.utilities.NumberToByteArray;
+import it.geosolutions.imageio.utilities.RowStripWriter;
+
 import java.awt.Rectangle;
 import java.awt.color.ColorSpace;
 import java.awt.image.ColorModel;
@@ -121,6 +125,21 @@ public class PNMImageWriter extends ImageWriter {
     private static final String COMMENT =
         "# written by it.geosolutions.imageio.plugins.pnm.PNMImageWriter";
 
+    /** Number of samples formatted at once by the ASCII variants. */
+    private static final int STRIP_SAMPLES = 256 * 1024;
+
+    /** Maximum length of the lines of the ASCII variants. */
+    private static final int MAX_LINE_LENGTH = 70;
+
+    /** Length of the largest sample, 65535. */
+    private static final int MAX_SAMPLE_LENGTH = 5;
+
+    /**
+     * System property setting the number of threads formatting the rows of
+     * the ASCII variants, 1 by default.
+     */
+    public static final String WRITER_THREADS_KEY = "it.geosolutions.imageio.pnm.writer.threads";
+
     private static byte[] lineSeparator;
 
     private int variant;
@@ -460,8 +479,11 @@ public class PNMImageWriter extends ImageWriter {
                 writeOptimal = true;
         } else if ((variant == PGM_RAW || variant == PPM_RAW) &&
                    sampleModel instanceof ComponentSampleModel &&
-                   !(colorModel instanceof IndexColorModel)) {
+                   !(colorModel instanceof IndexColorModel) &&
+                   param.getSourceBands() == null) {
 
+            // Selected bands are not copied as is, as the subset sample
+            // model may not describe the layout of the source rows.
             ComponentSampleModel csm =
                 (ComponentSampleModel)sampleModel;
 
@@ -487,22 +509,23 @@ public class PNMImageWriter extends ImageWriter {
             int bytesPerRow = variant == PBM_RAW ?
                 (w + 7)/8 : w * sampleModel.getNumBands();
             byte[] bdata = null;
-            byte[] invertedData = new byte[bytesPerRow];
+            byte[] rowData = new byte[bytesPerRow];
 
             // Loop over tiles to minimize cobbling.
-            for(int j = 0; j < sourceRegion.height; j++) {
+            for(int j = 0; j < h; j++) {
                 if (abortRequested())
                     break;
+                int row = sourceRegion.y + j * scaleY;
                 Raster lineRaster = null;
                 if (writeRaster) {
                     lineRaster = inputRaster.createChild(sourceRegion.x,
-                                                         j,
+                                                         row,
                                                          sourceRegion.width,
                                                          1, 0, 0, null);
                 } else {
                     lineRaster =
                         input.getData(new Rectangle(sourceRegion.x,
-                                                    sourceRegion.y + j,
+                                                    row,
                                                     w, 1));
                     lineRaster = lineRaster.createTranslatedChild(0, 0);
                 }
@@ -521,15 +544,19 @@ public class PNMImageWriter extends ImageWriter {
                                                                       lineRaster.getMinX()-lineRaster.getSampleModelTranslateY());
                 }
 
-		if (isPBMInverted) {
+                // The padding bits of the last byte of a row are cleared,
+                // rather than inverted or taken from the next pixels.
+                if (variant == PBM_RAW && (isPBMInverted || (w & 7) != 0)) {
                     for(int k = offset, m = 0; m < bytesPerRow; k++, m++)
-                        invertedData[m] = (byte)~bdata[k];
-                    bdata = invertedData;
+                        rowData[m] = isPBMInverted ? (byte)~bdata[k] : bdata[k];
+                    if ((w & 7) != 0)
+                        rowData[bytesPerRow - 1] &= (byte)(0xFF00 >> (w & 7));
+                    bdata = rowData;
                     offset = 0;
                 }
 
                 stream.write(bdata, offset, bytesPerRow);
-                processImageProgress(100.0F * j / sourceRegion.height);
+                processImageProgress(100.0F * j / h);
             }
 
             // Write all buffered bytes and return.
@@ -546,16 +573,26 @@ public class PNMImageWriter extends ImageWriter {
 
         int[] pixels = new int[size];
 
+        if (!isRaw(variant)) {
+            stream.write(lineSeparator);
+            writeASCIIRows(input, inputRaster, writeRaster, sourceRegion,
+                           sourceBands, scaleX, scaleY, w, h, numBands,
+                           pixels, reds, greens, blues, isPBMInverted);
+
+            // Force all buffered bytes to be written out.
+            stream.flush();
+            if (abortRequested())
+                processWriteAborted();
+            else
+                processImageComplete();
+            return;
+        }
+
         // Also allocate a buffer to hold the data to be written to the file,
         // so we can use array writes.
         byte[] bpixels =
             reds == null ? new byte[w * numBands] : new byte[w * 3];
 
-        // The index of the sample being written, used to
-        // place a line separator after every 16th sample in
-        // ASCII mode.  Not used in raw mode.
-        int count = 0;
-
         // Process line by line
         int lastRow = sourceRegion.y + sourceRegion.height;
 
@@ -572,74 +609,19 @@ public class PNMImageWriter extends ImageWriter {
                                               sourceRegion.x, row, sourceBands);
             else
                 src = input.getData(new Rectangle(sourceRegion.x, row,
-                                                  sourceRegion.width, 1));
+                                                  sourceRegion.width, 1))
+                    .createChild(sourceRegion.x, row, sourceRegion.width, 1,
+                                 sourceRegion.x, row, sourceBands);
             src.getPixels(sourceRegion.x, row, sourceRegion.width, 1, pixels);
 
-            if (isPBMInverted)
-                for (int i = 0; i < size; i += scaleX)
-                    bpixels[i] ^= 1;
-
             switch (variant) {
-            case PBM_ASCII:
-            	for (int i = 0; i < size; i += scaleX) {
-                    if ((count++ % 16) == 0)
-                        stream.write(lineSeparator);
-                    else
-                        stream.write(SPACE);
-
-                    writeInteger(stream, isPBMInverted?(byte)~pixels[i]:pixels[i]);
-                }
-                stream.write(lineSeparator);
-                break;
-            case PGM_ASCII:
-                for (int i = 0; i < size; i += scaleX) {
-                    if ((count++ % 16) == 0)
-                        stream.write(lineSeparator);
-                    else
-                        stream.write(SPACE);
-
-                    writeInteger(stream, pixels[i]);
-                }
-                stream.write(lineSeparator);
-                break;
-
-            case PPM_ASCII:
-                if (reds == null) {	// no need to expand
-
-                    for (int i = 0; i < size; i += scaleX * numBands) {
-                        for (int j = 0; j < numBands; j++) {
-                            if ((count++ % 16) == 0)
-                                stream.write(lineSeparator);
-                            else
-                                stream.write(SPACE);
-
-                            writeInteger(stream, pixels[i + j]);
-                        }
-                    }
-                } else {
-                    for (int i = 0; i < size; i += scaleX) {
-                        if ((count++ % 5) == 0)
-                            stream.write(lineSeparator);
-                        else
-                            stream.write(SPACE);
-
-                        writeInteger(stream, (reds[pixels[i]] & 0xFF));
-                        stream.write(SPACE);
-                        writeInteger(stream, (greens[pixels[i]] & 0xFF));
-                        stream.write(SPACE);
-                        writeInteger(stream, (blues[pixels[i]] & 0xFF));
-                    }
-                }
-                stream.write(lineSeparator);
-                break;
-
             case PBM_RAW:
                 // 8 pixels packed into 1 byte, the leftovers are padded.
                 int kdst = 0;
                 int b = 0;
                 int pos = 7;
                 for (int i = 0; i < size; i += scaleX) {
-                    b |= pixels[i] << pos;
+                    b |= (isPBMInverted ? pixels[i] ^ 1 : pixels[i]) << pos;
                     pos--;
                     if (pos == -1) {
                         bpixels[kdst++] = (byte)b;
@@ -691,6 +673,110 @@ public class PNMImageWriter extends ImageWriter {
             processImageComplete();
     }
 
+    /**
+     * Writes the rows of the ASCII variants.
+     *
+     * <p>
+     * Rows are loaded in strips, which are formatted and written out by a
+     * {@link RowStripWriter}. When the
+     * <code>{@value #WRITER_THREADS_KEY}</code> system property is greater
+     * than 1, the rows of each strip are formatted in parallel by that
+     * number of threads.
+     */
+    private void writeASCIIRows(RenderedImage input, Raster inputRaster,
+                                boolean writeRaster, Rectangle sourceRegion,
+                                int[] sourceBands, int scaleX, int scaleY,
+                                int w, int h, int numBands, int[] pixels,
+                                byte[] reds, byte[] greens, byte[] blues,
+                                boolean isPBMInverted) throws IOException {
+        final int size = pixels.length;
+        final int width = w * (reds == null ? numBands : 3);
+        final int stripHeight = Math.max(1, Math.min(h, STRIP_SAMPLES / width));
+        final int[] samples = new int[stripHeight * width];
+
+        final RowStripWriter stripWriter = new RowStripWriter(
+                Integer.getInteger(WRITER_THREADS_KEY, 1).intValue(),
+                stripHeight, width * (MAX_SAMPLE_LENGTH + 1));
+        final RowStripWriter.RowFormatter formatter = new RowStripWriter.RowFormatter() {
+            public void format(int firstRow, int rows, FastByteArrayWrapper out) {
+                formatRows(samples, firstRow * width, width, rows, out);
+            }
+        };
+
+        final int lastRow = sourceRegion.y + sourceRegion.height;
+        int row = sourceRegion.y;
+        for (int y = 0; y < h; y += stripHeight) {
+            if (abortRequested())
+                break;
+            final int rows = Math.min(stripHeight, h - y);
+
+            // Grab the pixels of the strip
+            for (int r = 0, k = 0; r < rows && row < lastRow; r++, row += scaleY) {
+                Raster src = null;
+                if (writeRaster)
+                    src = inputRaster.createChild(sourceRegion.x, row,
+                                                  sourceRegion.width, 1,
+                                                  sourceRegion.x, row,
+                                                  sourceBands);
+                else
+                    src = input.getData(new Rectangle(sourceRegion.x, row,
+                                                      sourceRegion.width, 1))
+                        .createChild(sourceRegion.x, row, sourceRegion.width, 1,
+                                     sourceRegion.x, row, sourceBands);
+                src.getPixels(sourceRegion.x, row, sourceRegion.width, 1, pixels);
+
+                if (reds != null) {
+                    for (int i = 0; i < size; i += scaleX) {
+                        samples[k++] = reds[pixels[i]] & 0xFF;
+                        samples[k++] = greens[pixels[i]] & 0xFF;
+                        samples[k++] = blues[pixels[i]] & 0xFF;
+                    }
+                } else {
+                    for (int i = 0; i < size; i += scaleX * numBands)
+                        for (int j = 0; j < numBands; j++)
+                            samples[k++] = isPBMInverted ?
+                                pixels[i + j] ^ 1 : pixels[i + j];
+                }
+            }
+
+            stripWriter.write(formatter, rows, stream);
+            processImageProgress(100.0F * (y + rows) / h);
+        }
+    }
+
+    /**
+     * Appends <code>rows</code> rows of <code>width</code> samples, starting
+     * from the sample at index <code>offset</code>.
+     *
+     * <p>
+     * Samples are separated by a single space, lines are wrapped so that
+     * they do not exceed 70 characters as required by the specification and
+     * rows are terminated by the line separator.
+     */
+    private static void formatRows(final int[] samples, int offset,
+                                   final int width, final int rows,
+                                   final FastByteArrayWrapper out) {
+        for (int row = 0; row < rows; row++) {
+            int column = 0;
+            for (int i = 0; i < width; i++, offset++) {
+                final int value = samples[offset];
+                final int length = NumberToByteArray.length(value);
+                if (column > 0) {
+                    if (column + 1 + length > MAX_LINE_LENGTH) {
+                        out.write(lineSeparator, 0, lineSeparator.length);
+                        column = 0;
+                    } else {
+                        out.write(SPACE);
+                        column++;
+                    }
+                }
+                NumberToByteArray.appendInt(out, value, length);
+                column += length;
+            }
+            out.write(lineSeparator, 0, lineSeparator.length);
+        }
+    }
+
     public void reset() {
         super.reset();
         stream = null;
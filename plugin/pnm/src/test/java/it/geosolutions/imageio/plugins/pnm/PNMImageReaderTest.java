@@ -0,0 +1,302 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.plugins.pnm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Test;
+
+/**
+ * Reads back the variants written by the PNM writer, as a whole and through
+ * source regions, subsampling and band selection, as well as hand written
+ * files.
+ */
+public class PNMImageReaderTest {
+
+    private static final int WIDTH = 21;
+
+    private static final int HEIGHT = 9;
+
+    static BufferedImage read(final byte[] encoded, final ImageReadParam param)
+            throws IOException {
+        final PNMImageReader reader = new PNMImageReader(new PNMImageReaderSpi());
+        final ImageInputStream in = new MemoryCacheImageInputStream(
+                new ByteArrayInputStream(encoded));
+        try {
+            reader.setInput(in);
+            return reader.read(0, param);
+        } finally {
+            in.close();
+            reader.dispose();
+        }
+    }
+
+    private static byte[] bytes(final String header, final int... data) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] bytes = header.getBytes();
+        out.write(bytes, 0, bytes.length);
+        for (int i = 0; i < data.length; i++)
+            out.write(data[i]);
+        return out.toByteArray();
+    }
+
+    private static int sample(final int x, final int y, final int b,
+            final int maxValue) {
+        return (x * 37 + y * 101 + b * 53) % (maxValue + 1);
+    }
+
+    /**
+     * Creates an image of the specified type filled with {@link #sample}.
+     */
+    private static BufferedImage createImage(final ImageTypeSpecifier type,
+            final int maxValue) {
+        final BufferedImage image = type.createBufferedImage(WIDTH, HEIGHT);
+        final WritableRaster raster = image.getRaster();
+        for (int y = 0; y < HEIGHT; y++)
+            for (int x = 0; x < WIDTH; x++)
+                for (int b = 0; b < raster.getNumBands(); b++)
+                    raster.setSample(x, y, b, sample(x, y, b, maxValue));
+        return image;
+    }
+
+    private static ImageTypeSpecifier rgb(final int dataType) {
+        return ImageTypeSpecifier.createInterleaved(ColorSpace
+                .getInstance(ColorSpace.CS_sRGB), new int[] { 0, 1, 2 },
+                dataType, false, false);
+    }
+
+    /**
+     * Checks that each pixel of a read image matches the pixel of the whole
+     * image the parameters map it to.
+     */
+    private static void check(final Raster whole, final BufferedImage read,
+            final ImageReadParam param) {
+        final Rectangle region = param.getSourceRegion() != null ? param
+                .getSourceRegion() : whole.getBounds();
+        final int scaleX = param.getSourceXSubsampling();
+        final int scaleY = param.getSourceYSubsampling();
+        final int minX = region.x + param.getSubsamplingXOffset();
+        final int minY = region.y + param.getSubsamplingYOffset();
+        final int width = (region.x + region.width - minX + scaleX - 1) / scaleX;
+        final int height = (region.y + region.height - minY + scaleY - 1) / scaleY;
+        final Point offset = param.getDestinationOffset();
+        int[] bands = param.getSourceBands();
+        if (bands == null) {
+            bands = new int[whole.getNumBands()];
+            for (int b = 0; b < bands.length; b++)
+                bands[b] = b;
+        }
+
+        final Raster raster = read.getRaster();
+        assertEquals(offset.x + width, raster.getWidth());
+        assertEquals(offset.y + height, raster.getHeight());
+        assertEquals(bands.length, raster.getNumBands());
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                for (int b = 0; b < bands.length; b++)
+                    assertEquals("pixel " + x + "," + y + " band " + b,
+                            whole.getSample(minX + x * scaleX, minY + y
+                                    * scaleY, bands[b]), raster.getSample(
+                                    offset.x + x, offset.y + y, b));
+    }
+
+    private static ImageReadParam param(final Rectangle region,
+            final int scaleX, final int scaleY, final int offsetX,
+            final int offsetY) {
+        final ImageReadParam param = new ImageReadParam();
+        param.setSourceRegion(region);
+        param.setSourceSubsampling(scaleX, scaleY, offsetX, offsetY);
+        return param;
+    }
+
+    /**
+     * Writes an image in the specified variant, reads it back as a whole and
+     * through regions and subsampling.
+     */
+    private static Raster checkRoundTrip(final BufferedImage image,
+            final boolean raw, final int variant) throws IOException {
+        final byte[] encoded = PNMImageWriterTest.write(new IIOImage(image,
+                null, null), PNMImageWriterTest.param(raw));
+        assertEquals('P', encoded[0]);
+        assertEquals(variant, encoded[1]);
+
+        final BufferedImage whole = read(encoded, null);
+        assertEquals(WIDTH, whole.getWidth());
+        assertEquals(HEIGHT, whole.getHeight());
+        for (int y = 0; y < HEIGHT; y++)
+            for (int x = 0; x < WIDTH; x++)
+                assertEquals(image.getRGB(x, y), whole.getRGB(x, y));
+
+        final ImageReadParam[] params = new ImageReadParam[] {
+                // a single pixel
+                param(new Rectangle(20, 8, 1, 1), 1, 1, 0, 0),
+                // rows from a byte aligned column
+                param(new Rectangle(8, 2, 13, 5), 1, 1, 0, 0),
+                param(new Rectangle(3, 2, 11, 6), 1, 1, 0, 0),
+                param(null, 2, 3, 0, 0),
+                param(new Rectangle(1, 1, 19, 7), 3, 2, 1, 1),
+                param(new Rectangle(5, 0, 16, 9), 4, 3, 2, 2) };
+        for (int i = 0; i < params.length; i++) {
+            check(whole.getRaster(), read(encoded, params[i]), params[i]);
+
+            // shifted in the destination
+            params[i].setDestinationOffset(new Point(3, 2));
+            check(whole.getRaster(), read(encoded, params[i]), params[i]);
+        }
+        return whole.getRaster();
+    }
+
+    /**
+     * Reads selected bands of a PPM file.
+     */
+    private static void checkBands(final byte[] encoded, final Raster whole)
+            throws IOException {
+        final int[][] sourceBands = new int[][] { { 1 }, { 2, 0 }, { 2, 1, 0 } };
+        for (int i = 0; i < sourceBands.length; i++) {
+            final int[] destinationBands = new int[sourceBands[i].length];
+            for (int b = 0; b < destinationBands.length; b++)
+                destinationBands[b] = b;
+            final ImageReadParam[] params = new ImageReadParam[] {
+                    param(null, 1, 1, 0, 0),
+                    param(new Rectangle(3, 2, 11, 6), 1, 1, 0, 0),
+                    param(new Rectangle(1, 1, 19, 7), 3, 2, 1, 1) };
+            for (int j = 0; j < params.length; j++) {
+                params[j].setSourceBands(sourceBands[i]);
+                params[j].setDestinationBands(destinationBands);
+                check(whole, read(encoded, params[j]), params[j]);
+
+                params[j].setDestinationOffset(new Point(2, 1));
+                check(whole, read(encoded, params[j]), params[j]);
+            }
+        }
+    }
+
+    @Test
+    public void testPBM() throws IOException {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_BYTE_BINARY);
+        final WritableRaster raster = image.getRaster();
+        for (int y = 0; y < HEIGHT; y++)
+            for (int x = 0; x < WIDTH; x++)
+                raster.setSample(x, y, 0, sample(x, y, 0, 1));
+        checkRoundTrip(image, false, '1');
+        checkRoundTrip(image, true, '4');
+    }
+
+    @Test
+    public void testPGM() throws IOException {
+        checkRoundTrip(createImage(ImageTypeSpecifier.createGrayscale(8,
+                DataBuffer.TYPE_BYTE, false), 255), false, '2');
+        checkRoundTrip(createImage(ImageTypeSpecifier.createGrayscale(16,
+                DataBuffer.TYPE_USHORT, false), 65535), false, '2');
+        checkRoundTrip(createImage(ImageTypeSpecifier.createGrayscale(8,
+                DataBuffer.TYPE_BYTE, false), 255), true, '5');
+    }
+
+    @Test
+    public void testPPM() throws IOException {
+        final BufferedImage bytes = createImage(rgb(DataBuffer.TYPE_BYTE), 255);
+        final BufferedImage shorts = createImage(rgb(DataBuffer.TYPE_USHORT), 65535);
+        final Raster ascii = checkRoundTrip(bytes, false, '3');
+        final Raster ascii16 = checkRoundTrip(shorts, false, '3');
+        final Raster raw = checkRoundTrip(bytes, true, '6');
+
+        checkBands(PNMImageWriterTest.write(new IIOImage(bytes, null, null),
+                PNMImageWriterTest.param(false)), ascii);
+        checkBands(PNMImageWriterTest.write(new IIOImage(shorts, null, null),
+                PNMImageWriterTest.param(false)), ascii16);
+        checkBands(PNMImageWriterTest.write(new IIOImage(bytes, null, null),
+                PNMImageWriterTest.param(true)), raw);
+    }
+
+    @Test
+    public void testRawDataStartingWithWhitespace() throws IOException {
+        // the single whitespace ending the header is followed by data bytes
+        // which are whitespaces too
+        BufferedImage image = read(bytes("P5\n3 2\n255\n", 0x20, 0x0A, 7,
+                0x0A, 0x20, 9), null);
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        int[] samples = image.getRaster().getPixels(0, 0, 3, 2, (int[]) null);
+        assertEquals("[32, 10, 7, 10, 32, 9]", Arrays.toString(samples));
+
+        // a comment ending the header, then a region
+        final ImageReadParam param = param(new Rectangle(1, 0, 1, 2), 1, 1, 0, 0);
+        image = read(bytes("P6 2 2 255# comment\n", 0x0A, 0x20, 0x0A, 1, 2, 3,
+                0x20, 0x20, 0x20, 4, 5, 6), param);
+        samples = image.getRaster().getPixels(0, 0, 1, 2, (int[]) null);
+        assertEquals("[1, 2, 3, 4, 5, 6]", Arrays.toString(samples));
+
+        // packed bits
+        image = read(bytes("P4\n8 2\n", 0x0A, 0x20), null);
+        assertEquals(0x0A, ((DataBufferByte) image.getRaster()
+                .getDataBuffer()).getData()[0]);
+        assertEquals(0x20, ((DataBufferByte) image.getRaster()
+                .getDataBuffer()).getData()[1]);
+    }
+
+    @Test
+    public void testASCIIComments() throws IOException {
+        final byte[] gray = bytes("P2\n# size\n4 3\n# max\n255 # 99 is not a sample\n"
+                + "1 2# inline\n3\n# 98 97 on a line of its own\n4  5\t6\r\n"
+                + "7 #\n8 9 10\n# last\n11 12\n");
+        BufferedImage image = read(gray, null);
+        int[] samples = image.getRaster().getPixels(0, 0, 4, 3, (int[]) null);
+        assertEquals("[1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12]",
+                Arrays.toString(samples));
+
+        // skipping samples across comments
+        final ImageReadParam param = param(new Rectangle(1, 1, 3, 2), 2, 1, 0, 0);
+        image = read(gray, param);
+        samples = image.getRaster().getPixels(0, 0, 2, 2, (int[]) null);
+        assertEquals("[6, 8, 10, 12]", Arrays.toString(samples));
+
+        final byte[] rgb = bytes("P3 2 2 255#max\n1 2 3 # first pixel\n4 5 6\n"
+                + "#second row\n7 8 9 10# comment\n11 12\n");
+        param.setSourceRegion(new Rectangle(1, 0, 1, 2));
+        param.setSourceSubsampling(1, 1, 0, 0);
+        param.setSourceBands(new int[] { 2, 0 });
+        param.setDestinationBands(new int[] { 0, 1 });
+        image = read(rgb, param);
+        samples = image.getRaster().getPixels(0, 0, 1, 2, (int[]) null);
+        assertEquals("[6, 4, 12, 10]", Arrays.toString(samples));
+
+        final byte[] bits = bytes("P1\n# bits\n3 2\n1 0# c 1\n1\n0\n#\n1 1\n");
+        image = read(bits, null);
+        samples = image.getRaster().getPixels(0, 0, 3, 2, (int[]) null);
+        assertEquals("[1, 0, 1, 0, 1, 1]", Arrays.toString(samples));
+    }
+}
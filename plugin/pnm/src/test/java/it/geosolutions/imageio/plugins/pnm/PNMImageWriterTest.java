@@ -0,0 +1,282 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.plugins.pnm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.junit.Test;
+
+import com.sun.media.imageio.plugins.pnm.PNMImageWriteParam;
+
+/**
+ * Checks the output of the PNM writer, byte by byte.
+ */
+public class PNMImageWriterTest {
+
+    private static final String LS = System.getProperty("line.separator");
+
+    private static final String COMMENT =
+        "# written by it.geosolutions.imageio.plugins.pnm.PNMImageWriter";
+
+    /**
+     * Writes an image or a raster and returns the encoded bytes.
+     */
+    static byte[] write(final IIOImage image, final ImageWriteParam param)
+            throws IOException {
+        final PNMImageWriter writer = new PNMImageWriter(new PNMImageWriterSpi());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ImageOutputStream out = new MemoryCacheImageOutputStream(bytes);
+        try {
+            writer.setOutput(out);
+            writer.write(null, image, param);
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes with the rows of the ASCII variants formatted by the specified
+     * number of threads.
+     */
+    private static byte[] write(final IIOImage image,
+            final ImageWriteParam param, final int threads) throws IOException {
+        final String previous = System.getProperty(PNMImageWriter.WRITER_THREADS_KEY);
+        System.setProperty(PNMImageWriter.WRITER_THREADS_KEY, Integer.toString(threads));
+        try {
+            return write(image, param);
+        } finally {
+            if (previous != null)
+                System.setProperty(PNMImageWriter.WRITER_THREADS_KEY, previous);
+            else
+                System.clearProperty(PNMImageWriter.WRITER_THREADS_KEY);
+        }
+    }
+
+    static PNMImageWriteParam param(final boolean raw) {
+        final PNMImageWriteParam param = new PNMImageWriteParam();
+        param.setRaw(raw);
+        return param;
+    }
+
+    /**
+     * Returns the header written for the specified variant, size and max
+     * value, the latter being omitted if negative.
+     */
+    private static String header(final int variant, final int width,
+            final int height, final int maxValue) {
+        return "P" + variant + LS + COMMENT + LS + width + " " + height
+                + (maxValue >= 0 ? LS + maxValue : "");
+    }
+
+    /**
+     * Returns the data following a header of the specified length.
+     */
+    private static byte[] data(final byte[] encoded, final int offset) {
+        final byte[] data = new byte[encoded.length - offset];
+        System.arraycopy(encoded, offset, data, 0, data.length);
+        return data;
+    }
+
+    /**
+     * Creates a bilevel image whose pixel at x, y is set when x * 3 + y * 5 is
+     * not a multiple of 7.
+     */
+    private static BufferedImage createBilevel(final int width, final int height) {
+        final BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_BYTE_BINARY);
+        final WritableRaster raster = image.getRaster();
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                raster.setSample(x, y, 0, isSet(x, y) ? 1 : 0);
+        return image;
+    }
+
+    private static boolean isSet(final int x, final int y) {
+        return (x * 3 + y * 5) % 7 != 0;
+    }
+
+    /**
+     * Packs bits, 8 per byte from the most significant one, each row being
+     * padded to a whole byte.
+     */
+    private static byte[] pack(final boolean[][] bits) {
+        final int stride = (bits[0].length + 7) / 8;
+        final byte[] packed = new byte[stride * bits.length];
+        for (int y = 0; y < bits.length; y++)
+            for (int x = 0; x < bits[y].length; x++)
+                if (bits[y][x])
+                    packed[y * stride + x / 8] |= 0x80 >> (x & 7);
+        return packed;
+    }
+
+    @Test
+    public void testASCII() throws IOException {
+        // samples wider than 8 bits are always written as ASCII
+        final BufferedImage gray = new BufferedImage(3, 2,
+                BufferedImage.TYPE_USHORT_GRAY);
+        gray.getRaster().setPixels(0, 0, 3, 2,
+                new int[] { 0, 65535, 7, 12, 345, 6789 });
+        assertEquals(header(2, 3, 2, 65535) + LS + "0 65535 7" + LS
+                + "12 345 6789" + LS, new String(write(new IIOImage(gray,
+                null, null), null)));
+
+        // region, subsampling and band selection
+        final BufferedImage rgb = new BufferedImage(5, 4,
+                BufferedImage.TYPE_3BYTE_BGR);
+        final WritableRaster raster = rgb.getRaster();
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 5; x++)
+                raster.setPixel(x, y, new int[] { x * 10 + y, 100 + x, 200 + y });
+        final PNMImageWriteParam param = param(false);
+        param.setSourceRegion(new Rectangle(1, 1, 4, 3));
+        param.setSourceSubsampling(2, 2, 0, 0);
+        param.setSourceBands(new int[] { 2, 1, 0 });
+        assertEquals(header(3, 2, 2, 255) + LS
+                + "201 101 11 201 103 31" + LS
+                + "203 101 13 203 103 33" + LS,
+                new String(write(new IIOImage(rgb, null, null), param)));
+    }
+
+    @Test
+    public void testLineWrap() throws IOException {
+        // rows of samples of 1 to 5 digits, more than a line long
+        final int width = 97;
+        final int height = 5;
+        final BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_USHORT_GRAY);
+        final WritableRaster raster = image.getRaster();
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                raster.setSample(x, y, 0, (x * 7919 + y * 104729) % 65536);
+
+        final IIOImage iioImage = new IIOImage(image, null, null);
+        final byte[] encoded = write(iioImage, null, 1);
+        final String text = new String(encoded);
+        final String header = header(2, width, height, 65535) + LS;
+        assertTrue(text.startsWith(header));
+
+        // lines as long as possible without exceeding 70 characters, the
+        // samples of each row starting on a new line
+        final String[] lines = text.substring(header.length()).split(LS);
+        int line = 0;
+        for (int y = 0; y < height; y++) {
+            int x = 0;
+            while (x < width) {
+                final String[] tokens = lines[line].split(" ");
+                assertTrue(lines[line].length() <= 70);
+                for (int i = 0; i < tokens.length; i++, x++)
+                    assertEquals(raster.getSample(x, y, 0), Integer.parseInt(tokens[i]));
+                if (x < width)
+                    assertTrue(lines[line].length() + 1
+                            + Integer.toString(raster.getSample(x, y, 0)).length() > 70);
+                line++;
+            }
+        }
+        assertEquals(lines.length, line);
+
+        // the same output when formatted in parallel
+        assertArrayEquals(encoded, write(iioImage, null, 4));
+    }
+
+    @Test
+    public void testPBMInversion() throws IOException {
+        // black is 0 in a TYPE_BYTE_BINARY image, 1 in a PBM file
+        final int width = 19;
+        final int height = 3;
+        final IIOImage image = new IIOImage(createBilevel(width, height), null,
+                null);
+        final boolean[][] black = new boolean[height][width];
+        final StringBuilder ascii = new StringBuilder();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                black[y][x] = !isSet(x, y);
+                if (x > 0)
+                    ascii.append(' ');
+                ascii.append(black[y][x] ? '1' : '0');
+            }
+            ascii.append(LS);
+        }
+
+        // ASCII
+        assertEquals(header(1, width, height, -1) + LS + ascii,
+                new String(write(image, param(false))));
+
+        // raw, copying the packed rows
+        final String header = header(4, width, height, -1) + "\n";
+        byte[] encoded = write(image, param(true));
+        assertEquals(header, new String(encoded, 0, header.length()));
+        assertArrayEquals(pack(black), data(encoded, header.length()));
+
+        // raw, packing the subsampled pixels
+        final boolean[][] subsampled = new boolean[height][(width + 1) / 2];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x += 2)
+                subsampled[y][x / 2] = black[y][x];
+        final PNMImageWriteParam param = param(true);
+        param.setSourceSubsampling(2, 1, 0, 0);
+        encoded = write(image, param);
+        final String subsampledHeader = header(4, (width + 1) / 2, height, -1) + "\n";
+        assertEquals(subsampledHeader, new String(encoded, 0, subsampledHeader.length()));
+        assertArrayEquals(pack(subsampled), data(encoded, subsampledHeader.length()));
+    }
+
+    @Test
+    public void testPackedSubsampling() throws IOException {
+        // a packed raster not located at the origin, written through the
+        // packed rows from a byte aligned column
+        final int width = 30;
+        final int height = 14;
+        final WritableRaster raster = Raster.createPackedRaster(
+                DataBuffer.TYPE_BYTE, width, height, 1, 1, new Point(5, 3));
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                raster.setSample(5 + x, 3 + y, 0, isSet(x, y) ? 1 : 0);
+
+        final Rectangle region = new Rectangle(13, 4, 12, 8);
+        final PNMImageWriteParam param = param(true);
+        param.setSourceRegion(region);
+        param.setSourceSubsampling(1, 3, 0, 0);
+        final byte[] encoded = write(new IIOImage(raster, null, null), param);
+
+        final boolean[][] expected = new boolean[3][region.width];
+        for (int j = 0; j < expected.length; j++)
+            for (int i = 0; i < region.width; i++)
+                expected[j][i] = raster.getSample(region.x + i, region.y + j
+                        * 3, 0) == 1;
+        final String header = header(4, region.width, 3, -1) + "\n";
+        assertEquals(header, new String(encoded, 0, header.length()));
+        assertArrayEquals(pack(expected), data(encoded, header.length()));
+    }
+}
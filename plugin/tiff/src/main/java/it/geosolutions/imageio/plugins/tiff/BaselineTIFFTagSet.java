@@ -93,6 +93,7 @@ import java.util.List;
  * <li>{@link #COMPRESSION_JPEG JPEG-in-TIFF&nbsp;compression}</li>
  * <li>{@link #COMPRESSION_ZLIB Zlib-in-TIFF&nbsp;compression}</li>
  * <li>{@link #COMPRESSION_DEFLATE Deflate&nbsp;compression}</li>
+ * <li>{@link #COMPRESSION_ZSTD Zstandard&nbsp;compression}</li>
  * </ul>
  * </li>
  * <li>{@link #TAG_PHOTOMETRIC_INTERPRETATION PhotometricInterpretation}
@@ -200,6 +201,7 @@ public class BaselineTIFFTagSet extends TIFFTagSet {
      * @see #COMPRESSION_ZLIB
      * @see #COMPRESSION_PACKBITS
      * @see #COMPRESSION_DEFLATE
+     * @see #COMPRESSION_ZSTD
      */
     public static final int TAG_COMPRESSION = 259;
 
@@ -277,6 +279,15 @@ public class BaselineTIFFTagSet extends TIFFTagSet {
      */
     public static final int COMPRESSION_DEFLATE = 32946;
 
+    /**
+     * A value to be used with the "Compression" tag, as registered by
+     * GDAL and libtiff.
+     *
+     * @see #TAG_COMPRESSION
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc8878.txt">Zstandard specification</a>
+     */
+    public static final int COMPRESSION_ZSTD = 50000;
+
     /**
      * Constant specifying the "PhotometricInterpretation" tag.
      *
@@ -1139,6 +1150,7 @@ public class BaselineTIFFTagSet extends TIFFTagSet {
             addValueName(COMPRESSION_ZLIB, "ZLib");
             addValueName(COMPRESSION_PACKBITS, "PackBits");
             addValueName(COMPRESSION_DEFLATE, "Deflate"); // Non-baseline
+            addValueName(COMPRESSION_ZSTD, "ZSTD"); // Non-baseline
 
             // 32771 CCITT
             // 32809 ThunderScan
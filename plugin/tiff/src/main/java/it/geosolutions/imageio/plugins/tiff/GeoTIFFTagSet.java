@@ -117,6 +117,12 @@ public class GeoTIFFTagSet extends TIFFTagSet {
     /** A tag used to store all ASCII-values <i>GeoKey</i>s. */
     public static final int TAG_GEO_ASCII_PARAMS = 34737;
 
+    /**
+     * A tag used by GDAL to store, as an ASCII string, the value of the
+     * samples carrying no data.
+     */
+    public static final int TAG_GDAL_NODATA = 42113;
+
     // GeoTIFF tags
 
     static class ModelPixelScale extends TIFFTag {
@@ -167,6 +173,14 @@ public class GeoTIFFTagSet extends TIFFTagSet {
         }
     }
 
+    static class GDALNoData extends TIFFTag {
+        public GDALNoData() {
+            super("GDALNoData",
+                  TAG_GDAL_NODATA,
+                  1 << TIFFTag.TIFF_ASCII);
+        }
+    }
+
     private static List tags;
 
     private static void initTags() {
@@ -178,6 +192,7 @@ public class GeoTIFFTagSet extends TIFFTagSet {
         tags.add(new GeoTIFFTagSet.GeoKeyDirectory());
         tags.add(new GeoTIFFTagSet.GeoDoubleParams());
         tags.add(new GeoTIFFTagSet.GeoAsciiParams());
+        tags.add(new GeoTIFFTagSet.GDALNoData());
     }
 
     private GeoTIFFTagSet() {
@@ -96,7 +96,12 @@ import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
 
 import javax.imageio.IIOException;
 import javax.imageio.ImageReader;
@@ -2044,30 +2049,16 @@ public abstract class TIFFDecompressor {
         int bytesPerRow = (srcWidth*bitsPerPixel + 7)/8;
         int shortsPerRow = bytesPerRow/2;
 
-        byte[] b = new byte[bytesPerRow*srcHeight];
+        byte[] b = getRawBuffer(bytesPerRow*srcHeight);
         decodeRaw(b, 0, bitsPerPixel, bytesPerRow);
 
-        int bOffset = 0;
-        if(stream.getByteOrder() == ByteOrder.BIG_ENDIAN) {
-            for (int j = 0; j < srcHeight; j++) {
-                for (int i = 0; i < shortsPerRow; i++) {
-                    short hiVal = b[bOffset++];
-                    short loVal = b[bOffset++];
-                    short sval = (short)((hiVal << 8) | (loVal & 0xff));
-                    s[dstOffset + i] = sval;
-                }
-
-                dstOffset += scanlineStride;
-            }
-        } else { // ByteOrder.LITLE_ENDIAN
+        ShortBuffer data = ByteBuffer.wrap(b, 0, bytesPerRow*srcHeight)
+            .order(stream.getByteOrder()).asShortBuffer();
+        if (scanlineStride == shortsPerRow) {
+            data.get(s, dstOffset, shortsPerRow*srcHeight);
+        } else {
             for (int j = 0; j < srcHeight; j++) {
-                for (int i = 0; i < shortsPerRow; i++) {
-                    short loVal = b[bOffset++];
-                    short hiVal = b[bOffset++];
-                    short sval = (short)((hiVal << 8) | (loVal & 0xff));
-                    s[dstOffset + i] = sval;
-                }
-
+                data.get(s, dstOffset, shortsPerRow);
                 dstOffset += scanlineStride;
             }
         }
@@ -2102,34 +2093,16 @@ public abstract class TIFFDecompressor {
         int intsPerRow = srcWidth*numBands;
         int bytesPerRow = intsPerRow*4;
 
-        byte[] b = new byte[bytesPerRow*srcHeight];
+        byte[] b = getRawBuffer(bytesPerRow*srcHeight);
         decodeRaw(b, 0, bitsPerPixel, bytesPerRow);
 
-        int bOffset = 0;
-        if(stream.getByteOrder() == ByteOrder.BIG_ENDIAN) {
-            for (int j = 0; j < srcHeight; j++) {
-                for (int k = 0; k < intsPerRow; k++) {
-                    int v0 = b[bOffset++] & 0xff;
-                    int v1 = b[bOffset++] & 0xff; 
-                    int v2 = b[bOffset++] & 0xff;
-                    int v3 = b[bOffset++] & 0xff;
-                    int ival = (v0 << 24) | (v1 << 16) | (v2 << 8) | v3;
-                    i[dstOffset + k] = ival;
-                }
-
-                dstOffset += scanlineStride;
-            }
-        } else { // ByteOrder.LITLE_ENDIAN
+        IntBuffer data = ByteBuffer.wrap(b, 0, bytesPerRow*srcHeight)
+            .order(stream.getByteOrder()).asIntBuffer();
+        if (scanlineStride == intsPerRow) {
+            data.get(i, dstOffset, intsPerRow*srcHeight);
+        } else {
             for (int j = 0; j < srcHeight; j++) {
-                for (int k = 0; k < intsPerRow; k++) {
-                    int v3 = b[bOffset++] & 0xff;
-                    int v2 = b[bOffset++] & 0xff; 
-                    int v1 = b[bOffset++] & 0xff;
-                    int v0 = b[bOffset++] & 0xff;
-                    int ival = (v0 << 24) | (v1 << 16) | (v2 << 8) | v3;
-                    i[dstOffset + k] = ival;
-                }
-
+                data.get(i, dstOffset, intsPerRow);
                 dstOffset += scanlineStride;
             }
         }
@@ -2164,40 +2137,36 @@ public abstract class TIFFDecompressor {
         int floatsPerRow = srcWidth*numBands;
         int bytesPerRow = floatsPerRow*4;
 
-        byte[] b = new byte[bytesPerRow*srcHeight];
+        byte[] b = getRawBuffer(bytesPerRow*srcHeight);
         decodeRaw(b, 0, bitsPerPixel, bytesPerRow);
 
-        int bOffset = 0;
-        if(stream.getByteOrder() == ByteOrder.BIG_ENDIAN) {
+        FloatBuffer data = ByteBuffer.wrap(b, 0, bytesPerRow*srcHeight)
+            .order(stream.getByteOrder()).asFloatBuffer();
+        if (scanlineStride == floatsPerRow) {
+            data.get(f, dstOffset, floatsPerRow*srcHeight);
+        } else {
             for (int j = 0; j < srcHeight; j++) {
-                for (int i = 0; i < floatsPerRow; i++) {
-                    int v0 = b[bOffset++] & 0xff;
-                    int v1 = b[bOffset++] & 0xff; 
-                    int v2 = b[bOffset++] & 0xff;
-                    int v3 = b[bOffset++] & 0xff;
-                    int ival = (v0 << 24) | (v1 << 16) | (v2 << 8) | v3;
-                    float fval = Float.intBitsToFloat(ival);
-                    f[dstOffset + i] = fval;
-                }
-
+                data.get(f, dstOffset, floatsPerRow);
                 dstOffset += scanlineStride;
             }
-        } else { // ByteOrder.LITLE_ENDIAN
-            for (int j = 0; j < srcHeight; j++) {
-                for (int i = 0; i < floatsPerRow; i++) {
-                    int v3 = b[bOffset++] & 0xff;
-                    int v2 = b[bOffset++] & 0xff; 
-                    int v1 = b[bOffset++] & 0xff;
-                    int v0 = b[bOffset++] & 0xff;
-                    int ival = (v0 << 24) | (v1 << 16) | (v2 << 8) | v3;
-                    float fval = Float.intBitsToFloat(ival);
-//                    System.out.println(ival+" "+fval);
-                    f[dstOffset + i] = fval;
-                }
+        }
+    }
 
-                dstOffset += scanlineStride;
-            }
+    /** Buffer holding raw bytes before their conversion to samples. */
+    private byte[] rawBuffer;
+
+    /**
+     * Returns a cleared buffer of at least <code>length</code> bytes to
+     * decode raw data into before converting it, reused across calls so that
+     * no garbage is produced per strip or tile.
+     */
+    private byte[] getRawBuffer(int length) {
+        if (rawBuffer == null || rawBuffer.length < length) {
+            rawBuffer = new byte[length];
+        } else {
+            Arrays.fill(rawBuffer, 0, length, (byte)0);
         }
+        return rawBuffer;
     }
 
     //
@@ -2650,7 +2619,7 @@ public abstract class TIFFDecompressor {
                             // Decode into bytes and reformat into shorts.
                             int bpp = getBitsPerPixel(sm);
                             int bytesPerRow = (bpp*srcWidth + 7)/8;
-                            byte[] buf = new byte[bytesPerRow*srcHeight];
+                            byte[] buf = getRawBuffer(bytesPerRow*srcHeight);
                             decodeRaw(buf, 0, bpp, bytesPerRow);
                             reformatData(buf, bytesPerRow, srcHeight,
                                          shortData, null,
@@ -2672,7 +2641,7 @@ public abstract class TIFFDecompressor {
                             // Decode into bytes and reformat into ints.
                             int bpp = getBitsPerPixel(sm);
                             int bytesPerRow = (bpp*srcWidth + 7)/8;
-                            byte[] buf = new byte[bytesPerRow*srcHeight];
+                            byte[] buf = getRawBuffer(bytesPerRow*srcHeight);
                             decodeRaw(buf, 0, bpp, bytesPerRow);
                             reformatData(buf, bytesPerRow, srcHeight,
                                          null, intData,
@@ -2688,7 +2657,7 @@ public abstract class TIFFDecompressor {
                 // into the Raster.
                 int bpp = getBitsPerPixel(sm);
                 int bytesPerRow = (bpp*srcWidth + 7)/8;
-                byte[] buf = new byte[bytesPerRow*srcHeight];
+                byte[] buf = getRawBuffer(bytesPerRow*srcHeight);
                 decodeRaw(buf, 0, bpp, bytesPerRow);
                 reformatDiscontiguousData(buf, bytesPerRow,
                                           srcWidth, srcHeight,
@@ -3026,44 +2995,16 @@ public abstract class TIFFDecompressor {
         int doublesPerRow = srcWidth*numBands;
         int bytesPerRow = doublesPerRow*8;
 
-        byte[] b = new byte[bytesPerRow*srcHeight];
+        byte[] b = getRawBuffer(bytesPerRow*srcHeight);
         decodeRaw(b, 0, pixelBitStride, bytesPerRow);
 
-        int bOffset = 0;
-        if(stream.getByteOrder() == ByteOrder.BIG_ENDIAN) {
-            for (int j = 0; j < srcHeight; j++) {
-                for (int i = 0; i < doublesPerRow; i++) {
-                    long v0 = b[bOffset++] & 0xFFL;
-                    long v1 = b[bOffset++] & 0xFFL; 
-                    long v2 = b[bOffset++] & 0xFFL;
-                    long v3 = b[bOffset++] & 0xFFL;
-                    long v4 = b[bOffset++] & 0xFFL;
-                    long v5 = b[bOffset++] & 0xFFL;
-                    long v6 = b[bOffset++] & 0xFFL;     
-                    long v7 = b[bOffset++] & 0xFFL;
-                    long ival = (v0 << 56) | (v1 << 48) | (v2 << 40) | (v3 << 32)|(v4 << 24)|(v5 << 16)|(v6 << 8)|v7;
-                    double dval = Double.longBitsToDouble(ival);
-                    doubleData[dstOffset + i] = dval;
-                }
-
-                dstOffset += scanlineStride;
-            }
-        } else { // ByteOrder.LITLE_ENDIAN
+        DoubleBuffer data = ByteBuffer.wrap(b, 0, bytesPerRow*srcHeight)
+            .order(stream.getByteOrder()).asDoubleBuffer();
+        if (scanlineStride == doublesPerRow) {
+            data.get(doubleData, dstOffset, doublesPerRow*srcHeight);
+        } else {
             for (int j = 0; j < srcHeight; j++) {
-                for (int i = 0; i < doublesPerRow; i++) {
-                	long v7 = b[bOffset++] & 0xFFL;
-                	long v6 = b[bOffset++] & 0xFFL;
-                	long v5 = b[bOffset++] & 0xFFL;
-                	long v4 = b[bOffset++] & 0xFFL;
-                	long v3 = b[bOffset++] & 0xFFL;
-                	long v2 = b[bOffset++] & 0xFFL; 
-                	long v1 = b[bOffset++] & 0xFFL;
-                	long v0 = b[bOffset++] & 0xFFL;
-                    long ival = (v0 << 56) | (v1 << 48) | (v2 << 40) | (v3 << 32)|(v4 << 24)|(v5 << 16)|(v6 << 8)|v7;
-                    double dval = Double.longBitsToDouble(ival);
-                    doubleData[dstOffset + i] = dval;
-                }
-
+                data.get(doubleData, dstOffset, doublesPerRow);
                 dstOffset += scanlineStride;
             }
         }
@@ -3076,5 +3017,6 @@ public abstract class TIFFDecompressor {
         this.image = null;
         this.rawImage = null;
         this.colorMap = null;
+        this.rawBuffer = null;
     }
 }
@@ -106,6 +106,11 @@ import javax.imageio.ImageReadParam;
  * to the <code>ImageReadParam</code> being used.  The reader's
  * <code>read</code> method may be called with the
  * <code>ImageReadParam</code> set.
+ *
+ * <p> Reads of subsampled regions of the first image of a pyramidal
+ * TIFF may be redirected to the most suitable internal or external
+ * (<code>.ovr</code>) overview by means of the
+ * <code>setReadFromOverviews</code> method.
  */
 public class TIFFImageReadParam extends ImageReadParam {
 
@@ -115,6 +120,10 @@ public class TIFFImageReadParam extends ImageReadParam {
 
     TIFFColorConverter colorConverter = null;
 
+    boolean readFromOverviews = false;
+
+    Double noDataValue = null;
+
     /**
      * Constructs a <code>TIFFImageReadParam</code>.  Tags defined by
      * the <code>TIFFTagSet</code>s <code>BaselineTIFFTagSet</code>,
@@ -234,4 +243,68 @@ public class TIFFImageReadParam extends ImageReadParam {
     public TIFFColorConverter getColorConverter() {
         return this.colorConverter;
     }
+
+    /**
+     * Sets whether a subsampled read of the first image should be
+     * served by the most suitable overview of the file.  When enabled,
+     * the reader picks the reduced resolution image, either internal
+     * or contained in an external <code>.ovr</code> file, whose
+     * decimation is the largest one dividing the requested
+     * subsampling, and reads from it the rescaled source region with
+     * the residual subsampling.  Reads whose subsampling is not a
+     * multiple of any overview decimation are served by the full
+     * resolution image.  The returned image has the same size it
+     * would have if read from the full resolution image, although
+     * its pixels are computed from the overview.  The default value
+     * is <code>false</code>.
+     *
+     * @param readFromOverviews <code>true</code> to let the reader
+     * read from overviews.
+     *
+     * @see #getReadFromOverviews
+     */
+    public void setReadFromOverviews(boolean readFromOverviews) {
+        this.readFromOverviews = readFromOverviews;
+    }
+
+    /**
+     * Returns whether a subsampled read of the first image may be
+     * served by an overview.
+     *
+     * @return <code>true</code> if the reader is allowed to read
+     * from overviews.
+     *
+     * @see #setReadFromOverviews(boolean)
+     */
+    public boolean getReadFromOverviews() {
+        return this.readFromOverviews;
+    }
+
+    /**
+     * Sets the value used to fill the strips or tiles missing from a
+     * sparse file, that is those having a zero offset and byte count.
+     * Such strips or tiles are filled without accessing the stream.  If
+     * <code>null</code>, the value of the <code>GDALNoData</code> field
+     * of the image is used if present, <code>0</code> otherwise.  The
+     * default value is <code>null</code>.
+     *
+     * @param noDataValue the fill value, or <code>null</code>.
+     *
+     * @see #getNoDataValue
+     */
+    public void setNoDataValue(Double noDataValue) {
+        this.noDataValue = noDataValue;
+    }
+
+    /**
+     * Returns the value used to fill the strips or tiles missing from a
+     * sparse file.
+     *
+     * @return the fill value, or <code>null</code> if not set.
+     *
+     * @see #setNoDataValue(Double)
+     */
+    public Double getNoDataValue() {
+        return this.noDataValue;
+    }
 }
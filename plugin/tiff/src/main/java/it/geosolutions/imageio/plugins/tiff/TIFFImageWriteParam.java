@@ -138,6 +138,12 @@ import javax.imageio.ImageWriteParam;
  * <td>EXIF-specific JPEG compression (see note following this table)</td>
  * <td><a href="http://www.exif.org/Exif2-2.PDF">EXIF 2.2 Specification</a>
  * (PDF), section 4.5.5, "Basic Structure of Thumbnail Data"</td>
+ * <tr>
+ * <td>ZSTD</td>
+ * <td>Zstandard compression (see note following this table)</td>
+ * <td><a href="https://www.rfc-editor.org/rfc/rfc8878.txt">
+ * Zstandard Compression and the application/zstd Media Type</a></td>
+ * </tr>
  * </table>
  * </p>
  * <p>
@@ -158,6 +164,13 @@ import javax.imageio.ImageWriteParam;
  * </p>
  *
  * <p>
+ * ZSTD compression writes each image segment (strip or tile) as a single
+ * Zstandard frame, using the Compression field value 50000 registered by
+ * GDAL and libtiff. The compression level, from 1 to 22, is set through
+ * {@link #setZstdLevel(int)}.
+ * </p>
+ *
+ * <p>
  * "EXIF JPEG" is a compression type used when writing the contents of an
  * APP1 EXIF marker segment for inclusion in a JPEG native image metadata
  * tree. The contents appended to the output when this compression type is
@@ -170,6 +183,15 @@ import javax.imageio.ImageWriteParam;
  * replacement capability of the TIFF writer.
  * </p>
  *
+ * <p>
+ * JPEG compression goes through a JPEG <code>ImageWriter</code> plug-in
+ * for each strip or tile unless the TurboJPEG compressor is requested
+ * through {@link #setTurboJPEG(boolean)}. If the TurboJPEG wrapper and its
+ * native library are available, a single native compressor is then used
+ * for the whole image, writing the quantization and Huffman tables once in
+ * the JPEGTables field and each strip or tile as an abbreviated stream.
+ * </p>
+ *
  * <p> If ZLib/Deflate or JPEG compression is used, the compression quality
  * may be set. For ZLib/Deflate the supplied floating point quality value is
  * rescaled to the range <tt>[1,&nbsp;9]</tt> and truncated to an integer
@@ -191,9 +213,47 @@ import javax.imageio.ImageWriteParam;
  * compression is being used and strips are being written, the number of
  * rows per strip is rounded to a multiple of 8 times the maximum MCU over
  * both dimensions.</p>
+ *
+ * <p> If the cloud optimized layout is enabled, all the IFDs are written
+ * at the head of the file, followed by the image data.  When writing a
+ * sequence, the images are expected to be a full resolution image
+ * followed by its overviews in decreasing size order; they are written
+ * all together by <code>endWriteSequence</code>, the data of the
+ * smallest overview first.</p>
+ *
+ * <p> A number of overview levels, each one half the size of the previous
+ * one, may be generated while writing an image.  They are built out of
+ * the strips or tiles being encoded, so that the source is read just
+ * once, using the resampling set through
+ * {@link #setOverviewResampling(int)}, and appended to the file as reduced
+ * resolution images.  If the cloud optimized layout is enabled, the
+ * overviews are written before the image data as required.</p>
  */
 public class TIFFImageWriteParam extends ImageWriteParam {
 
+    /**
+     * Overview resampling picking the upper left pixel of each 2x2 block.
+     */
+    public static final int OVERVIEW_RESAMPLING_NEAREST = 0;
+
+    /**
+     * Overview resampling averaging the pixels of each 2x2 block, ignoring
+     * NaN samples.  Palette images are resampled with
+     * {@link #OVERVIEW_RESAMPLING_MODE} instead.
+     */
+    public static final int OVERVIEW_RESAMPLING_AVERAGE = 1;
+
+    /**
+     * Overview resampling picking the most frequent pixel of each 2x2
+     * block.
+     */
+    public static final int OVERVIEW_RESAMPLING_MODE = 2;
+
+    /**
+     * The default ZSTD compression level, the same used by GDAL.
+     */
+    public static final int DEFAULT_ZSTD_LEVEL = 9;
+
     TIFFCompressor compressor = null;
 
     TIFFColorConverter colorConverter = null;
@@ -203,6 +263,22 @@ public class TIFFImageWriteParam extends ImageWriteParam {
     
     private boolean forceToBigTIFF = false;
 
+    private boolean cloudOptimized = false;
+
+    private boolean tileLeaderTrailer = false;
+
+    private int overviewLevels = 0;
+
+    private int overviewResampling = OVERVIEW_RESAMPLING_NEAREST;
+
+    private int zstdLevel = DEFAULT_ZSTD_LEVEL;
+
+    private boolean sparseTiles = false;
+
+    private boolean turboJPEG = false;
+
+    private double noDataValue = 0;
+
     public boolean isForceToBigTIFF() {
 		return forceToBigTIFF;
 	}
@@ -241,8 +317,9 @@ public class TIFFImageWriteParam extends ImageWriteParam {
             return compressor.isCompressionLossless();
         }
 
-        for (int i = 0; i < compressionTypes.length; i++) {
-            if (compressionType.equals(compressionTypes[i])) {
+        // the lossless flags follow the known compression types
+        for (int i = 0; i < TIFFImageWriter.compressionTypes.length; i++) {
+            if (compressionType.equals(TIFFImageWriter.compressionTypes[i])) {
                 return TIFFImageWriter.isCompressionLossless[i];
             }
         }
@@ -416,4 +493,242 @@ public class TIFFImageWriteParam extends ImageWriteParam {
     public void unsetColorConverter() {
         this.colorConverter = null;
     }
+
+    /**
+     * Sets whether the image, and the overviews following it in a
+     * sequence, should be written with a cloud optimized layout: all the
+     * IFDs, together with the strip or tile offsets and byte counts, at
+     * the head of the file, then the image data from the smallest
+     * overview to the full resolution image, each one in row-major
+     * order.  The default value is <code>false</code>.
+     *
+     * @param cloudOptimized <code>true</code> to write a cloud optimized
+     * layout.
+     *
+     * @see #isCloudOptimized
+     */
+    public void setCloudOptimized(boolean cloudOptimized) {
+        this.cloudOptimized = cloudOptimized;
+    }
+
+    /**
+     * Returns whether a cloud optimized layout will be written.
+     *
+     * @return <code>true</code> if a cloud optimized layout will be
+     * written.
+     *
+     * @see #setCloudOptimized(boolean)
+     */
+    public boolean isCloudOptimized() {
+        return cloudOptimized;
+    }
+
+    /**
+     * Sets whether, in a cloud optimized layout, each strip or tile
+     * should be preceded by its byte count, as a little endian 4 byte
+     * unsigned integer, and followed by a copy of its last 4 bytes.
+     * This lets readers fetching a whole range of tiles check their
+     * integrity without reading the IFDs.  The default value is
+     * <code>false</code>.
+     *
+     * @param tileLeaderTrailer <code>true</code> to write leader and
+     * trailer bytes around each strip or tile.
+     *
+     * @see #isTileLeaderTrailer
+     */
+    public void setTileLeaderTrailer(boolean tileLeaderTrailer) {
+        this.tileLeaderTrailer = tileLeaderTrailer;
+    }
+
+    /**
+     * Returns whether leader and trailer bytes will be written around
+     * each strip or tile of a cloud optimized layout.
+     *
+     * @return <code>true</code> if leader and trailer bytes will be
+     * written.
+     *
+     * @see #setTileLeaderTrailer(boolean)
+     */
+    public boolean isTileLeaderTrailer() {
+        return tileLeaderTrailer;
+    }
+
+    /**
+     * Sets the number of overview levels to be generated while writing
+     * the image, each one half the size of the previous one.  Generation
+     * stops earlier if an overview of 1x1 pixels is reached.  The default
+     * value is <code>0</code>.
+     *
+     * @param overviewLevels the number of overview levels.
+     *
+     * @throws IllegalArgumentException if <code>overviewLevels</code> is
+     * negative.
+     *
+     * @see #getOverviewLevels
+     */
+    public void setOverviewLevels(int overviewLevels) {
+        if (overviewLevels < 0) {
+            throw new IllegalArgumentException("overviewLevels < 0!");
+        }
+        this.overviewLevels = overviewLevels;
+    }
+
+    /**
+     * Returns the number of overview levels to be generated while writing
+     * the image.
+     *
+     * @return the number of overview levels.
+     *
+     * @see #setOverviewLevels(int)
+     */
+    public int getOverviewLevels() {
+        return overviewLevels;
+    }
+
+    /**
+     * Sets the resampling used for generating the overviews, one of
+     * {@link #OVERVIEW_RESAMPLING_NEAREST},
+     * {@link #OVERVIEW_RESAMPLING_AVERAGE} and
+     * {@link #OVERVIEW_RESAMPLING_MODE}.  The default value is
+     * <code>OVERVIEW_RESAMPLING_NEAREST</code>.
+     *
+     * @param overviewResampling the resampling.
+     *
+     * @throws IllegalArgumentException if <code>overviewResampling</code>
+     * is not one of the supported values.
+     *
+     * @see #getOverviewResampling
+     */
+    public void setOverviewResampling(int overviewResampling) {
+        if (overviewResampling < OVERVIEW_RESAMPLING_NEAREST ||
+            overviewResampling > OVERVIEW_RESAMPLING_MODE) {
+            throw new IllegalArgumentException("Unknown overviewResampling!");
+        }
+        this.overviewResampling = overviewResampling;
+    }
+
+    /**
+     * Returns the resampling used for generating the overviews.
+     *
+     * @return the resampling.
+     *
+     * @see #setOverviewResampling(int)
+     */
+    public int getOverviewResampling() {
+        return overviewResampling;
+    }
+
+    /**
+     * Sets the level used by ZSTD compression, from 1 (fastest) to 22
+     * (smallest output).  The default value is
+     * {@link #DEFAULT_ZSTD_LEVEL}.
+     *
+     * @param zstdLevel the compression level.
+     *
+     * @throws IllegalArgumentException if <code>zstdLevel</code> is
+     * outside of the <code>[1, 22]</code> range.
+     *
+     * @see #getZstdLevel
+     */
+    public void setZstdLevel(int zstdLevel) {
+        if (zstdLevel < 1 || zstdLevel > 22) {
+            throw new IllegalArgumentException("zstdLevel < 1 || zstdLevel > 22!");
+        }
+        this.zstdLevel = zstdLevel;
+    }
+
+    /**
+     * Returns the level used by ZSTD compression.
+     *
+     * @return the compression level.
+     *
+     * @see #setZstdLevel(int)
+     */
+    public int getZstdLevel() {
+        return zstdLevel;
+    }
+
+    /**
+     * Sets whether JPEG compression should use the native TurboJPEG
+     * compressor, falling back to the JPEG <code>ImageWriter</code>
+     * plug-ins if it is not available.  The default value is
+     * <code>false</code>.
+     *
+     * @param turboJPEG <code>true</code> to compress through TurboJPEG.
+     *
+     * @see #isTurboJPEG
+     */
+    public void setTurboJPEG(boolean turboJPEG) {
+        this.turboJPEG = turboJPEG;
+    }
+
+    /**
+     * Returns whether JPEG compression should use the native TurboJPEG
+     * compressor.
+     *
+     * @return <code>true</code> if TurboJPEG has been requested.
+     *
+     * @see #setTurboJPEG(boolean)
+     */
+    public boolean isTurboJPEG() {
+        return turboJPEG;
+    }
+
+    /**
+     * Sets whether the strips or tiles whose samples all hold the
+     * nodata value should be omitted from the file, recording them with
+     * a zero offset and byte count, as GDAL does with its
+     * <code>SPARSE_OK</code> option.  The nodata value is also recorded
+     * in the <code>GDALNoData</code> field so that readers fill the
+     * omitted areas with it.  The option is ignored when the sample
+     * values are rescaled or color converted while writing.  The
+     * default value is <code>false</code>.
+     *
+     * @param sparseTiles <code>true</code> to omit the nodata strips
+     * or tiles.
+     *
+     * @see #isSparseTiles
+     * @see #setNoDataValue(double)
+     */
+    public void setSparseTiles(boolean sparseTiles) {
+        this.sparseTiles = sparseTiles;
+    }
+
+    /**
+     * Returns whether the strips or tiles holding only the nodata value
+     * will be omitted from the file.
+     *
+     * @return <code>true</code> if the nodata strips or tiles will be
+     * omitted.
+     *
+     * @see #setSparseTiles(boolean)
+     */
+    public boolean isSparseTiles() {
+        return sparseTiles;
+    }
+
+    /**
+     * Sets the value of the samples carrying no data, which may be
+     * <code>Double.NaN</code> for floating point images.  The default
+     * value is <code>0</code>.
+     *
+     * @param noDataValue the nodata value.
+     *
+     * @see #getNoDataValue
+     * @see #setSparseTiles(boolean)
+     */
+    public void setNoDataValue(double noDataValue) {
+        this.noDataValue = noDataValue;
+    }
+
+    /**
+     * Returns the value of the samples carrying no data.
+     *
+     * @return the nodata value.
+     *
+     * @see #setNoDataValue(double)
+     */
+    public double getNoDataValue() {
+        return noDataValue;
+    }
 }
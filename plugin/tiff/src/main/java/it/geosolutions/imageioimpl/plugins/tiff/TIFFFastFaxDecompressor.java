@@ -0,0 +1,402 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A table driven decoder for CCITT RLE, T.4 and T.6 compressed bilevel data.
+ * <p>
+ * Codes are read from a 64 bit accumulator and resolved with a single lookup
+ * in tables indexed by the next 12 (white runs), 13 (black runs) or 7 (2D
+ * modes) bits of the stream. Each scanline is decoded into a list of changing
+ * elements, which also serves as the reference line of the next scanline, and
+ * is then written to the packed destination with whole byte fills for both
+ * white and black runs.
+ * <p>
+ * Streams using uncompressed mode, as well as damaged streams, are handed
+ * over to {@link TIFFFaxDecompressor}, which reports and recovers from them.
+ */
+public class TIFFFastFaxDecompressor extends TIFFFaxDecompressor {
+
+    private static final int WHITE_BITS = 12;
+
+    private static final int BLACK_BITS = 13;
+
+    private static final int MODE_BITS = 7;
+
+    /** Run lengths (high bits) and code lengths (low 4 bits) of white codes. */
+    private static final int[] WHITE_RUNS =
+        createRunTable(TIFFFaxCompressor.termCodesWhite,
+                       TIFFFaxCompressor.makeupCodesWhite, WHITE_BITS);
+
+    /** Run lengths (high bits) and code lengths (low 4 bits) of black codes. */
+    private static final int[] BLACK_RUNS =
+        createRunTable(TIFFFaxCompressor.termCodesBlack,
+                       TIFFFaxCompressor.makeupCodesBlack, BLACK_BITS);
+
+    private static final int MODE_PASS = 1;
+
+    private static final int MODE_HORIZONTAL = 2;
+
+    private static final int MODE_EXTENSION = 3;
+
+    /** Mode of vertical code V0, VL3 to VR3 being MODE_V0 - 3 to MODE_V0 + 3. */
+    private static final int MODE_V0 = 7;
+
+    /** Modes (high bits) and code lengths (low 4 bits) of 2D codes. */
+    private static final int[] MODES = new int[1 << MODE_BITS];
+
+    static {
+        addCode(MODES, MODE_BITS, 0x1, 1, MODE_V0);           // 1
+        addCode(MODES, MODE_BITS, 0x3, 3, MODE_V0 + 1);       // 011
+        addCode(MODES, MODE_BITS, 0x2, 3, MODE_V0 - 1);       // 010
+        addCode(MODES, MODE_BITS, 0x1, 3, MODE_HORIZONTAL);   // 001
+        addCode(MODES, MODE_BITS, 0x1, 4, MODE_PASS);         // 0001
+        addCode(MODES, MODE_BITS, 0x3, 6, MODE_V0 + 2);       // 000011
+        addCode(MODES, MODE_BITS, 0x2, 6, MODE_V0 - 2);       // 000010
+        addCode(MODES, MODE_BITS, 0x3, 7, MODE_V0 + 3);       // 0000011
+        addCode(MODES, MODE_BITS, 0x2, 7, MODE_V0 - 3);       // 0000010
+        addCode(MODES, MODE_BITS, 0x1, 7, MODE_EXTENSION);    // 0000001
+    }
+
+    // Compressed data and the bit accumulator reading it
+    private byte[] source;
+    private int sourceLength;
+    private int sourcePosition;
+    private long bits;
+    private int bitCount;
+
+    // Changing elements of the reference and of the current scanline
+    private int[] referenceLine;
+    private int[] codingLine;
+
+    public TIFFFastFaxDecompressor() {}
+
+    private static int[] createRunTable(int[] termCodes, int[] makeupCodes,
+                                        int tableBits) {
+        final int[] table = new int[1 << tableBits];
+        for (int run = 0; run < 64; run++) {
+            addCode(table, tableBits, termCodes[run], run);
+        }
+        for (int i = 1; i < makeupCodes.length; i++) {
+            if (makeupCodes[i] != 0) {
+                addCode(table, tableBits, makeupCodes[i], i * 64);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Adds an entry of the {@link TIFFFaxCompressor} code tables, holding the
+     * code left aligned in the high bits and its length in the low bits.
+     */
+    private static void addCode(int[] table, int tableBits, int entry,
+                                int value) {
+        final int length = entry & 0xffff;
+        addCode(table, tableBits, entry >>> (32 - length), length, value);
+    }
+
+    private static void addCode(int[] table, int tableBits, int code,
+                                int length, int value) {
+        final int shift = tableBits - length;
+        Arrays.fill(table, code << shift, (code + 1) << shift,
+                    (value << 4) | length);
+    }
+
+    public void decodeRaw(byte[] b, int dstOffset,
+                          int pixelBitStride, // will always be 1
+                          int scanlineStride) throws IOException {
+        final int length = (int)byteCount;
+        if (source == null || source.length < length) {
+            source = new byte[length];
+        }
+        stream.seek(offset);
+        stream.readFully(source, 0, length);
+        if (fillOrder == 2) {
+            for (int i = 0; i < length; i++) {
+                source[i] = flipTable[source[i] & 0xff];
+            }
+        }
+        sourceLength = length;
+
+        boolean decoded;
+        try {
+            decoded = decode(b, dstOffset, scanlineStride);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            decoded = false;
+        }
+
+        if (!decoded) {
+            final int rowBytes = (srcWidth + 7) / 8;
+            for (int y = 0, row = dstOffset; y < srcHeight;
+                 y++, row += scanlineStride) {
+                Arrays.fill(b, row, row + rowBytes, (byte)0);
+            }
+            super.decodeRaw(b, dstOffset, pixelBitStride, scanlineStride);
+        }
+    }
+
+    /**
+     * Decodes the strip or tile into <code>b</code>, returning
+     * <code>false</code> as soon as data which can not be handled is met.
+     */
+    private boolean decode(byte[] b, int dstOffset, int scanlineStride) {
+        final int w = srcWidth;
+        final int h = srcHeight;
+
+        final int size = 2 * w + 8;
+        if (referenceLine == null || referenceLine.length < size) {
+            referenceLine = new int[size];
+            codingLine = new int[size];
+        }
+        int[] ref = referenceLine;
+        int[] cur = codingLine;
+
+        // The line preceding the first one is an imaginary white line
+        ref[0] = ref[1] = ref[2] = w;
+
+        sourcePosition = 0;
+        bits = 0L;
+        bitCount = 0;
+
+        final long sourceBits = 8L * sourceLength;
+        for (int y = 0, row = dstOffset; y < h; y++, row += scanlineStride) {
+            final int n;
+            if (compression == BaselineTIFFTagSet.COMPRESSION_CCITT_RLE) {
+                n = decode1D(cur, w);
+                // RLE lines start on byte boundaries
+                skipBits((8 - (int)(bitPosition() & 7)) & 7);
+            } else if (compression == BaselineTIFFTagSet.COMPRESSION_CCITT_T_4) {
+                if (!skipEOL(sourceBits)) {
+                    return false;
+                }
+                boolean is2D = false;
+                if (oneD == 1) {
+                    is2D = peekBits(1) == 0;
+                    skipBits(1);
+                    if (is2D && y == 0) {
+                        return false;
+                    }
+                }
+                n = is2D ? decode2D(ref, cur, w) : decode1D(cur, w);
+            } else if (compression == BaselineTIFFTagSet.COMPRESSION_CCITT_T_6) {
+                n = decode2D(ref, cur, w);
+            } else {
+                return false;
+            }
+            if (n < 0 || bitPosition() > sourceBits) {
+                return false;
+            }
+
+            cur[n] = cur[n + 1] = cur[n + 2] = w;
+            writeLine(b, row, cur, n, w);
+
+            final int[] swap = ref;
+            ref = cur;
+            cur = swap;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a line of alternating white and black runs, returning the
+     * number of changing elements or -1 on invalid data.
+     */
+    private int decode1D(int[] cur, int w) {
+        int a0 = 0;
+        int n = 0;
+        while (true) {
+            int run = decodeRun(WHITE_RUNS, WHITE_BITS);
+            if (run < 0) {
+                return -1;
+            }
+            a0 += run;
+            cur[n++] = a0;
+            if (a0 >= w) {
+                break;
+            }
+            run = decodeRun(BLACK_RUNS, BLACK_BITS);
+            if (run < 0) {
+                return -1;
+            }
+            a0 += run;
+            cur[n++] = a0;
+            if (a0 >= w) {
+                break;
+            }
+        }
+        return a0 == w ? n : -1;
+    }
+
+    /**
+     * Decodes a line coded with respect to the reference line
+     * <code>ref</code>, returning the number of changing elements or -1 on
+     * invalid data or uncompressed mode.
+     */
+    private int decode2D(int[] ref, int[] cur, int w) {
+        int a0 = -1;
+        int color = 0;
+        int n = 0;
+        // Index of b1, whose parity always matches the current color
+        int bi = 0;
+        while (a0 < w) {
+            while (ref[bi] <= a0) {
+                bi += 2;
+            }
+            final int b1 = ref[bi];
+
+            final int entry = MODES[peekBits(MODE_BITS)];
+            if (entry == 0) {
+                return -1;
+            }
+            skipBits(entry & 0xf);
+            final int mode = entry >>> 4;
+
+            if (mode == MODE_PASS) {
+                a0 = ref[bi + 1];
+                bi += 2;
+            } else if (mode == MODE_HORIZONTAL) {
+                final int start = a0 < 0 ? 0 : a0;
+                final int run1 = color == 0 ?
+                    decodeRun(WHITE_RUNS, WHITE_BITS) :
+                    decodeRun(BLACK_RUNS, BLACK_BITS);
+                final int run2 = color == 0 ?
+                    decodeRun(BLACK_RUNS, BLACK_BITS) :
+                    decodeRun(WHITE_RUNS, WHITE_BITS);
+                if (run1 < 0 || run2 < 0 || start + run1 + run2 > w) {
+                    return -1;
+                }
+                cur[n++] = start + run1;
+                a0 = start + run1 + run2;
+                cur[n++] = a0;
+            } else if (mode == MODE_EXTENSION) {
+                return -1;
+            } else {
+                final int a1 = b1 + mode - MODE_V0;
+                if (a1 < a0 || a1 < 0 || a1 > w) {
+                    return -1;
+                }
+                cur[n++] = a1;
+                a0 = a1;
+                color ^= 1;
+                bi = bi > 0 ? bi - 1 : bi + 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Decodes a sequence of make-up codes followed by a terminating code,
+     * returning the run length or -1 on invalid data.
+     */
+    private int decodeRun(int[] table, int tableBits) {
+        int run = 0;
+        while (true) {
+            final int entry = table[peekBits(tableBits)];
+            if (entry == 0) {
+                return -1;
+            }
+            skipBits(entry & 0xf);
+            final int length = entry >>> 4;
+            run += length;
+            if (length < 64) {
+                return run;
+            }
+        }
+    }
+
+    /**
+     * Skips the fill bits and the EOL code preceding a T.4 line.
+     */
+    private boolean skipEOL(long sourceBits) {
+        int zeros = 0;
+        while (peekBits(8) == 0) {
+            skipBits(8);
+            zeros += 8;
+            if (bitPosition() > sourceBits) {
+                return false;
+            }
+        }
+        final int leading = Integer.numberOfLeadingZeros(peekBits(8)) - 24;
+        skipBits(leading + 1);
+        return zeros + leading >= 11;
+    }
+
+    /**
+     * Writes a decoded line, setting black runs and clearing white ones.
+     */
+    private static void writeLine(byte[] b, int row, int[] cur, int n, int w) {
+        Arrays.fill(b, row, row + (w + 7) / 8, (byte)0);
+        for (int i = 0; i < n; i += 2) {
+            final int from = cur[i];
+            final int to = cur[i + 1];
+            if (from < to) {
+                setToBlack(b, row, from, to);
+            }
+        }
+    }
+
+    private static void setToBlack(byte[] b, int row, int from, int to) {
+        int first = row + (from >> 3);
+        final int last = row + ((to - 1) >> 3);
+        final int firstMask = 0xff >>> (from & 7);
+        final int lastMask = (0xff << (7 - ((to - 1) & 7))) & 0xff;
+        if (first == last) {
+            b[first] |= (byte)(firstMask & lastMask);
+            return;
+        }
+        b[first++] |= (byte)firstMask;
+        if (last - first > 8) {
+            Arrays.fill(b, first, last, (byte)0xff);
+        } else {
+            while (first < last) {
+                b[first++] = (byte)0xff;
+            }
+        }
+        b[last] |= (byte)lastMask;
+    }
+
+    private long bitPosition() {
+        return 8L * sourcePosition - bitCount;
+    }
+
+    private int peekBits(int n) {
+        if (bitCount < n) {
+            // Past the end of the data zeros are read, which never form a
+            // valid code and are caught by the callers
+            while (bitCount <= 56) {
+                final int next = sourcePosition < sourceLength ?
+                    source[sourcePosition] & 0xff : 0;
+                sourcePosition++;
+                bits = (bits << 8) | next;
+                bitCount += 8;
+            }
+        }
+        return (int)(bits >>> (bitCount - n)) & ((1 << n) - 1);
+    }
+
+    private void skipBits(int n) {
+        if (bitCount < n) {
+            peekBits(n);
+        }
+        bitCount -= n;
+    }
+}
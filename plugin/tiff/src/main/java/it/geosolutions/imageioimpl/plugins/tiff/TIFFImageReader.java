@@ -75,12 +75,16 @@ package it.geosolutions.imageioimpl.plugins.tiff;
 
 import it.geosolutions.imageio.maskband.DatasetLayout;
 import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.GeoTIFFTagSet;
 import it.geosolutions.imageio.plugins.tiff.TIFFColorConverter;
 import it.geosolutions.imageio.plugins.tiff.TIFFDecompressor;
 import it.geosolutions.imageio.plugins.tiff.TIFFField;
 import it.geosolutions.imageio.plugins.tiff.TIFFImageReadParam;
+import it.geosolutions.imageio.plugins.tiff.TIFFTag;
+import it.geosolutions.imageio.plugins.tiff.TIFFTagSet;
 import it.geosolutions.imageio.stream.input.FileImageInputStreamExtImpl;
 
+import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.color.ColorSpace;
@@ -92,6 +96,7 @@ import java.awt.image.ComponentColorModel;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
@@ -287,6 +292,15 @@ public class TIFFImageReader extends ImageReader {
 
     private static final boolean DEBUG = false; // XXX 'false' for release!!!
 
+    /** Whether reads of adjacent strips or tiles should be coalesced*/
+    private static final boolean COALESCE_READS = Boolean.getBoolean("it.geosolutions.imageio.tiff.coalesce");
+
+    /** Maximum number of unused bytes between two strips or tiles read together*/
+    private static final int COALESCE_MAX_GAP = Integer.getInteger("it.geosolutions.imageio.tiff.coalesce.maxGap", 8192);
+
+    /** Maximum number of bytes read at once when coalescing reads*/
+    private static final int COALESCE_MAX_LENGTH = Integer.getInteger("it.geosolutions.imageio.tiff.coalesce.maxLength", 8 * 1024 * 1024);
+
     /** Constant Value for External Mask suffix*/
     private static final String MASK_SUFFIX = ".msk";
 
@@ -383,6 +397,12 @@ public class TIFFImageReader extends ImageReader {
     /** External File containing TIFF masks overviews*/
     private File maskOverviews;
 
+    /** Image indices of the internal overviews, populated together with the {@link DatasetLayout}*/
+    private List<Integer> internalOverviews = new ArrayList<Integer>();
+
+    /** Sizes of the images contained in the external overviews file, lazily loaded*/
+    private Dimension[] externalOverviewSizes;
+
     public TIFFImageReader(ImageReaderSpi originatingProvider) {
         super(originatingProvider);
     }
@@ -435,6 +455,8 @@ public class TIFFImageReader extends ImageReader {
         }
         // Creating the New DatasetLayout for handling Overviews and Masking
         layout = new TiffDatasetLayoutImpl();
+        internalOverviews.clear();
+        externalOverviewSizes = null;
     }
 
     // Do not seek to the beginning of the stream so as to allow users to
@@ -538,6 +560,7 @@ public class TIFFImageReader extends ImageReader {
         // if(pagesInfo != null && (numImg != pagesInfo.size())){
         // Getting current Index which will be restored at the end of the operation
         int currentIdx = currIndex;
+        internalOverviews.clear();
         // Loop the images
         for (int i = 0; i < numImg; i++) {
             // Seek to the image index i
@@ -560,6 +583,11 @@ public class TIFFImageReader extends ImageReader {
                             : 0;
                     numMaskOverView += ((ldata & BaselineTIFFTagSet.NEW_SUBFILE_TYPE_REDUCED_RESOLUTION) > 0 && (ldata & BaselineTIFFTagSet.NEW_SUBFILE_TYPE_TRANSPARENCY) > 0) ? 1
                             : 0;
+                    // Remembering where the image overviews are
+                    if ((ldata & BaselineTIFFTagSet.NEW_SUBFILE_TYPE_REDUCED_RESOLUTION) > 0
+                            && (ldata & BaselineTIFFTagSet.NEW_SUBFILE_TYPE_TRANSPARENCY) == 0) {
+                        internalOverviews.add(Integer.valueOf(i));
+                    }
                 }
             }
         }
@@ -642,6 +670,55 @@ public class TIFFImageReader extends ImageReader {
         return numImg;
     }
     
+    /**
+     * Returns the sizes of the images contained in the external overviews file.
+     * 
+     * @return An array containing the size of each external overview, empty if there is no external overviews file
+     * @throws IIOException
+     */
+    private Dimension[] getExternalOverviewSizes() throws IIOException {
+        if (externalOverviewSizes != null) {
+            return externalOverviewSizes;
+        }
+        externalOverviewSizes = new Dimension[0];
+        if (externalOverviews == null) {
+            return externalOverviewSizes;
+        }
+        ImageReader reader = null;
+        FileImageInputStreamExtImpl stream = null;
+        try {
+            stream = new FileImageInputStreamExtImpl(externalOverviews);
+            reader = originatingProvider.createReaderInstance();
+            reader.setInput(stream);
+            final int numImg = reader.getNumImages(true);
+            final Dimension[] sizes = new Dimension[numImg];
+            for (int i = 0; i < numImg; i++) {
+                sizes[i] = new Dimension(reader.getWidth(i), reader.getHeight(i));
+            }
+            externalOverviewSizes = sizes;
+        } catch (IOException e) {
+            throw new IIOException("Unable to open input .ovr file", e);
+        } finally {
+            // Closing reader
+            if (reader != null) {
+                try {
+                    reader.dispose();
+                } catch (Exception e) {
+                    // Eat the Exception
+                }
+            }
+            // Closing stream
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (Exception e) {
+                    // Eat the Exception
+                }
+            }
+        }
+        return externalOverviewSizes;
+    }
+
     private int locateImage(int imageIndex) throws IIOException {
         readHeader();
 
@@ -1481,6 +1558,22 @@ public class TIFFImageReader extends ImageReader {
 
     private TIFFDecompressor decompressor;
 
+    /** The value filling the strips or tiles missing from a sparse file*/
+    private double noDataValue;
+
+    /** The plan of the reads of the current request, or <code>null</code>*/
+    private TIFFReadPlan readPlan;
+
+    /** Number of I/O operations saved by the last read*/
+    private int savedReadOperations;
+
+    /** Whether this reader coalesces reads, initialized from the system properties*/
+    boolean coalesceReads = COALESCE_READS;
+
+    int coalesceMaxGap = COALESCE_MAX_GAP;
+
+    int coalesceMaxLength = COALESCE_MAX_LENGTH;
+
     // floor(num/den)
     private static int ifloor(int num, int den) {
         if (num < 0) {
@@ -1563,6 +1656,34 @@ public class TIFFImageReader extends ImageReader {
                                      width, height);
     }
 
+    /**
+     * Creates a reader decoding the images of this one through a
+     * {@link TIFFStreamView} of its input, sharing the header and the IFDs
+     * already parsed by this reader.  Several such readers can decode at
+     * the same time, only the reads of the shared stream being serialized.
+     */
+    TIFFImageReader createDecodingContext() {
+        TIFFImageReader context = new TIFFImageReader(originatingProvider);
+        context.setInput(new TIFFStreamView(stream), false, ignoreMetadata);
+        context.gotTiffHeader = gotTiffHeader;
+        context.magic = magic;
+        context.bigtiff = bigtiff;
+        context.streamMetadata = streamMetadata;
+        context.imageStartPosition = new ArrayList<Long>(imageStartPosition);
+        context.numImages = numImages;
+        context.pagesInfo = new HashMap<Integer, PageInfo>(pagesInfo);
+        context.imageTypeMap =
+            new HashMap<Integer, List<ImageTypeSpecifier>>(imageTypeMap);
+        return context;
+    }
+
+    /**
+     * Returns the decompressor used by the last read, or <code>null</code>.
+     */
+    TIFFDecompressor getDecompressor() {
+        return decompressor;
+    }
+
     private void decodeTile(int ti, int tj, int band) throws IOException {
         if(DEBUG) {
             System.out.println("decodeTile("+ti+","+tj+","+band+")");
@@ -1666,6 +1787,13 @@ public class TIFFImageReader extends ImageReader {
         long offset = getTileOrStripOffset(tileIndex);
         long byteCount = getTileOrStripByteCount(tileIndex);
 
+        // Fill the strips or tiles missing from a sparse file without
+        // accessing the stream.
+        if(offset == 0 && byteCount == 0) {
+            fillNoData(band);
+            return;
+        }
+
         //
         // Attempt to handle truncated streams, i.e., where reading the
         // compressed strip or tile would result in an EOFException. The
@@ -1682,17 +1810,60 @@ public class TIFFImageReader extends ImageReader {
             }
         }
 
-        decompressor.setStream(stream);
+        // Loading a coalesced range moves the stream as well
+        stream.mark();
+
+        decompressor.setStream(readPlan != null ?
+                               readPlan.getStream(offset, byteCount) : stream);
         decompressor.setOffset(offset);
         decompressor.setByteCount((int)byteCount);
         
         decompressor.beginDecoding();
 
-        stream.mark();
         decompressor.decode();
         stream.reset();
     }
 
+    /**
+     * Fills the current destination region with the nodata value, in the
+     * destination band of the provided source band, or in all of them if
+     * <code>band</code> is negative.
+     */
+    private void fillNoData(int band) {
+        WritableRaster raster = theImage.getRaster();
+        double[] samples = new double[dstWidth];
+        Arrays.fill(samples, noDataValue);
+        int numDestBands = band < 0 ? destinationBands.length : 1;
+        for(int b = 0; b < numDestBands; b++) {
+            int destBand = destinationBands[band < 0 ? b : band];
+            for(int y = dstMinY; y < dstMinY + dstHeight; y++) {
+                raster.setSamples(dstMinX, y, dstWidth, 1, destBand, samples);
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the <code>GDALNoData</code> field of the
+     * current image, or <code>0</code> if missing or not parsable.
+     */
+    private double getGDALNoData() {
+        TIFFField f =
+            imageMetadata.getTIFFField(GeoTIFFTagSet.TAG_GDAL_NODATA);
+        if(f == null || f.getType() != TIFFTag.TIFF_ASCII) {
+            return 0;
+        }
+        String value = f.getAsString(0).trim();
+        if(value.equalsIgnoreCase("nan")) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            processWarningOccurred("Ignoring invalid GDALNoData: " + value);
+            return 0;
+        }
+    }
+
     private void reportProgress() {
         // Report image progress/update to listeners after each tile
         pixelsRead += dstWidth*dstHeight;
@@ -1703,8 +1874,157 @@ public class TIFFImageReader extends ImageReader {
                            destinationBands);
     }
 
+    /**
+     * Returns the decimation of an overview of the provided size, that is
+     * the factor dividing (rounding up) the full resolution size into the
+     * overview size, or -1 if there is none.
+     */
+    private static int getDecimation(int width, int height, Dimension size) {
+        final int max = Math.max(width, height);
+        for (int d = 2; d <= max && (width + d - 1) / d >= size.width; d++) {
+            if ((width + d - 1) / d == size.width
+                    && (height + d - 1) / d == size.height) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the requested region of the first image from the overview which
+     * best matches the requested subsampling, that is the one having the
+     * largest decimation dividing it, so that the requested pixels lie on
+     * the overview grid. Internal overviews are preferred to the external
+     * ones when they share the same decimation.
+     * 
+     * @param param the {@link TIFFImageReadParam} of the original request
+     * @return the image read from the selected overview, or <code>null</code> if
+     *         no overview is suitable for the request
+     * @throws IOException
+     */
+    private BufferedImage readFromOverview(TIFFImageReadParam param)
+        throws IOException {
+        final int xSubsampling = param.getSourceXSubsampling();
+        final int ySubsampling = param.getSourceYSubsampling();
+        if ((xSubsampling == 1 && ySubsampling == 1) || seekForwardOnly) {
+            return null;
+        }
+
+        // Collecting the overviews
+        defineDatasetLayout();
+        defineExternalMasks();
+        final Dimension[] externalSizes = getExternalOverviewSizes();
+        if (internalOverviews.isEmpty() && externalSizes.length == 0) {
+            return null;
+        }
+        final int baseWidth = getWidth(0);
+        final int baseHeight = getHeight(0);
+
+        // Selecting the overview with the largest decimation
+        int overviewIndex = -1;
+        boolean external = false;
+        int decimation = 1;
+        final int numOverviews = internalOverviews.size() + externalSizes.length;
+        for (int i = 0; i < numOverviews; i++) {
+            final boolean isExternal = i >= internalOverviews.size();
+            final int index = isExternal ? i - internalOverviews.size()
+                    : internalOverviews.get(i).intValue();
+            final Dimension size = isExternal ? externalSizes[index]
+                    : new Dimension(getWidth(index), getHeight(index));
+            final int d = getDecimation(baseWidth, baseHeight, size);
+            if (d <= decimation || xSubsampling % d != 0
+                    || ySubsampling % d != 0) {
+                continue;
+            }
+            overviewIndex = index;
+            external = isExternal;
+            decimation = d;
+        }
+        if (overviewIndex == -1) {
+            return null;
+        }
+
+        // The destination is computed against the full resolution image so
+        // that the caller gets the same image he would get without overviews
+        final BufferedImage destination = getDestination(param,
+                getImageTypes(0), baseWidth, baseHeight);
+        final Rectangle srcRegion = new Rectangle(0, 0, 0, 0);
+        final Rectangle destRegion = new Rectangle(0, 0, 0, 0);
+        computeRegions(param, baseWidth, baseHeight, destination, srcRegion,
+                destRegion);
+        if (srcRegion.isEmpty() || destRegion.isEmpty()) {
+            return null;
+        }
+
+        // Locating the first and last requested pixels on the overview grid.
+        // The source region already starts at the first requested pixel,
+        // subsampling offsets included, hence the overview region starts at
+        // its image and the residual subsampling has no offsets.
+        final int residualXSubsampling = xSubsampling / decimation;
+        final int residualYSubsampling = ySubsampling / decimation;
+        final int minX = srcRegion.x / decimation;
+        final int minY = srcRegion.y / decimation;
+        final int maxX = (srcRegion.x + (destRegion.width - 1) * xSubsampling)
+                / decimation;
+        final int maxY = (srcRegion.y + (destRegion.height - 1) * ySubsampling)
+                / decimation;
+
+        final TIFFImageReadParam overviewParam = new TIFFImageReadParam();
+        for (Object tagSet : param.getAllowedTagSets()) {
+            if (!overviewParam.getAllowedTagSets().contains(tagSet)) {
+                overviewParam.addAllowedTagSet((TIFFTagSet) tagSet);
+            }
+        }
+        overviewParam.setTIFFDecompressor(param.getTIFFDecompressor());
+        overviewParam.setColorConverter(param.getColorConverter());
+        overviewParam.setNoDataValue(param.getNoDataValue());
+        overviewParam.setSourceBands(param.getSourceBands());
+        overviewParam.setDestinationBands(param.getDestinationBands());
+        overviewParam.setSourceRegion(new Rectangle(minX, minY,
+                maxX - minX + 1, maxY - minY + 1));
+        overviewParam.setSourceSubsampling(residualXSubsampling,
+                residualYSubsampling, 0, 0);
+        overviewParam.setDestination(destination);
+        overviewParam.setDestinationOffset(new Point(destRegion.x, destRegion.y));
+
+        if (!external) {
+            return read(overviewIndex, overviewParam);
+        }
+        ImageReader reader = null;
+        FileImageInputStreamExtImpl stream = null;
+        try {
+            stream = new FileImageInputStreamExtImpl(externalOverviews);
+            reader = originatingProvider.createReaderInstance();
+            reader.setInput(stream);
+            return reader.read(overviewIndex, overviewParam);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.dispose();
+                } catch (Exception e) {
+                    // Eat the Exception
+                }
+            }
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (Exception e) {
+                    // Eat the Exception
+                }
+            }
+        }
+    }
+
     public BufferedImage read(int imageIndex, ImageReadParam param)
         throws IOException {
+        // Redirecting subsampled reads to the overviews, when allowed
+        if (imageIndex == 0 && param instanceof TIFFImageReadParam
+                && ((TIFFImageReadParam) param).getReadFromOverviews()) {
+            BufferedImage image = readFromOverview((TIFFImageReadParam) param);
+            if (image != null) {
+                return image;
+            }
+        }
         prepareRead(imageIndex, param);
         this.theImage = getDestination(param,
                                        getImageTypes(imageIndex),
@@ -1748,6 +2068,13 @@ public class TIFFImageReader extends ImageReader {
             colorConverter = tparam.getColorConverter();
         }
 
+        // Get the value filling the strips or tiles missing from a sparse
+        // file, falling back to the nodata of the image
+        Double fillValue = imageReadParam instanceof TIFFImageReadParam ?
+            ((TIFFImageReadParam)imageReadParam).getNoDataValue() : null;
+        this.noDataValue = fillValue != null ?
+            fillValue.doubleValue() : getGDALNoData();
+
         // If we didn't find one, use a standard decompressor
         if (this.decompressor == null) {
             if (compression ==
@@ -1786,7 +2113,7 @@ public class TIFFImageReader extends ImageReader {
                     if(DEBUG) {
                         System.out.println("Using Java T.6 decompressor");
                     }
-                    this.decompressor = new TIFFFaxDecompressor();
+                    this.decompressor = new TIFFFastFaxDecompressor();
                 }
             } else if (compression ==
                        BaselineTIFFTagSet.COMPRESSION_CCITT_T_4) {
@@ -1812,11 +2139,11 @@ public class TIFFImageReader extends ImageReader {
                     if(DEBUG) {
                         System.out.println("Using Java T.4 decompressor");
                     }
-                    this.decompressor = new TIFFFaxDecompressor();
+                    this.decompressor = new TIFFFastFaxDecompressor();
                 }
             } else if (compression ==
                        BaselineTIFFTagSet.COMPRESSION_CCITT_RLE) {
-                this.decompressor = new TIFFFaxDecompressor();
+                this.decompressor = new TIFFFastFaxDecompressor();
             } else if (compression ==
                        BaselineTIFFTagSet.COMPRESSION_PACKBITS) {
                 if(DEBUG) {
@@ -1847,6 +2174,14 @@ public class TIFFImageReader extends ImageReader {
                                  BaselineTIFFTagSet.PREDICTOR_NONE :
                                  predictorField.getAsInt(0));
                 this.decompressor = new TIFFDeflateDecompressor(predictor);
+            } else if (compression ==
+                       BaselineTIFFTagSet.COMPRESSION_ZSTD) {
+                TIFFField predictorField =
+                    imageMetadata.getTIFFField(BaselineTIFFTagSet.TAG_PREDICTOR);
+                int predictor = ((predictorField == null) ?
+                                 BaselineTIFFTagSet.PREDICTOR_NONE :
+                                 predictorField.getAsInt(0));
+                this.decompressor = new TIFFZstdDecompressor(predictor);
             } else if (compression ==
                        BaselineTIFFTagSet.COMPRESSION_OLD_JPEG) {
                 TIFFField JPEGProcField =
@@ -1940,6 +2275,78 @@ public class TIFFImageReader extends ImageReader {
             TIFFImageWriter.YToTileY(srcRegion.y + srcRegion.height - 1,
                                      0, tileOrStripHeight);
 
+        // Plan the reads of the strips or tiles touched by the request
+        savedReadOperations = 0;
+        if (coalesceReads &&
+            compression != BaselineTIFFTagSet.COMPRESSION_OLD_JPEG) {
+            readPlan = planReads(minTileX, minTileY, maxTileX, maxTileY);
+            if(DEBUG) {
+                System.out.println("Coalesced reads: "+
+                                   readPlan.getNumRanges()+" ranges, "+
+                                   readPlan.getSavedOperations()+
+                                   " I/O operations saved");
+            }
+        }
+
+        try {
+            return decodeTiles(imageIndex, minTileX, minTileY, maxTileX, maxTileY);
+        } finally {
+            if (readPlan != null) {
+                savedReadOperations = readPlan.getSavedOperations();
+                readPlan.dispose();
+                readPlan = null;
+            }
+        }
+    }
+
+    /**
+     * Computes the plan of the reads of the strips or tiles in the provided
+     * range, in the order {@link #decodeTiles} visits them.
+     */
+    private TIFFReadPlan planReads(int minTileX, int minTileY,
+                                   int maxTileX, int maxTileY)
+        throws IOException {
+        final boolean planar = planarConfiguration ==
+            BaselineTIFFTagSet.PLANAR_CONFIGURATION_PLANAR;
+        final int bands = planar ? numBands : 1;
+        final int numTiles =
+            (maxTileX - minTileX + 1)*(maxTileY - minTileY + 1)*bands;
+        final long[] offsets = new long[numTiles];
+        final long[] byteCounts = new long[numTiles];
+        int i = 0;
+        for (int tj = minTileY; tj <= maxTileY; tj++) {
+            for (int ti = minTileX; ti <= maxTileX; ti++) {
+                for (int band = 0; band < bands; band++) {
+                    int tileIndex = tj*tilesAcross + ti;
+                    if (planar) {
+                        tileIndex += band*tilesAcross*tilesDown;
+                    }
+                    offsets[i] = getTileOrStripOffset(tileIndex);
+                    byteCounts[i] = getTileOrStripByteCount(tileIndex);
+                    i++;
+                }
+            }
+        }
+        return new TIFFReadPlan(stream, offsets, byteCounts, numTiles,
+                                coalesceMaxGap, coalesceMaxLength);
+    }
+
+    /**
+     * Returns the number of I/O operations saved during the last read by
+     * coalescing the reads of adjacent strips or tiles.  Coalescing is
+     * enabled by setting the <code>it.geosolutions.imageio.tiff.coalesce</code>
+     * system property to <code>true</code>.
+     *
+     * @return the number of saved I/O operations.
+     */
+    public int getSavedReadOperations() {
+        return savedReadOperations;
+    }
+
+    private BufferedImage decodeTiles(int imageIndex,
+                                      int minTileX, int minTileY,
+                                      int maxTileX, int maxTileY)
+        throws IOException {
         boolean isAbortRequested = false;
         if (planarConfiguration ==
             BaselineTIFFTagSet.PLANAR_CONFIGURATION_PLANAR) {
@@ -76,6 +76,7 @@ package it.geosolutions.imageioimpl.plugins.tiff;
 import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
 import it.geosolutions.imageio.plugins.tiff.EXIFParentTIFFTagSet;
 import it.geosolutions.imageio.plugins.tiff.EXIFTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.GeoTIFFTagSet;
 import it.geosolutions.imageio.plugins.tiff.TIFFColorConverter;
 import it.geosolutions.imageio.plugins.tiff.TIFFCompressor;
 import it.geosolutions.imageio.plugins.tiff.TIFFField;
@@ -93,6 +94,11 @@ import java.awt.image.ComponentColorModel;
 import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
@@ -103,6 +109,7 @@ import java.io.IOException;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -172,6 +179,7 @@ public class TIFFImageWriter extends ImageWriter {
         "ZLib",
         "PackBits",
         "Deflate",
+        "ZSTD",
         EXIF_JPEG_COMPRESSION_TYPE
     };
 
@@ -194,6 +202,7 @@ public class TIFFImageWriter extends ImageWriter {
         "ZLib",
         "PackBits",
         "Deflate",
+        "ZSTD",
         EXIF_JPEG_COMPRESSION_TYPE
     };
 
@@ -210,6 +219,7 @@ public class TIFFImageWriter extends ImageWriter {
         true,  // ZLib
         true,  // PackBits
         true,  // DEFLATE
+        true,  // ZSTD
         false  // EXIF JPEG
     };
 
@@ -226,6 +236,7 @@ public class TIFFImageWriter extends ImageWriter {
         BaselineTIFFTagSet.COMPRESSION_ZLIB,
         BaselineTIFFTagSet.COMPRESSION_PACKBITS,
         BaselineTIFFTagSet.COMPRESSION_DEFLATE,
+        BaselineTIFFTagSet.COMPRESSION_ZSTD,
         BaselineTIFFTagSet.COMPRESSION_OLD_JPEG, // EXIF JPEG
     };
 
@@ -295,6 +306,28 @@ public class TIFFImageWriter extends ImageWriter {
     // Whether a sequence is being written.
     boolean isWritingSequence = false;
 
+    // Cloud optimized images of the sequence, written by endWriteSequence.
+    List<IIOImage> cloudOptimizedImages = new ArrayList<IIOImage>();
+    List<ImageWriteParam> cloudOptimizedParams = new ArrayList<ImageWriteParam>();
+
+    // Overview built out of the strips or tiles of the image being written.
+    TIFFOverviewBuilder overviewBuilder = null;
+
+    // Whether the image being written is an overview.
+    boolean isWritingOverview = false;
+
+    // Buffer handed to the compressor, reused across tiles.
+    byte[] tileBuffer = null;
+
+    // Raster used for padding bilevel tiles, reused across tiles.
+    WritableRaster paddingRaster = null;
+
+    // Whether the strips or tiles holding only nodata are omitted.
+    boolean isSparse = false;
+
+    // Value of the samples carrying no data.
+    double noDataValue = 0;
+
     private boolean isBtiff = false;
 	
     /**
@@ -1009,7 +1042,13 @@ public class TIFFImageWriter extends ImageWriter {
                     throw new IIOException
                         ("JPEG compression supported for 1- and 3-band byte images only!");
                 }
-                compressor = new TIFFJPEGCompressor(param);
+                if(param instanceof TIFFImageWriteParam &&
+                   ((TIFFImageWriteParam)param).isTurboJPEG() &&
+                   TIFFTurboJPEGCompressor.isAvailable()) {
+                    compressor = new TIFFTurboJPEGCompressor(param);
+                } else {
+                    compressor = new TIFFJPEGCompressor(param);
+                }
             } else if (compression ==
                        BaselineTIFFTagSet.COMPRESSION_ZLIB) {
                 compressor = new TIFFZLibCompressor(param, predictor);
@@ -1019,6 +1058,9 @@ public class TIFFImageWriter extends ImageWriter {
             } else if (compression ==
                        BaselineTIFFTagSet.COMPRESSION_DEFLATE) {
                 compressor = new TIFFDeflateCompressor(param, predictor);
+            } else if (compression ==
+                       BaselineTIFFTagSet.COMPRESSION_ZSTD) {
+                compressor = new TIFFZstdCompressor(param, predictor);
             } else {
                 // Determine inverse fill setting.
                 f = rootIFD.getTIFFField(BaselineTIFFTagSet.TAG_FILL_ORDER);
@@ -1779,6 +1821,8 @@ public class TIFFImageWriter extends ImageWriter {
 
     /**
        @param tileRect The area to be written which might be outside the image.
+       @return The number of bytes written, or -1 if the tile holds only
+       nodata and has been omitted from a sparse file.
      */
     private int writeTile(Rectangle tileRect, TIFFCompressor compressor)
         throws IOException {
@@ -1811,26 +1855,35 @@ public class TIFFImageWriter extends ImageWriter {
             return 0;
         }
 
+        // Feed the overview being built with the data being encoded.
+        Raster activeData = null;
+        if(overviewBuilder != null) {
+            activeData = getSourceData(activeRect);
+            overviewBuilder.add(activeData);
+        }
+
+        // Omit the tiles holding only nodata from a sparse file.
+        if(isSparse && isNoData(getData(activeData, activeRect))) {
+            return -1;
+        }
+
         int minX = tileRect.x;
         int minY = tileRect.y;
         int width = tileRect.width;
         int height = tileRect.height;
 
-        if(isImageSimple) {
+        // Padded byte tiles are packed below, without padding the raster.
+        if(isImageSimple && (isBilevel || !isPadded)) {
 
             SampleModel sm = image.getSampleModel();
 
             // Read only data from the active rectangle.
-            Raster raster = image.getData(activeRect);
+            Raster raster = getData(activeData, activeRect);
 
-            // If padding is required, create a larger Raster and fill
+            // If padding is required, use a larger Raster and fill
             // it from the active rectangle.
             if(isPadded) {
-                WritableRaster wr =
-                    raster.createCompatibleWritableRaster(minX, minY,
-                                                          width, height);
-                wr.setRect(raster);
-                raster = wr;
+                raster = getPaddedRaster(raster, tileRect);
             }
 
             if(isBilevel) {
@@ -1889,14 +1942,27 @@ public class TIFFImageWriter extends ImageWriter {
                 ComponentSampleModel csm =
                     (ComponentSampleModel)raster.getSampleModel();
 
-                byte[] buf =
-                    ((DataBufferByte)raster.getDataBuffer()).getData();
-
-                int off =
-                    csm.getOffset(minX -
-                                  raster.getSampleModelTranslateX(),
-                                  minY -
-                                  raster.getSampleModelTranslateY());
+                // Rows of the tile are shared with the source only if they
+                // are contiguous there, as not every compressor honours the
+                // scanline stride; otherwise they are packed.
+                int bytesPerRow = width*numBands;
+                byte[] buf;
+                int off;
+                if(csm.getScanlineStride() == bytesPerRow) {
+                    buf = ((DataBufferByte)raster.getDataBuffer()).getData();
+                    off = csm.getOffset(minX -
+                                        raster.getSampleModelTranslateX(),
+                                        minY -
+                                        raster.getSampleModelTranslateY());
+                } else {
+                    int tileSize = bytesPerRow*height;
+                    if(tileBuffer == null || tileBuffer.length < tileSize) {
+                        tileBuffer = new byte[tileSize];
+                    }
+                    buf = tileBuffer;
+                    off = 0;
+                    packComponents(raster, tileRect, buf);
+                }
 
                 if(DEBUG) {
                     System.out.println("Optimized component case");
@@ -1904,7 +1970,7 @@ public class TIFFImageWriter extends ImageWriter {
 
                 return compressor.encode(buf, off,
                                          width, height, sampleSize,
-                                         csm.getScanlineStride());
+                                         bytesPerRow);
             }
         }
         
@@ -1955,8 +2021,12 @@ public class TIFFImageWriter extends ImageWriter {
             samples = new int[numSamples];
         }
 
-        // Create tile buffer
-        byte[] currTile = new byte[bytesPerRow*vpixels];
+        // Get the tile buffer, reused across tiles
+        int tileSize = bytesPerRow*vpixels;
+        if(tileBuffer == null || tileBuffer.length < tileSize) {
+            tileBuffer = new byte[tileSize];
+        }
+        byte[] currTile = tileBuffer;
 
         // Sub-optimal case: shy of "isImageSimple" only by virtue of
         // not being contiguous.
@@ -1969,60 +2039,25 @@ public class TIFFImageWriter extends ImageWriter {
             SampleModel sm = image.getSampleModel();
 
             if(sm instanceof ComponentSampleModel &&       // component
-               bitDepth == 8 &&                            // 8 bits/sample
-               sm.getDataType() == DataBuffer.TYPE_BYTE) { // byte type
+               isPackable(sm.getDataType())) {             // native type
 
                 if(DEBUG) {
-                    System.out.println("Sub-optimal byte component case");
+                    System.out.println("Sub-optimal component case");
                     System.out.println(sm.getClass().getName());
                 }
 
-                // Read only data from the active rectangle.
-                Raster raster = image.getData(activeRect);
-
-                // If padding is required, create a larger Raster and fill
-                // it from the active rectangle.
+                // Read only data from the active rectangle, packing it
+                // straight from the DataBuffer into the tile buffer.
+                Raster raster = getData(activeData, activeRect);
                 if(isPadded) {
-                    WritableRaster wr =
-                        raster.createCompatibleWritableRaster(minX, minY,
-                                                              width, height);
-                    wr.setRect(raster);
-                    raster = wr;
-                }
-
-                // Get SampleModel info.
-                ComponentSampleModel csm =
-                    (ComponentSampleModel)raster.getSampleModel();
-                int[] bankIndices = csm.getBankIndices();
-                byte[][] bankData =
-                    ((DataBufferByte)raster.getDataBuffer()).getBankData();
-                int lineStride = csm.getScanlineStride();
-                int pixelStride = csm.getPixelStride();
-
-                // Copy the data into a contiguous pixel interleaved buffer.
-                for(int k = 0; k < numBands; k++) {
-                    byte[] bandData = bankData[bankIndices[k]];
-                    int lineOffset =
-                        csm.getOffset(raster.getMinX() -
-                                      raster.getSampleModelTranslateX(),
-                                      raster.getMinY() -
-                                      raster.getSampleModelTranslateY(), k);
-                    int idx = k;
-                    for(int j = 0; j < vpixels; j++) {
-                        int offset = lineOffset;
-                        for(int i = 0; i < hpixels; i++) {
-                            currTile[idx] = bandData[offset];
-                            idx += numBands;
-                            offset += pixelStride;
-                        }
-                        lineOffset += lineStride;
-                    }
+                    Arrays.fill(currTile, 0, tileSize, (byte)0);
                 }
+                packComponents(raster, tileRect, currTile);
 
                 // Compressor and return.
                 return compressor.encode(currTile, 0,
                                          width, height, sampleSize,
-                                         width*numBands);
+                                         bytesPerRow);
             }
         }
 
@@ -2059,34 +2094,38 @@ public class TIFFImageWriter extends ImageWriter {
         int activeMaxY = activeMinY + activeRect.height - 1;
         int activeWidth = activeRect.width;
 
-        // Set a SampleModel for use in padding.
-        SampleModel rowSampleModel = null;
+        // Set the rasters for use in padding, shared by all the rows as
+        // the active part of the rows does not change.
+        WritableRaster paddedRow = null;
+        WritableRaster emptyRow = null;
         if(isPadded) {
-           rowSampleModel =
+           SampleModel rowSampleModel =
                image.getSampleModel().createCompatibleSampleModel(width, 1);
+           paddedRow = Raster.createWritableRaster(rowSampleModel, null);
+           emptyRow = Raster.createWritableRaster(rowSampleModel, null);
         }
 
         for (int row = yOffset; row < yOffset + height; row += ySkip) {
             Raster ras = null;
             if(isPadded) {
-                // Create a raster for the entire row.
-                WritableRaster wr =
-                    Raster.createWritableRaster(rowSampleModel,
-                                                new Point(minX, row));
-
-                // Populate the raster from the active sub-row, if any.
+                // Populate the raster for the entire row from the active
+                // sub-row, if any.
+                WritableRaster wr;
                 if(row >= activeMinY && row <= activeMaxY) {
+                    wr = paddedRow.createWritableTranslatedChild(minX, row);
                     Rectangle rect =
                         new Rectangle(activeMinX, row, activeWidth, 1);
-                    ras = image.getData(rect);
+                    ras = getData(activeData, rect);
                     wr.setRect(ras);
+                } else {
+                    wr = emptyRow.createWritableTranslatedChild(minX, row);
                 }
 
                 // Update the raster variable.
                 ras = wr;
             } else {
                 Rectangle rect = new Rectangle(minX, row, width, 1);
-                ras = image.getData(rect);
+                ras = getData(activeData, rect);
             }
             if (sourceBands != null) {
                 ras = ras.createChild(minX, row, width, 1, minX, row,
@@ -2510,8 +2549,249 @@ public class TIFFImageWriter extends ImageWriter {
         return byteCount;
     }
 
+    /**
+     * Returns the data of the provided rectangle, taking it from the
+     * already read data of the active rectangle, if any.
+     */
+    private Raster getData(Raster activeData, Rectangle rect) {
+        if(activeData == null) {
+            return getSourceData(rect);
+        }
+        return activeData.createChild(rect.x, rect.y, rect.width, rect.height,
+                                      rect.x, rect.y, null);
+    }
+
+    /**
+     * Returns the data of the provided rectangle of the image, sharing the
+     * data of the image tile containing it, if any, rather than copying
+     * them. The returned data must not be modified.
+     */
+    private Raster getSourceData(Rectangle rect) {
+        int tileGridXOffset = image.getTileGridXOffset();
+        int tileGridYOffset = image.getTileGridYOffset();
+        int tileW = image.getTileWidth();
+        int tileH = image.getTileHeight();
+        int tx = XToTileX(rect.x, tileGridXOffset, tileW);
+        int ty = YToTileY(rect.y, tileGridYOffset, tileH);
+        if(tx != XToTileX(rect.x + rect.width - 1, tileGridXOffset, tileW) ||
+           ty != YToTileY(rect.y + rect.height - 1, tileGridYOffset, tileH)) {
+            // The rectangle spans several tiles.
+            return image.getData(rect);
+        }
+
+        Raster tile = image.getTile(tx, ty);
+        if(tile.getMinX() == rect.x && tile.getMinY() == rect.y &&
+           tile.getWidth() == rect.width && tile.getHeight() == rect.height) {
+            return tile;
+        }
+        return tile.createChild(rect.x, rect.y, rect.width, rect.height,
+                                rect.x, rect.y, null);
+    }
+
+    /**
+     * Returns a raster covering the provided tile rectangle, filled from
+     * the provided data and padded with zeros.
+     */
+    private Raster getPaddedRaster(Raster raster, Rectangle tileRect) {
+        SampleModel sm =
+            raster.getSampleModel().createCompatibleSampleModel(tileRect.width,
+                                                                tileRect.height);
+        if(paddingRaster == null ||
+           !paddingRaster.getSampleModel().equals(sm)) {
+            paddingRaster = Raster.createWritableRaster(sm, null);
+        } else {
+            // Clear the data of the previous tile.
+            DataBuffer db = paddingRaster.getDataBuffer();
+            for(int b = 0; b < db.getNumBanks(); b++) {
+                for(int i = 0; i < db.getSize(); i++) {
+                    db.setElem(b, i, 0);
+                }
+            }
+        }
+        WritableRaster wr =
+            paddingRaster.createWritableTranslatedChild(tileRect.x,
+                                                        tileRect.y);
+        wr.setRect(raster);
+        return wr;
+    }
+
+    /**
+     * Returns whether samples of the provided data type can be packed
+     * straight from the DataBuffer, their bits being the ones written.
+     */
+    private boolean isPackable(int dataType) {
+        boolean isFloat =
+            sampleFormat == BaselineTIFFTagSet.SAMPLE_FORMAT_FLOATING_POINT;
+        switch(dataType) {
+        case DataBuffer.TYPE_BYTE:
+            return bitDepth == 8;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            return bitDepth == 16 && !isFloat;
+        case DataBuffer.TYPE_INT:
+            return bitDepth == 32 && !isFloat;
+        case DataBuffer.TYPE_FLOAT:
+            return bitDepth == 32 && isFloat;
+        case DataBuffer.TYPE_DOUBLE:
+            return bitDepth == 64 && isFloat;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Packs the samples of the provided raster, backed by a
+     * <code>ComponentSampleModel</code> of a packable data type, into the
+     * pixel interleaved tile buffer, using the byte order of the stream.
+     */
+    private void packComponents(Raster raster, Rectangle tileRect,
+                                byte[] buf) {
+        ComponentSampleModel csm =
+            (ComponentSampleModel)raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        int[] bankIndices = csm.getBankIndices();
+        int lineStride = csm.getScanlineStride();
+        int pixelStride = csm.getPixelStride();
+        int rasterWidth = raster.getWidth();
+        int rasterHeight = raster.getHeight();
+        int bytesPerSample = bitDepth/8;
+        int pixelBytes = numBands*bytesPerSample;
+        int tileLineBytes = tileRect.width*pixelBytes;
+        boolean isBigEndian = stream.getByteOrder() == ByteOrder.BIG_ENDIAN;
+
+        for(int k = 0; k < numBands; k++) {
+            int lineOffset =
+                csm.getOffset(raster.getMinX() -
+                              raster.getSampleModelTranslateX(),
+                              raster.getMinY() -
+                              raster.getSampleModelTranslateY(), k);
+            int bank = bankIndices[k];
+            int lineIdx = (raster.getMinY() - tileRect.y)*tileLineBytes +
+                (raster.getMinX() - tileRect.x)*pixelBytes + k*bytesPerSample;
+            for(int j = 0; j < rasterHeight; j++) {
+                int offset = lineOffset;
+                int idx = lineIdx;
+                switch(db.getDataType()) {
+                case DataBuffer.TYPE_BYTE: {
+                    byte[] data = ((DataBufferByte)db).getData(bank);
+                    for(int i = 0; i < rasterWidth; i++) {
+                        buf[idx] = data[offset];
+                        idx += pixelBytes;
+                        offset += pixelStride;
+                    }
+                    break;
+                }
+                case DataBuffer.TYPE_USHORT:
+                case DataBuffer.TYPE_SHORT: {
+                    short[] data = db.getDataType() == DataBuffer.TYPE_SHORT ?
+                        ((DataBufferShort)db).getData(bank) :
+                        ((DataBufferUShort)db).getData(bank);
+                    int hi = isBigEndian ? 0 : 1;
+                    for(int i = 0; i < rasterWidth; i++) {
+                        short sample = data[offset];
+                        buf[idx + hi] = (byte)(sample >>> 8);
+                        buf[idx + 1 - hi] = (byte)sample;
+                        idx += pixelBytes;
+                        offset += pixelStride;
+                    }
+                    break;
+                }
+                case DataBuffer.TYPE_INT:
+                case DataBuffer.TYPE_FLOAT: {
+                    int[] idata = db.getDataType() == DataBuffer.TYPE_INT ?
+                        ((DataBufferInt)db).getData(bank) : null;
+                    float[] fdata = idata == null ?
+                        ((DataBufferFloat)db).getData(bank) : null;
+                    for(int i = 0; i < rasterWidth; i++) {
+                        int sample = idata != null ? idata[offset] :
+                            Float.floatToIntBits(fdata[offset]);
+                        for(int n = 0; n < 4; n++) {
+                            buf[idx + (isBigEndian ? 3 - n : n)] =
+                                (byte)(sample >>> (8*n));
+                        }
+                        idx += pixelBytes;
+                        offset += pixelStride;
+                    }
+                    break;
+                }
+                case DataBuffer.TYPE_DOUBLE: {
+                    double[] data = ((DataBufferDouble)db).getData(bank);
+                    for(int i = 0; i < rasterWidth; i++) {
+                        long sample = Double.doubleToLongBits(data[offset]);
+                        for(int n = 0; n < 8; n++) {
+                            buf[idx + (isBigEndian ? 7 - n : n)] =
+                                (byte)(sample >>> (8*n));
+                        }
+                        idx += pixelBytes;
+                        offset += pixelStride;
+                    }
+                    break;
+                }
+                }
+                lineOffset += lineStride;
+                lineIdx += tileLineBytes;
+            }
+        }
+    }
+
+    /**
+     * Returns whether all the samples of the provided raster hold the
+     * nodata value.
+     */
+    private boolean isNoData(Raster raster) {
+        int dataType = raster.getSampleModel().getDataType();
+        int minX = raster.getMinX();
+        int maxY = raster.getMinY() + raster.getHeight();
+        int width = raster.getWidth();
+        int numSamples = width*raster.getNumBands();
+        if(dataType == DataBuffer.TYPE_FLOAT ||
+           dataType == DataBuffer.TYPE_DOUBLE) {
+            boolean isNaN = Double.isNaN(noDataValue);
+            double[] samples = new double[numSamples];
+            for(int y = raster.getMinY(); y < maxY; y++) {
+                raster.getPixels(minX, y, width, 1, samples);
+                for(int i = 0; i < numSamples; i++) {
+                    if(isNaN ? !Double.isNaN(samples[i]) :
+                       samples[i] != noDataValue) {
+                        return false;
+                    }
+                }
+            }
+        } else {
+            // Integral samples may only match an integral value.
+            if(noDataValue != Math.rint(noDataValue)) {
+                return false;
+            }
+            int value = (int)noDataValue;
+            int[] samples = new int[numSamples];
+            for(int y = raster.getMinY(); y < maxY; y++) {
+                raster.getPixels(minX, y, width, 1, samples);
+                for(int i = 0; i < numSamples; i++) {
+                    if(samples[i] != value) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Formats the provided nodata value as GDAL does.
+     */
+    private static String formatNoData(double value) {
+        if(Double.isNaN(value)) {
+            return "nan";
+        }
+        if(value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long)value);
+        }
+        return Double.toString(value);
+    }
+
     // Check two int arrays for value equality, always returns false
     // if either array is null
+
     private boolean equals(int[] s0, int[] s1) {
 	if (s0 == null || s1 == null) {
 	    return false;
@@ -2611,6 +2891,11 @@ public class TIFFImageWriter extends ImageWriter {
     public void write(IIOMetadata sm,
                       IIOImage iioimage,
                       ImageWriteParam p) throws IOException {
+        if (isCloudOptimized(p)) {
+            writeCloudOptimized(sm, Collections.singletonList(iioimage),
+                                Collections.singletonList(p), true);
+            return;
+        }
 	write(sm, iioimage, p, true, true);
     }
     
@@ -2650,6 +2935,79 @@ public class TIFFImageWriter extends ImageWriter {
                        ImageWriteParam p,
                        boolean writeHeader,
                        boolean writeData) throws IOException {
+        prepareWrite(sm, iioimage, p, writeHeader);
+
+        clearAbortRequest();
+        processImageStarted(0);
+
+        // Write out the IFD and any sub IFDs, followed by a zero
+        TIFFIFD rootIFD = imageMetadata.getRootIFD();
+        if (isWritingOverview) {
+            setReducedResolution(rootIFD);
+        }
+        writeIFD(rootIFD);
+
+        // If not writing the image data, i.e., if writing or inserting an
+        // empty image, return.
+        if(!writeData) {
+            return;
+        }
+
+        // Build the next overview, if requested, while writing the data
+        int overviewLevels = getOverviewLevels(param);
+        TIFFOverviewBuilder overview = null;
+        if (overviewLevels > 0 && (destWidth() > 1 || destHeight() > 1)) {
+            overview = new TIFFOverviewBuilder(image, param,
+                ((TIFFImageWriteParam)param).getOverviewResampling());
+        }
+
+        // Get positions of fields within the IFD to update as we write
+        // each strip or tile
+        boolean complete;
+        this.overviewBuilder = overview;
+        try {
+            complete =
+                writeImageData(rootIFD.getStripOrTileOffsetsPosition(),
+                               rootIFD.getStripOrTileByteCountsPosition());
+        } finally {
+            this.overviewBuilder = null;
+        }
+        if (!complete) {
+            return;
+        }
+        processImageComplete();
+
+        // Append the overview, which in turn builds the next one
+        if (overview != null) {
+            ImageWriteParam overviewParam =
+                createOverviewParam(param, overviewLevels - 1);
+            boolean wasWritingOverview = isWritingOverview;
+            isWritingOverview = true;
+            try {
+                insert(-1, new IIOImage(overview.getImage(), null, null),
+                       overviewParam, true);
+            } finally {
+                isWritingOverview = wasWritingOverview;
+            }
+        }
+    }
+
+    private int destWidth() {
+        return (sourceWidth + periodX - 1)/periodX;
+    }
+
+    private int destHeight() {
+        return (sourceHeight + periodY - 1)/periodY;
+    }
+
+    /**
+     * Sets up the writer state for the provided image, optionally writing
+     * the header, up to the point where the IFD can be written.
+     */
+    private void prepareWrite(IIOMetadata sm,
+                              IIOImage iioimage,
+                              ImageWriteParam p,
+                              boolean writeHeader) throws IOException {
         if (stream == null) {
             throw new IllegalStateException("output == null!");
         }
@@ -2743,10 +3101,6 @@ public class TIFFImageWriter extends ImageWriter {
 
         // this.bitDepth = 8; // XXX fix?
 
-        clearAbortRequest();
-        int progressStep = 1;
-        processImageStarted(0);
-
         int[] sampleSize = sampleModel.getSampleSize();
         
     	long tot = 0;
@@ -2784,6 +3138,10 @@ public class TIFFImageWriter extends ImageWriter {
             // Write the header.
 	    writeHeader();
 
+            // Describe the layout of a cloud optimized file
+            if (isCloudOptimized(param)) {
+                writeGhostArea();
+            }
 
 	    // 1) Seek to the position of the IFD pointer in the header.
  		// 2) Ensure IFD is written on a proper type boundary
@@ -2798,10 +3156,9 @@ public class TIFFImageWriter extends ImageWriter {
  				nextSpace = (nextSpace + 7) & ~0x7;
  				stream.writeLong(nextSpace);
  		}
+                stream.seek(nextSpace);
 	}
 
-        // Write out the IFD and any sub IFDs, followed by a zero
-
         // Clear previous image metadata.
         this.imageMetadata = null;
 
@@ -2867,8 +3224,29 @@ public class TIFFImageWriter extends ImageWriter {
             periodX == 1 && periodY == 1 && // no subsampling
             colorConverter == null;
 
-        TIFFIFD rootIFD = imageMetadata.getRootIFD();
+        // Determine whether nodata strips or tiles are omitted, as long
+        // as the written samples are the source ones.
+        this.isSparse = param instanceof TIFFImageWriteParam &&
+            ((TIFFImageWriteParam)param).isSparseTiles() &&
+            !isRescaling && !isInverted && colorConverter == null;
+        if(isSparse) {
+            this.noDataValue = ((TIFFImageWriteParam)param).getNoDataValue();
+
+            // Let readers know the value of the omitted samples.
+            imageMetadata.getRootIFD().addTIFFField(new TIFFField(
+                GeoTIFFTagSet.getInstance().getTag(
+                    GeoTIFFTagSet.TAG_GDAL_NODATA),
+                TIFFTag.TIFF_ASCII, 1,
+                new String[] {formatNoData(noDataValue)}));
+        }
+    }
 
+    /**
+     * Writes the provided IFD at the current stream position, followed by
+     * a zero next IFD pointer, and leaves the stream at the end of the IFD
+     * data.
+     */
+    private void writeIFD(TIFFIFD rootIFD) throws IOException {
         rootIFD.writeToStream(stream,isBtiff);
 
         this.nextIFDPointerPos = stream.getStreamPosition();
@@ -2884,19 +3262,22 @@ public class TIFFImageWriter extends ImageWriter {
         if(lastIFDPosition > this.nextSpace) {
             this.nextSpace = lastIFDPosition;
         }
+    }
 
-        // If not writing the image data, i.e., if writing or inserting an
-        // empty image, return.
-        if(!writeData) {
-            return;
-        }
-
-        // Get positions of fields within the IFD to update as we write
-        // each strip or tile
-        long stripOrTileByteCountsPosition =
-            rootIFD.getStripOrTileByteCountsPosition();
-        long stripOrTileOffsetsPosition =
-            rootIFD.getStripOrTileOffsetsPosition();
+    /**
+     * Writes the strips or tiles of the current image at the current
+     * stream position, filling in their offsets and byte counts at the
+     * provided positions.
+     *
+     * @return <code>false</code> if the write has been aborted.
+     */
+    private boolean writeImageData(long stripOrTileOffsetsPosition,
+                                   long stripOrTileByteCountsPosition)
+        throws IOException {
+        int progressStep = 1;
+        boolean writeLeaderTrailer = isCloudOptimized(param) &&
+            ((TIFFImageWriteParam)param).isTileLeaderTrailer();
+        byte[] trailer = writeLeaderTrailer ? new byte[4] : null;
 
         // Compute total number of pixels for progress notification
         this.totalPixels = tileWidth*tileLength*tilesDown*tilesAcross;
@@ -2905,6 +3286,10 @@ public class TIFFImageWriter extends ImageWriter {
         // Write the image, a strip or tile at a time
         for (int tj = 0; tj < tilesDown; tj++) {
             for (int ti = 0; ti < tilesAcross; ti++) {
+                if (writeLeaderTrailer) {
+                    // Room for the leader
+                    stream.writeInt(0);
+                }
                 long pos = stream.getStreamPosition();
 
                 // Write the (possibly compressed) tile data
@@ -2919,6 +3304,18 @@ public class TIFFImageWriter extends ImageWriter {
                 try {
                     int byteCount = writeTile(tileRect, compressor);
 
+                    if (byteCount < 0) {
+                        // Nodata tile, recorded with zero offset and
+                        // byte count
+                        if (writeLeaderTrailer) {
+                            stream.seek(pos - 4);
+                        }
+                        pos = 0;
+                        byteCount = 0;
+                    } else if (writeLeaderTrailer) {
+                        byteCount = writeLeaderTrailer(pos, byteCount, trailer);
+                    }
+
                     if(pos + byteCount > nextSpace) {
                         nextSpace = pos + byteCount;
                     }
@@ -2956,12 +3353,249 @@ public class TIFFImageWriter extends ImageWriter {
 
                 if (abortRequested()) {
                     processWriteAborted();
-                    return;
+                    return false;
                 }
             }
         }
         
-        processImageComplete();
+        return true;
+    }
+
+    /**
+     * Writes the leader, holding the byte count as a little endian
+     * unsigned 4 byte integer, before the tile data starting at the
+     * provided position, and repeats its last (at most 4) bytes after it.
+     * The stream is left after the trailer.
+     *
+     * @return the byte count of the tile data.
+     */
+    private int writeLeaderTrailer(long pos, int byteCount, byte[] trailer)
+        throws IOException {
+        int trailerLength = Math.min(byteCount, trailer.length);
+        stream.seek(pos + byteCount - trailerLength);
+        stream.readFully(trailer, 0, trailerLength);
+        stream.seek(pos + byteCount);
+        stream.write(trailer, 0, trailerLength);
+        long end = stream.getStreamPosition();
+
+        stream.seek(pos - 4);
+        stream.write(byteCount & 0xff);
+        stream.write((byteCount >>> 8) & 0xff);
+        stream.write((byteCount >>> 16) & 0xff);
+        stream.write((byteCount >>> 24) & 0xff);
+        stream.seek(end);
+        if (end > nextSpace) {
+            nextSpace = end;
+        }
+        return byteCount;
+    }
+
+    private static boolean isCloudOptimized(ImageWriteParam param) {
+        return param instanceof TIFFImageWriteParam &&
+            ((TIFFImageWriteParam)param).isCloudOptimized();
+    }
+
+    /**
+     * Writes, at the next available space, the text block describing the
+     * layout of a cloud optimized file, as written by GDAL, so that readers
+     * aware of it can rely on the layout.
+     */
+    private void writeGhostArea() throws IOException {
+        boolean leaderTrailer = param instanceof TIFFImageWriteParam &&
+            ((TIFFImageWriteParam)param).isTileLeaderTrailer();
+        String content = "LAYOUT=IFDS_BEFORE_DATA\n" +
+            "BLOCK_ORDER=ROW_MAJOR\n" +
+            (leaderTrailer ? "BLOCK_LEADER=SIZE_AS_UINT4\n" +
+             "BLOCK_TRAILER=LAST_4_BYTES_REPEATED\n" : "") +
+            "KNOWN_INCOMPATIBLE_EDITION=NO\n ";
+        String size = String.valueOf(content.length());
+        while (size.length() < 6) {
+            size = "0" + size;
+        }
+        String ghost = "GDAL_STRUCTURAL_METADATA_SIZE=" + size + " bytes\n" +
+            content;
+        stream.seek(nextSpace);
+        stream.write(ghost.getBytes("US-ASCII"));
+        nextSpace = stream.getStreamPosition();
+    }
+
+    /**
+     * Writes the provided images, a full resolution image followed by its
+     * overviews in decreasing size order, with a cloud optimized layout:
+     * all the IFDs, together with their strip or tile offsets and byte
+     * counts, are written first, then the image data from the smallest
+     * overview to the full resolution image, each one in row-major order.
+     * The images after the first one are flagged as reduced resolution
+     * images.
+     */
+    private void writeCloudOptimized(IIOMetadata sm,
+                                     List<IIOImage> images,
+                                     List<ImageWriteParam> params,
+                                     boolean writeHeader)
+        throws IOException {
+        // Overviews have to be written before the image data
+        images = new ArrayList<IIOImage>(images);
+        params = new ArrayList<ImageWriteParam>(params);
+        for (int i = images.size() - 1; i >= 0; i--) {
+            addOverviews(images, params, i);
+        }
+
+        final int numImages = images.size();
+        final long[] offsetsPositions = new long[numImages];
+        final long[] byteCountsPositions = new long[numImages];
+
+        // Write all the IFDs at the head of the file
+        for (int i = 0; i < numImages; i++) {
+            if (i == 0 && writeHeader) {
+                prepareWrite(sm, images.get(i), params.get(i), true);
+            } else {
+                // Link the IFD to the previous one
+                long pointerPosition = nextIFDPointerPos;
+                if (i == 0) {
+                    long[] ifdpos = new long[1];
+                    long[] ifd = new long[1];
+                    locateIFD(-1, ifdpos, ifd);
+                    pointerPosition = ifdpos[0];
+                    if (ifd[0] == 0 && isCloudOptimized(params.get(i))) {
+                        this.param = params.get(i);
+                        writeGhostArea();
+                    }
+                }
+                stream.seek(pointerPosition);
+                if (!isBtiff) {
+                    nextSpace = (nextSpace + 3) & ~0x3;
+                    stream.writeInt((int)nextSpace);
+                } else {
+                    nextSpace = (nextSpace + 7) & ~0x7;
+                    stream.writeLong(nextSpace);
+                }
+                stream.seek(nextSpace);
+                prepareWrite(null, images.get(i), params.get(i), false);
+            }
+            TIFFIFD rootIFD = imageMetadata.getRootIFD();
+            if (i > 0) {
+                setReducedResolution(rootIFD);
+            }
+            writeIFD(rootIFD);
+            offsetsPositions[i] = rootIFD.getStripOrTileOffsetsPosition();
+            byteCountsPositions[i] = rootIFD.getStripOrTileByteCountsPosition();
+        }
+
+        // Write the image data, smallest overview first
+        clearAbortRequest();
+        for (int i = numImages - 1; i >= 0; i--) {
+            prepareWrite(null, images.get(i), params.get(i), false);
+            processImageStarted(i);
+            stream.seek(nextSpace);
+            if (!writeImageData(offsetsPositions[i], byteCountsPositions[i])) {
+                return;
+            }
+            processImageComplete();
+        }
+    }
+
+    /**
+     * Builds in memory the overviews requested by the parameters of the
+     * image at the provided index, inserting them after it.
+     */
+    private void addOverviews(List<IIOImage> images,
+                              List<ImageWriteParam> params,
+                              int index) {
+        ImageWriteParam p = params.get(index);
+        int levels = getOverviewLevels(p);
+        if (levels == 0) {
+            return;
+        }
+        RenderedImage source = images.get(index).getRenderedImage();
+        TIFFOverviewBuilder overview = new TIFFOverviewBuilder(source, p,
+            ((TIFFImageWriteParam)p).getOverviewResampling());
+
+        // Read the source a band of tiles at a time
+        int bandHeight = Math.max(source.getTileHeight(), 2);
+        bandHeight += bandHeight % 2;
+        int y = source.getMinY();
+        if (p.getSourceRegion() != null) {
+            y = Math.max(y, p.getSourceRegion().y);
+        }
+        bandHeight *= p.getSourceYSubsampling();
+        y += p.getSubsamplingYOffset();
+        int maxY = source.getMinY() + source.getHeight();
+        for (; y < maxY; y += bandHeight) {
+            overview.add(source.getData(new Rectangle(source.getMinX(), y,
+                source.getWidth(), Math.min(bandHeight, maxY - y))));
+        }
+
+        ImageWriteParam overviewParam = createOverviewParam(p, 0);
+        for (int level = 1; level <= levels; level++) {
+            images.add(index + level,
+                       new IIOImage(overview.getImage(), null, null));
+            params.add(index + level, overviewParam);
+            if (level == levels || !overview.isReduced()) {
+                break;
+            }
+            TIFFOverviewBuilder next = new TIFFOverviewBuilder(overview);
+            next.add(overview.getRaster());
+            overview = next;
+        }
+    }
+
+    private static int getOverviewLevels(ImageWriteParam param) {
+        return param instanceof TIFFImageWriteParam ?
+            ((TIFFImageWriteParam)param).getOverviewLevels() : 0;
+    }
+
+    /**
+     * Returns the parameters for writing the overview of an image written
+     * with the provided parameters, which requests the provided number of
+     * further overview levels.
+     */
+    private ImageWriteParam createOverviewParam(ImageWriteParam p,
+                                                int levels) {
+        TIFFImageWriteParam source = (TIFFImageWriteParam)p;
+        TIFFImageWriteParam overviewParam =
+            new TIFFImageWriteParam(getLocale());
+        overviewParam.setTilingMode(source.getTilingMode());
+        if (source.getTilingMode() == ImageWriteParam.MODE_EXPLICIT) {
+            overviewParam.setTiling(source.getTileWidth(),
+                                    source.getTileHeight(), 0, 0);
+        }
+        overviewParam.setCompressionMode(source.getCompressionMode());
+        if (source.getCompressionMode() == ImageWriteParam.MODE_EXPLICIT) {
+            overviewParam.setTIFFCompressor(source.getTIFFCompressor());
+            if (source.getCompressionType() != null) {
+                overviewParam.setCompressionType(source.getCompressionType());
+                overviewParam.setCompressionQuality(
+                    source.getCompressionQuality());
+            }
+        }
+        if (source.getColorConverter() != null) {
+            overviewParam.setColorConverter(source.getColorConverter(),
+                source.getPhotometricInterpretation());
+        }
+        overviewParam.setForceToBigTIFF(source.isForceToBigTIFF());
+        overviewParam.setCloudOptimized(source.isCloudOptimized());
+        overviewParam.setTileLeaderTrailer(source.isTileLeaderTrailer());
+        overviewParam.setOverviewResampling(source.getOverviewResampling());
+        overviewParam.setZstdLevel(source.getZstdLevel());
+        overviewParam.setSparseTiles(source.isSparseTiles());
+        overviewParam.setNoDataValue(source.getNoDataValue());
+        overviewParam.setOverviewLevels(levels);
+        return overviewParam;
+    }
+
+    /**
+     * Flags the image described by the provided IFD as a reduced
+     * resolution image.
+     */
+    private static void setReducedResolution(TIFFIFD rootIFD) {
+        TIFFField f =
+            rootIFD.getTIFFField(BaselineTIFFTagSet.TAG_NEW_SUBFILE_TYPE);
+        long type = f == null ? 0 : f.getAsLong(0);
+        rootIFD.addTIFFField(new TIFFField(
+            BaselineTIFFTagSet.getInstance().getTag(
+                BaselineTIFFTagSet.TAG_NEW_SUBFILE_TYPE),
+            TIFFTag.TIFF_LONG, 1, new long[] {
+                type | BaselineTIFFTagSet.NEW_SUBFILE_TYPE_REDUCED_RESOLUTION}));
     }
 
     public boolean canWriteSequence() {
@@ -2998,6 +3632,13 @@ public class TIFFImageWriter extends ImageWriter {
                 ("prepareWriteSequence() has not been called!");
         }
 
+        // Cloud optimized images are written all together at the end
+        if (isCloudOptimized(param)) {
+            cloudOptimizedImages.add(image);
+            cloudOptimizedParams.add(param);
+            return;
+        }
+
         // Append image.
 	writeInsert(-1, image, param);
     }
@@ -3014,6 +3655,17 @@ public class TIFFImageWriter extends ImageWriter {
                 ("prepareWriteSequence() has not been called!");
         }
 
+        // Write the pending cloud optimized images.
+        try {
+            if (!cloudOptimizedImages.isEmpty()) {
+                writeCloudOptimized(null, cloudOptimizedImages,
+                                    cloudOptimizedParams, false);
+            }
+        } finally {
+            cloudOptimizedImages.clear();
+            cloudOptimizedParams.clear();
+        }
+
         // Unset sequence flag.
         this.isWritingSequence = false;
     }
@@ -3803,6 +4455,9 @@ public class TIFFImageWriter extends ImageWriter {
                     periodX == 1 && periodY == 1 && // no subsampling
                     colorConverter == null;
 
+                // Replaced tiles are always written.
+                this.isSparse = false;
+
                 int minTileX = XToTileX(dstRect.x, 0, tileWidth);
                 int minTileY = YToTileY(dstRect.y, 0, tileLength);
                 int maxTileX = XToTileX(dstRect.x + dstRect.width - 1,
@@ -3971,6 +4626,8 @@ public class TIFFImageWriter extends ImageWriter {
         imageMetadata = null;
 
         isWritingSequence = false;
+        cloudOptimizedImages.clear();
+        cloudOptimizedParams.clear();
         isWritingEmpty = false;
         isInsertingEmpty = false;
 
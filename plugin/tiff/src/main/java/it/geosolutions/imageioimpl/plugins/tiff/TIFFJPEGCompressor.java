@@ -150,6 +150,50 @@ public class TIFFJPEGCompressor extends TIFFBaseJPEGCompressor {
         return jpegReader;
     }
 
+    /**
+     * Replaces the YCbCr fields of the root IFD of an image written with
+     * JPEG compression, removing them for grayscale images.
+     */
+    static void setYCbCrFields(TIFFIFD rootIFD, int numBands) {
+        BaselineTIFFTagSet base = BaselineTIFFTagSet.getInstance();
+
+        if(numBands == 1) {
+            // Remove YCbCr fields not relevant for grayscale.
+
+            rootIFD.removeTIFFField(BaselineTIFFTagSet.TAG_Y_CB_CR_SUBSAMPLING);
+            rootIFD.removeTIFFField(BaselineTIFFTagSet.TAG_Y_CB_CR_POSITIONING);
+            rootIFD.removeTIFFField(BaselineTIFFTagSet.TAG_REFERENCE_BLACK_WHITE);
+        } else { // numBands == 3
+            // Replace YCbCr fields.
+
+            // YCbCrSubSampling
+            TIFFField YCbCrSubSamplingField = new TIFFField
+                (base.getTag(BaselineTIFFTagSet.TAG_Y_CB_CR_SUBSAMPLING),
+                 TIFFTag.TIFF_SHORT, 2,
+                 new char[] {CHROMA_SUBSAMPLING, CHROMA_SUBSAMPLING});
+            rootIFD.addTIFFField(YCbCrSubSamplingField);
+
+            // YCbCrPositioning
+            TIFFField YCbCrPositioningField = new TIFFField
+                (base.getTag(BaselineTIFFTagSet.TAG_Y_CB_CR_POSITIONING),
+                 TIFFTag.TIFF_SHORT, 1,
+                 new char[]
+                    {BaselineTIFFTagSet.Y_CB_CR_POSITIONING_CENTERED});
+            rootIFD.addTIFFField(YCbCrPositioningField);
+
+            // ReferenceBlackWhite
+            TIFFField referenceBlackWhiteField = new TIFFField
+                (base.getTag(BaselineTIFFTagSet.TAG_REFERENCE_BLACK_WHITE),
+                 TIFFTag.TIFF_RATIONAL, 6,
+                 new long[][] { // no headroon/footroom
+                     {0, 1}, {255, 1},
+                     {128, 1}, {255, 1},
+                     {128, 1}, {255, 1}
+                 });
+            rootIFD.addTIFFField(referenceBlackWhiteField);
+        }
+    }
+
     public TIFFJPEGCompressor(ImageWriteParam param) {
         super("JPEG", BaselineTIFFTagSet.COMPRESSION_JPEG, false, param);
     }
@@ -177,43 +221,7 @@ public class TIFFJPEGCompressor extends TIFFBaseJPEGCompressor {
 
             TIFFField f =
                 tim.getTIFFField(BaselineTIFFTagSet.TAG_SAMPLES_PER_PIXEL);
-            int numBands = f.getAsInt(0);
-
-            if(numBands == 1) {
-                // Remove YCbCr fields not relevant for grayscale.
-
-                rootIFD.removeTIFFField(BaselineTIFFTagSet.TAG_Y_CB_CR_SUBSAMPLING);
-                rootIFD.removeTIFFField(BaselineTIFFTagSet.TAG_Y_CB_CR_POSITIONING);
-                rootIFD.removeTIFFField(BaselineTIFFTagSet.TAG_REFERENCE_BLACK_WHITE);
-            } else { // numBands == 3
-                // Replace YCbCr fields.
-
-                // YCbCrSubSampling
-                TIFFField YCbCrSubSamplingField = new TIFFField
-                    (base.getTag(BaselineTIFFTagSet.TAG_Y_CB_CR_SUBSAMPLING),
-                     TIFFTag.TIFF_SHORT, 2,
-                     new char[] {CHROMA_SUBSAMPLING, CHROMA_SUBSAMPLING});
-                rootIFD.addTIFFField(YCbCrSubSamplingField);
-
-                // YCbCrPositioning
-                TIFFField YCbCrPositioningField = new TIFFField
-                    (base.getTag(BaselineTIFFTagSet.TAG_Y_CB_CR_POSITIONING),
-                     TIFFTag.TIFF_SHORT, 1,
-                     new char[]
-                        {BaselineTIFFTagSet.Y_CB_CR_POSITIONING_CENTERED});
-                rootIFD.addTIFFField(YCbCrPositioningField);
-
-                // ReferenceBlackWhite
-                TIFFField referenceBlackWhiteField = new TIFFField
-                    (base.getTag(BaselineTIFFTagSet.TAG_REFERENCE_BLACK_WHITE),
-                     TIFFTag.TIFF_RATIONAL, 6,
-                     new long[][] { // no headroon/footroom
-                         {0, 1}, {255, 1},
-                         {128, 1}, {255, 1},
-                         {128, 1}, {255, 1}
-                     });
-                rootIFD.addTIFFField(referenceBlackWhiteField);
-            }
+            setYCbCrFields(rootIFD, f.getAsInt(0));
 
             // JPEGTables field is written if and only if one is
             // already present in the metadata. If one is present
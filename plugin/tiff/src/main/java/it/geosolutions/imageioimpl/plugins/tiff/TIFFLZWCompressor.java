@@ -79,8 +79,6 @@ import it.geosolutions.imageio.plugins.tiff.TIFFCompressor;
 import java.io.IOException;
 import javax.imageio.stream.ImageOutputStream;
 
-import com.sun.media.imageioimpl.common.LZWCompressor;
-
 /**
  * LZW Compressor.
  */
@@ -88,6 +86,9 @@ public class TIFFLZWCompressor extends TIFFCompressor {
 
     int predictor;
 
+    /** The encoder, whose tables are reused by all the strips or tiles. */
+    private final TIFFLZWEncoder encoder = new TIFFLZWEncoder();
+
     public TIFFLZWCompressor(int predictorValue) {
         super("LZW", BaselineTIFFTagSet.COMPRESSION_LZW, true);
 	this.predictor = predictorValue;
@@ -102,8 +103,6 @@ public class TIFFLZWCompressor extends TIFFCompressor {
                       int[] bitsPerSample,
                       int scanlineStride) throws IOException {
 
-        LZWCompressor lzwCompressor = new LZWCompressor(stream, 8, true);
-
 	int samplesPerPixel = bitsPerSample.length;
         int bitsPerPixel = 0;
         for (int i = 0; i < samplesPerPixel; i++) {
@@ -111,36 +110,20 @@ public class TIFFLZWCompressor extends TIFFCompressor {
         }
         int bytesPerRow = (bitsPerPixel*width + 7)/8;
 
-        long initialStreamPosition = stream.getStreamPosition();
-
         boolean usePredictor =
             predictor == BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING;
 
+        // Rows which are contiguous are encoded as a single one
         if(bytesPerRow == scanlineStride && !usePredictor) {
-            lzwCompressor.compress(b, off, bytesPerRow*height);
-        } else {
-            byte[] rowBuf = usePredictor ? new byte[bytesPerRow] : null;
-            for(int i = 0; i < height; i++) {
-                if(usePredictor) {
-                    // Cannot modify b[] in place as it might be a data
-                    // array from the image being written so make a copy.
-                    System.arraycopy(b, off, rowBuf, 0, bytesPerRow);
-                    for(int j = bytesPerRow - 1; j >= samplesPerPixel; j--) {
-                        rowBuf[j] -= rowBuf[j - samplesPerPixel];
-                    }
-                    lzwCompressor.compress(rowBuf, 0, bytesPerRow);
-                } else {
-                    lzwCompressor.compress(b, off, bytesPerRow);
-                }
-                off += scanlineStride;
-            }
+            bytesPerRow *= height;
+            scanlineStride = bytesPerRow;
+            height = 1;
         }
 
-        lzwCompressor.flush();
-
-        int bytesWritten =
-            (int)(stream.getStreamPosition() - initialStreamPosition);
-
-        return bytesWritten;
+        // The predictor is applied while encoding as b[] might be a data
+        // array from the image being written.
+        return encoder.encode(stream, b, off, bytesPerRow, height,
+                              scanlineStride,
+                              usePredictor ? samplesPerPixel : 0);
     }
 }
@@ -0,0 +1,192 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Encoder of TIFF flavoured LZW data, MSB first with early code width
+ * changes, as written by libtiff.
+ * <p>
+ * The code table is an open addressing hash table of primitive arrays keyed
+ * by prefix code and appended byte, which is reset rather than reallocated
+ * when it fills up and between segments. Codes are packed into a reusable
+ * buffer which is written to the stream when full. Horizontal differencing
+ * is applied on the fly while reading the rows, leaving the source intact.
+ * Instances keep their tables across calls, therefore they are not thread
+ * safe.
+ */
+final class TIFFLZWEncoder {
+
+    private static final int CLEAR_CODE = 256;
+
+    private static final int EOI_CODE = 257;
+
+    private static final int FIRST_CODE = 258;
+
+    private static final int MIN_BITS = 9;
+
+    /** The table is reset once this code is reached, leaving 4094 and 4095 unused. */
+    private static final int CODE_LIMIT = 4094;
+
+    private static final int HASH_BITS = 13;
+
+    private static final int HASH_MASK = (1 << HASH_BITS) - 1;
+
+    private static final int BUFFER_SIZE = 16384;
+
+    /** Prefix code and appended byte of each entry plus one, 0 if empty. */
+    private final int[] hashKeys = new int[1 << HASH_BITS];
+
+    private final short[] hashCodes = new short[1 << HASH_BITS];
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private ImageOutputStream stream;
+
+    private int count;
+
+    private int written;
+
+    private int bits;
+
+    private int bitCount;
+
+    // Code table state
+    private int prefix;
+
+    private int nextCode;
+
+    private int codeBits;
+
+    private int maxCode;
+
+    /**
+     * Encodes the rows of <code>b</code> as a single LZW segment written to
+     * <code>stream</code>.
+     *
+     * @param predictorStride the distance between differenced bytes, 0 for no
+     * horizontal differencing.
+     * @return the number of bytes written.
+     */
+    int encode(ImageOutputStream stream, byte[] b, int off, int bytesPerRow,
+               int height, int scanlineStride, int predictorStride)
+        throws IOException {
+        this.stream = stream;
+        count = 0;
+        written = 0;
+        bits = 0;
+        bitCount = 0;
+
+        resetTable();
+        putCode(CLEAR_CODE);
+        prefix = -1;
+
+        final int start = predictorStride > 0 ?
+            Math.min(predictorStride, bytesPerRow) : bytesPerRow;
+        for (int y = 0; y < height; y++, off += scanlineStride) {
+            for (int i = off, end = off + start; i < end; i++) {
+                add(b[i] & 0xff);
+            }
+            for (int i = off + start, end = off + bytesPerRow; i < end; i++) {
+                add((b[i] - b[i - predictorStride]) & 0xff);
+            }
+        }
+
+        if (prefix >= 0) {
+            putCode(prefix);
+            // The decoder adds an entry while reading the last code
+            nextCode++;
+            if (nextCode == CODE_LIMIT) {
+                putCode(CLEAR_CODE);
+                codeBits = MIN_BITS;
+            } else if (nextCode > maxCode) {
+                codeBits++;
+            }
+        }
+        putCode(EOI_CODE);
+        if (bitCount > 0) {
+            putByte(bits << (8 - bitCount));
+        }
+        flush();
+
+        this.stream = null;
+        return written;
+    }
+
+    private void add(int c) throws IOException {
+        if (prefix < 0) {
+            prefix = c;
+            return;
+        }
+
+        final int key = ((prefix << 8) | c) + 1;
+        int h = (key * 0x9E3779B1) >>> (32 - HASH_BITS);
+        int k;
+        while ((k = hashKeys[h]) != 0) {
+            if (k == key) {
+                prefix = hashCodes[h];
+                return;
+            }
+            h = (h + 1) & HASH_MASK;
+        }
+
+        putCode(prefix);
+        hashKeys[h] = key;
+        hashCodes[h] = (short)nextCode++;
+        if (nextCode == CODE_LIMIT) {
+            putCode(CLEAR_CODE);
+            resetTable();
+        } else if (nextCode > maxCode) {
+            codeBits++;
+            maxCode = (1 << codeBits) - 1;
+        }
+        prefix = c;
+    }
+
+    private void resetTable() {
+        Arrays.fill(hashKeys, 0);
+        nextCode = FIRST_CODE;
+        codeBits = MIN_BITS;
+        maxCode = (1 << MIN_BITS) - 1;
+    }
+
+    private void putCode(int code) throws IOException {
+        bits = (bits << codeBits) | code;
+        bitCount += codeBits;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            putByte(bits >>> bitCount);
+        }
+    }
+
+    private void putByte(int value) throws IOException {
+        if (count == BUFFER_SIZE) {
+            flush();
+        }
+        buffer[count++] = (byte)value;
+    }
+
+    private void flush() throws IOException {
+        stream.write(buffer, 0, count);
+        written += count;
+        count = 0;
+    }
+}
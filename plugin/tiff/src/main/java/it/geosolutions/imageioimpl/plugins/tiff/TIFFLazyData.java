@@ -39,6 +39,9 @@ import javax.imageio.stream.ImageInputStream;
  * request, namely for tile position and lengths which in bigtiff can be enormous.
  * <p>
  * To perform this we retain an open stream to the data and we jump to read as less information as possible
+ * <p>
+ * Reads hold the monitor of the stream, as {@link TIFFStreamView} does, so that the decoding contexts
+ * of a {@link TIFFRenderedImage} can read the stream while the values are loaded.
  * 
  * @author Daniele Romagnoli, GeoSolutions SAS
  *
@@ -73,10 +76,12 @@ public class TIFFLazyData {
         checkIndex(index);
         long val;
         try {
-            stream.mark();
-            stream.seek(startPosition + index * size);
-            val = stream.readUnsignedInt();
-            stream.reset();
+            synchronized (stream) {
+                stream.mark();
+                stream.seek(startPosition + index * size);
+                val = stream.readUnsignedInt();
+                stream.reset();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -88,10 +93,12 @@ public class TIFFLazyData {
         checkIndex(index);
         long val;
         try {
-            stream.mark();
-            stream.seek(startPosition + index * size);
-            val = stream.readLong();
-            stream.reset();
+            synchronized (stream) {
+                stream.mark();
+                stream.seek(startPosition + index * size);
+                val = stream.readLong();
+                stream.reset();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,317 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
+
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+
+import com.sun.media.imageioimpl.common.ImageUtil;
+import com.sun.media.imageioimpl.common.SingleTileRenderedImage;
+
+/**
+ * Builds the overview of an image being written, halving its size, out of
+ * the pieces of the image handed to the writer for encoding, so that the
+ * source is read just once.
+ * <p>
+ * Pieces are provided as {@link Raster}s in the source image space; source
+ * region, subsampling and band selection of the write parameters are
+ * applied as the writer does, so that the overview is the one of the image
+ * actually written. Pieces may be provided in any order as long as each
+ * 2x2 block of written pixels is contained within a single piece, with the
+ * exception of blocks split across two pieces stacked vertically and
+ * provided one after the other, as it happens for strips with an odd number
+ * of rows.
+ */
+final class TIFFOverviewBuilder {
+
+    private final int sourceXOffset;
+
+    private final int sourceYOffset;
+
+    private final int periodX;
+
+    private final int periodY;
+
+    private final int[] sourceBands;
+
+    /** Size of the image actually written. */
+    private final int width;
+
+    private final int height;
+
+    private final int numBands;
+
+    private final int resampling;
+
+    private final boolean isInteger;
+
+    private final ColorModel colorModel;
+
+    private final WritableRaster overview;
+
+    /** First row of the blocks split across two pieces, -1 if none. */
+    private int pendingRow = -1;
+
+    private double[] pending;
+
+    /**
+     * Creates a builder for the overview of the provided image, as written
+     * with the provided parameters.
+     *
+     * @param image the image being written.
+     * @param param the parameters used for writing it, may be
+     *        <code>null</code>.
+     * @param resampling one of the <code>OVERVIEW_RESAMPLING_*</code>
+     *        constants of {@link TIFFImageWriteParam}.
+     */
+    TIFFOverviewBuilder(RenderedImage image, ImageWriteParam param,
+            int resampling) {
+        Rectangle region = new Rectangle(image.getMinX(), image.getMinY(),
+                image.getWidth(), image.getHeight());
+        int xSub = 1;
+        int ySub = 1;
+        int[] bands = null;
+        ColorModel cm = null;
+        if (param != null) {
+            if (param.getSourceRegion() != null) {
+                region = param.getSourceRegion().intersection(region);
+            }
+            region.x += param.getSubsamplingXOffset();
+            region.y += param.getSubsamplingYOffset();
+            region.width -= param.getSubsamplingXOffset();
+            region.height -= param.getSubsamplingYOffset();
+            xSub = param.getSourceXSubsampling();
+            ySub = param.getSourceYSubsampling();
+            bands = param.getSourceBands();
+            ImageTypeSpecifier destType = param.getDestinationType();
+            if (destType != null) {
+                cm = destType.getColorModel();
+            }
+        }
+        this.sourceXOffset = region.x;
+        this.sourceYOffset = region.y;
+        this.periodX = xSub;
+        this.periodY = ySub;
+        this.sourceBands = bands;
+        this.width = (region.width + xSub - 1) / xSub;
+        this.height = (region.height + ySub - 1) / ySub;
+
+        SampleModel sampleModel = image.getSampleModel();
+        if (bands != null) {
+            sampleModel = sampleModel.createSubsetSampleModel(bands);
+        }
+        this.numBands = sampleModel.getNumBands();
+        if (cm == null || cm.getNumComponents() != numBands) {
+            cm = image.getColorModel();
+        }
+        if (cm == null || cm.getNumComponents() != numBands) {
+            cm = ImageUtil.createColorModel(sampleModel);
+        }
+        this.colorModel = cm;
+
+        // averaging palette indices makes no sense
+        this.resampling = resampling == TIFFImageWriteParam.OVERVIEW_RESAMPLING_AVERAGE
+                && cm instanceof IndexColorModel ? TIFFImageWriteParam.OVERVIEW_RESAMPLING_MODE
+                : resampling;
+        final int dataType = sampleModel.getDataType();
+        this.isInteger = dataType != DataBuffer.TYPE_FLOAT
+                && dataType != DataBuffer.TYPE_DOUBLE;
+
+        this.overview = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(Math.max((width + 1) / 2, 1),
+                        Math.max((height + 1) / 2, 1)), null);
+    }
+
+    /**
+     * Creates a builder for the overview of a previously built overview.
+     */
+    TIFFOverviewBuilder(TIFFOverviewBuilder previous) {
+        this(previous.getImage(), null, previous.resampling);
+    }
+
+    /**
+     * Returns whether the overview is smaller than the image it is built
+     * from.
+     */
+    boolean isReduced() {
+        return width > 1 || height > 1;
+    }
+
+    /**
+     * Accumulates the provided piece of the source image into the overview.
+     */
+    void add(Raster raster) {
+        // range of the written pixels covered by the piece
+        final int x0 = Math.max(ceilDiv(raster.getMinX() - sourceXOffset, periodX), 0);
+        final int x1 = Math.min(ceilDiv(raster.getMinX() + raster.getWidth()
+                - sourceXOffset, periodX), width);
+        final int y0 = Math.max(ceilDiv(raster.getMinY() - sourceYOffset, periodY), 0);
+        final int y1 = Math.min(ceilDiv(raster.getMinY() + raster.getHeight()
+                - sourceYOffset, periodY), height);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        final int count = x1 - x0;
+        final int srcBands = raster.getNumBands();
+        final double[] srcRow = new double[((count - 1) * periodX + 1) * srcBands];
+        double[] upper = new double[count * numBands];
+        double[] lower = new double[count * numBands];
+        final double[] block = new double[4 * numBands];
+        final double[] pixel = new double[numBands];
+
+        for (int y = y0 - (y0 & 1); y < y1; y += 2) {
+            // first row of the block
+            if (y < y0) {
+                if (pendingRow != y || pending.length < upper.length) {
+                    // the other half has not been provided
+                    continue;
+                }
+                System.arraycopy(pending, x0 * numBands, upper, 0, upper.length);
+                pendingRow = -1;
+            } else {
+                readRow(raster, x0, count, y, srcRow, upper);
+            }
+            // second row of the block, if any
+            int rows = 1;
+            if (y + 1 < y1) {
+                readRow(raster, x0, count, y + 1, srcRow, lower);
+                rows = 2;
+            } else if (y + 1 < height) {
+                // the block continues in the next piece
+                if (pending == null || pending.length != width * numBands) {
+                    pending = new double[width * numBands];
+                }
+                System.arraycopy(upper, 0, pending, x0 * numBands, upper.length);
+                pendingRow = y;
+                break;
+            }
+
+            for (int x = x0 - (x0 & 1); x < x1; x += 2) {
+                int n = 0;
+                for (int r = 0; r < rows; r++) {
+                    final double[] row = r == 0 ? upper : lower;
+                    for (int c = Math.max(x, x0); c < Math.min(x + 2, x1); c++) {
+                        System.arraycopy(row, (c - x0) * numBands, block, n * numBands,
+                                numBands);
+                        n++;
+                    }
+                }
+                resample(block, n, pixel);
+                overview.setPixel(x / 2, y / 2, pixel);
+            }
+        }
+    }
+
+    /**
+     * Returns the overview built so far.
+     */
+    RenderedImage getImage() {
+        return new SingleTileRenderedImage(overview, colorModel);
+    }
+
+    /**
+     * Returns the raster of the overview built so far.
+     */
+    Raster getRaster() {
+        return overview;
+    }
+
+    /**
+     * Reads the selected bands of <code>count</code> written pixels of the
+     * provided row, starting at column <code>x</code>.
+     */
+    private void readRow(Raster raster, int x, int count, int y,
+            double[] srcRow, double[] row) {
+        final int srcBands = raster.getNumBands();
+        raster.getPixels(sourceXOffset + x * periodX, sourceYOffset + y * periodY,
+                (count - 1) * periodX + 1, 1, srcRow);
+        for (int i = 0, src = 0, dst = 0; i < count; i++, src += periodX * srcBands) {
+            for (int b = 0; b < numBands; b++) {
+                row[dst++] = srcRow[src + (sourceBands != null ? sourceBands[b] : b)];
+            }
+        }
+    }
+
+    /**
+     * Computes the overview pixel out of the <code>n</code> pixels of a
+     * block.
+     */
+    private void resample(double[] block, int n, double[] pixel) {
+        switch (resampling) {
+        case TIFFImageWriteParam.OVERVIEW_RESAMPLING_AVERAGE:
+            for (int b = 0; b < numBands; b++) {
+                double sum = 0;
+                int valid = 0;
+                for (int i = 0; i < n; i++) {
+                    final double sample = block[i * numBands + b];
+                    if (!Double.isNaN(sample)) {
+                        sum += sample;
+                        valid++;
+                    }
+                }
+                double mean = valid > 0 ? sum / valid : Double.NaN;
+                pixel[b] = isInteger ? Math.floor(mean + 0.5) : mean;
+            }
+            break;
+        case TIFFImageWriteParam.OVERVIEW_RESAMPLING_MODE:
+            // most frequent pixel, the first one in case of ties
+            int best = 0;
+            int bestCount = 0;
+            for (int i = 0; i < n; i++) {
+                int count = 0;
+                for (int j = 0; j < n; j++) {
+                    if (equals(block, i, j)) {
+                        count++;
+                    }
+                }
+                if (count > bestCount) {
+                    best = i;
+                    bestCount = count;
+                }
+            }
+            System.arraycopy(block, best * numBands, pixel, 0, numBands);
+            break;
+        default:
+            System.arraycopy(block, 0, pixel, 0, numBands);
+        }
+    }
+
+    private boolean equals(double[] block, int i, int j) {
+        for (int b = 0; b < numBands; b++) {
+            if (Double.compare(block[i * numBands + b], block[j * numBands + b]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return a >= 0 ? (a + b - 1) / b : -((-a) / b);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * Plans the reads of the strips or tiles touched by a single
+ * {@link TIFFImageReader#read} call.
+ * <p>
+ * Tiles are visited in decoding order and consecutive ones whose byte ranges
+ * are adjacent, or separated by a gap not larger than a threshold, are merged
+ * into a single range which is read from the source stream with one
+ * <code>readFully</code> call the first time one of its tiles is decoded.
+ * Decompressors are then given an {@link ImageInputStream} backed by the
+ * buffered range, which still uses the positions of the source stream so that
+ * they can keep seeking to the tile offset. Accesses falling outside the
+ * buffered range are delegated to the source stream.
+ * <p>
+ * Tiles which do not share their range with any other tile, as well as the
+ * ones exceeding the maximum range length, are read from the source stream as
+ * usual.
+ */
+final class TIFFReadPlan {
+
+    /**
+     * {@link ImageInputStream} serving the currently buffered range, using the
+     * positions of the source stream.
+     */
+    private final class RangeInputStream extends ImageInputStreamImpl {
+
+        public int read() throws IOException {
+            bitOffset = 0;
+            final long index = streamPos - bufferStart;
+            if (index >= 0 && index < bufferLength) {
+                streamPos++;
+                return buffer[(int) index] & 0xff;
+            }
+            // outside of the buffered range
+            source.seek(streamPos);
+            final int b = source.read();
+            if (b != -1) {
+                streamPos++;
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            final long index = streamPos - bufferStart;
+            if (index >= 0 && index < bufferLength) {
+                final int n = (int) Math.min(len, bufferLength - index);
+                System.arraycopy(buffer, (int) index, b, off, n);
+                streamPos += n;
+                return n;
+            }
+            // outside of the buffered range
+            source.seek(streamPos);
+            final int n = source.read(b, off, len);
+            if (n > 0) {
+                streamPos += n;
+            }
+            return n;
+        }
+
+        public long length() {
+            try {
+                return source.length();
+            } catch (IOException e) {
+                return -1L;
+            }
+        }
+    }
+
+    private final ImageInputStream source;
+
+    /** First stream position of each range. */
+    private final long[] rangeStarts;
+
+    /** Number of bytes of each range. */
+    private final int[] rangeLengths;
+
+    private final int numRanges;
+
+    private final int savedOperations;
+
+    /** Index of the buffered range, -1 if none. */
+    private int bufferedRange = -1;
+
+    private byte[] buffer;
+
+    private long bufferStart;
+
+    private int bufferLength;
+
+    private final RangeInputStream rangeStream = new RangeInputStream();
+
+    /**
+     * Plans the reads of the provided tiles.
+     *
+     * @param source the source stream.
+     * @param offsets the offsets of the tiles, in decoding order.
+     * @param byteCounts the byte counts of the tiles, in decoding order.
+     * @param numTiles the number of tiles.
+     * @param maxGap the maximum number of unused bytes allowed between two
+     *        merged tiles.
+     * @param maxLength the maximum number of bytes of a range.
+     * @throws IOException
+     */
+    TIFFReadPlan(ImageInputStream source, long[] offsets, long[] byteCounts,
+            int numTiles, int maxGap, int maxLength) throws IOException {
+        this.source = source;
+        rangeStream.setByteOrder(source.getByteOrder());
+        final long streamLength = source.length();
+
+        final long[] starts = new long[numTiles];
+        final int[] lengths = new int[numTiles];
+        int ranges = 0;
+        int saved = 0;
+        long start = -1;
+        long end = -1;
+        int tiles = 0;
+        for (int i = 0; i <= numTiles; i++) {
+            long offset = -1;
+            long tileEnd = -1;
+            if (i < numTiles && byteCounts[i] > 0 && offsets[i] > 0) {
+                offset = offsets[i];
+                tileEnd = offset + byteCounts[i];
+                // truncated streams are handled by the reader
+                if (streamLength > 0 && tileEnd > streamLength) {
+                    tileEnd = streamLength;
+                }
+                if (tiles > 0 && offset >= end && offset - end <= maxGap
+                        && tileEnd - start <= maxLength) {
+                    end = tileEnd;
+                    tiles++;
+                    continue;
+                }
+            }
+            // closing the current range
+            if (tiles > 1) {
+                starts[ranges] = start;
+                lengths[ranges] = (int) (end - start);
+                ranges++;
+                saved += tiles - 1;
+            }
+            tiles = 0;
+            if (offset > 0 && tileEnd > offset && tileEnd - offset <= maxLength) {
+                start = offset;
+                end = tileEnd;
+                tiles = 1;
+            }
+        }
+        this.rangeStarts = starts;
+        this.rangeLengths = lengths;
+        this.numRanges = ranges;
+        this.savedOperations = saved;
+    }
+
+    /**
+     * Returns the {@link ImageInputStream} the decompressor should use for
+     * decoding the tile at the provided position.
+     *
+     * @param offset the offset of the tile.
+     * @param byteCount the byte count of the tile.
+     * @return a stream backed by the buffered range containing the tile, or
+     *         the source stream if the tile is not part of any range.
+     * @throws IOException
+     */
+    ImageInputStream getStream(long offset, long byteCount) throws IOException {
+        if (bufferedRange < 0 || !contains(bufferedRange, offset, byteCount)) {
+            int range = -1;
+            for (int i = bufferedRange + 1; i < numRanges; i++) {
+                if (contains(i, offset, byteCount)) {
+                    range = i;
+                    break;
+                }
+            }
+            if (range < 0) {
+                return source;
+            }
+            if (!load(range)) {
+                return source;
+            }
+        }
+        return rangeStream;
+    }
+
+    /**
+     * Returns the number of read operations saved by merging tiles.
+     */
+    int getSavedOperations() {
+        return savedOperations;
+    }
+
+    /**
+     * Returns the number of ranges.
+     */
+    int getNumRanges() {
+        return numRanges;
+    }
+
+    /**
+     * Releases the buffered range.
+     */
+    void dispose() {
+        buffer = null;
+        bufferedRange = -1;
+        bufferLength = 0;
+    }
+
+    private boolean contains(int range, long offset, long byteCount) {
+        final long start = rangeStarts[range];
+        return offset >= start && offset < start + rangeLengths[range];
+    }
+
+    private boolean load(int range) throws IOException {
+        final int length = rangeLengths[range];
+        if (buffer == null || buffer.length < length) {
+            buffer = new byte[length];
+        }
+        bufferedRange = -1;
+        bufferLength = 0;
+        try {
+            source.seek(rangeStarts[range]);
+            source.readFully(buffer, 0, length);
+        } catch (EOFException e) {
+            // let the decompressors deal with the source stream
+            return false;
+        }
+        bufferedRange = range;
+        bufferStart = rangeStarts[range];
+        bufferLength = length;
+        return true;
+    }
+}
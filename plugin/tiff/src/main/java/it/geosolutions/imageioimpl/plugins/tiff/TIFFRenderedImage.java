@@ -85,14 +85,50 @@ import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageTypeSpecifier;
 
 
+/**
+ * A <code>RenderedImage</code> reading its tiles on demand from a TIFF image.
+ * <p>
+ * Tiles may be computed concurrently by different threads, each read being
+ * performed by a decoding context, that is a {@link TIFFImageReader} with its
+ * own decompressor and buffers, sharing the IFDs parsed by the originating
+ * reader and reading from a {@link TIFFStreamView} of its input.  Contexts
+ * are created on demand up to the number of available processors, which can
+ * be changed through the
+ * <code>it.geosolutions.imageio.tiff.decodingContexts</code> system property,
+ * and are kept for the following reads.  Reads finding no idle context wait
+ * for one to be released; their number and total waiting time are reported
+ * by {@link #getContendedReads()} and {@link #getContentionTime()}.
+ * <p>
+ * A single context is used if the read parameters provide a
+ * <code>TIFFDecompressor</code>, as it cannot be shared among threads.
+ */
 public class TIFFRenderedImage implements RenderedImage {
 
+    /** Maximum number of tiles read at the same time*/
+    private static final int MAX_DECODING_CONTEXTS =
+        Integer.getInteger("it.geosolutions.imageio.tiff.decodingContexts",
+                           Runtime.getRuntime().availableProcessors());
+
+    /** A reader, and the parameters it is given, decoding one tile at a time*/
+    private static final class DecodingContext {
+
+        final TIFFImageReader reader;
+
+        final ImageReadParam param;
+
+        DecodingContext(TIFFImageReader reader, ImageReadParam param) {
+            this.reader = reader;
+            this.param = param;
+        }
+    }
+
     TIFFImageReader reader;
     int imageIndex;
     ImageReadParam tileParam;
@@ -109,6 +145,25 @@ public class TIFFRenderedImage implements RenderedImage {
 
     ImageTypeSpecifier its;
 
+    // Metadata shared by the decoding contexts, referenced to keep it
+    // from being collected.
+    TIFFImageMetadata imageMetadata;
+
+    // Contexts not being used, guarded by their own monitor as the
+    // following fields.
+    private final LinkedList<DecodingContext> idleContexts =
+        new LinkedList<DecodingContext>();
+
+    private final int maxContexts;
+
+    private int numContexts = 0;
+
+    private long numReads = 0;
+
+    private long numContendedReads = 0;
+
+    private long contentionTime = 0;
+
     public TIFFRenderedImage(TIFFImageReader reader,
                              int imageIndex,
                              ImageReadParam readParam,
@@ -133,15 +188,20 @@ public class TIFFRenderedImage implements RenderedImage {
         Iterator iter = reader.getImageTypes(imageIndex);
         this.its = (ImageTypeSpecifier)iter.next();
         tileParam.setDestinationType(its);
+
+        this.imageMetadata = reader.imageMetadata;
+        this.maxContexts =
+            ((TIFFImageReadParam)tileParam).getTIFFDecompressor() != null ?
+            1 : Math.max(1, MAX_DECODING_CONTEXTS);
     }
 
     /**
      * Creates a copy of <code>param</code>. The source subsampling and
      * and bands settings and the destination bands and offset settings
      * are copied. If <code>param</code> is a <code>TIFFImageReadParam</code>
-     * then the <code>TIFFDecompressor</code> and
-     * <code>TIFFColorConverter</code> settings are also copied; otherwise
-     * they are explicitly set to <code>null</code>.
+     * then the <code>TIFFDecompressor</code>,
+     * <code>TIFFColorConverter</code> and nodata settings are also copied;
+     * otherwise they are explicitly set to <code>null</code>.
      *
      * @param param the parameters to be copied.
      * @param copyTagSets whether the <code>TIFFTagSet</code> settings
@@ -168,6 +228,7 @@ public class TIFFRenderedImage implements RenderedImage {
             TIFFImageReadParam tparam = (TIFFImageReadParam)param;
             newParam.setTIFFDecompressor(tparam.getTIFFDecompressor());
             newParam.setColorConverter(tparam.getColorConverter());
+            newParam.setNoDataValue(tparam.getNoDataValue());
 
             if(copyTagSets) {
                 List tagSets = tparam.getAllowedTagSets();
@@ -274,20 +335,30 @@ public class TIFFRenderedImage implements RenderedImage {
         return read(rect);
     }
 
-    // This method needs to be synchronized as it updates the instance
-    // variable 'tileParam'.
-    public synchronized WritableRaster read(Rectangle rect) {
-        // XXX Does this need to consider the subsampling offsets or is
-        // that handled implicitly by the reader?
-        tileParam.setSourceRegion(isSubsampling ?
+    // Each read uses its own decoding context, so concurrent reads do not
+    // share any reader state.
+    public WritableRaster read(Rectangle rect) {
+        DecodingContext context = acquireContext();
+        try {
+            ImageReadParam param = context.param;
+
+            // XXX Does this need to consider the subsampling offsets or is
+            // that handled implicitly by the reader?
+            param.setSourceRegion(isSubsampling ?
                                   new Rectangle(subsampleX*rect.x,
                                                 subsampleY*rect.y,
                                                 subsampleX*rect.width,
                                                 subsampleY*rect.height) :
                                   rect);
 
-        try {
-            BufferedImage bi = reader.read(imageIndex, tileParam);
+            BufferedImage bi = context.reader.read(imageIndex, param);
+
+            // Keep the decompressor, and its buffers, for the next reads
+            TIFFImageReadParam tparam = (TIFFImageReadParam)param;
+            if(tparam.getTIFFDecompressor() == null) {
+                tparam.setTIFFDecompressor(context.reader.getDecompressor());
+            }
+
             WritableRaster ras = bi.getRaster();
             return ras.createWritableChild(0, 0,
                                            ras.getWidth(), ras.getHeight(),
@@ -295,6 +366,94 @@ public class TIFFRenderedImage implements RenderedImage {
                                            null);
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            releaseContext(context);
+        }
+    }
+
+    /**
+     * Returns an idle decoding context, creating it if allowed, or waits
+     * for one to be released.
+     */
+    private DecodingContext acquireContext() {
+        synchronized(idleContexts) {
+            numReads++;
+            if(idleContexts.isEmpty() && numContexts < maxContexts) {
+                ImageReadParam param = cloneImageReadParam(tileParam, false);
+                param.setDestinationType(its);
+                DecodingContext context =
+                    new DecodingContext(reader.createDecodingContext(), param);
+                numContexts++;
+                return context;
+            }
+            if(idleContexts.isEmpty()) {
+                numContendedReads++;
+                long start = System.nanoTime();
+                try {
+                    while(idleContexts.isEmpty()) {
+                        idleContexts.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } finally {
+                    contentionTime += System.nanoTime() - start;
+                }
+            }
+            return idleContexts.removeFirst();
+        }
+    }
+
+    private void releaseContext(DecodingContext context) {
+        synchronized(idleContexts) {
+            idleContexts.addFirst(context);
+            idleContexts.notify();
+        }
+    }
+
+    /**
+     * Returns the number of reads performed so far.
+     *
+     * @return the number of reads.
+     */
+    public long getReads() {
+        synchronized(idleContexts) {
+            return numReads;
+        }
+    }
+
+    /**
+     * Returns the number of reads which had to wait for a decoding context
+     * to be released.
+     *
+     * @return the number of contended reads.
+     */
+    public long getContendedReads() {
+        synchronized(idleContexts) {
+            return numContendedReads;
+        }
+    }
+
+    /**
+     * Returns the total time spent by the reads waiting for a decoding
+     * context, in milliseconds.
+     *
+     * @return the contention time.
+     */
+    public long getContentionTime() {
+        synchronized(idleContexts) {
+            return contentionTime/1000000L;
+        }
+    }
+
+    /**
+     * Returns the number of decoding contexts created so far.
+     *
+     * @return the number of decoding contexts.
+     */
+    public int getDecodingContexts() {
+        synchronized(idleContexts) {
+            return numContexts;
         }
     }
 
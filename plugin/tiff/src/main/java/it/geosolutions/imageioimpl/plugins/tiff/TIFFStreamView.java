@@ -0,0 +1,84 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import java.io.IOException;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An {@link ImageInputStream} reading from a source stream shared with other
+ * views, keeping its own position and byte order.
+ * <p>
+ * Each read positions the source stream and reads from it while holding its
+ * monitor, so that several views can be used concurrently by different
+ * threads. Closing a view does not close the source stream.
+ */
+final class TIFFStreamView extends ImageInputStreamImpl {
+
+    private final ImageInputStream source;
+
+    TIFFStreamView(ImageInputStream source) {
+        this.source = source;
+        setByteOrder(source.getByteOrder());
+    }
+
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        final int b;
+        synchronized (source) {
+            source.seek(streamPos);
+            b = source.read();
+        }
+        if (b != -1) {
+            streamPos++;
+        }
+        return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        final int n;
+        synchronized (source) {
+            source.seek(streamPos);
+            n = source.read(b, off, len);
+        }
+        if (n > 0) {
+            streamPos += n;
+        }
+        return n;
+    }
+
+    public long length() {
+        try {
+            synchronized (source) {
+                return source.length();
+            }
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.TIFFCompressor;
+import it.geosolutions.imageio.plugins.tiff.TIFFField;
+import it.geosolutions.imageio.plugins.tiff.TIFFTag;
+
+import java.io.IOException;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.metadata.IIOMetadata;
+
+/**
+ * Compressor for encoding compression type 7, TTN2/Adobe JPEG-in-TIFF,
+ * through the native TurboJPEG library.
+ * <p>
+ * Unlike {@link TIFFJPEGCompressor}, which goes through a JPEG
+ * <code>ImageWriter</code> for each strip or tile, this compressor keeps a
+ * single TurboJPEG compressor and output buffer for the whole image. The
+ * JPEGTables field is always written and each strip or tile is stored as
+ * an abbreviated stream. The JPEG quality is taken from the compression
+ * quality of the <code>ImageWriteParam</code>, 0.75 by default.
+ * <p>
+ * The compressor can only be used if {@link #isAvailable()} returns
+ * <code>true</code>, that is when the TurboJPEG wrapper and its native
+ * library can be loaded.
+ */
+public class TIFFTurboJPEGCompressor extends TIFFCompressor {
+
+    private static final float DEFAULT_QUALITY = 0.75f;
+
+    private static final boolean AVAILABLE;
+
+    static {
+        boolean available;
+        try {
+            available = TIFFTurboJPEGEncoder.isAvailable();
+        } catch (Throwable t) {
+            // The TurboJPEG wrapper is missing
+            available = false;
+        }
+        AVAILABLE = available;
+    }
+
+    private final int quality;
+
+    private TIFFTurboJPEGEncoder encoder;
+
+    private int numBands;
+
+    /**
+     * Returns whether the TurboJPEG wrapper and its native library are
+     * available.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public TIFFTurboJPEGCompressor(ImageWriteParam param) {
+        super("JPEG", BaselineTIFFTagSet.COMPRESSION_JPEG, false);
+
+        float q = DEFAULT_QUALITY;
+        if (param != null &&
+            param.getCompressionMode() == ImageWriteParam.MODE_EXPLICIT) {
+            q = param.getCompressionQuality();
+        }
+        this.quality = Math.max(1, Math.min(100, Math.round(q * 100)));
+    }
+
+    /**
+     * Sets the value of the <code>metadata</code> field.
+     *
+     * <p>The implementation in this class also adds the TIFF fields
+     * JPEGTables, YCbCrSubSampling, YCbCrPositioning, and
+     * ReferenceBlackWhite superseding any prior settings of those
+     * fields.</p>
+     *
+     * @param metadata the <code>IIOMetadata</code> object for the
+     * image being written.
+     *
+     * @throws IllegalStateException if the TurboJPEG compressor cannot
+     * be initialized.
+     */
+    public void setMetadata(IIOMetadata metadata) {
+        super.setMetadata(metadata);
+
+        if (metadata instanceof TIFFImageMetadata) {
+            TIFFImageMetadata tim = (TIFFImageMetadata)metadata;
+            TIFFIFD rootIFD = tim.getRootIFD();
+
+            TIFFField f =
+                tim.getTIFFField(BaselineTIFFTagSet.TAG_SAMPLES_PER_PIXEL);
+            int bands = f.getAsInt(0);
+            TIFFJPEGCompressor.setYCbCrFields(rootIFD, bands);
+
+            if (encoder == null || numBands != bands) {
+                if (encoder != null) {
+                    encoder.dispose();
+                    encoder = null;
+                }
+                try {
+                    encoder = new TIFFTurboJPEGEncoder(bands, quality);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+                numBands = bands;
+            }
+
+            byte[] tables = encoder.getTables();
+            rootIFD.addTIFFField(new TIFFField
+                (BaselineTIFFTagSet.getInstance().getTag(BaselineTIFFTagSet.TAG_JPEG_TABLES),
+                 TIFFTag.TIFF_UNDEFINED,
+                 tables.length,
+                 tables));
+        }
+    }
+
+    public int encode(byte[] b, int off,
+                      int width, int height,
+                      int[] bitsPerSample,
+                      int scanlineStride) throws IOException {
+        if (encoder == null) {
+            throw new IIOException
+                ("TurboJPEG compressor has not been initialized!");
+        }
+        if (bitsPerSample.length != numBands ||
+            !((bitsPerSample.length == 3 &&
+               bitsPerSample[0] == 8 &&
+               bitsPerSample[1] == 8 &&
+               bitsPerSample[2] == 8) ||
+              (bitsPerSample.length == 1 &&
+               bitsPerSample[0] == 8))) {
+            throw new IIOException
+                ("Can only JPEG compress 8- and 24-bit images!");
+        }
+
+        return encoder.encode(stream, b, off, width, height, scanlineStride);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        if (encoder != null) {
+            encoder.dispose();
+            encoder = null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import java.io.IOException;
+
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.libjpegturbo.turbojpeg.TJ;
+import org.libjpegturbo.turbojpeg.TJCompressor;
+
+/**
+ * Encoder of JPEG-in-TIFF segments backed by a native TurboJPEG compressor.
+ * <p>
+ * TurboJPEG always writes complete interchange streams using the standard
+ * Huffman tables and the quantization tables of the requested quality, so
+ * the tables of every segment are the ones of a single MCU image compressed
+ * at construction time. These are exposed as a tables-only stream for the
+ * <code>JPEGTables</code> field and stripped, together with any application
+ * marker, from the segments written, which become abbreviated streams. A
+ * segment whose tables differ is written whole.
+ * <p>
+ * The native handle and the output buffer are kept across calls, therefore
+ * instances are not thread safe and must be disposed of.
+ */
+final class TIFFTurboJPEGEncoder {
+
+    private static final int SOI = 0xD8;
+
+    private static final int EOI = 0xD9;
+
+    private static final int SOS = 0xDA;
+
+    private static final int DQT = 0xDB;
+
+    private static final int DHT = 0xC4;
+
+    private static final int APP0 = 0xE0;
+
+    private static final int APP15 = 0xEF;
+
+    private final TJCompressor compressor;
+
+    private final int pixelFormat;
+
+    private final int pixelSize;
+
+    private final int subsamp;
+
+    /** SOI, DQT and DHT segments, EOI. */
+    private final byte[] tables;
+
+    private byte[] source;
+
+    private byte[] buffer;
+
+    /**
+     * Returns whether the TurboJPEG classes and native library can be
+     * loaded.
+     */
+    static boolean isAvailable() {
+        try {
+            new TJCompressor().close();
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * @param numBands 1 for grayscale or 3 for RGB data, the latter being
+     * stored as YCbCr subsampled by 2 in both directions.
+     * @param quality the JPEG quality, from 1 to 100.
+     */
+    TIFFTurboJPEGEncoder(int numBands, int quality) throws IOException {
+        if (numBands == 1) {
+            pixelFormat = TJ.PF_GRAY;
+            subsamp = TJ.SAMP_GRAY;
+        } else {
+            pixelFormat = TJ.PF_RGB;
+            subsamp = TJ.SAMP_420;
+        }
+        try {
+            pixelSize = TJ.getPixelSize(pixelFormat);
+            compressor = new TJCompressor();
+            compressor.setSubsamp(subsamp);
+            compressor.setJPEGQuality(quality);
+        } catch (Exception e) {
+            throw new IIOException("Cannot initialize TurboJPEG compressor", e);
+        }
+
+        // Compress a single MCU and keep its tables
+        int mcuSize = numBands == 1 ? 8 : 8 * TIFFJPEGCompressor.CHROMA_SUBSAMPLING;
+        int length = compress(new byte[mcuSize * mcuSize * pixelSize],
+                              mcuSize, mcuSize, mcuSize * pixelSize);
+        int size = 4;
+        for (int pos = 2; pos < length && marker(pos) != SOS; pos += segmentLength(pos)) {
+            if (isTable(marker(pos))) {
+                size += segmentLength(pos);
+            }
+        }
+        tables = new byte[size];
+        tables[0] = (byte)0xFF;
+        tables[1] = (byte)SOI;
+        int count = 2;
+        for (int pos = 2; pos < length && marker(pos) != SOS; pos += segmentLength(pos)) {
+            if (isTable(marker(pos))) {
+                System.arraycopy(buffer, pos, tables, count, segmentLength(pos));
+                count += segmentLength(pos);
+            }
+        }
+        tables[count++] = (byte)0xFF;
+        tables[count] = (byte)EOI;
+    }
+
+    /**
+     * Returns the tables-only stream for the <code>JPEGTables</code> field.
+     */
+    byte[] getTables() {
+        return tables;
+    }
+
+    /**
+     * Compresses the interleaved 8 bit samples of <code>b</code> as an
+     * abbreviated JPEG stream written to <code>stream</code>.
+     *
+     * @return the number of bytes written.
+     */
+    int encode(ImageOutputStream stream, byte[] b, int off, int width,
+               int height, int scanlineStride) throws IOException {
+        int length;
+        if (off == 0) {
+            length = compress(b, width, height, scanlineStride);
+        } else {
+            // TurboJPEG reads the samples from the start of the array
+            int bytesPerRow = width * pixelSize;
+            int size = bytesPerRow * height;
+            if (source == null || source.length < size) {
+                source = new byte[size];
+            }
+            for (int y = 0, pos = 0; y < height; y++, pos += bytesPerRow) {
+                System.arraycopy(b, off + y * scanlineStride, source, pos, bytesPerRow);
+            }
+            length = compress(source, width, height, bytesPerRow);
+        }
+
+        if (!hasTables(length)) {
+            stream.write(buffer, 0, length);
+            return length;
+        }
+
+        stream.write(buffer, 0, 2);
+        int written = 2;
+        int pos = 2;
+        while (pos < length && marker(pos) != SOS) {
+            int marker = marker(pos);
+            int segmentLength = segmentLength(pos);
+            if (!isTable(marker) && (marker < APP0 || marker > APP15)) {
+                stream.write(buffer, pos, segmentLength);
+                written += segmentLength;
+            }
+            pos += segmentLength;
+        }
+        // Scan header, entropy coded data and EOI
+        stream.write(buffer, pos, length - pos);
+        return written + length - pos;
+    }
+
+    void dispose() {
+        try {
+            compressor.close();
+        } catch (Exception e) {
+            // Ignore it ...
+        }
+        source = null;
+        buffer = null;
+    }
+
+    private int compress(byte[] b, int width, int height, int pitch)
+        throws IOException {
+        try {
+            int size = TJ.bufSize(width, height, subsamp);
+            if (buffer == null || buffer.length < size) {
+                buffer = new byte[size];
+            }
+            compressor.setSourceImage(b, width, pitch, height, pixelFormat);
+            compressor.compress(buffer, 0);
+            return compressor.getCompressedSize();
+        } catch (Exception e) {
+            throw new IIOException("TurboJPEG compression failed", e);
+        }
+    }
+
+    /**
+     * Returns whether the table segments of the stream in the buffer are
+     * the ones of the <code>JPEGTables</code> field, in the same order.
+     */
+    private boolean hasTables(int length) {
+        int t = 2;
+        for (int pos = 2; pos < length && marker(pos) != SOS; pos += segmentLength(pos)) {
+            if (!isTable(marker(pos))) {
+                continue;
+            }
+            int segmentLength = segmentLength(pos);
+            if (t + segmentLength > tables.length - 2) {
+                return false;
+            }
+            for (int i = 0; i < segmentLength; i++) {
+                if (buffer[pos + i] != tables[t + i]) {
+                    return false;
+                }
+            }
+            t += segmentLength;
+        }
+        return t == tables.length - 2;
+    }
+
+    private int marker(int pos) {
+        return buffer[pos + 1] & 0xff;
+    }
+
+    /** Returns the length of the segment at <code>pos</code>, marker included. */
+    private int segmentLength(int pos) {
+        return 2 + (((buffer[pos + 2] & 0xff) << 8) | (buffer[pos + 3] & 0xff));
+    }
+
+    private static boolean isTable(int marker) {
+        return marker == DQT || marker == DHT;
+    }
+}
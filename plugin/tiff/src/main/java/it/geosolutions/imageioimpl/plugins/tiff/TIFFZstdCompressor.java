@@ -0,0 +1,108 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.TIFFCompressor;
+import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
+
+import java.io.IOException;
+
+import javax.imageio.ImageWriteParam;
+
+/**
+ * Compressor for ZSTD compression, writing each strip or tile as a single
+ * Zstandard frame as GDAL does.
+ * <p>
+ * The compression level is taken from
+ * {@link TIFFImageWriteParam#getZstdLevel()}, using
+ * {@link TIFFImageWriteParam#DEFAULT_ZSTD_LEVEL} for other parameters.
+ */
+public class TIFFZstdCompressor extends TIFFCompressor {
+
+    private final TIFFZstdEncoder encoder;
+
+    private final int predictor;
+
+    /** Rows of the segment, packed and differenced if needed. */
+    private byte[] rowData;
+
+    private byte[] compData;
+
+    public TIFFZstdCompressor(ImageWriteParam param, int predictor) {
+        super("ZSTD", BaselineTIFFTagSet.COMPRESSION_ZSTD, true);
+
+        this.predictor = predictor;
+
+        int level = TIFFImageWriteParam.DEFAULT_ZSTD_LEVEL;
+        if (param instanceof TIFFImageWriteParam) {
+            level = ((TIFFImageWriteParam) param).getZstdLevel();
+        }
+        this.encoder = new TIFFZstdEncoder(level);
+    }
+
+    public int encode(byte[] b, int off,
+                      int width, int height,
+                      int[] bitsPerSample,
+                      int scanlineStride) throws IOException {
+        int samplesPerPixel = bitsPerSample.length;
+        int bitsPerPixel = 0;
+        for (int i = 0; i < samplesPerPixel; i++) {
+            bitsPerPixel += bitsPerSample[i];
+        }
+        int bytesPerRow = (bitsPerPixel*width + 7)/8;
+        int inputSize = bytesPerRow*height;
+
+        byte[] data;
+        int dataOffset;
+        if (predictor != BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING &&
+            bytesPerRow == scanlineStride) {
+            // rows are already packed
+            data = b;
+            dataOffset = off;
+        } else {
+            if (rowData == null || rowData.length < inputSize) {
+                rowData = new byte[inputSize];
+            }
+            for (int i = 0, dst = 0; i < height; i++, dst += bytesPerRow) {
+                // Cannot modify b[] in place as it might be a data
+                // array from the image being written so make a copy.
+                System.arraycopy(b, off + i*scanlineStride, rowData, dst,
+                                 bytesPerRow);
+                if (predictor ==
+                    BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING) {
+                    for (int j = bytesPerRow - 1; j >= samplesPerPixel; j--) {
+                        rowData[dst + j] -= rowData[dst + j - samplesPerPixel];
+                    }
+                }
+            }
+            data = rowData;
+            dataOffset = 0;
+        }
+
+        int maxLength = TIFFZstdEncoder.maxCompressedLength(inputSize);
+        if (compData == null || compData.length < maxLength) {
+            compData = new byte[maxLength];
+        }
+        int numCompressedBytes =
+            encoder.encode(data, dataOffset, inputSize, compData, 0);
+
+        stream.write(compData, 0, numCompressedBytes);
+
+        return numCompressedBytes;
+    }
+}
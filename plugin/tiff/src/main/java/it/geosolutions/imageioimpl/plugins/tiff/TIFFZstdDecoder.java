@@ -0,0 +1,819 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import javax.imageio.IIOException;
+
+/**
+ * Pure Java decoder of Zstandard frames, as specified by RFC 8878.
+ * <p>
+ * Frames are decoded in a single pass straight into the destination array.
+ * Decoding stops once the destination is full, dropping the rest of the
+ * content, as the padding rows some writers encode past the end of the last
+ * strip of an image. Dictionaries are not supported and
+ * content checksums are not verified. Instances keep the decoding tables
+ * across calls to avoid reallocating them, therefore they are not thread
+ * safe.
+ */
+final class TIFFZstdDecoder {
+
+    static final int MAGIC = 0xFD2FB528;
+
+    static final int MAX_BLOCK_SIZE = 1 << 17;
+
+    static final int MAX_HUFFMAN_BITS = 11;
+
+    static final int MAX_LL_SYMBOL = 35;
+
+    static final int MAX_ML_SYMBOL = 52;
+
+    static final int MAX_OF_SYMBOL = 31;
+
+    static final int MAX_LL_LOG = 9;
+
+    static final int MAX_ML_LOG = 9;
+
+    static final int MAX_OF_LOG = 8;
+
+    static final int[] LL_BASE = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12,
+            13, 14, 15, 16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512,
+            1024, 2048, 4096, 8192, 16384, 32768, 65536 };
+
+    static final int[] LL_BITS = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12, 13, 14,
+            15, 16 };
+
+    static final int[] ML_BASE = { 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14,
+            15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30,
+            31, 32, 33, 34, 35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131,
+            259, 515, 1027, 2051, 4099, 8195, 16387, 32771, 65539 };
+
+    static final int[] ML_BITS = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1,
+            2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+
+    static final short[] LL_DEFAULT_NORM = { 4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+            2, 2, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1, -1,
+            -1, -1, -1 };
+
+    static final short[] ML_DEFAULT_NORM = { 1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1 };
+
+    static final short[] OF_DEFAULT_NORM = { 1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1 };
+
+    static final int LL_DEFAULT_LOG = 6;
+
+    static final int ML_DEFAULT_LOG = 6;
+
+    static final int OF_DEFAULT_LOG = 5;
+
+    /**
+     * FSE decoding table: each entry packs the symbol in the lowest 8 bits,
+     * the number of bits to read in the next 8 bits and the baseline of the
+     * next state in the highest 16 bits.
+     */
+    static final class FSETable {
+
+        final int[] entries;
+
+        int log;
+
+        FSETable(int maxLog) {
+            entries = new int[1 << maxLog];
+        }
+    }
+
+    /**
+     * Reader of the bitstreams written forward and read backward, starting
+     * from the highest bit below the final marker bit.
+     */
+    static final class BitReader {
+
+        private byte[] data;
+
+        private int start;
+
+        /** Number of bits still to be read, negative on overflow. */
+        int position;
+
+        /** The 8 bytes starting at {@link #windowStart}, relative to the start. */
+        private long window;
+
+        private int windowStart;
+
+        void init(byte[] data, int start, int end) throws IIOException {
+            if (end <= start || data[end - 1] == 0) {
+                throw new IIOException("Corrupted ZSTD bitstream");
+            }
+            this.data = data;
+            this.start = start;
+            this.position = (end - start - 1) * 8 + highBit(data[end - 1] & 0xff);
+            load(end - start - 1);
+        }
+
+        int read(int n) {
+            position -= n;
+            return n == 0 ? 0 : get(position, n);
+        }
+
+        int peek(int n) {
+            return get(position - n, n);
+        }
+
+        /** Returns n bits starting at bit p, bits before the start being 0. */
+        private int get(int p, int n) {
+            if ((p >> 3) < windowStart || ((p + n - 1) >> 3) >= windowStart + 8) {
+                load((p + n - 1) >> 3);
+            }
+            return (int) (window >>> (p - (windowStart << 3))) & ((1 << n) - 1);
+        }
+
+        /** Loads the window ending at the provided byte. */
+        private void load(int last) {
+            windowStart = last - 7;
+            long value = 0;
+            for (int i = last; i >= windowStart; i--) {
+                value = (value << 8) | (i >= 0 ? data[start + i] & 0xff : 0);
+            }
+            window = value;
+        }
+    }
+
+    private static final FSETable LL_DEFAULT = new FSETable(LL_DEFAULT_LOG);
+
+    private static final FSETable ML_DEFAULT = new FSETable(ML_DEFAULT_LOG);
+
+    private static final FSETable OF_DEFAULT = new FSETable(OF_DEFAULT_LOG);
+
+    static {
+        try {
+            buildTable(LL_DEFAULT, LL_DEFAULT_NORM, MAX_LL_SYMBOL, LL_DEFAULT_LOG);
+            buildTable(ML_DEFAULT, ML_DEFAULT_NORM, MAX_ML_SYMBOL, ML_DEFAULT_LOG);
+            buildTable(OF_DEFAULT, OF_DEFAULT_NORM, 28, OF_DEFAULT_LOG);
+        } catch (IIOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Tables of the current frame, kept for the repeat modes
+    private final FSETable llTable = new FSETable(MAX_LL_LOG);
+
+    private final FSETable mlTable = new FSETable(MAX_ML_LOG);
+
+    private final FSETable ofTable = new FSETable(MAX_OF_LOG);
+
+    private FSETable llCurrent;
+
+    private FSETable mlCurrent;
+
+    private FSETable ofCurrent;
+
+    private final FSETable weightsTable = new FSETable(6);
+
+    /** Huffman decoding table: symbol in the lowest 8 bits, then length. */
+    private final int[] huffmanTable = new int[1 << MAX_HUFFMAN_BITS];
+
+    private int huffmanBits;
+
+    private boolean hasHuffmanTable;
+
+    private final byte[] weights = new byte[256];
+
+    private final short[] norm = new short[256];
+
+    private final int[] symbols = new int[1 << MAX_LL_LOG];
+
+    private final int[] symbolNext = new int[256];
+
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+
+    private final int[] repeats = new int[3];
+
+    private final BitReader reader = new BitReader();
+
+    /**
+     * Decodes the Zstandard frames found in the provided source range.
+     *
+     * @return the number of decoded bytes, at most <code>dstLength</code>.
+     * @throws IIOException if the data are corrupted.
+     */
+    int decode(byte[] src, int srcOffset, int srcLength, byte[] dst,
+            int dstOffset, int dstLength) throws IIOException {
+        int ip = srcOffset;
+        final int end = srcOffset + srcLength;
+        int op = dstOffset;
+        final int dstEnd = dstOffset + dstLength;
+        try {
+            while (end - ip >= 4) {
+                final int magic = readInt(src, ip);
+                ip += 4;
+                if ((magic & 0xFFFFFFF0) == 0x184D2A50) {
+                    // skippable frame
+                    final int size = readInt(src, ip);
+                    if (size < 0) {
+                        throw new IIOException("Corrupted ZSTD frame header");
+                    }
+                    ip += 4 + size;
+                    continue;
+                }
+                if (magic != MAGIC) {
+                    throw new IIOException("Not a ZSTD frame");
+                }
+                final int descriptor = src[ip++] & 0xff;
+                if ((descriptor & 0x08) != 0) {
+                    throw new IIOException("Corrupted ZSTD frame header");
+                }
+                final boolean singleSegment = (descriptor & 0x20) != 0;
+                final boolean checksum = (descriptor & 0x04) != 0;
+                final int dictionaryFlag = descriptor & 0x03;
+                final int sizeFlag = descriptor >>> 6;
+                if (!singleSegment) {
+                    // window descriptor, the whole content is kept anyway
+                    ip++;
+                }
+                ip += dictionaryFlag == 3 ? 4 : dictionaryFlag;
+                ip += sizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << sizeFlag;
+
+                // per frame state
+                repeats[0] = 1;
+                repeats[1] = 4;
+                repeats[2] = 8;
+                llCurrent = mlCurrent = ofCurrent = null;
+                hasHuffmanTable = false;
+
+                final int frameStart = op;
+                boolean last;
+                do {
+                    final int header = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8
+                            | (src[ip + 2] & 0xff) << 16;
+                    ip += 3;
+                    last = (header & 1) != 0;
+                    final int size = header >>> 3;
+                    switch ((header >>> 1) & 3) {
+                    case 0:
+                        if (size > end - ip) {
+                            throw new IIOException("Corrupted ZSTD block");
+                        }
+                        final int rawSize = Math.min(size, dstEnd - op);
+                        System.arraycopy(src, ip, dst, op, rawSize);
+                        ip += size;
+                        op += rawSize;
+                        break;
+                    case 1:
+                        final byte value = src[ip++];
+                        final int rleEnd = op + Math.min(size, dstEnd - op);
+                        while (op < rleEnd) {
+                            dst[op++] = value;
+                        }
+                        break;
+                    case 2:
+                        if (size > MAX_BLOCK_SIZE || size > end - ip) {
+                            throw new IIOException("Corrupted ZSTD block");
+                        }
+                        op = decodeBlock(src, ip, ip + size, dst, frameStart, op, dstEnd);
+                        ip += size;
+                        break;
+                    default:
+                        throw new IIOException("Corrupted ZSTD block");
+                    }
+                    if (op == dstEnd) {
+                        // the rest of the content does not fit
+                        return dstLength;
+                    }
+                } while (!last);
+                if (checksum) {
+                    ip += 4;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IIOException("Corrupted ZSTD data", e);
+        }
+        return op - dstOffset;
+    }
+
+    private int decodeBlock(byte[] src, int ip, final int end, byte[] dst,
+            final int frameStart, int op, final int dstEnd) throws IIOException {
+        // Literals section
+        final int b0 = src[ip] & 0xff;
+        final int literalsType = b0 & 3;
+        final int sizeFormat = (b0 >>> 2) & 3;
+        byte[] lit = literals;
+        int litPos = 0;
+        final int litSize;
+        if (literalsType < 2) {
+            if ((sizeFormat & 1) == 0) {
+                litSize = b0 >>> 3;
+                ip += 1;
+            } else if (sizeFormat == 1) {
+                litSize = (b0 >>> 4) + ((src[ip + 1] & 0xff) << 4);
+                ip += 2;
+            } else {
+                litSize = (b0 >>> 4) + ((src[ip + 1] & 0xff) << 4)
+                        + ((src[ip + 2] & 0xff) << 12);
+                ip += 3;
+            }
+            if (litSize > MAX_BLOCK_SIZE) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            if (literalsType == 0) {
+                // raw literals are used straight from the source
+                if (litSize > end - ip) {
+                    throw new IIOException("Corrupted ZSTD literals");
+                }
+                lit = src;
+                litPos = ip;
+                ip += litSize;
+            } else {
+                final byte value = src[ip++];
+                for (int i = 0; i < litSize; i++) {
+                    literals[i] = value;
+                }
+            }
+        } else {
+            final int compressedSize;
+            if (sizeFormat < 2) {
+                final int header = b0 | (src[ip + 1] & 0xff) << 8 | (src[ip + 2] & 0xff) << 16;
+                litSize = (header >>> 4) & 0x3FF;
+                compressedSize = (header >>> 14) & 0x3FF;
+                ip += 3;
+            } else if (sizeFormat == 2) {
+                final int header = readInt(src, ip);
+                litSize = (header >>> 4) & 0x3FFF;
+                compressedSize = (header >>> 18) & 0x3FFF;
+                ip += 4;
+            } else {
+                final long header = (readInt(src, ip) & 0xFFFFFFFFL)
+                        | (long) (src[ip + 4] & 0xff) << 32;
+                litSize = (int) ((header >>> 4) & 0x3FFFF);
+                compressedSize = (int) ((header >>> 22) & 0x3FFFF);
+                ip += 5;
+            }
+            if (litSize > MAX_BLOCK_SIZE || compressedSize > end - ip) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            final int litEnd = ip + compressedSize;
+            if (literalsType == 2) {
+                ip = readHuffmanTable(src, ip, litEnd);
+            } else if (!hasHuffmanTable) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            if (sizeFormat == 0) {
+                decodeHuffmanStream(src, ip, litEnd, 0, litSize);
+            } else {
+                final int size1 = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+                final int size2 = (src[ip + 2] & 0xff) | (src[ip + 3] & 0xff) << 8;
+                final int size3 = (src[ip + 4] & 0xff) | (src[ip + 5] & 0xff) << 8;
+                final int start1 = ip + 6;
+                final int start2 = start1 + size1;
+                final int start3 = start2 + size2;
+                final int start4 = start3 + size3;
+                if (start4 > litEnd) {
+                    throw new IIOException("Corrupted ZSTD literals");
+                }
+                final int segment = (litSize + 3) / 4;
+                decodeHuffmanStream(src, start1, start2, 0, segment);
+                decodeHuffmanStream(src, start2, start3, segment, segment);
+                decodeHuffmanStream(src, start3, start4, 2 * segment, segment);
+                decodeHuffmanStream(src, start4, litEnd, 3 * segment, litSize - 3 * segment);
+            }
+            ip = litEnd;
+        }
+        final int litEnd = litPos + litSize;
+
+        // Sequences section
+        if (ip >= end) {
+            throw new IIOException("Corrupted ZSTD sequences");
+        }
+        int numSequences = src[ip++] & 0xff;
+        if (numSequences >= 128) {
+            if (numSequences < 255) {
+                numSequences = ((numSequences - 128) << 8) + (src[ip++] & 0xff);
+            } else {
+                numSequences = (src[ip] & 0xff) + ((src[ip + 1] & 0xff) << 8) + 0x7F00;
+                ip += 2;
+            }
+        }
+
+        if (numSequences > 0) {
+            final int modes = src[ip++] & 0xff;
+            if ((modes & 3) != 0) {
+                throw new IIOException("Corrupted ZSTD sequences");
+            }
+            ip = selectTable(0, modes >>> 6, src, ip, end);
+            ip = selectTable(1, (modes >>> 4) & 3, src, ip, end);
+            ip = selectTable(2, (modes >>> 2) & 3, src, ip, end);
+            final int[] ll = llCurrent.entries;
+            final int[] of = ofCurrent.entries;
+            final int[] ml = mlCurrent.entries;
+
+            final BitReader in = reader;
+            in.init(src, ip, end);
+            int llState = in.read(llCurrent.log);
+            int ofState = in.read(ofCurrent.log);
+            int mlState = in.read(mlCurrent.log);
+
+            int rep0 = repeats[0];
+            int rep1 = repeats[1];
+            int rep2 = repeats[2];
+            for (int i = 0; i < numSequences; i++) {
+                final int llEntry = ll[llState];
+                final int ofEntry = of[ofState];
+                final int mlEntry = ml[mlState];
+                final int ofCode = ofEntry & 0xff;
+                final int mlCode = mlEntry & 0xff;
+                final int llCode = llEntry & 0xff;
+                if (ofCode > 30) {
+                    throw new IIOException("Corrupted ZSTD sequences");
+                }
+                final int ofValue = (1 << ofCode) + in.read(ofCode);
+                final int matchLength = ML_BASE[mlCode] + in.read(ML_BITS[mlCode]);
+                final int literalLength = LL_BASE[llCode] + in.read(LL_BITS[llCode]);
+
+                final int offset;
+                if (ofValue > 3) {
+                    offset = ofValue - 3;
+                    rep2 = rep1;
+                    rep1 = rep0;
+                    rep0 = offset;
+                } else {
+                    final int index = ofValue - 1 + (literalLength == 0 ? 1 : 0);
+                    if (index == 0) {
+                        offset = rep0;
+                    } else {
+                        offset = index == 1 ? rep1 : index == 2 ? rep2 : rep0 - 1;
+                        if (index != 1) {
+                            rep2 = rep1;
+                        }
+                        rep1 = rep0;
+                        rep0 = offset;
+                    }
+                }
+
+                if (i != numSequences - 1) {
+                    llState = (llEntry >>> 16) + in.read((llEntry >>> 8) & 0xff);
+                    mlState = (mlEntry >>> 16) + in.read((mlEntry >>> 8) & 0xff);
+                    ofState = (ofEntry >>> 16) + in.read((ofEntry >>> 8) & 0xff);
+                }
+
+                // execute the sequence
+                if (literalLength > litEnd - litPos) {
+                    throw new IIOException("Corrupted ZSTD sequences");
+                }
+                if (literalLength + matchLength > dstEnd - op) {
+                    // fill the destination up and drop the rest
+                    final int n = Math.min(literalLength, dstEnd - op);
+                    System.arraycopy(lit, litPos, dst, op, n);
+                    op += n;
+                    if (op < dstEnd) {
+                        if (offset <= 0 || offset > op - frameStart) {
+                            throw new IIOException("Corrupted ZSTD sequences");
+                        }
+                        int from = op - offset;
+                        while (op < dstEnd) {
+                            dst[op++] = dst[from++];
+                        }
+                    }
+                    return op;
+                }
+                System.arraycopy(lit, litPos, dst, op, literalLength);
+                litPos += literalLength;
+                op += literalLength;
+                if (offset <= 0 || offset > op - frameStart) {
+                    throw new IIOException("Corrupted ZSTD sequences");
+                }
+                int from = op - offset;
+                if (offset >= matchLength) {
+                    System.arraycopy(dst, from, dst, op, matchLength);
+                    op += matchLength;
+                } else {
+                    for (int k = 0; k < matchLength; k++) {
+                        dst[op++] = dst[from++];
+                    }
+                }
+            }
+            repeats[0] = rep0;
+            repeats[1] = rep1;
+            repeats[2] = rep2;
+        }
+
+        // last literals
+        final int remaining = Math.min(litEnd - litPos, dstEnd - op);
+        System.arraycopy(lit, litPos, dst, op, remaining);
+        return op + remaining;
+    }
+
+    /**
+     * Sets up the table of the provided kind (0 for literal lengths, 1 for
+     * offsets, 2 for match lengths) according to the provided mode.
+     */
+    private int selectTable(int kind, int mode, byte[] src, int ip, int end)
+            throws IIOException {
+        final FSETable table = kind == 0 ? llTable : kind == 1 ? ofTable : mlTable;
+        final int maxSymbol = kind == 0 ? MAX_LL_SYMBOL : kind == 1 ? MAX_OF_SYMBOL
+                : MAX_ML_SYMBOL;
+        FSETable selected;
+        switch (mode) {
+        case 0:
+            selected = kind == 0 ? LL_DEFAULT : kind == 1 ? OF_DEFAULT : ML_DEFAULT;
+            break;
+        case 1:
+            final int symbol = src[ip++] & 0xff;
+            if (symbol > maxSymbol) {
+                throw new IIOException("Corrupted ZSTD sequences");
+            }
+            table.log = 0;
+            table.entries[0] = symbol;
+            selected = table;
+            break;
+        case 2:
+            ip = readTable(table, src, ip, end, maxSymbol,
+                    kind == 0 ? MAX_LL_LOG : kind == 1 ? MAX_OF_LOG : MAX_ML_LOG);
+            selected = table;
+            break;
+        default:
+            selected = kind == 0 ? llCurrent : kind == 1 ? ofCurrent : mlCurrent;
+            if (selected == null) {
+                throw new IIOException("Corrupted ZSTD sequences");
+            }
+        }
+        if (kind == 0) {
+            llCurrent = selected;
+        } else if (kind == 1) {
+            ofCurrent = selected;
+        } else {
+            mlCurrent = selected;
+        }
+        return ip;
+    }
+
+    /**
+     * Reads an FSE table description and builds the decoding table.
+     *
+     * @return the position following the description.
+     */
+    int readTable(FSETable table, byte[] src, int ip, int end, int maxSymbol,
+            int maxLog) throws IIOException {
+        final int log = (int) readBits(src, ip, end, 0, 4) + 5;
+        if (log > maxLog) {
+            throw new IIOException("Corrupted ZSTD table");
+        }
+        int bitPosition = 4;
+        int remaining = (1 << log) + 1;
+        int threshold = 1 << log;
+        int numBits = log + 1;
+        int symbol = 0;
+        boolean previousZero = false;
+        while (remaining > 1 && symbol <= maxSymbol) {
+            if (previousZero) {
+                int next = symbol;
+                while (readBits(src, ip, end, bitPosition, 16) == 0xFFFF) {
+                    next += 24;
+                    bitPosition += 16;
+                }
+                while (readBits(src, ip, end, bitPosition, 2) == 3) {
+                    next += 3;
+                    bitPosition += 2;
+                }
+                next += (int) readBits(src, ip, end, bitPosition, 2);
+                bitPosition += 2;
+                if (next > maxSymbol) {
+                    throw new IIOException("Corrupted ZSTD table");
+                }
+                while (symbol < next) {
+                    norm[symbol++] = 0;
+                }
+            }
+            final int max = (2 * threshold - 1) - remaining;
+            final int bits = (int) readBits(src, ip, end, bitPosition, numBits);
+            int count;
+            if ((bits & (threshold - 1)) < max) {
+                count = bits & (threshold - 1);
+                bitPosition += numBits - 1;
+            } else {
+                count = bits & (2 * threshold - 1);
+                if (count >= threshold) {
+                    count -= max;
+                }
+                bitPosition += numBits;
+            }
+            count--;
+            remaining -= count < 0 ? -count : count;
+            norm[symbol++] = (short) count;
+            previousZero = count == 0;
+            while (remaining < threshold) {
+                numBits--;
+                threshold >>= 1;
+            }
+        }
+        final int size = (bitPosition + 7) >> 3;
+        if (remaining != 1 || size > end - ip) {
+            throw new IIOException("Corrupted ZSTD table");
+        }
+        buildTable(table, norm, symbol - 1, log, symbols, symbolNext);
+        return ip + size;
+    }
+
+    private static void buildTable(FSETable table, short[] norm, int maxSymbol,
+            int log) throws IIOException {
+        buildTable(table, norm, maxSymbol, log, new int[1 << log], new int[maxSymbol + 1]);
+    }
+
+    private static void buildTable(FSETable table, short[] norm, int maxSymbol,
+            int log, int[] symbols, int[] symbolNext) throws IIOException {
+        final int size = 1 << log;
+        int high = size - 1;
+        for (int s = 0; s <= maxSymbol; s++) {
+            if (norm[s] == -1) {
+                symbols[high--] = s;
+                symbolNext[s] = 1;
+            } else {
+                symbolNext[s] = norm[s];
+            }
+        }
+        final int step = (size >>> 1) + (size >>> 3) + 3;
+        final int mask = size - 1;
+        int position = 0;
+        for (int s = 0; s <= maxSymbol; s++) {
+            for (int i = 0; i < norm[s]; i++) {
+                symbols[position] = s;
+                do {
+                    position = (position + step) & mask;
+                } while (position > high);
+            }
+        }
+        if (position != 0) {
+            throw new IIOException("Corrupted ZSTD table");
+        }
+        final int[] entries = table.entries;
+        for (int u = 0; u < size; u++) {
+            final int s = symbols[u];
+            final int next = symbolNext[s]++;
+            final int bits = log - highBit(next);
+            entries[u] = s | bits << 8 | ((next << bits) - size) << 16;
+        }
+        table.log = log;
+    }
+
+    /**
+     * Reads a Huffman tree description and builds the decoding table.
+     *
+     * @return the position following the description.
+     */
+    private int readHuffmanTable(byte[] src, int ip, int end) throws IIOException {
+        final int header = src[ip++] & 0xff;
+        int numWeights;
+        if (header >= 128) {
+            numWeights = header - 127;
+            final int size = (numWeights + 1) / 2;
+            if (size > end - ip) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            for (int i = 0; i < numWeights; i++) {
+                final int value = src[ip + i / 2] & 0xff;
+                weights[i] = (byte) ((i & 1) == 0 ? value >>> 4 : value & 0xF);
+            }
+            ip += size;
+        } else {
+            if (header > end - ip) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            numWeights = decodeWeights(src, ip, ip + header, weights);
+            ip += header;
+        }
+
+        // the weight of the last symbol is implied
+        int sum = 0;
+        for (int i = 0; i < numWeights; i++) {
+            if (weights[i] > MAX_HUFFMAN_BITS) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            if (weights[i] > 0) {
+                sum += 1 << (weights[i] - 1);
+            }
+        }
+        if (sum == 0 || numWeights > 255) {
+            throw new IIOException("Corrupted ZSTD literals");
+        }
+        final int maxBits = highBit(sum) + 1;
+        final int rest = (1 << maxBits) - sum;
+        if (maxBits > MAX_HUFFMAN_BITS || (rest & (rest - 1)) != 0) {
+            throw new IIOException("Corrupted ZSTD literals");
+        }
+        weights[numWeights++] = (byte) (highBit(rest) + 1);
+
+        // symbols fill the table by increasing weight
+        final int[] start = new int[MAX_HUFFMAN_BITS + 2];
+        for (int i = 0; i < numWeights; i++) {
+            if (weights[i] > 0) {
+                start[weights[i]] += 1 << (weights[i] - 1);
+            }
+        }
+        int next = 0;
+        for (int w = 1; w <= maxBits; w++) {
+            final int count = start[w];
+            start[w] = next;
+            next += count;
+        }
+        for (int s = 0; s < numWeights; s++) {
+            final int w = weights[s];
+            if (w > 0) {
+                final int entry = s | (maxBits + 1 - w) << 8;
+                final int from = start[w];
+                final int to = from + (1 << (w - 1));
+                for (int u = from; u < to; u++) {
+                    huffmanTable[u] = entry;
+                }
+                start[w] = to;
+            }
+        }
+        huffmanBits = maxBits;
+        hasHuffmanTable = true;
+        return ip;
+    }
+
+    /**
+     * Decodes the FSE compressed Huffman weights of the provided range.
+     *
+     * @return the number of decoded weights.
+     */
+    int decodeWeights(byte[] src, int ip, int end, byte[] weights) throws IIOException {
+        final FSETable table = weightsTable;
+        ip = readTable(table, src, ip, end, 255, 6);
+        final int[] entries = table.entries;
+        final BitReader in = reader;
+        in.init(src, ip, end);
+        int state1 = in.read(table.log);
+        int state2 = in.read(table.log);
+        int count = 0;
+        while (true) {
+            if (count > 253) {
+                throw new IIOException("Corrupted ZSTD literals");
+            }
+            int entry = entries[state1];
+            weights[count++] = (byte) entry;
+            state1 = (entry >>> 16) + in.read((entry >>> 8) & 0xff);
+            if (in.position < 0) {
+                weights[count++] = (byte) entries[state2];
+                break;
+            }
+            entry = entries[state2];
+            weights[count++] = (byte) entry;
+            state2 = (entry >>> 16) + in.read((entry >>> 8) & 0xff);
+            if (in.position < 0) {
+                weights[count++] = (byte) entries[state1];
+                break;
+            }
+        }
+        return count;
+    }
+
+    private void decodeHuffmanStream(byte[] src, int start, int end, int outPos,
+            int count) throws IIOException {
+        final BitReader in = reader;
+        in.init(src, start, end);
+        final int bits = huffmanBits;
+        final int[] table = huffmanTable;
+        final byte[] out = literals;
+        for (int i = 0; i < count; i++) {
+            final int entry = table[in.peek(bits)];
+            out[outPos + i] = (byte) entry;
+            in.position -= entry >>> 8;
+        }
+    }
+
+    /** Reads n (at most 32) bits forward from bit position p of the range. */
+    private static long readBits(byte[] src, int ip, int end, int p, int n) {
+        final int first = p >> 3;
+        final int last = (p + n - 1) >> 3;
+        long value = 0;
+        for (int i = last; i >= first; i--) {
+            value = (value << 8) | (ip + i < end ? src[ip + i] & 0xff : 0);
+        }
+        return (value >>> (p & 7)) & ((1L << n) - 1);
+    }
+
+    static int readInt(byte[] src, int ip) {
+        return (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8 | (src[ip + 2] & 0xff) << 16
+                | (src[ip + 3] & 0xff) << 24;
+    }
+
+    static int highBit(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+}
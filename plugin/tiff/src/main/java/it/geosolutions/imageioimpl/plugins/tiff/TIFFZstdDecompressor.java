@@ -0,0 +1,116 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.TIFFDecompressor;
+
+import java.io.IOException;
+
+import javax.imageio.IIOException;
+
+/**
+ * Decompressor for ZSTD compression, as written by GDAL and libtiff.
+ */
+public class TIFFZstdDecompressor extends TIFFDecompressor {
+
+    private final TIFFZstdDecoder decoder = new TIFFZstdDecoder();
+
+    private final int predictor;
+
+    /** Compressed data of the segment, reused across segments. */
+    private byte[] srcData;
+
+    public TIFFZstdDecompressor(int predictor) throws IIOException {
+        if (predictor != BaselineTIFFTagSet.PREDICTOR_NONE && 
+            predictor != 
+            BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING) {
+            throw new IIOException("Illegal value for Predictor in " +
+                                   "TIFF file");
+        }
+
+        this.predictor = predictor;
+    }
+
+    public synchronized void decodeRaw(byte[] b,
+                                       int dstOffset,
+                                       int bitsPerPixel,
+                                       int scanlineStride) throws IOException {
+
+        // Check bitsPerSample.
+        if (predictor == 
+            BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING) {
+            int len = bitsPerSample.length;
+            for(int i = 0; i < len; i++) {
+                if(bitsPerSample[i] != 8) {
+                    throw new IIOException
+                        (bitsPerSample[i] + "-bit samples "+
+                         "are not supported for Horizontal "+
+                         "differencing Predictor");
+                }
+            }
+        }
+
+        // Seek to current tile data offset.
+        stream.seek(offset);
+
+        // Read the compressed data.
+        if (srcData == null || srcData.length < byteCount) {
+            srcData = new byte[byteCount];
+        }
+        stream.readFully(srcData, 0, byteCount);
+
+        int bytesPerRow = (srcWidth*bitsPerPixel + 7)/8;
+        byte[] buf;
+        int bufOffset;
+        if(bytesPerRow == scanlineStride) {
+            buf = b;
+            bufOffset = dstOffset;
+        } else {
+            buf = new byte[bytesPerRow*srcHeight];
+            bufOffset = 0;
+        }
+
+        try {
+            decoder.decode(srcData, 0, byteCount, buf, bufOffset,
+                           bytesPerRow*srcHeight);
+        } catch(IIOException e) {
+            throw new IIOException(I18N.getString("TIFFZstdDecompressor0"),
+                                   e);
+        }
+
+        if (predictor ==
+            BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING) {
+            for (int j = 0; j < srcHeight; j++) {
+                int count = bufOffset + samplesPerPixel * (j * srcWidth + 1);
+                for (int i=samplesPerPixel; i<srcWidth*samplesPerPixel; i++) {
+                    buf[count] += buf[count - samplesPerPixel];
+                    count++;
+                }
+            }
+        }
+
+        if(bytesPerRow != scanlineStride) {
+            int off = 0;
+            for (int y = 0; y < srcHeight; y++) {
+                System.arraycopy(buf, off, b, dstOffset, bytesPerRow);
+                off += bytesPerRow;
+                dstOffset += scanlineStride;
+            }
+        }
+    }
+}
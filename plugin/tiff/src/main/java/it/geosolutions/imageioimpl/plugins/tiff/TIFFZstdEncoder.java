@@ -0,0 +1,1118 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java encoder of Zstandard frames, as specified by RFC 8878.
+ * <p>
+ * Each call produces a single frame declaring its content size, made of
+ * blocks of at most 128KB. Matches are found through hash chains whose
+ * depth, together with lazy matching, grows with the compression level;
+ * literals are Huffman coded and sequences are FSE coded using either the
+ * predefined tables or tables built for the block, whichever is cheaper.
+ * Blocks which do not compress are stored raw. Instances keep their work
+ * buffers across calls, therefore they are not thread safe.
+ */
+final class TIFFZstdEncoder {
+
+    static final int MIN_LEVEL = 1;
+
+    static final int MAX_LEVEL = 22;
+
+    // Constants of the format, shared with the decoder
+    private static final int MAGIC = TIFFZstdDecoder.MAGIC;
+
+    private static final int MAX_BLOCK_SIZE = TIFFZstdDecoder.MAX_BLOCK_SIZE;
+
+    private static final int MAX_HUFFMAN_BITS = TIFFZstdDecoder.MAX_HUFFMAN_BITS;
+
+    private static final int MAX_LL_SYMBOL = TIFFZstdDecoder.MAX_LL_SYMBOL;
+
+    private static final int MAX_ML_SYMBOL = TIFFZstdDecoder.MAX_ML_SYMBOL;
+
+    private static final int MAX_OF_SYMBOL = TIFFZstdDecoder.MAX_OF_SYMBOL;
+
+    private static final int MAX_LL_LOG = TIFFZstdDecoder.MAX_LL_LOG;
+
+    private static final int MAX_ML_LOG = TIFFZstdDecoder.MAX_ML_LOG;
+
+    private static final int MAX_OF_LOG = TIFFZstdDecoder.MAX_OF_LOG;
+
+    private static final int[] LL_BASE = TIFFZstdDecoder.LL_BASE;
+
+    private static final int[] LL_BITS = TIFFZstdDecoder.LL_BITS;
+
+    private static final int[] ML_BASE = TIFFZstdDecoder.ML_BASE;
+
+    private static final int[] ML_BITS = TIFFZstdDecoder.ML_BITS;
+
+    private static final short[] LL_DEFAULT_NORM = TIFFZstdDecoder.LL_DEFAULT_NORM;
+
+    private static final short[] ML_DEFAULT_NORM = TIFFZstdDecoder.ML_DEFAULT_NORM;
+
+    private static final short[] OF_DEFAULT_NORM = TIFFZstdDecoder.OF_DEFAULT_NORM;
+
+    private static final int LL_DEFAULT_LOG = TIFFZstdDecoder.LL_DEFAULT_LOG;
+
+    private static final int ML_DEFAULT_LOG = TIFFZstdDecoder.ML_DEFAULT_LOG;
+
+    private static final int OF_DEFAULT_LOG = TIFFZstdDecoder.OF_DEFAULT_LOG;
+
+    private static final int MIN_MATCH = 4;
+
+    /** Number of candidates examined for each position, per level. */
+    private static final int[] SEARCH_DEPTH = { 1, 2, 4, 6, 8, 12, 16, 24,
+            32, 48, 64, 64, 96, 128, 128, 192, 256, 256, 384, 512, 768, 1024 };
+
+    /** Writer of bitstreams, least significant bits first. */
+    private static final class BitWriter {
+
+        byte[] buffer;
+
+        int position;
+
+        private long bits;
+
+        private int count;
+
+        void init(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+            bits = 0;
+            count = 0;
+        }
+
+        void add(int value, int n) {
+            bits |= (value & ((1L << n) - 1)) << count;
+            count += n;
+            if (count >= 32) {
+                for (int i = 0; i < 4; i++) {
+                    buffer[position++] = (byte) bits;
+                    bits >>>= 8;
+                }
+                count -= 32;
+            }
+        }
+
+        /** Flushes the pending bits, padding the last byte with zeros. */
+        int flush() {
+            while (count > 0) {
+                buffer[position++] = (byte) bits;
+                bits >>>= 8;
+                count -= 8;
+            }
+            bits = 0;
+            count = 0;
+            return position;
+        }
+
+        /** Terminates a bitstream to be read backward. */
+        int close() {
+            add(1, 1);
+            return flush();
+        }
+    }
+
+    /** FSE encoding table. */
+    private static final class FSEEncoderTable {
+
+        final int[] stateTable;
+
+        final int[] deltaNbBits = new int[256];
+
+        final int[] deltaFindState = new int[256];
+
+        int log;
+
+        /** Mode of the sequences section, 1 for RLE tables. */
+        int mode;
+
+        FSEEncoderTable(int maxLog) {
+            stateTable = new int[1 << maxLog];
+        }
+    }
+
+    private static final byte[] LL_CODE = new byte[64];
+
+    private static final byte[] ML_CODE = new byte[128];
+
+    static {
+        for (int code = 0, v = 0; v < LL_CODE.length; v++) {
+            while (code + 1 < LL_BASE.length && LL_BASE[code + 1] <= v) {
+                code++;
+            }
+            LL_CODE[v] = (byte) code;
+        }
+        for (int code = 0, v = 0; v < ML_CODE.length; v++) {
+            while (code + 1 < ML_BASE.length && ML_BASE[code + 1] - 3 <= v) {
+                code++;
+            }
+            ML_CODE[v] = (byte) code;
+        }
+    }
+
+    private final int searchDepth;
+
+    private final boolean lazy;
+
+    private final int maxHashLog;
+
+    /** Size of the hash table used for the current frame. */
+    private int hashLog;
+
+    private final int windowLog;
+
+    private int[] hashTable;
+
+    private int[] chainTable;
+
+    private int chainMask;
+
+    /** First position not inserted in the hash chains yet. */
+    private int nextInsert;
+
+    /** Length of the last match found by {@link #findMatch}. */
+    private int lastLength;
+
+    // Sequences of the current block
+    private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+
+    private final int[] literalLengths = new int[MAX_BLOCK_SIZE / MIN_MATCH + 1];
+
+    private final int[] matchLengths = new int[MAX_BLOCK_SIZE / MIN_MATCH + 1];
+
+    private final int[] offsetValues = new int[MAX_BLOCK_SIZE / MIN_MATCH + 1];
+
+    private final byte[] llCodes = new byte[MAX_BLOCK_SIZE / MIN_MATCH + 1];
+
+    private final byte[] mlCodes = new byte[MAX_BLOCK_SIZE / MIN_MATCH + 1];
+
+    private final byte[] ofCodes = new byte[MAX_BLOCK_SIZE / MIN_MATCH + 1];
+
+    private final int[] repeats = new int[3];
+
+    /** Output of the block being compressed. */
+    private final byte[] block = new byte[4 * MAX_BLOCK_SIZE];
+
+    private final BitWriter writer = new BitWriter();
+
+    // Huffman coding of literals
+    private final int[] counts = new int[256];
+
+    private final int[] codeLengths = new int[256];
+
+    private final int[] codes = new int[256];
+
+    private final byte[] weights = new byte[256];
+
+    private final byte[] description = new byte[256];
+
+    private final int[] sorted = new int[256];
+
+    private final int[] nodeWeights = new int[512];
+
+    private final int[] parents = new int[512];
+
+    private final int[] lengthCounts = new int[512];
+
+    // FSE coding of sequences and Huffman weights
+    private final FSEEncoderTable llTable = new FSEEncoderTable(MAX_LL_LOG);
+
+    private final FSEEncoderTable mlTable = new FSEEncoderTable(MAX_ML_LOG);
+
+    private final FSEEncoderTable ofTable = new FSEEncoderTable(MAX_OF_LOG);
+
+    private final FSEEncoderTable weightsTable = new FSEEncoderTable(6);
+
+    private final short[] norm = new short[256];
+
+    private final int[] symbolCounts = new int[256];
+
+    private final int[] cumulative = new int[257];
+
+    private final int[] spread = new int[1 << MAX_LL_LOG];
+
+    /**
+     * Creates an encoder using the provided compression level, between
+     * {@link #MIN_LEVEL} and {@link #MAX_LEVEL}.
+     */
+    TIFFZstdEncoder(int level) {
+        if (level < MIN_LEVEL || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("level < " + MIN_LEVEL
+                    + " || level > " + MAX_LEVEL);
+        }
+        this.searchDepth = SEARCH_DEPTH[level - 1];
+        this.lazy = level >= 4;
+        this.maxHashLog = level < 4 ? 15 : level < 10 ? 16 : 17;
+        this.windowLog = level < 4 ? 19 : level < 10 ? 21 : 23;
+    }
+
+    /**
+     * Returns the maximum size of the frame encoding the provided number of
+     * bytes.
+     */
+    static int maxCompressedLength(int length) {
+        return length + 3 * (length / MAX_BLOCK_SIZE + 1) + 13;
+    }
+
+    /**
+     * Encodes the provided bytes as a single Zstandard frame.
+     *
+     * @return the number of bytes written to the destination, which must
+     *         have room for {@link #maxCompressedLength(int)} bytes.
+     */
+    int encode(byte[] src, int srcOffset, int srcLength, byte[] dst,
+            int dstOffset) {
+        int op = dstOffset;
+        writeInt(dst, op, MAGIC);
+        op += 4;
+        // single segment frame, declaring the content size
+        if (srcLength < 256) {
+            dst[op++] = (byte) 0x20;
+            dst[op++] = (byte) srcLength;
+        } else if (srcLength < 65536 + 256) {
+            dst[op++] = (byte) 0x60;
+            final int value = srcLength - 256;
+            dst[op++] = (byte) value;
+            dst[op++] = (byte) (value >>> 8);
+        } else {
+            dst[op++] = (byte) 0xA0;
+            writeInt(dst, op, srcLength);
+            op += 4;
+        }
+
+        repeats[0] = 1;
+        repeats[1] = 4;
+        repeats[2] = 8;
+        resetMatchFinder(srcLength);
+
+        int ip = srcOffset;
+        final int end = srcOffset + srcLength;
+        do {
+            final int size = Math.min(end - ip, MAX_BLOCK_SIZE);
+            final boolean last = ip + size == end;
+            final int header = (last ? 1 : 0);
+            if (isRLE(src, ip, size)) {
+                writeBlockHeader(dst, op, header | 1 << 1 | size << 3);
+                dst[op + 3] = src[ip];
+                op += 4;
+            } else {
+                final int rep0 = repeats[0];
+                final int rep1 = repeats[1];
+                final int rep2 = repeats[2];
+                final int compressed = size > 64 ? compressBlock(src, srcOffset, ip, size) : -1;
+                if (compressed > 0 && compressed < size) {
+                    writeBlockHeader(dst, op, header | 2 << 1 | compressed << 3);
+                    System.arraycopy(block, 0, dst, op + 3, compressed);
+                    op += 3 + compressed;
+                } else {
+                    // the repeated offsets must follow the decoder
+                    repeats[0] = rep0;
+                    repeats[1] = rep1;
+                    repeats[2] = rep2;
+                    writeBlockHeader(dst, op, header | size << 3);
+                    System.arraycopy(src, ip, dst, op + 3, size);
+                    op += 3 + size;
+                }
+            }
+            ip += size;
+        } while (ip < end);
+        return op - dstOffset;
+    }
+
+    private void resetMatchFinder(int length) {
+        int chainLog = 10;
+        while (chainLog < windowLog && (1 << chainLog) < length) {
+            chainLog++;
+        }
+        if (chainTable == null || chainTable.length < (1 << chainLog)) {
+            chainTable = new int[1 << chainLog];
+        }
+        chainMask = (1 << chainLog) - 1;
+        nextInsert = 0;
+
+        // small inputs, such as tiles, do not need the whole hash table
+        hashLog = Math.min(maxHashLog, chainLog + 1);
+        if (hashTable == null) {
+            hashTable = new int[1 << maxHashLog];
+        }
+        Arrays.fill(hashTable, 0, 1 << hashLog, 0);
+    }
+
+    /**
+     * Compresses a block into the block buffer.
+     *
+     * @return the size of the compressed block, or -1 if it does not pay
+     *         off.
+     */
+    private int compressBlock(byte[] src, int base, int start, int size) {
+        final int end = start + size;
+        final int matchLimit = end - MIN_MATCH;
+        int numSequences = 0;
+        int numLiterals = 0;
+        int anchor = start;
+        int ip = start;
+        int rep0 = repeats[0];
+        int rep1 = repeats[1];
+        int rep2 = repeats[2];
+        final int window = 1 << windowLog;
+
+        while (ip < matchLimit) {
+            // repeated offsets are the cheapest
+            int bestLength = 0;
+            int bestOffset = 0;
+            if (ip - rep0 >= base) {
+                final int length = matchLength(src, ip, ip - rep0, end);
+                if (length >= MIN_MATCH) {
+                    bestLength = length;
+                    bestOffset = rep0;
+                }
+            }
+            final int found = findMatch(src, base, ip, end, window);
+            if (lastLength > bestLength + 1) {
+                bestLength = lastLength;
+                bestOffset = found;
+            }
+            insertUpTo(src, base, ip + 1, matchLimit);
+            if (bestLength < MIN_MATCH) {
+                ip++;
+                continue;
+            }
+            if (lazy && ip + 1 < matchLimit) {
+                // a longer match one byte ahead is worth a literal
+                final int next = findMatch(src, base, ip + 1, end, window);
+                if (lastLength > bestLength + 1) {
+                    insertUpTo(src, base, ip + 2, matchLimit);
+                    ip++;
+                    bestLength = lastLength;
+                    bestOffset = next;
+                }
+            }
+
+            // offset value, accounting for the repeated offsets
+            final int literalLength = ip - anchor;
+            int offsetValue;
+            if (literalLength > 0 && bestOffset == rep0) {
+                offsetValue = 1;
+            } else if (literalLength > 0 && bestOffset == rep1) {
+                offsetValue = 2;
+            } else if (literalLength > 0 && bestOffset == rep2) {
+                offsetValue = 3;
+            } else if (literalLength == 0 && bestOffset == rep1) {
+                offsetValue = 1;
+            } else if (literalLength == 0 && bestOffset == rep2) {
+                offsetValue = 2;
+            } else if (literalLength == 0 && bestOffset == rep0 - 1) {
+                offsetValue = 3;
+            } else {
+                offsetValue = bestOffset + 3;
+            }
+            if (offsetValue > 3) {
+                rep2 = rep1;
+                rep1 = rep0;
+                rep0 = bestOffset;
+            } else {
+                final int index = offsetValue - 1 + (literalLength == 0 ? 1 : 0);
+                if (index > 0) {
+                    if (index != 1) {
+                        rep2 = rep1;
+                    }
+                    rep1 = rep0;
+                    rep0 = bestOffset;
+                }
+            }
+
+            System.arraycopy(src, anchor, literals, numLiterals, literalLength);
+            numLiterals += literalLength;
+            literalLengths[numSequences] = literalLength;
+            matchLengths[numSequences] = bestLength;
+            offsetValues[numSequences] = offsetValue;
+            numSequences++;
+
+            // the positions of the match become candidates too
+            ip += bestLength;
+            insertUpTo(src, base, ip, matchLimit);
+            anchor = ip;
+        }
+        final int lastLiterals = end - anchor;
+        System.arraycopy(src, anchor, literals, numLiterals, lastLiterals);
+        numLiterals += lastLiterals;
+
+        int op = encodeLiterals(numLiterals, 0);
+        op = encodeSequences(numSequences, op);
+        if (op < 0) {
+            return -1;
+        }
+        repeats[0] = rep0;
+        repeats[1] = rep1;
+        repeats[2] = rep2;
+        return op;
+    }
+
+    /**
+     * Looks for the longest match of the bytes at the provided position
+     * among the positions already inserted in the hash chains.
+     *
+     * @return the offset of the match, its length being stored in
+     *         {@link #lastLength}.
+     */
+    private int findMatch(byte[] src, int base, int ip, int end, int window) {
+        final int position = ip - base;
+        final int limit = Math.max(position - Math.min(window - 1, chainMask), 0);
+        int candidate = hashTable[hash(src, ip)] - 1;
+        int bestLength = 0;
+        int bestOffset = 0;
+        int depth = searchDepth;
+        while (candidate >= limit && depth-- > 0) {
+            final int ref = base + candidate;
+            if (src[ref + bestLength] == src[ip + bestLength]) {
+                final int length = matchLength(src, ip, ref, end);
+                if (length > bestLength) {
+                    bestLength = length;
+                    bestOffset = position - candidate;
+                    if (ip + length == end) {
+                        break;
+                    }
+                }
+            }
+            final int next = chainTable[candidate & chainMask] - 1;
+            if (next >= candidate) {
+                break;
+            }
+            candidate = next;
+        }
+        lastLength = bestLength;
+        return bestOffset;
+    }
+
+    /**
+     * Inserts in the hash chains the positions preceding the provided one
+     * which have not been inserted yet.
+     */
+    private void insertUpTo(byte[] src, int base, int ip, int matchLimit) {
+        final int target = Math.min(ip, matchLimit) - base;
+        while (nextInsert < target) {
+            final int hash = hash(src, base + nextInsert);
+            chainTable[nextInsert & chainMask] = hashTable[hash];
+            hashTable[hash] = ++nextInsert;
+        }
+    }
+
+    private int hash(byte[] src, int ip) {
+        return (TIFFZstdDecoder.readInt(src, ip) * 0x9E3779B1) >>> (32 - hashLog);
+    }
+
+    private static int matchLength(byte[] src, int ip, int ref, int end) {
+        int length = 0;
+        while (ip + length < end && src[ip + length] == src[ref + length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static boolean isRLE(byte[] src, int ip, int size) {
+        if (size < 2) {
+            return false;
+        }
+        final byte value = src[ip];
+        for (int i = 1; i < size; i++) {
+            if (src[ip + i] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the literals section of the block.
+     *
+     * @return the position following the section.
+     */
+    private int encodeLiterals(int size, int op) {
+        final byte[] out = block;
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < size; i++) {
+            counts[literals[i] & 0xff]++;
+        }
+        int maxSymbol = 0;
+        int distinct = 0;
+        for (int s = 0; s < 256; s++) {
+            if (counts[s] > 0) {
+                maxSymbol = s;
+                distinct++;
+            }
+        }
+        if (size > 0 && distinct == 1) {
+            op = writeLiteralsHeader(out, op, 1, size);
+            out[op++] = literals[0];
+            return op;
+        }
+
+        if (size >= 64) {
+            final int maxBits = buildHuffmanCode(maxSymbol, distinct);
+            final int descriptionSize = writeWeights(maxSymbol, maxBits);
+            if (descriptionSize > 0) {
+                long bits = 0;
+                for (int s = 0; s <= maxSymbol; s++) {
+                    bits += (long) counts[s] * codeLengths[s];
+                }
+                final boolean single = size <= 1023 && descriptionSize + (bits + 8) / 8 <= 1023;
+                final int estimate = descriptionSize + (int) ((bits + 7) / 8) + (single ? 1 : 10);
+                if (estimate + 5 < size - (size >> 6)) {
+                    final int headerSize = single || size <= 1023 && estimate <= 1023 ? 3
+                            : size <= 16383 && estimate <= 16383 ? 4 : 5;
+                    int ip = op + headerSize;
+                    System.arraycopy(description, 0, out, ip, descriptionSize);
+                    ip += descriptionSize;
+                    if (single) {
+                        ip = writeHuffmanStream(out, ip, 0, size);
+                    } else {
+                        final int segment = (size + 3) / 4;
+                        final int jumpTable = ip;
+                        ip += 6;
+                        for (int i = 0; i < 4; i++) {
+                            final int from = i * segment;
+                            final int streamStart = ip;
+                            ip = writeHuffmanStream(out, ip, from,
+                                    Math.min(from + segment, size));
+                            if (i < 3) {
+                                final int streamSize = ip - streamStart;
+                                out[jumpTable + 2 * i] = (byte) streamSize;
+                                out[jumpTable + 2 * i + 1] = (byte) (streamSize >>> 8);
+                            }
+                        }
+                    }
+                    final int compressedSize = ip - op - headerSize;
+                    final int format = single ? 0 : headerSize - 2;
+                    if (headerSize == 3) {
+                        final int header = 2 | format << 2 | size << 4 | compressedSize << 14;
+                        out[op] = (byte) header;
+                        out[op + 1] = (byte) (header >>> 8);
+                        out[op + 2] = (byte) (header >>> 16);
+                    } else if (headerSize == 4) {
+                        writeInt(out, op, 2 | format << 2 | size << 4 | compressedSize << 18);
+                    } else {
+                        final long header = 2 | format << 2 | (long) size << 4
+                                | (long) compressedSize << 22;
+                        writeInt(out, op, (int) header);
+                        out[op + 4] = (byte) (header >>> 32);
+                    }
+                    return ip;
+                }
+            }
+        }
+
+        op = writeLiteralsHeader(out, op, 0, size);
+        System.arraycopy(literals, 0, out, op, size);
+        return op + size;
+    }
+
+    private static int writeLiteralsHeader(byte[] out, int op, int type, int size) {
+        if (size < 32) {
+            out[op++] = (byte) (type | size << 3);
+        } else if (size < 4096) {
+            out[op++] = (byte) (type | 1 << 2 | size << 4);
+            out[op++] = (byte) (size >>> 4);
+        } else {
+            out[op++] = (byte) (type | 3 << 2 | size << 4);
+            out[op++] = (byte) (size >>> 4);
+            out[op++] = (byte) (size >>> 12);
+        }
+        return op;
+    }
+
+    private int writeHuffmanStream(byte[] out, int op, int from, int to) {
+        final BitWriter w = writer;
+        w.init(out, op);
+        // the decoder reads backward
+        for (int i = to - 1; i >= from; i--) {
+            final int s = literals[i] & 0xff;
+            w.add(codes[s], codeLengths[s]);
+        }
+        return w.close();
+    }
+
+    /**
+     * Computes the length limited Huffman code of the counted literals.
+     *
+     * @return the maximum code length.
+     */
+    private int buildHuffmanCode(int maxSymbol, int distinct) {
+        // symbols by increasing count
+        int n = 0;
+        for (int s = 0; s <= maxSymbol; s++) {
+            codeLengths[s] = 0;
+            if (counts[s] > 0) {
+                int i = n++;
+                while (i > 0 && counts[sorted[i - 1]] > counts[s]) {
+                    sorted[i] = sorted[i - 1];
+                    i--;
+                }
+                sorted[i] = s;
+            }
+        }
+
+        // two queues construction of the tree: leaves first, then nodes
+        for (int i = 0; i < n; i++) {
+            nodeWeights[i] = counts[sorted[i]];
+        }
+        int leaf = 0;
+        int node = n;
+        for (int k = n; k < 2 * n - 1; k++) {
+            int sum = 0;
+            for (int c = 0; c < 2; c++) {
+                final int child;
+                if (leaf < n && (node >= k || nodeWeights[leaf] <= nodeWeights[node])) {
+                    child = leaf++;
+                } else {
+                    child = node++;
+                }
+                parents[child] = k;
+                sum += nodeWeights[child];
+            }
+            nodeWeights[k] = sum;
+        }
+        // depths, reusing the weights
+        final int root = 2 * n - 2;
+        nodeWeights[root] = 0;
+        Arrays.fill(lengthCounts, 0);
+        int maxLength = 0;
+        for (int k = root - 1; k >= 0; k--) {
+            nodeWeights[k] = nodeWeights[parents[k]] + 1;
+            if (k < n) {
+                lengthCounts[nodeWeights[k]]++;
+                maxLength = Math.max(maxLength, nodeWeights[k]);
+            }
+        }
+
+        // limiting the lengths keeping the code complete, as JPEG does
+        for (int i = maxLength; i > MAX_HUFFMAN_BITS; i--) {
+            while (lengthCounts[i] > 0) {
+                int j = i - 2;
+                while (lengthCounts[j] == 0) {
+                    j--;
+                }
+                lengthCounts[i] -= 2;
+                lengthCounts[i - 1]++;
+                lengthCounts[j + 1] += 2;
+                lengthCounts[j]--;
+            }
+        }
+        maxLength = Math.min(maxLength, MAX_HUFFMAN_BITS);
+        // the longest codes go to the least frequent symbols
+        for (int length = maxLength, i = 0; length > 0; length--) {
+            for (int c = 0; c < lengthCounts[length]; c++) {
+                codeLengths[sorted[i++]] = length;
+            }
+        }
+
+        // codes, as assigned by the decoder filling its table by weight
+        final int[] start = new int[MAX_HUFFMAN_BITS + 2];
+        for (int s = 0; s <= maxSymbol; s++) {
+            if (codeLengths[s] > 0) {
+                start[maxLength + 1 - codeLengths[s]] += 1 << (maxLength - codeLengths[s]);
+            }
+        }
+        int next = 0;
+        for (int w = 1; w <= maxLength; w++) {
+            final int count = start[w];
+            start[w] = next;
+            next += count;
+        }
+        for (int s = 0; s <= maxSymbol; s++) {
+            final int length = codeLengths[s];
+            if (length > 0) {
+                final int w = maxLength + 1 - length;
+                codes[s] = start[w] >>> (w - 1);
+                start[w] += 1 << (w - 1);
+            }
+        }
+        return maxLength;
+    }
+
+    /**
+     * Writes the description of the Huffman tree into the description
+     * buffer.
+     *
+     * @return the size of the description, 0 if it cannot be represented.
+     */
+    private int writeWeights(int maxSymbol, int maxBits) {
+        for (int s = 0; s < maxSymbol; s++) {
+            weights[s] = (byte) (codeLengths[s] > 0 ? maxBits + 1 - codeLengths[s] : 0);
+        }
+        // the weight of the last symbol is implied
+        final int numWeights = maxSymbol;
+        if (numWeights <= 128) {
+            description[0] = (byte) (127 + numWeights);
+            for (int i = 0; i < numWeights; i += 2) {
+                description[1 + i / 2] = (byte) (weights[i] << 4
+                        | (i + 1 < numWeights ? weights[i + 1] : 0));
+            }
+            return 1 + (numWeights + 1) / 2;
+        }
+
+        // FSE compressed weights
+        Arrays.fill(symbolCounts, 0, MAX_HUFFMAN_BITS + 1, 0);
+        int maxWeight = 0;
+        for (int i = 0; i < numWeights; i++) {
+            symbolCounts[weights[i]]++;
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+        for (int w = 0; w <= maxWeight; w++) {
+            if (symbolCounts[w] == numWeights) {
+                return 0;
+            }
+        }
+        final FSEEncoderTable table = weightsTable;
+        final int log = optimalTableLog(6, numWeights, maxWeight);
+        normalize(symbolCounts, maxWeight, numWeights, log);
+        buildTable(table, norm, maxWeight, log);
+        final byte[] buffer = block;
+        // the tail of the block buffer is not used by literals
+        final int start = 3 * MAX_BLOCK_SIZE;
+        int op = writeNCount(buffer, start, maxWeight, log);
+
+        final BitWriter w = writer;
+        w.init(buffer, op);
+        int state1;
+        int state2;
+        int i = numWeights;
+        if ((numWeights & 1) != 0) {
+            state1 = initState(table, weights[--i]);
+            state2 = initState(table, weights[--i]);
+        } else {
+            state2 = initState(table, weights[--i]);
+            state1 = initState(table, weights[--i]);
+        }
+        while (i > 0) {
+            i--;
+            if ((i & 1) == 0) {
+                state1 = encodeSymbol(table, state1, weights[i], w);
+            } else {
+                state2 = encodeSymbol(table, state2, weights[i], w);
+            }
+        }
+        w.add(state2, log);
+        w.add(state1, log);
+        final int size = w.close() - start;
+        if (size >= 128) {
+            return 0;
+        }
+        description[0] = (byte) size;
+        System.arraycopy(buffer, start, description, 1, size);
+        return 1 + size;
+    }
+
+    /**
+     * Writes the sequences section of the block.
+     *
+     * @return the position following the section, -1 if the block would
+     *         exceed the maximum size.
+     */
+    private int encodeSequences(int numSequences, int op) {
+        final byte[] out = block;
+        if (numSequences < 128) {
+            out[op++] = (byte) numSequences;
+        } else if (numSequences < 0x7F00) {
+            out[op++] = (byte) ((numSequences >>> 8) + 128);
+            out[op++] = (byte) numSequences;
+        } else {
+            out[op++] = (byte) 255;
+            out[op++] = (byte) (numSequences - 0x7F00);
+            out[op++] = (byte) ((numSequences - 0x7F00) >>> 8);
+        }
+        if (numSequences == 0) {
+            return op;
+        }
+
+        for (int i = 0; i < numSequences; i++) {
+            final int ll = literalLengths[i];
+            llCodes[i] = (byte) (ll < 64 ? LL_CODE[ll] : TIFFZstdDecoder.highBit(ll) + 19);
+            final int ml = matchLengths[i] - 3;
+            mlCodes[i] = (byte) (ml < 128 ? ML_CODE[ml] : TIFFZstdDecoder.highBit(ml) + 36);
+            ofCodes[i] = (byte) TIFFZstdDecoder.highBit(offsetValues[i]);
+        }
+
+        final int modes = op++;
+        op = selectTable(llTable, llCodes, numSequences, MAX_LL_SYMBOL, MAX_LL_LOG,
+                LL_DEFAULT_NORM, LL_DEFAULT_LOG, out, op);
+        op = selectTable(ofTable, ofCodes, numSequences, MAX_OF_SYMBOL, MAX_OF_LOG,
+                OF_DEFAULT_NORM, OF_DEFAULT_LOG, out, op);
+        op = selectTable(mlTable, mlCodes, numSequences, MAX_ML_SYMBOL, MAX_ML_LOG,
+                ML_DEFAULT_NORM, ML_DEFAULT_LOG, out, op);
+        out[modes] = (byte) (llTable.mode << 6 | ofTable.mode << 4 | mlTable.mode << 2);
+
+        final BitWriter w = writer;
+        w.init(out, op);
+        final int last = numSequences - 1;
+        int mlState = initState(mlTable, mlCodes[last]);
+        int ofState = initState(ofTable, ofCodes[last]);
+        int llState = initState(llTable, llCodes[last]);
+        writeExtraBits(last, w);
+        for (int i = last - 1; i >= 0; i--) {
+            ofState = encodeSymbol(ofTable, ofState, ofCodes[i], w);
+            mlState = encodeSymbol(mlTable, mlState, mlCodes[i], w);
+            llState = encodeSymbol(llTable, llState, llCodes[i], w);
+            writeExtraBits(i, w);
+            if (w.position > MAX_BLOCK_SIZE) {
+                return -1;
+            }
+        }
+        w.add(mlState, mlTable.log);
+        w.add(ofState, ofTable.log);
+        w.add(llState, llTable.log);
+        return w.close();
+    }
+
+    private void writeExtraBits(int i, BitWriter w) {
+        final int llCode = llCodes[i];
+        final int mlCode = mlCodes[i];
+        final int ofCode = ofCodes[i];
+        w.add(literalLengths[i] - LL_BASE[llCode], LL_BITS[llCode]);
+        w.add(matchLengths[i] - ML_BASE[mlCode], ML_BITS[mlCode]);
+        w.add(offsetValues[i] - (1 << ofCode), ofCode);
+    }
+
+    /**
+     * Chooses the cheapest way of coding the provided symbols, builds the
+     * related table and writes its description, if any.
+     *
+     * @return the position following the description.
+     */
+    private int selectTable(FSEEncoderTable table, byte[] symbols, int count,
+            int maxSymbol, int maxLog, short[] defaultNorm, int defaultLog,
+            byte[] out, int op) {
+        Arrays.fill(symbolCounts, 0, maxSymbol + 1, 0);
+        int max = 0;
+        for (int i = 0; i < count; i++) {
+            final int s = symbols[i];
+            symbolCounts[s]++;
+            max = Math.max(max, s);
+        }
+        if (symbolCounts[max] == count) {
+            table.mode = 1;
+            table.log = 0;
+            table.stateTable[0] = 0;
+            table.deltaNbBits[max] = 0;
+            table.deltaFindState[max] = 0;
+            out[op++] = (byte) max;
+            return op;
+        }
+
+        // predefined table cost, in bits
+        double defaultCost = Double.MAX_VALUE;
+        if (max < defaultNorm.length) {
+            defaultCost = 0;
+            for (int s = 0; s <= max; s++) {
+                if (symbolCounts[s] > 0) {
+                    final int n = defaultNorm[s] < 0 ? 1 : defaultNorm[s];
+                    defaultCost += symbolCounts[s] * (defaultLog - log2(n));
+                }
+            }
+        }
+        final int log = optimalTableLog(maxLog, count, max);
+        normalize(symbolCounts, max, count, log);
+        double cost = 0;
+        for (int s = 0; s <= max; s++) {
+            if (symbolCounts[s] > 0) {
+                cost += symbolCounts[s] * (log - log2(norm[s]));
+            }
+        }
+        final int headerEnd = writeNCount(out, op, max, log);
+        cost += (headerEnd - op) * 8;
+        if (cost < defaultCost) {
+            table.mode = 2;
+            buildTable(table, norm, max, log);
+            return headerEnd;
+        }
+        table.mode = 0;
+        buildTable(table, defaultNorm, defaultNorm.length - 1, defaultLog);
+        return op;
+    }
+
+    private static double log2(int value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    private static int optimalTableLog(int maxLog, int count, int maxSymbol) {
+        int log = Math.min(maxLog, TIFFZstdDecoder.highBit(count - 1) - 2);
+        final int minLog = Math.min(TIFFZstdDecoder.highBit(count) + 1,
+                TIFFZstdDecoder.highBit(maxSymbol) + 2);
+        log = Math.max(log, minLog);
+        return Math.max(5, Math.min(log, maxLog));
+    }
+
+    /**
+     * Scales the provided counts so that they sum to the table size, each
+     * symbol occurring at least once.
+     */
+    private void normalize(int[] counts, int maxSymbol, int total, int log) {
+        final int size = 1 << log;
+        int sum = 0;
+        int largest = 0;
+        for (int s = 0; s <= maxSymbol; s++) {
+            if (counts[s] > 0) {
+                final int n = Math.max(1, (int) ((long) counts[s] * size / total));
+                norm[s] = (short) n;
+                sum += n;
+                if (n > norm[largest] || counts[largest] == 0) {
+                    largest = s;
+                }
+            } else {
+                norm[s] = 0;
+            }
+        }
+        if (sum < size) {
+            norm[largest] += size - sum;
+        }
+        while (sum > size) {
+            // taking from the most probable symbols
+            int s = 0;
+            for (int i = 1; i <= maxSymbol; i++) {
+                if (norm[i] > norm[s]) {
+                    s = i;
+                }
+            }
+            final int amount = Math.min(sum - size, norm[s] - 1);
+            norm[s] -= amount;
+            sum -= amount;
+        }
+    }
+
+    /**
+     * Writes the description of a normalized distribution.
+     *
+     * @return the position following the description.
+     */
+    private int writeNCount(byte[] out, int op, int maxSymbol, int log) {
+        final BitWriter w = writer;
+        w.init(out, op);
+        w.add(log - 5, 4);
+        int remaining = (1 << log) + 1;
+        int threshold = 1 << log;
+        int numBits = log + 1;
+        int symbol = 0;
+        boolean previousZero = false;
+        while (symbol <= maxSymbol && remaining > 1) {
+            if (previousZero) {
+                int start = symbol;
+                while (norm[symbol] == 0) {
+                    symbol++;
+                }
+                while (symbol >= start + 24) {
+                    start += 24;
+                    w.add(0xFFFF, 16);
+                }
+                while (symbol >= start + 3) {
+                    start += 3;
+                    w.add(3, 2);
+                }
+                w.add(symbol - start, 2);
+            }
+            int count = norm[symbol++];
+            final int max = (2 * threshold - 1) - remaining;
+            remaining -= count < 0 ? -count : count;
+            count++;
+            if (count >= threshold) {
+                count += max;
+            }
+            w.add(count, count < max ? numBits - 1 : numBits);
+            previousZero = count == 1;
+            while (remaining < threshold) {
+                numBits--;
+                threshold >>= 1;
+            }
+        }
+        return w.flush();
+    }
+
+    private void buildTable(FSEEncoderTable table, short[] norm, int maxSymbol,
+            int log) {
+        final int size = 1 << log;
+        final int mask = size - 1;
+        int high = size - 1;
+        cumulative[0] = 0;
+        for (int s = 0; s <= maxSymbol; s++) {
+            if (norm[s] == -1) {
+                cumulative[s + 1] = cumulative[s] + 1;
+                spread[high--] = s;
+            } else {
+                cumulative[s + 1] = cumulative[s] + norm[s];
+            }
+        }
+        final int step = (size >>> 1) + (size >>> 3) + 3;
+        int position = 0;
+        for (int s = 0; s <= maxSymbol; s++) {
+            for (int i = 0; i < norm[s]; i++) {
+                spread[position] = s;
+                do {
+                    position = (position + step) & mask;
+                } while (position > high);
+            }
+        }
+        for (int u = 0; u < size; u++) {
+            final int s = spread[u];
+            table.stateTable[cumulative[s]++] = size + u;
+        }
+        int total = 0;
+        for (int s = 0; s <= maxSymbol; s++) {
+            final int n = norm[s];
+            if (n == 0) {
+                table.deltaNbBits[s] = ((log + 1) << 16) - size;
+            } else if (n == -1 || n == 1) {
+                table.deltaNbBits[s] = (log << 16) - size;
+                table.deltaFindState[s] = total - 1;
+                total++;
+            } else {
+                final int maxBitsOut = log - TIFFZstdDecoder.highBit(n - 1);
+                table.deltaNbBits[s] = (maxBitsOut << 16) - (n << maxBitsOut);
+                table.deltaFindState[s] = total - n;
+                total += n;
+            }
+        }
+        table.log = log;
+    }
+
+    private static int initState(FSEEncoderTable table, int symbol) {
+        final int delta = table.deltaNbBits[symbol];
+        final int numBits = (delta + (1 << 15)) >> 16;
+        final int value = (numBits << 16) - delta;
+        return table.stateTable[(value >> numBits) + table.deltaFindState[symbol]];
+    }
+
+    private static int encodeSymbol(FSEEncoderTable table, int state, int symbol,
+            BitWriter w) {
+        final int numBits = (state + table.deltaNbBits[symbol]) >> 16;
+        w.add(state, numBits);
+        return table.stateTable[(state >> numBits) + table.deltaFindState[symbol]];
+    }
+
+    private static void writeBlockHeader(byte[] dst, int op, int header) {
+        dst[op] = (byte) header;
+        dst[op + 1] = (byte) (header >>> 8);
+        dst[op + 2] = (byte) (header >>> 16);
+    }
+
+    private static void writeInt(byte[] dst, int op, int value) {
+        dst[op] = (byte) value;
+        dst[op + 1] = (byte) (value >>> 8);
+        dst[op + 2] = (byte) (value >>> 16);
+        dst[op + 3] = (byte) (value >>> 24);
+    }
+}
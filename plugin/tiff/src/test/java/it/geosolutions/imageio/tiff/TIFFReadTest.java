@@ -15,20 +15,26 @@
  */
 package it.geosolutions.imageio.tiff;
 
+import it.geosolutions.imageio.plugins.tiff.TIFFImageReadParam;
 import it.geosolutions.imageio.stream.input.FileImageInputStreamExt;
 import it.geosolutions.imageio.stream.input.FileImageInputStreamExtImpl;
 import it.geosolutions.imageio.utilities.ImageIOUtilities;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFRenderedImage;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFStreamMetadata.MetadataNode;
 import it.geosolutions.resources.TestData;
 
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -367,6 +373,188 @@ public class TIFFReadTest extends Assert {
         }
     }
 
+    @Test
+    public void readFromOverviews() throws IOException {
+        // Reading a File with internal overviews
+        final File file = TestData.file(this, "masks.tif");
+        // Reader creation
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        // Stream creation
+        FileImageInputStream inputStream = new FileImageInputStream(file);
+        try {
+            reader.setInput(inputStream);
+            // Subsampled read from the full resolution image
+            TIFFImageReadParam param = new TIFFImageReadParam();
+            param.setSourceSubsampling(4, 4, 0, 0);
+            BufferedImage image = reader.read(0, param);
+            Assert.assertEquals(4, image.getWidth());
+            Assert.assertEquals(5, image.getHeight());
+
+            // Same read served by the 4x5 overview
+            param = new TIFFImageReadParam();
+            param.setSourceSubsampling(4, 4, 0, 0);
+            param.setReadFromOverviews(true);
+            image = reader.read(0, param);
+            Assert.assertEquals(4, image.getWidth());
+            Assert.assertEquals(5, image.getHeight());
+
+            // Checking the pixels come from the overview
+            final BufferedImage overview = reader.read(3, null);
+            Assert.assertEquals(overview.getWidth(), image.getWidth());
+            Assert.assertEquals(overview.getHeight(), image.getHeight());
+            final Raster expected = overview.getRaster();
+            final Raster actual = image.getRaster();
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    Assert.assertEquals(expected.getSample(x, y, 0), actual.getSample(x, y, 0));
+                }
+            }
+        } finally {
+            if (inputStream != null) {
+                inputStream.flush();
+                inputStream.close();
+            }
+
+            if (reader != null) {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void readRenderedConcurrently() throws Exception {
+        final File file = TestData.file(this, "test.tif");
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        FileImageInputStream inputStream = new FileImageInputStream(file);
+        try {
+            reader.setInput(inputStream);
+            final Raster expected = reader.read(0).getRaster();
+            final TIFFRenderedImage image = (TIFFRenderedImage) reader.readAsRenderedImage(0,
+                    null);
+
+            // Several threads computing all the tiles at the same time
+            final int numThreads = 4;
+            final int numLoops = 10;
+            final List<Throwable> failures = Collections
+                    .synchronizedList(new ArrayList<Throwable>());
+            final Thread[] threads = new Thread[numThreads];
+            for (int t = 0; t < numThreads; t++) {
+                threads[t] = new Thread() {
+                    public void run() {
+                        try {
+                            for (int l = 0; l < numLoops; l++) {
+                                for (int ty = 0; ty < image.getNumYTiles(); ty++) {
+                                    for (int tx = 0; tx < image.getNumXTiles(); tx++) {
+                                        final Raster tile = image.getTile(tx, ty);
+                                        final Rectangle bounds = tile.getBounds().intersection(
+                                                expected.getBounds());
+                                        for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+                                            for (int x = bounds.x; x < bounds.x + bounds.width; x++) {
+                                                for (int b = 0; b < tile.getNumBands(); b++) {
+                                                    Assert.assertEquals(expected.getSample(x, y, b),
+                                                            tile.getSample(x, y, b));
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                            }
+                        } catch (Throwable e) {
+                            failures.add(e);
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (int t = 0; t < numThreads; t++) {
+                threads[t].join();
+            }
+            if (!failures.isEmpty()) {
+                throw new AssertionError(failures.get(0));
+            }
+
+            final long numTiles = image.getNumXTiles() * image.getNumYTiles();
+            Assert.assertEquals(numThreads * numLoops * numTiles, image.getReads());
+            Assert.assertTrue(image.getDecodingContexts() >= 1);
+            Assert.assertTrue(image.getDecodingContexts() <= numThreads);
+            Assert.assertTrue(image.getContendedReads() <= image.getReads());
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+
+            if (reader != null) {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void readFromOverviewsNonIntegralRatio() throws IOException {
+        // Reading a File whose overviews decimate by 2, 4, 8, 16 and 32
+        final File file = TestData.file(this, "test.tif");
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        FileImageInputStream inputStream = new FileImageInputStream(file);
+        try {
+            reader.setInput(inputStream);
+            final Rectangle region = new Rectangle(3, 1, 25, 23);
+
+            // Subsampling by 6 is served by the 2x overview, the 4x one
+            // not being on the requested grid
+            TIFFImageReadParam param = new TIFFImageReadParam();
+            param.setSourceRegion(region);
+            param.setSourceSubsampling(6, 6, 1, 2);
+            final BufferedImage full = reader.read(0, param);
+            param.setReadFromOverviews(true);
+            BufferedImage image = reader.read(0, param);
+            Assert.assertEquals(full.getWidth(), image.getWidth());
+            Assert.assertEquals(full.getHeight(), image.getHeight());
+            Raster expected = reader.read(1, null).getRaster();
+            Raster actual = image.getRaster();
+            for (int y = 0; y < actual.getHeight(); y++) {
+                for (int x = 0; x < actual.getWidth(); x++) {
+                    final int sourceX = region.x + 1 + 6 * x;
+                    final int sourceY = region.y + 2 + 6 * y;
+                    for (int b = 0; b < actual.getNumBands(); b++) {
+                        Assert.assertEquals(expected.getSample(sourceX / 2, sourceY / 2, b),
+                                actual.getSample(x, y, b));
+                    }
+                }
+            }
+
+            // No overview decimation divides a subsampling by 3 and 5, the
+            // full resolution image is read
+            param = new TIFFImageReadParam();
+            param.setSourceRegion(region);
+            param.setSourceSubsampling(3, 5, 2, 1);
+            expected = reader.read(0, param).getRaster();
+            param.setReadFromOverviews(true);
+            actual = reader.read(0, param).getRaster();
+            Assert.assertEquals(expected.getWidth(), actual.getWidth());
+            Assert.assertEquals(expected.getHeight(), actual.getHeight());
+            for (int y = 0; y < actual.getHeight(); y++) {
+                for (int x = 0; x < actual.getWidth(); x++) {
+                    for (int b = 0; b < actual.getNumBands(); b++) {
+                        Assert.assertEquals(expected.getSample(x, y, b),
+                                actual.getSample(x, y, b));
+                    }
+                }
+            }
+        } finally {
+            if (inputStream != null) {
+                inputStream.flush();
+                inputStream.close();
+            }
+
+            if (reader != null) {
+                reader.dispose();
+            }
+        }
+    }
+
     @Test
     public void readExternalMasks() throws IOException {
         // Reading file with external masks
@@ -0,0 +1,176 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageio.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.TIFFImageReadParam;
+import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFFastFaxDecompressor;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFFaxDecompressor;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriter;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriterSpi;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFLZWCompressor;
+import it.geosolutions.resources.TestData;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.sun.media.imageioimpl.common.LZWCompressor;
+
+/**
+ * Compares the speed of the TIFF codecs with the ones they replace. The
+ * tests are not part of the build, being meant to be run on demand.
+ */
+public class TIFFSpeedTest extends Assert {
+
+    private final static Logger LOGGER = Logger.getLogger(TIFFSpeedTest.class.toString());
+
+    @Test
+    @Ignore
+    public void benchmarkFaxDecoding() throws IOException {
+        final File outputFile = TestData.temp(this, "testfaxbench.tif", true);
+        final BufferedImage image = TIFFWriteTest.createBilevelImage(2048, 2048);
+
+        final TIFFImageWriter writer = (TIFFImageWriter) new TIFFImageWriterSpi()
+                .createWriterInstance();
+        final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParam.setCompressionType("CCITT T.6");
+        final FileImageOutputStream outputStream = new FileImageOutputStream(outputFile);
+        writer.setOutput(outputStream);
+        writer.write(null, new IIOImage(image, null, null), writeParam);
+        outputStream.close();
+        writer.dispose();
+
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        final FileImageInputStream inputStream = new FileImageInputStream(outputFile);
+        reader.setInput(inputStream);
+        try {
+            final TIFFImageReadParam fastParam = new TIFFImageReadParam();
+            fastParam.setTIFFDecompressor(new TIFFFastFaxDecompressor());
+            final TIFFImageReadParam genericParam = new TIFFImageReadParam();
+            genericParam.setTIFFDecompressor(new TIFFFaxDecompressor());
+
+            // warm up both decoders before timing them
+            final int iterations = 5;
+            for (int i = 0; i < iterations; i++) {
+                reader.read(0, fastParam);
+                reader.read(0, genericParam);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                reader.read(0, fastParam);
+            }
+            final long fast = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                reader.read(0, genericParam);
+            }
+            final long generic = System.nanoTime() - start;
+
+            final double megapixels = iterations * image.getWidth() * (double) image.getHeight() / 1e6;
+            LOGGER.info("T.6 decoding: table driven " + megapixels / (fast / 1e9)
+                    + " Mpixel/s, generic " + megapixels / (generic / 1e9) + " Mpixel/s");
+            assertBilevelEquals(image, reader.read(0, fastParam));
+        } finally {
+            inputStream.close();
+            reader.dispose();
+        }
+    }
+
+    @Test
+    @Ignore
+    public void benchmarkLZWEncoding() throws IOException {
+        final int width = 1024;
+        final int height = 1024;
+        final int rowsPerStrip = 8;
+        final byte[] data = TIFFWriteTest.createPixelData(width, height, 3);
+        final int stripSize = width * 3 * rowsPerStrip;
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length * 2);
+        final ImageOutputStream outputStream = new MemoryCacheImageOutputStream(bytes);
+        final TIFFLZWCompressor compressor =
+                new TIFFLZWCompressor(BaselineTIFFTagSet.PREDICTOR_NONE);
+        compressor.setStream(outputStream);
+
+        // warm up both encoders before timing them
+        final int iterations = 5;
+        long generic = 0;
+        long fast = 0;
+        for (int i = 0; i < 2 * iterations; i++) {
+            long start = System.nanoTime();
+            for (int off = 0; off < data.length; off += stripSize) {
+                // as done by TIFFLZWCompressor before having its own encoder
+                final LZWCompressor lzwCompressor = new LZWCompressor(outputStream, 8, true);
+                lzwCompressor.compress(data, off, stripSize);
+                lzwCompressor.flush();
+            }
+            if (i >= iterations) {
+                generic += System.nanoTime() - start;
+            }
+            bytes.reset();
+            outputStream.seek(0);
+            outputStream.flushBefore(0);
+
+            start = System.nanoTime();
+            for (int off = 0; off < data.length; off += stripSize) {
+                compressor.encode(data, off, width, rowsPerStrip, new int[] {8, 8, 8}, width * 3);
+            }
+            if (i >= iterations) {
+                fast += System.nanoTime() - start;
+            }
+            bytes.reset();
+            outputStream.seek(0);
+            outputStream.flushBefore(0);
+        }
+        outputStream.close();
+
+        final double megabytes = iterations * data.length / 1e6;
+        LOGGER.info("LZW encoding: table driven " + megabytes / (fast / 1e9)
+                + " MB/s, generic " + megabytes / (generic / 1e9) + " MB/s");
+    }
+
+    private static void assertBilevelEquals(BufferedImage expected, BufferedImage actual) {
+        final Raster expectedRaster = expected.getRaster();
+        final Raster actualRaster = actual.getRaster();
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                Assert.assertEquals(expectedRaster.getSample(x, y, 0),
+                        actualRaster.getSample(x, y, 0));
+            }
+        }
+    }
+}
@@ -15,34 +15,65 @@
  */
 package it.geosolutions.imageio.tiff;
 
+import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.GeoTIFFTagSet;
+import it.geosolutions.imageio.plugins.tiff.TIFFField;
+import it.geosolutions.imageio.plugins.tiff.TIFFImageReadParam;
 import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
 import it.geosolutions.imageio.utilities.ImageIOUtilities;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFFastFaxDecompressor;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFFaxDecompressor;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageMetadata;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReader;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriter;
 import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriterSpi;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFLZWCompressor;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFLZWDecompressor;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFStreamMetadata;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFTurboJPEGCompressor;
 import it.geosolutions.resources.TestData;
 
+import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BandedSampleModel;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Random;
 import java.util.logging.Logger;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageReadParam;
+import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.event.IIOWriteProgressListener;
 import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.media.jai.PlanarImage;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.sun.media.imageioimpl.common.BogusColorSpace;
 import com.sun.media.jai.operator.ImageReadDescriptor;
 
 
@@ -261,4 +292,788 @@ public class TIFFWriteTest extends Assert {
         
         reader.dispose();
     }
+
+    @Test
+    public void writeCloudOptimized() throws IOException {
+        final File inputFile = TestData.file(this, "test.tif");
+
+        // Full resolution image and its first overview
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        reader.setInput(new FileImageInputStream(inputFile));
+        final BufferedImage image = reader.read(0);
+        final BufferedImage overview = reader.read(1);
+        reader.dispose();
+
+        final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+        writeParam.setCloudOptimized(true);
+        writeParam.setTileLeaderTrailer(true);
+        assertRoundTrip("testcog.tif", writeParam, 0, new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                Assert.assertEquals(2, reader.getNumImages(true));
+                Assert.assertEquals(BaselineTIFFTagSet.NEW_SUBFILE_TYPE_REDUCED_RESOLUTION,
+                        ((TIFFImageMetadata) reader.getImageMetadata(1)).getTIFFField(
+                                BaselineTIFFTagSet.TAG_NEW_SUBFILE_TYPE).getAsLong(0));
+
+                final int offsetsTag = tiled ? BaselineTIFFTagSet.TAG_TILE_OFFSETS
+                        : BaselineTIFFTagSet.TAG_STRIP_OFFSETS;
+                final int byteCountsTag = tiled ? BaselineTIFFTagSet.TAG_TILE_BYTE_COUNTS
+                        : BaselineTIFFTagSet.TAG_STRIP_BYTE_COUNTS;
+                final ImageInputStream rawStream = new FileImageInputStream(file);
+                try {
+                    final long[] offsets = getFieldValues(rawStream, 0, offsetsTag);
+                    final long[] byteCounts = getFieldValues(rawStream, 0, byteCountsTag);
+                    final long[] overviewOffsets = getFieldValues(rawStream, 1, offsetsTag);
+                    // Data follow the IFDs, smallest overview first
+                    Assert.assertTrue(overviewOffsets[overviewOffsets.length - 1] < offsets[0]);
+                    // Each strip or tile is preceded by its byte count and
+                    // followed by a copy of its last 4 bytes
+                    rawStream.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+                    for (int i = 0; i < offsets.length; i++) {
+                        rawStream.seek(offsets[i] - 4);
+                        Assert.assertEquals(byteCounts[i], rawStream.readUnsignedInt());
+                        rawStream.seek(offsets[i] + byteCounts[i] - 4);
+                        Assert.assertEquals(rawStream.readInt(), rawStream.readInt());
+                    }
+                } finally {
+                    rawStream.close();
+                }
+            }
+        }, image, overview);
+    }
+
+    @Test
+    public void writeOverviews() throws IOException {
+        final File inputFile = TestData.file(this, "test.tif");
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        reader.setInput(new FileImageInputStream(inputFile));
+        final BufferedImage image = reader.read(0);
+        reader.dispose();
+
+        final RoundTripCheck check = new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                Assert.assertEquals(3, reader.getNumImages(true));
+                Assert.assertEquals(15, reader.getWidth(1));
+                Assert.assertEquals(13, reader.getHeight(1));
+                Assert.assertEquals(8, reader.getWidth(2));
+                Assert.assertEquals(7, reader.getHeight(2));
+                for (int i = 1; i < 3; i++) {
+                    Assert.assertEquals(BaselineTIFFTagSet.NEW_SUBFILE_TYPE_REDUCED_RESOLUTION,
+                            ((TIFFImageMetadata) reader.getImageMetadata(i)).getTIFFField(
+                                    BaselineTIFFTagSet.TAG_NEW_SUBFILE_TYPE).getAsLong(0));
+                    Assert.assertEquals(tiled, reader.isImageTiled(i));
+                }
+
+                // Nearest resampling picks the upper left pixel of each block
+                final Raster source = sources[0].getData();
+                for (int i = 1; i < 3; i++) {
+                    final int decimation = 1 << i;
+                    final Raster overview = reader.read(i).getRaster();
+                    for (int y = 0; y < overview.getHeight(); y++) {
+                        for (int x = 0; x < overview.getWidth(); x++) {
+                            for (int b = 0; b < source.getNumBands(); b++) {
+                                Assert.assertEquals(source.getSample(decimation * x,
+                                        decimation * y, b), overview.getSample(x, y, b));
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        for (int cog = 0; cog < 2; cog++) {
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            writeParam.setCloudOptimized(cog == 1);
+            writeParam.setOverviewLevels(2);
+            assertRoundTrip("testovr.tif", writeParam, 0, check, image);
+        }
+    }
+
+    @Test
+    public void writeZstd() throws IOException {
+        final File inputFile = TestData.file(this, "test.tif");
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        reader.setInput(new FileImageInputStream(inputFile));
+        final BufferedImage image = reader.read(0);
+        reader.dispose();
+
+        final RoundTripCheck check = new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                Assert.assertEquals(BaselineTIFFTagSet.COMPRESSION_ZSTD,
+                        ((TIFFImageMetadata) reader.getImageMetadata(0)).getTIFFField(
+                                BaselineTIFFTagSet.TAG_COMPRESSION).getAsInt(0));
+            }
+        };
+        for (int level = 1; level <= 19; level += 18) {
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionType("ZSTD");
+            writeParam.setZstdLevel(level);
+            assertRoundTrip("testzstd.tif", writeParam, 0, check, image);
+        }
+
+        // The last strip or tile holds rows beyond the end of the image,
+        // which are dropped when decoding
+        final BufferedImage rgb = new BufferedImage(157, 111, BufferedImage.TYPE_3BYTE_BGR);
+        final byte[] data = createPixelData(157, 111, 3);
+        System.arraycopy(data, 0, ((DataBufferByte) rgb.getRaster().getDataBuffer()).getData(),
+                0, data.length);
+        final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParam.setCompressionType("ZSTD");
+        writeParam.setSourceRegion(new Rectangle(5, 3, 140, 101));
+        writeParam.setSourceSubsampling(2, 3, 1, 2);
+        assertRoundTrip("testzstd.tif", writeParam, 0, new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                Assert.assertEquals(70, reader.getWidth(0));
+                Assert.assertEquals(33, reader.getHeight(0));
+            }
+        }, rgb);
+    }
+
+    @Test
+    public void writeComponentTiles() throws IOException {
+        // Banded sources, packed straight from their DataBuffer
+        final int width = 30;
+        final int height = 26;
+        final int[] dataTypes = new int[] { DataBuffer.TYPE_BYTE, DataBuffer.TYPE_USHORT,
+                DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE };
+        for (int t = 0; t < dataTypes.length; t++) {
+            final WritableRaster raster = Raster.createWritableRaster(new BandedSampleModel(
+                    dataTypes[t], width, height, 2), null);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    raster.setSample(x, y, 0, (x * 7 + y * 3) % 251);
+                    raster.setSample(x, y, 1, (x + y * width) % 255);
+                }
+            }
+            final boolean isFloat = dataTypes[t] == DataBuffer.TYPE_FLOAT
+                    || dataTypes[t] == DataBuffer.TYPE_DOUBLE;
+            if (isFloat) {
+                raster.setSample(1, 1, 0, -1.5);
+            }
+            final ColorModel cm = new ComponentColorModel(
+                    new BogusColorSpace(2), false, false, Transparency.OPAQUE, dataTypes[t]);
+            final BufferedImage image = new BufferedImage(cm, raster, false, null);
+
+            final int dataType = dataTypes[t];
+            assertRoundTrip("testcomponents.tif", new TIFFImageWriteParam(Locale.getDefault()),
+                    0, new RoundTripCheck() {
+
+                        public void check(RenderedImage[] sources, boolean tiled, File file,
+                                TIFFImageReader reader) throws IOException {
+                            // Samples are written with their own size and format
+                            final TIFFImageMetadata metadata =
+                                    (TIFFImageMetadata) reader.getImageMetadata(0);
+                            Assert.assertEquals(DataBuffer.getDataTypeSize(dataType),
+                                    metadata.getTIFFField(BaselineTIFFTagSet.TAG_BITS_PER_SAMPLE)
+                                            .getAsInt(0));
+                            final TIFFField sampleFormat =
+                                    metadata.getTIFFField(BaselineTIFFTagSet.TAG_SAMPLE_FORMAT);
+                            Assert.assertEquals(isFloat
+                                    ? BaselineTIFFTagSet.SAMPLE_FORMAT_FLOATING_POINT
+                                    : dataType == DataBuffer.TYPE_INT
+                                            ? BaselineTIFFTagSet.SAMPLE_FORMAT_SIGNED_INTEGER
+                                            : BaselineTIFFTagSet.SAMPLE_FORMAT_UNSIGNED_INTEGER,
+                                    sampleFormat == null
+                                            ? BaselineTIFFTagSet.SAMPLE_FORMAT_UNSIGNED_INTEGER
+                                            : sampleFormat.getAsInt(0));
+                        }
+                    }, image);
+        }
+    }
+
+    @Test
+    public void writeSingleBandTiles() throws IOException {
+        // Rows of tiles narrower than the image are not contiguous in the
+        // source, whatever the compression
+        final BufferedImage gray = new BufferedImage(200, 150, BufferedImage.TYPE_BYTE_GRAY);
+        final byte[] data = createPixelData(200, 150, 1);
+        System.arraycopy(data, 0, ((DataBufferByte) gray.getRaster().getDataBuffer()).getData(),
+                0, data.length);
+        final BufferedImage bilevel = createBilevelImage(200, 150);
+
+        final String[] compressions = TIFFImageWriter.TIFFCompressionTypes;
+        for (int i = -1; i < compressions.length; i++) {
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            if (i >= 0) {
+                if (compressions[i].equals("EXIF JPEG")) {
+                    // written as a single tile
+                    continue;
+                }
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                writeParam.setCompressionType(compressions[i]);
+            }
+            final boolean isFax = i >= 0 && compressions[i].startsWith("CCITT");
+            final boolean isJPEG = i >= 0 && compressions[i].equals("JPEG");
+            assertRoundTrip("testsingleband.tif", writeParam, isJPEG ? 4 : 0, null,
+                    isFax ? bilevel : gray);
+        }
+    }
+
+    @Test
+    public void writeCompressedSamples() throws IOException {
+        // Pixel interleaved sources, decoded through the typed sample paths
+        final int width = 37;
+        final int height = 29;
+        final int[] dataTypes = new int[] { DataBuffer.TYPE_USHORT, DataBuffer.TYPE_SHORT,
+                DataBuffer.TYPE_INT, DataBuffer.TYPE_FLOAT, DataBuffer.TYPE_DOUBLE };
+        for (int t = 0; t < dataTypes.length; t++) {
+            final WritableRaster raster = Raster.createWritableRaster(
+                    new PixelInterleavedSampleModel(dataTypes[t], width, height, 2, 2 * width,
+                            new int[] {0, 1}), null);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    raster.setSample(x, y, 0, (x * 1021 + y * 17) % 30011);
+                    raster.setSample(x, y, 1, (x + y * width) % 255);
+                }
+            }
+            if (dataTypes[t] == DataBuffer.TYPE_FLOAT || dataTypes[t] == DataBuffer.TYPE_DOUBLE) {
+                raster.setSample(1, 1, 0, -1.5e10);
+            }
+            final ColorModel cm = new ComponentColorModel(
+                    new BogusColorSpace(2), false, false, Transparency.OPAQUE, dataTypes[t]);
+            final BufferedImage image = new BufferedImage(cm, raster, false, null);
+
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionType("LZW");
+            assertRoundTrip("testsamples.tif", writeParam, 0, new RoundTripCheck() {
+
+                public void check(RenderedImage[] sources, boolean tiled, File file,
+                        TIFFImageReader reader) throws IOException {
+                    // Rows of the segments are not contiguous in a shifted
+                    // destination, and are converted one at a time
+                    final Raster source = sources[0].getData();
+                    final ImageReadParam readParam = new ImageReadParam();
+                    readParam.setDestinationOffset(new Point(3, 2));
+                    final Raster read = reader.read(0, readParam).getRaster();
+                    Assert.assertEquals(source.getWidth() + 3, read.getWidth());
+                    Assert.assertEquals(source.getHeight() + 2, read.getHeight());
+                    for (int b = 0; b < source.getNumBands(); b++) {
+                        for (int y = 0; y < source.getHeight(); y++) {
+                            for (int x = 0; x < source.getWidth(); x++) {
+                                Assert.assertEquals(source.getSampleDouble(x, y, b),
+                                        read.getSampleDouble(x + 3, y + 2, b), 0d);
+                            }
+                        }
+                    }
+                }
+            }, image);
+        }
+    }
+
+    @Test
+    public void writeSparse() throws IOException {
+        // Only the upper left 16x16 block holds data
+        final int width = 40;
+        final int height = 30;
+        final BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_BYTE_GRAY);
+        final WritableRaster raster = image.getRaster();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.setSample(x, y, 0, x < 16 && y < 16 ? x + y : 7);
+            }
+        }
+
+        final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+        writeParam.setSparseTiles(true);
+        writeParam.setNoDataValue(7);
+        assertRoundTrip("testsparse.tif", writeParam, 0, new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                // The first strip or tile only is written
+                final ImageInputStream rawStream = new FileImageInputStream(file);
+                try {
+                    final long[] offsets = getFieldValues(rawStream, 0, tiled
+                            ? BaselineTIFFTagSet.TAG_TILE_OFFSETS
+                            : BaselineTIFFTagSet.TAG_STRIP_OFFSETS);
+                    final long[] byteCounts = getFieldValues(rawStream, 0, tiled
+                            ? BaselineTIFFTagSet.TAG_TILE_BYTE_COUNTS
+                            : BaselineTIFFTagSet.TAG_STRIP_BYTE_COUNTS);
+                    Assert.assertEquals(tiled ? 6 : 2, offsets.length);
+                    Assert.assertTrue(offsets[0] > 0 && byteCounts[0] > 0);
+                    for (int i = 1; i < offsets.length; i++) {
+                        Assert.assertEquals(0, offsets[i]);
+                        Assert.assertEquals(0, byteCounts[i]);
+                    }
+                } finally {
+                    rawStream.close();
+                }
+                Assert.assertEquals("7", ((TIFFImageMetadata) reader.getImageMetadata(0))
+                        .getTIFFField(GeoTIFFTagSet.TAG_GDAL_NODATA).getAsString(0));
+
+                // Missing strips or tiles are filled with the requested value
+                final TIFFImageReadParam readParam = new TIFFImageReadParam();
+                readParam.setNoDataValue(Double.valueOf(3));
+                final Raster read = reader.read(0, readParam).getRaster();
+                Assert.assertEquals(2, read.getSample(1, 1, 0));
+                Assert.assertEquals(tiled ? 3 : 7, read.getSample(20, 1, 0));
+                Assert.assertEquals(3, read.getSample(39, 29, 0));
+            }
+        }, image);
+    }
+
+    @Test
+    public void writeFax() throws IOException {
+        final BufferedImage image = createBilevelImage(517, 203);
+        final String[] compressions = new String[] {"CCITT RLE", "CCITT T.4", "CCITT T.6"};
+        final int[] compressionValues = new int[] {BaselineTIFFTagSet.COMPRESSION_CCITT_RLE,
+                BaselineTIFFTagSet.COMPRESSION_CCITT_T_4, BaselineTIFFTagSet.COMPRESSION_CCITT_T_6};
+
+        for (int i = 0; i < compressions.length; i++) {
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionType(compressions[i]);
+            final int compression = compressionValues[i];
+            assertRoundTrip("testfax.tif", writeParam, 0, new RoundTripCheck() {
+
+                public void check(RenderedImage[] sources, boolean tiled, File file,
+                        TIFFImageReader reader) throws IOException {
+                    Assert.assertEquals(compression,
+                            ((TIFFImageMetadata) reader.getImageMetadata(0)).getTIFFField(
+                                    BaselineTIFFTagSet.TAG_COMPRESSION).getAsInt(0));
+
+                    // The table driven decoder matches the generic one
+                    final TIFFImageReadParam genericParam = new TIFFImageReadParam();
+                    genericParam.setTIFFDecompressor(new TIFFFaxDecompressor());
+                    final Raster generic = reader.read(0, genericParam).getRaster();
+                    final TIFFImageReadParam fastParam = new TIFFImageReadParam();
+                    fastParam.setTIFFDecompressor(new TIFFFastFaxDecompressor());
+                    final Raster fast = reader.read(0, fastParam).getRaster();
+                    for (int y = 0; y < generic.getHeight(); y++) {
+                        for (int x = 0; x < generic.getWidth(); x++) {
+                            Assert.assertEquals(generic.getSample(x, y, 0),
+                                    fast.getSample(x, y, 0));
+                        }
+                    }
+                }
+            }, image);
+        }
+    }
+
+    @Test
+    public void writeLZW() throws IOException {
+        final File inputFile = TestData.file(this, "test.tif");
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        reader.setInput(new FileImageInputStream(inputFile));
+        final BufferedImage image = reader.read(0);
+        reader.dispose();
+
+        final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParam.setCompressionType("LZW");
+        assertRoundTrip("testlzw.tif", writeParam, 0, new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                Assert.assertEquals(BaselineTIFFTagSet.COMPRESSION_LZW,
+                        ((TIFFImageMetadata) reader.getImageMetadata(0)).getTIFFField(
+                                BaselineTIFFTagSet.TAG_COMPRESSION).getAsInt(0));
+            }
+        }, image);
+
+        // Segments large enough to fill up the code table, with and without
+        // horizontal differencing, encoded twice by the same compressor
+        final int width = 300;
+        final int height = 200;
+        final byte[] data = createPixelData(width, height, 3);
+        final int[] predictors = new int[] {BaselineTIFFTagSet.PREDICTOR_NONE,
+                BaselineTIFFTagSet.PREDICTOR_HORIZONTAL_DIFFERENCING};
+        for (int i = 0; i < predictors.length; i++) {
+            final TIFFLZWCompressor compressor = new TIFFLZWCompressor(predictors[i]);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ImageOutputStream outputStream = new MemoryCacheImageOutputStream(bytes);
+            compressor.setStream(outputStream);
+            final int first = compressor.encode(data, 0, width, height,
+                    new int[] {8, 8, 8}, width * 3);
+            compressor.encode(data, 0, width, height, new int[] {8, 8, 8}, width * 3);
+            outputStream.close();
+            final byte[] encoded = bytes.toByteArray();
+
+            final TIFFLZWDecompressor decompressor = new TIFFLZWDecompressor(predictors[i]);
+            decompressor.setSrcWidth(width);
+            decompressor.setSrcHeight(height);
+            decompressor.setSamplesPerPixel(3);
+            final byte[] decoded = new byte[data.length];
+            decompressor.decode(encoded, 0, decoded, 0);
+            Assert.assertArrayEquals(data, decoded);
+            Arrays.fill(decoded, (byte) 0);
+            decompressor.decode(Arrays.copyOfRange(encoded, first, encoded.length), 0, decoded, 0);
+            Assert.assertArrayEquals(data, decoded);
+        }
+    }
+
+    @Test
+    public void writeTurboJPEG() throws IOException {
+        // smooth content, so that the JPEG error stays small
+        final int width = 100;
+        final int height = 70;
+        final BufferedImage rgb = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        final BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rgb.getRaster().setPixel(x, y, new int[] {2 * x, 3 * y, x + y});
+                gray.getRaster().setSample(x, y, 0, x + 2 * y);
+            }
+        }
+
+        final RoundTripCheck check = new RoundTripCheck() {
+
+            public void check(RenderedImage[] sources, boolean tiled, File file,
+                    TIFFImageReader reader) throws IOException {
+                final TIFFImageMetadata metadata = (TIFFImageMetadata) reader.getImageMetadata(0);
+                Assert.assertEquals(BaselineTIFFTagSet.COMPRESSION_JPEG,
+                        metadata.getTIFFField(BaselineTIFFTagSet.TAG_COMPRESSION).getAsInt(0));
+                if (TIFFTurboJPEGCompressor.isAvailable()) {
+                    // Tables are shared by all of the strips or tiles
+                    Assert.assertNotNull(metadata.getTIFFField(BaselineTIFFTagSet.TAG_JPEG_TABLES));
+                }
+            }
+        };
+        for (BufferedImage image : new BufferedImage[] {rgb, gray}) {
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionType("JPEG");
+            writeParam.setCompressionQuality(0.9f);
+            writeParam.setTurboJPEG(true);
+            assertRoundTrip("testturbojpeg.tif", writeParam, 4, check, image);
+        }
+    }
+
+    /**
+     * Checks performed by {@link TIFFWriteTest#assertRoundTrip} on a written
+     * file, besides comparing its samples with the source ones.
+     */
+    private interface RoundTripCheck {
+
+        /**
+         * @param sources the written images.
+         * @param tiled whether the images have been written as tiles or strips.
+         * @param file the written file.
+         * @param reader a reader of the written file.
+         */
+        void check(RenderedImage[] sources, boolean tiled, File file, TIFFImageReader reader)
+                throws IOException;
+    }
+
+    /**
+     * Writes the provided images with the provided parameters as strips, the
+     * last one being partial, and as tiles smaller than the images, in both
+     * byte orders, reading them back to compare their samples with the source
+     * ones, exactly or within the provided mean error. Unless they already
+     * are, the images are also written as single band {@link BufferedImage}s
+     * made of their first band.
+     *
+     * @param fileName the name of the temporary file.
+     * @param writeParam the write parameters, whose tiling is overridden.
+     * @param maxMeanError the allowed mean error of a sample, 0 for a
+     *        lossless compression.
+     * @param check additional checks on the written file, may be
+     *        <code>null</code>.
+     * @param images the images to write, as a sequence if more than one.
+     */
+    private void assertRoundTrip(String fileName, TIFFImageWriteParam writeParam,
+            double maxMeanError, RoundTripCheck check, RenderedImage... images)
+            throws IOException {
+        final File file = TestData.temp(this, fileName, true);
+        final RenderedImage[] singleBand = new RenderedImage[images.length];
+        boolean sameImages = true;
+        for (int i = 0; i < images.length; i++) {
+            if (images[i] instanceof BufferedImage
+                    && images[i].getSampleModel().getNumBands() == 1) {
+                singleBand[i] = images[i];
+            } else {
+                singleBand[i] = createSingleBandImage(images[i]);
+                sameImages = false;
+            }
+        }
+        final RenderedImage[][] sources = sameImages ? new RenderedImage[][] { images }
+                : new RenderedImage[][] { images, singleBand };
+
+        for (int s = 0; s < sources.length; s++) {
+            for (int tiled = 0; tiled < 2; tiled++) {
+                for (int order = 0; order < 2; order++) {
+                    final ByteOrder byteOrder = order == 0 ? ByteOrder.BIG_ENDIAN
+                            : ByteOrder.LITTLE_ENDIAN;
+                    write(file, writeParam, tiled == 1, byteOrder, sources[s]);
+
+                    final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                            .createReaderInstance();
+                    final FileImageInputStream inputStream = new FileImageInputStream(file);
+                    try {
+                        Assert.assertEquals(order == 0 ? 0x4d4d : 0x4949,
+                                inputStream.readUnsignedShort());
+                        inputStream.seek(0);
+                        reader.setInput(inputStream);
+
+                        // Layout of the full resolution image
+                        final TIFFImageMetadata metadata =
+                                (TIFFImageMetadata) reader.getImageMetadata(0);
+                        final int width = reader.getWidth(0);
+                        final int height = reader.getHeight(0);
+                        if (tiled == 1) {
+                            Assert.assertTrue(reader.isImageTiled(0));
+                            Assert.assertTrue(reader.getTileWidth(0) < width
+                                    || reader.getTileHeight(0) < height);
+                        } else {
+                            Assert.assertFalse(reader.isImageTiled(0));
+                            final int rowsPerStrip = metadata.getTIFFField(
+                                    BaselineTIFFTagSet.TAG_ROWS_PER_STRIP).getAsInt(0);
+                            Assert.assertTrue(height % rowsPerStrip != 0);
+                        }
+
+                        for (int i = 0; i < sources[s].length; i++) {
+                            assertSamples(sources[s][i], writeParam, reader, i, null,
+                                    maxMeanError);
+                            // through a source region and subsampling
+                            final int w = reader.getWidth(i);
+                            final int h = reader.getHeight(i);
+                            final ImageReadParam readParam = new ImageReadParam();
+                            readParam.setSourceRegion(new Rectangle(w / 4, h / 5,
+                                    w - w / 4 - w / 6, h - h / 5 - h / 7));
+                            readParam.setSourceSubsampling(3, 2, 1, 1);
+                            assertSamples(sources[s][i], writeParam, reader, i, readParam,
+                                    maxMeanError);
+                        }
+
+                        if (check != null) {
+                            check.check(sources[s], tiled == 1, file, reader);
+                        }
+                    } finally {
+                        inputStream.close();
+                        reader.dispose();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the provided images, as strips of 16 rows, a multiple of the
+     * JPEG MCU height, or as 16x16 tiles.
+     */
+    private static void write(File file, TIFFImageWriteParam writeParam, boolean tiled,
+            ByteOrder byteOrder, RenderedImage[] images) throws IOException {
+        if (tiled) {
+            writeParam.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setTiling(16, 16, 0, 0);
+        } else {
+            writeParam.setTilingMode(ImageWriteParam.MODE_DISABLED);
+        }
+        final TIFFStreamMetadata streamMetadata = new TIFFStreamMetadata();
+        streamMetadata.byteOrder = byteOrder;
+
+        final TIFFImageWriter writer = (TIFFImageWriter) new TIFFImageWriterSpi()
+                .createWriterInstance();
+        final FileImageOutputStream outputStream = new FileImageOutputStream(file);
+        try {
+            writer.setOutput(outputStream);
+            final IIOImage[] iioImages = new IIOImage[images.length];
+            for (int i = 0; i < images.length; i++) {
+                TIFFImageMetadata metadata = null;
+                if (!tiled) {
+                    metadata = (TIFFImageMetadata) writer.getDefaultImageMetadata(
+                            new ImageTypeSpecifier(images[i]), writeParam);
+                    metadata.getRootIFD().addTIFFField(new TIFFField(
+                            BaselineTIFFTagSet.getInstance().getTag(
+                                    BaselineTIFFTagSet.TAG_ROWS_PER_STRIP), 16));
+                }
+                iioImages[i] = new IIOImage(images[i], null, metadata);
+            }
+            if (images.length == 1) {
+                writer.write(streamMetadata, iioImages[0], writeParam);
+            } else {
+                writer.prepareWriteSequence(streamMetadata);
+                for (int i = 0; i < images.length; i++) {
+                    writer.writeToSequence(iioImages[i], writeParam);
+                }
+                writer.endWriteSequence();
+            }
+        } finally {
+            outputStream.close();
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Compares the samples of the requested image, read with the provided
+     * parameters, with the ones of the source image it has been written from.
+     */
+    private static void assertSamples(RenderedImage source, ImageWriteParam writeParam,
+            TIFFImageReader reader, int imageIndex, ImageReadParam readParam,
+            double maxMeanError) throws IOException {
+        final Raster expected = source.getData();
+        final Raster actual = reader.read(imageIndex, readParam).getRaster();
+        final int numBands = expected.getNumBands();
+        Assert.assertEquals(numBands, actual.getNumBands());
+        Assert.assertEquals(expected.getDataBuffer().getDataType(),
+                actual.getDataBuffer().getDataType());
+
+        // Source pixel of the first written pixel, and distance between two
+        final Rectangle writeRegion = writeParam.getSourceRegion() != null
+                ? writeParam.getSourceRegion() : expected.getBounds();
+        final int writeX = writeRegion.x + writeParam.getSubsamplingXOffset();
+        final int writeY = writeRegion.y + writeParam.getSubsamplingYOffset();
+        final int writePeriodX = writeParam.getSourceXSubsampling();
+        final int writePeriodY = writeParam.getSourceYSubsampling();
+        // Written pixel of the first read pixel, and distance between two
+        int readX = 0;
+        int readY = 0;
+        int readPeriodX = 1;
+        int readPeriodY = 1;
+        int readWidth = reader.getWidth(imageIndex);
+        int readHeight = reader.getHeight(imageIndex);
+        if (readParam != null) {
+            final Rectangle readRegion = readParam.getSourceRegion();
+            readX = readRegion.x + readParam.getSubsamplingXOffset();
+            readY = readRegion.y + readParam.getSubsamplingYOffset();
+            readPeriodX = readParam.getSourceXSubsampling();
+            readPeriodY = readParam.getSourceYSubsampling();
+            readWidth = (readRegion.x + readRegion.width - readX + readPeriodX - 1) / readPeriodX;
+            readHeight = (readRegion.y + readRegion.height - readY + readPeriodY - 1)
+                    / readPeriodY;
+        }
+        Assert.assertEquals(readWidth, actual.getWidth());
+        Assert.assertEquals(readHeight, actual.getHeight());
+
+        double error = 0;
+        for (int y = 0; y < readHeight; y++) {
+            final int sourceY = writeY + (readY + y * readPeriodY) * writePeriodY;
+            for (int x = 0; x < readWidth; x++) {
+                final int sourceX = writeX + (readX + x * readPeriodX) * writePeriodX;
+                for (int b = 0; b < numBands; b++) {
+                    final double value = expected.getSampleDouble(sourceX, sourceY, b);
+                    if (maxMeanError == 0) {
+                        Assert.assertEquals(value, actual.getSampleDouble(x, y, b), 0d);
+                    } else {
+                        error += Math.abs(value - actual.getSampleDouble(x, y, b));
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(error <= maxMeanError * readWidth * readHeight * numBands);
+    }
+
+    /**
+     * Creates a single band {@link BufferedImage} holding the first band of
+     * the provided image.
+     */
+    private static BufferedImage createSingleBandImage(RenderedImage image) {
+        final Raster source = image.getData();
+        final int dataType = source.getDataBuffer().getDataType();
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final WritableRaster raster = Raster.createWritableRaster(
+                new PixelInterleavedSampleModel(dataType, width, height, 1, width,
+                        new int[] {0}), null);
+        raster.setSamples(0, 0, width, height, 0, source.getSamples(source.getMinX(),
+                source.getMinY(), width, height, 0, (double[]) null));
+        final ColorSpace colorSpace = dataType == DataBuffer.TYPE_BYTE
+                || dataType == DataBuffer.TYPE_USHORT ? ColorSpace.getInstance(ColorSpace.CS_GRAY)
+                : new BogusColorSpace(1);
+        final ColorModel cm = new ComponentColorModel(colorSpace, false, false,
+                Transparency.OPAQUE, dataType);
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    /**
+     * Creates interleaved 8 bit samples made of gradients, flat areas and
+     * noise.
+     */
+    static byte[] createPixelData(int width, int height, int samplesPerPixel) {
+        final byte[] data = new byte[width * height * samplesPerPixel];
+        final Random random = new Random(42);
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < samplesPerPixel; b++, i++) {
+                    if (y < height / 3) {
+                        data[i] = (byte) (x + y * b);
+                    } else if (y < 2 * height / 3) {
+                        data[i] = (byte) (x / 50 * 20 + b);
+                    } else {
+                        data[i] = (byte) random.nextInt(256);
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Creates a bilevel image made of scattered rectangles and noise, so that
+     * runs of any length and all of the 2D coding modes are exercised.
+     */
+    static BufferedImage createBilevelImage(int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_BYTE_BINARY);
+        final WritableRaster raster = image.getRaster();
+        final Random random = new Random(42);
+        for (int i = 0; i < width * height / 2000; i++) {
+            final int x = random.nextInt(width);
+            final int y = random.nextInt(height);
+            final int w = Math.min(width - x, 1 + random.nextInt(width / 2));
+            final int h = Math.min(height - y, 1 + random.nextInt(40));
+            for (int yy = y; yy < y + h; yy++) {
+                for (int xx = x; xx < x + w; xx++) {
+                    raster.setSample(xx, yy, 0, 1 - raster.getSample(xx, yy, 0));
+                }
+            }
+        }
+        for (int i = 0; i < width * height / 50; i++) {
+            final int x = random.nextInt(width);
+            final int y = random.nextInt(height);
+            raster.setSample(x, y, 0, 1 - raster.getSample(x, y, 0));
+        }
+        return image;
+    }
+
+    /**
+     * Reads the values of a LONG field of the requested image straight from
+     * the IFDs of a classic TIFF.
+     */
+    private static long[] getFieldValues(ImageInputStream stream, int imageIndex, int fieldTag)
+            throws IOException {
+        stream.seek(0);
+        stream.setByteOrder(stream.readUnsignedShort() == 0x4d4d ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN);
+        stream.skipBytes(2);
+        long ifd = stream.readUnsignedInt();
+        for (int i = 0; i < imageIndex; i++) {
+            stream.seek(ifd);
+            stream.skipBytes(12 * stream.readUnsignedShort());
+            ifd = stream.readUnsignedInt();
+        }
+        stream.seek(ifd);
+        final int numEntries = stream.readUnsignedShort();
+        for (int i = 0; i < numEntries; i++) {
+            stream.seek(ifd + 2 + 12 * i);
+            final int tag = stream.readUnsignedShort();
+            stream.skipBytes(2);
+            final int count = (int) stream.readUnsignedInt();
+            if (tag == fieldTag) {
+                if (count > 1) {
+                    stream.seek(stream.readUnsignedInt());
+                }
+                final long[] offsets = new long[count];
+                for (int j = 0; j < count; j++) {
+                    offsets[j] = stream.readUnsignedInt();
+                }
+                return offsets;
+            }
+        }
+        return null;
+    }
 }
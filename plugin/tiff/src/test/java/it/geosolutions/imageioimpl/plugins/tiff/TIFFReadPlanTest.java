@@ -0,0 +1,250 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing the coalescing of the reads of adjacent strips or tiles.
+ */
+public class TIFFReadPlanTest extends Assert {
+
+    private static final int MAX_LENGTH = 1024;
+
+    @Test
+    public void mergeAdjacentAndNearTiles() throws IOException {
+        final File file = createFile(200);
+        final ImageInputStream source = new FileImageInputStream(file);
+        try {
+            // Two adjacent tiles, then a third one 6 bytes further
+            final long[] offsets = { 10, 30, 56 };
+            final long[] byteCounts = { 20, 20, 30 };
+            TIFFReadPlan plan = new TIFFReadPlan(source, offsets, byteCounts, 3, 8, MAX_LENGTH);
+            assertEquals(1, plan.getNumRanges());
+            assertEquals(2, plan.getSavedOperations());
+            for (int i = 0; i < offsets.length; i++) {
+                final ImageInputStream stream = plan.getStream(offsets[i], byteCounts[i]);
+                assertNotSame(source, stream);
+                assertBytes(stream, offsets[i], (int) byteCounts[i]);
+            }
+            // Reads past the range are served by the source stream
+            final ImageInputStream stream = plan.getStream(offsets[2], byteCounts[2]);
+            assertBytes(stream, 80, 40);
+            plan.dispose();
+
+            // A gap larger than the allowed one splits the range
+            plan = new TIFFReadPlan(source, offsets, byteCounts, 3, 5, MAX_LENGTH);
+            assertEquals(1, plan.getNumRanges());
+            assertEquals(1, plan.getSavedOperations());
+            assertNotSame(source, plan.getStream(offsets[1], byteCounts[1]));
+            assertSame(source, plan.getStream(offsets[2], byteCounts[2]));
+            plan.dispose();
+        } finally {
+            source.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void respectMaxLength() throws IOException {
+        final File file = createFile(200);
+        final ImageInputStream source = new FileImageInputStream(file);
+        try {
+            final long[] offsets = { 0x10, 0x30, 0x50, 0x70, 0x90 };
+            final long[] byteCounts = { 32, 32, 32, 32, 64 };
+            TIFFReadPlan plan = new TIFFReadPlan(source, offsets, byteCounts, 5, 0, 64);
+            // Ranges of 2 tiles, the last tile alone exceeding the maximum length
+            assertEquals(2, plan.getNumRanges());
+            assertEquals(2, plan.getSavedOperations());
+            for (int i = 0; i < 4; i++) {
+                final ImageInputStream stream = plan.getStream(offsets[i], byteCounts[i]);
+                assertNotSame(source, stream);
+                assertBytes(stream, offsets[i], (int) byteCounts[i]);
+            }
+            assertSame(source, plan.getStream(offsets[4], byteCounts[4]));
+            plan.dispose();
+
+            // No tile fits
+            plan = new TIFFReadPlan(source, offsets, byteCounts, 5, 0, 16);
+            assertEquals(0, plan.getNumRanges());
+            assertEquals(0, plan.getSavedOperations());
+            assertSame(source, plan.getStream(offsets[0], byteCounts[0]));
+            plan.dispose();
+        } finally {
+            source.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void skipMissingTiles() throws IOException {
+        final File file = createFile(200);
+        final ImageInputStream source = new FileImageInputStream(file);
+        try {
+            // Sparse tiles have no offset or no byte count and are not read
+            final long[] offsets = { 10, 20, 0, 30, 40, 50 };
+            final long[] byteCounts = { 10, 10, 10, 10, 0, 10 };
+            final TIFFReadPlan plan = new TIFFReadPlan(source, offsets, byteCounts, 6, 0,
+                    MAX_LENGTH);
+            assertEquals(1, plan.getNumRanges());
+            assertEquals(1, plan.getSavedOperations());
+            assertNotSame(source, plan.getStream(10, 10));
+            assertBytes(plan.getStream(20, 10), 20, 10);
+            assertSame(source, plan.getStream(30, 10));
+            assertSame(source, plan.getStream(50, 10));
+            plan.dispose();
+        } finally {
+            source.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void fallBackOnTruncatedStream() throws IOException {
+        final byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        // The length of the stream being unknown, the range cannot be read fully
+        final ImageInputStream source = new MemoryCacheImageInputStream(
+                new ByteArrayInputStream(data));
+        try {
+            final long[] offsets = { 60, 80 };
+            final long[] byteCounts = { 20, 40 };
+            final TIFFReadPlan plan = new TIFFReadPlan(source, offsets, byteCounts, 2, 0,
+                    MAX_LENGTH);
+            assertEquals(1, plan.getNumRanges());
+            assertSame(source, plan.getStream(offsets[0], byteCounts[0]));
+            assertSame(source, plan.getStream(offsets[1], byteCounts[1]));
+            plan.dispose();
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void readCoalesced() throws IOException {
+        final BufferedImage image = new BufferedImage(100, 70, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x * 0x020301 + y * 0x030102);
+            }
+        }
+        final File file = File.createTempFile("coalesce", ".tif");
+        try {
+            final TIFFImageWriter writer = (TIFFImageWriter) new TIFFImageWriterSpi()
+                    .createWriterInstance();
+            final TIFFImageWriteParam writeParam = new TIFFImageWriteParam(Locale.getDefault());
+            writeParam.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setTiling(16, 16, 0, 0);
+            final FileImageOutputStream outputStream = new FileImageOutputStream(file);
+            writer.setOutput(outputStream);
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+            outputStream.close();
+            writer.dispose();
+
+            final ImageReadParam param = new ImageReadParam();
+            param.setSourceRegion(new Rectangle(5, 7, 80, 50));
+            param.setSourceSubsampling(3, 2, 1, 1);
+
+            // 4 rows of 6 uncompressed tiles of 768 bytes are touched
+            final Raster expected = read(file, param, false, MAX_LENGTH, 0);
+            // One range per row of tiles
+            compare(expected, read(file, param, true, 768 * 6, 20));
+            // Ranges of 2 tiles
+            compare(expected, read(file, param, true, 768 * 2, 12));
+            // No tile fits, direct reads
+            compare(expected, read(file, param, true, 16, 0));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Raster read(File file, ImageReadParam param, boolean coalesce,
+            int maxLength, int savedOperations) throws IOException {
+        final TIFFImageReader reader = (TIFFImageReader) new TIFFImageReaderSpi()
+                .createReaderInstance();
+        final FileImageInputStream stream = new FileImageInputStream(file);
+        try {
+            reader.coalesceReads = coalesce;
+            reader.coalesceMaxGap = 0;
+            reader.coalesceMaxLength = maxLength;
+            reader.setInput(stream);
+            final BufferedImage image = reader.read(0, param);
+            assertEquals(savedOperations, reader.getSavedReadOperations());
+            return image.getRaster();
+        } finally {
+            stream.close();
+            reader.dispose();
+        }
+    }
+
+    private static void compare(Raster expected, Raster actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        final int[] expectedPixels = expected.getPixels(0, 0, expected.getWidth(),
+                expected.getHeight(), (int[]) null);
+        final int[] actualPixels = actual.getPixels(0, 0, actual.getWidth(),
+                actual.getHeight(), (int[]) null);
+        assertArrayEquals(expectedPixels, actualPixels);
+    }
+
+    private static File createFile(int length) throws IOException {
+        final File file = File.createTempFile("plan", ".bin");
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void assertBytes(ImageInputStream stream, long offset, int length)
+            throws IOException {
+        final byte[] data = new byte[length];
+        stream.seek(offset);
+        stream.readFully(data);
+        for (int i = 0; i < length; i++) {
+            assertEquals((byte) (offset + i), data[i]);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package it.geosolutions.imageioimpl.plugins.tiff;
+
+import it.geosolutions.imageio.plugins.tiff.TIFFTag;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing concurrent reads of a stream shared by {@link TIFFStreamView}s and
+ * lazily loaded fields.
+ */
+public class TIFFStreamViewTest extends Assert {
+
+    private static final int LENGTH = 64 * 1024;
+
+    private static final int ITERATIONS = 20000;
+
+    @Test
+    public void readConcurrently() throws Exception {
+        // Big endian ints holding their own index
+        final File file = File.createTempFile("view", ".bin");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final byte[] data = new byte[LENGTH];
+            for (int i = 0; i < LENGTH / 4; i++) {
+                data[4 * i + 2] = (byte) (i >>> 8);
+                data[4 * i + 3] = (byte) i;
+            }
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        final ImageInputStream source = new FileImageInputStream(file);
+        try {
+            source.seek(0);
+            final TIFFLazyData lazyData = new TIFFLazyData(source, TIFFTag.TIFF_LONG,
+                    LENGTH / 4);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                final int seed = t;
+                threads[t] = new Thread() {
+                    public void run() {
+                        try {
+                            final TIFFStreamView view = new TIFFStreamView(source);
+                            for (int i = 0; i < ITERATIONS && failure.get() == null; i++) {
+                                final int index = (i * 7919 + seed * 104729) % (LENGTH / 4);
+                                if (seed % 2 == 0) {
+                                    view.seek(4L * index);
+                                    assertEquals(index, view.readInt());
+                                } else {
+                                    assertEquals(index, lazyData.getAsLong(index));
+                                }
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (int t = 0; t < threads.length; t++) {
+                threads[t].join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+        } finally {
+            source.close();
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package it.geosolutions.imageio.plugins.turbojpeg;
+
+import it.geosolutions.imageio.utilities.BufferPool;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.libjpegturbo.turbojpeg.TJ;
+import org.libjpegturbo.turbojpeg.TJCompressor;
+import org.libjpegturbo.turbojpeg.TJDecompressor;
+
+/**
+ * Thread safe pool of TurboJPEG compressors, decompressors and byte
+ * buffers, sparing the native handle setup and the allocation of large
+ * output arrays when many small images are encoded or decoded.
+ * <p>
+ * Borrowed objects are given back through the <code>release</code>
+ * methods; objects which are not released are simply garbage collected.
+ * At most {@link #getMaxHandles()} idle compressors and as many idle
+ * decompressors are kept, the others being closed, and at most
+ * {@link #getMaxBuffers()} idle buffers no larger than
+ * {@link #getMaxBufferSize()} bytes.
+ * <p>
+ * The shared instance returned by {@link #getInstance()} takes its limits
+ * from the <code>it.geosolutions.imageio.plugins.turbojpeg.pool.maxHandles</code>,
+ * <code>it.geosolutions.imageio.plugins.turbojpeg.pool.maxBuffers</code> and
+ * <code>it.geosolutions.imageio.plugins.turbojpeg.pool.maxBufferSize</code> system
+ * properties and is registered in the platform MBean server as
+ * <code>it.geosolutions.imageio.plugins.turbojpeg:type=TJPool</code>.
+ */
+public final class TJPool implements TJPoolMBean {
+
+    private static final String OBJECT_NAME =
+        "it.geosolutions.imageio.plugins.turbojpeg:type=TJPool";
+
+    /** Stands in for the source image of an idle compressor. */
+    private static final byte[] NO_IMAGE = new byte[1];
+
+    private static final TJPool INSTANCE = new TJPool(
+        Integer.getInteger("it.geosolutions.imageio.plugins.turbojpeg.pool.maxHandles",
+            Runtime.getRuntime().availableProcessors() * 2),
+        Integer.getInteger("it.geosolutions.imageio.plugins.turbojpeg.pool.maxBuffers",
+            Runtime.getRuntime().availableProcessors() * 2),
+        Integer.getInteger("it.geosolutions.imageio.plugins.turbojpeg.pool.maxBufferSize",
+            16 * 1024 * 1024));
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                new ObjectName(OBJECT_NAME));
+        } catch (Throwable t) {
+            // JMX is not available or the pool is already registered by another
+            // class loader, the pool works anyway
+        }
+    }
+
+    private final List<TJCompressor> compressors = new ArrayList<TJCompressor>();
+
+    private final List<TJDecompressor> decompressors =
+        new ArrayList<TJDecompressor>();
+
+    private final BufferPool<byte[]> buffers = BufferPool.newByteArrayPool(0, 0);
+
+    private volatile int maxHandles;
+
+    private final AtomicLong handlesCreated = new AtomicLong();
+
+    private final AtomicLong handlesReused = new AtomicLong();
+
+    private final AtomicLong handlesDestroyed = new AtomicLong();
+
+    private final AtomicLong buffersAllocated = new AtomicLong();
+
+    private final AtomicLong buffersReused = new AtomicLong();
+
+    private final AtomicLong buffersDiscarded = new AtomicLong();
+
+    /**
+     * Returns the shared pool.
+     */
+    public static TJPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a pool which is not registered in the MBean server.
+     *
+     * @param maxHandles maximum number of idle compressors, and of idle
+     * decompressors, kept
+     * @param maxBuffers maximum number of idle buffers kept
+     * @param maxBufferSize size (in bytes) above which released buffers are
+     * not kept
+     */
+    public TJPool(int maxHandles, int maxBuffers, int maxBufferSize) {
+        setMaxHandles(maxHandles);
+        setMaxBuffers(maxBuffers);
+        setMaxBufferSize(maxBufferSize);
+    }
+
+    /**
+     * Borrow a compressor, whose source image, subsampling and quality have
+     * to be set before compressing.
+     */
+    public TJCompressor getCompressor() throws Exception {
+        synchronized (compressors) {
+            if (!compressors.isEmpty()) {
+                handlesReused.incrementAndGet();
+                return compressors.remove(compressors.size() - 1);
+            }
+        }
+        TJCompressor compressor = new TJCompressor();
+        handlesCreated.incrementAndGet();
+        return compressor;
+    }
+
+    /**
+     * Give back a compressor obtained from {@link #getCompressor()}.  It must
+     * not be used afterwards.
+     */
+    public void release(TJCompressor compressor) {
+        if (compressor == null) return;
+        try {
+            // drop the reference to the last source image
+            compressor.setSourceImage(NO_IMAGE, 1, 0, 1, TJ.PF_GRAY);
+        } catch (Exception e) {
+            close(compressor);
+            return;
+        }
+        synchronized (compressors) {
+            if (compressors.size() < maxHandles) {
+                compressors.add(compressor);
+                return;
+            }
+        }
+        close(compressor);
+    }
+
+    /**
+     * Borrow a decompressor, whose JPEG image has to be set before
+     * decompressing.
+     */
+    public TJDecompressor getDecompressor() throws Exception {
+        synchronized (decompressors) {
+            if (!decompressors.isEmpty()) {
+                handlesReused.incrementAndGet();
+                return decompressors.remove(decompressors.size() - 1);
+            }
+        }
+        TJDecompressor decompressor = new PooledDecompressor();
+        handlesCreated.incrementAndGet();
+        return decompressor;
+    }
+
+    /**
+     * Give back a decompressor obtained from {@link #getDecompressor()}.  It
+     * must not be used afterwards.
+     */
+    public void release(TJDecompressor decompressor) {
+        if (decompressor == null) return;
+        // not one of ours, it would keep its JPEG image while idle
+        if (!(decompressor instanceof PooledDecompressor)) return;
+        ((PooledDecompressor) decompressor).clearJPEGImage();
+        synchronized (decompressors) {
+            if (decompressors.size() < maxHandles) {
+                decompressors.add(decompressor);
+                return;
+            }
+        }
+        close(decompressor);
+    }
+
+    /**
+     * Borrow a buffer of at least <code>size</code> bytes, whose content is
+     * undefined.
+     */
+    public byte[] getBuffer(int size) {
+        byte[] buffer = buffers.poll(size);
+        if (buffer != null) {
+            buffersReused.incrementAndGet();
+            return buffer;
+        }
+        buffersAllocated.incrementAndGet();
+        return new byte[size];
+    }
+
+    /**
+     * Give back a buffer obtained from {@link #getBuffer(int)}.  It must not
+     * be used afterwards.
+     */
+    public void release(byte[] buffer) {
+        if (!buffers.offer(buffer))
+            buffersDiscarded.incrementAndGet();
+    }
+
+    public int getMaxHandles() {
+        return maxHandles;
+    }
+
+    public void setMaxHandles(int maxHandles) {
+        if (maxHandles < 0)
+            throw new IllegalArgumentException("maxHandles < 0");
+        this.maxHandles = maxHandles;
+        trim();
+    }
+
+    public int getMaxBuffers() {
+        return buffers.getMaxBuffers();
+    }
+
+    public void setMaxBuffers(int maxBuffers) {
+        buffers.setMaxBuffers(maxBuffers);
+        trim();
+    }
+
+    public int getMaxBufferSize() {
+        return buffers.getMaxBufferSize();
+    }
+
+    public void setMaxBufferSize(int maxBufferSize) {
+        buffers.setMaxBufferSize(maxBufferSize);
+        trim();
+    }
+
+    public int getIdleCompressors() {
+        synchronized (compressors) {
+            return compressors.size();
+        }
+    }
+
+    public int getIdleDecompressors() {
+        synchronized (decompressors) {
+            return decompressors.size();
+        }
+    }
+
+    public int getIdleBuffers() {
+        return buffers.getIdleBuffers();
+    }
+
+    public long getIdleBufferBytes() {
+        return buffers.getIdleCapacity();
+    }
+
+    public long getHandlesCreated() {
+        return handlesCreated.get();
+    }
+
+    public long getHandlesReused() {
+        return handlesReused.get();
+    }
+
+    public long getHandlesDestroyed() {
+        return handlesDestroyed.get();
+    }
+
+    public long getBuffersAllocated() {
+        return buffersAllocated.get();
+    }
+
+    public long getBuffersReused() {
+        return buffersReused.get();
+    }
+
+    public long getBuffersDiscarded() {
+        return buffersDiscarded.get();
+    }
+
+    public void clear() {
+        List<TJCompressor> idleCompressors;
+        synchronized (compressors) {
+            idleCompressors = new ArrayList<TJCompressor>(compressors);
+            compressors.clear();
+        }
+        for (TJCompressor compressor : idleCompressors)
+            close(compressor);
+
+        List<TJDecompressor> idleDecompressors;
+        synchronized (decompressors) {
+            idleDecompressors = new ArrayList<TJDecompressor>(decompressors);
+            decompressors.clear();
+        }
+        for (TJDecompressor decompressor : idleDecompressors)
+            close(decompressor);
+
+        buffersDiscarded.addAndGet(buffers.clear());
+    }
+
+    /**
+     * Drop the idle objects exceeding the current limits.
+     */
+    private void trim() {
+        List<TJCompressor> extraCompressors = new ArrayList<TJCompressor>();
+        synchronized (compressors) {
+            while (compressors.size() > maxHandles)
+                extraCompressors.add(compressors.remove(compressors.size() - 1));
+        }
+        for (TJCompressor compressor : extraCompressors)
+            close(compressor);
+
+        List<TJDecompressor> extraDecompressors = new ArrayList<TJDecompressor>();
+        synchronized (decompressors) {
+            while (decompressors.size() > maxHandles)
+                extraDecompressors.add(decompressors.remove(decompressors.size() - 1));
+        }
+        for (TJDecompressor decompressor : extraDecompressors)
+            close(decompressor);
+
+        buffersDiscarded.addAndGet(buffers.trim());
+    }
+
+    private void close(TJCompressor compressor) {
+        try {
+            compressor.close();
+        } catch (Exception e) {
+            // Nothing else can be done
+        }
+        handlesDestroyed.incrementAndGet();
+    }
+
+    private void close(TJDecompressor decompressor) {
+        try {
+            decompressor.close();
+        } catch (Exception e) {
+            // Nothing else can be done
+        }
+        handlesDestroyed.incrementAndGet();
+    }
+
+    /**
+     * Decompressor able to drop the reference to its JPEG image, so that it
+     * is not retained while idle.
+     */
+    private static final class PooledDecompressor extends TJDecompressor {
+
+        PooledDecompressor() throws Exception {
+            super();
+        }
+
+        void clearJPEGImage() {
+            jpegBuf = null;
+            jpegBufSize = 0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *    ImageI/O-Ext - OpenSource Java Image translation Library
+ *    http://www.geo-solutions.it/
+ *    http://java.net/projects/imageio-ext/
+ *    (C) 2026, GeoSolutions
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    either version 3 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+
+package it.geosolutions.imageio.plugins.turbojpeg;
+
+/**
+ * Management interface of {@link TJPool}, exposing its limits and usage
+ * counters through JMX.
+ */
+public interface TJPoolMBean {
+
+    /**
+     * Maximum number of idle compressors, and of idle decompressors, kept
+     */
+    int getMaxHandles();
+
+    void setMaxHandles(int maxHandles);
+
+    /**
+     * Maximum number of idle buffers kept
+     */
+    int getMaxBuffers();
+
+    void setMaxBuffers(int maxBuffers);
+
+    /**
+     * Size (in bytes) above which released buffers are not kept
+     */
+    int getMaxBufferSize();
+
+    void setMaxBufferSize(int maxBufferSize);
+
+    int getIdleCompressors();
+
+    int getIdleDecompressors();
+
+    int getIdleBuffers();
+
+    /**
+     * Total size (in bytes) of the idle buffers
+     */
+    long getIdleBufferBytes();
+
+    long getHandlesCreated();
+
+    long getHandlesReused();
+
+    long getHandlesDestroyed();
+
+    long getBuffersAllocated();
+
+    long getBuffersReused();
+
+    long getBuffersDiscarded();
+
+    /**
+     * Free all the idle handles and buffers
+     */
+    void clear();
+}
@@ -16,7 +16,9 @@
  */
 package it.geosolutions.imageio.plugins.turbojpeg;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
@@ -35,6 +37,9 @@ import javax.imageio.stream.ImageInputStream;
 
 import org.libjpegturbo.turbojpeg.TJ;
 import org.libjpegturbo.turbojpeg.TJDecompressor;
+import org.libjpegturbo.turbojpeg.TJScalingFactor;
+import org.libjpegturbo.turbojpeg.TJTransform;
+import org.libjpegturbo.turbojpeg.TJTransformer;
 
 /**
  * @author Emanuele Tajariol, GeoSolutions SaS
@@ -125,6 +130,17 @@ public class TurboJpegImageReader extends ImageReader {
         return null;
     }
 
+    /**
+     * Reads the image, honoring the source region and subsampling of the
+     * <code>param</code>.
+     * <p>
+     * Source subsampling is mapped to the largest scaling factor of the
+     * form 1/n supported by TurboJPEG which does not exceed it, so that
+     * most of the reduction happens in the DCT domain, and any residual
+     * subsampling is done on the scaled pixels. A source region smaller
+     * than the image is first cropped losslessly to the enclosing MCU
+     * aligned area, so that only the MCUs intersecting it are decoded.
+     */
     @Override
     public BufferedImage read(int imageIndex, ImageReadParam param) throws IOException {
         checkIndex(imageIndex);
@@ -132,31 +148,138 @@ public class TurboJpegImageReader extends ImageReader {
             throw new IllegalArgumentException("Missing data array");
         }
 
-        BufferedImage bi = new BufferedImage(width, height,
-                       subsamp == TJ.SAMP_GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+        final int imageType = subsamp == TJ.SAMP_GRAY ? BufferedImage.TYPE_BYTE_GRAY
+                : BufferedImage.TYPE_3BYTE_BGR;
+        final Rectangle srcRegion = getSourceRegion(param, width, height);
+        final int xSubsampling = param != null ? param.getSourceXSubsampling() : 1;
+        final int ySubsampling = param != null ? param.getSourceYSubsampling() : 1;
+        final boolean fullImage = srcRegion.x == 0 && srcRegion.y == 0
+                && srcRegion.width == width && srcRegion.height == height;
+        if (fullImage && xSubsampling == 1 && ySubsampling == 1) {
+            BufferedImage bi = new BufferedImage(width, height, imageType);
+            decompress(bi);
+            return bi;
+        }
+
+        final int destWidth = (srcRegion.width + xSubsampling - 1) / xSubsampling;
+        final int destHeight = (srcRegion.height + ySubsampling - 1) / ySubsampling;
+        final BufferedImage bi = new BufferedImage(destWidth, destHeight, imageType);
+
+        // Using local variables to avoid changing the internal state
+        final TJPool pool = TJPool.getInstance();
+        TJTransformer transformer = null;
+        TJDecompressor decompressor = null;
+        TJDecompressor pooledDecompressor = null;
+        byte[] scaled = null;
+        try {
+            final int scale = getScaleDenominator(Math.min(xSubsampling, ySubsampling));
+
+            // Crop to the MCUs intersecting the region
+            int cropX = 0;
+            int cropY = 0;
+            int cropWidth = width;
+            int cropHeight = height;
+            if (!fullImage) {
+                final int mcuWidth = TJ.getMCUWidth(subsamp);
+                final int mcuHeight = TJ.getMCUHeight(subsamp);
+                cropX = srcRegion.x / mcuWidth * mcuWidth;
+                cropY = srcRegion.y / mcuHeight * mcuHeight;
+                cropWidth = srcRegion.x + srcRegion.width - cropX;
+                cropHeight = srcRegion.y + srcRegion.height - cropY;
+                transformer = new TJTransformer(data, data.length);
+                decompressor = transformer.transform(new TJTransform[] { new TJTransform(
+                        cropX, cropY, cropWidth, cropHeight, TJTransform.OP_NONE,
+                        TJTransform.OPT_CROP, null) }, 0)[0];
+            } else {
+                decompressor = pooledDecompressor = pool.getDecompressor();
+                decompressor.setJPEGImage(data, data.length);
+            }
+
+            // Decompress at the reduced scale
+            final int pixelSize = subsamp == TJ.SAMP_GRAY ? 1 : 3;
+            final int scaledWidth = (cropWidth + scale - 1) / scale;
+            final int scaledHeight = (cropHeight + scale - 1) / scale;
+            final int pitch = scaledWidth * pixelSize;
+            scaled = pool.getBuffer(pitch * scaledHeight);
+            decompressor.decompress(scaled, scaledWidth, pitch, scaledHeight,
+                    subsamp == TJ.SAMP_GRAY ? TJ.PF_GRAY : TJ.PF_BGR, flags);
+
+            // Pick the scaled pixels nearest to the subsampled ones
+            final byte[] dest = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+            final int destPitch = destWidth * pixelSize;
+            final int[] columns = new int[destWidth];
+            boolean contiguous = true;
+            for (int i = 0; i < destWidth; i++) {
+                columns[i] = (srcRegion.x + i * xSubsampling - cropX) / scale * pixelSize;
+                contiguous &= columns[i] == columns[0] + i * pixelSize;
+            }
+            for (int j = 0, d = 0; j < destHeight; j++, d += destPitch) {
+                final int row = (srcRegion.y + j * ySubsampling - cropY) / scale * pitch;
+                if (contiguous) {
+                    System.arraycopy(scaled, row + columns[0], dest, d, destPitch);
+                } else {
+                    for (int i = 0, di = d; i < destWidth; i++, di += pixelSize) {
+                        System.arraycopy(scaled, row + columns[i], dest, di, pixelSize);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new IOException("Exception while decompressing:", e);
+        } finally {
+            if (pooledDecompressor != null) {
+                pool.release(pooledDecompressor);
+            } else {
+                close(decompressor);
+            }
+            close(transformer);
+            pool.release(scaled);
+        }
+        return bi;
+    }
 
+    /**
+     * Returns the denominator of the smallest scaling factor of the form
+     * 1/n supported by TurboJPEG with n not greater than
+     * <code>subsampling</code>.
+     */
+    private static int getScaleDenominator(int subsampling) throws Exception {
+        int denominator = 1;
+        for (TJScalingFactor factor : TJ.getScalingFactors()) {
+            if (factor.getNum() == 1 && factor.getDenom() <= subsampling
+                    && factor.getDenom() > denominator) {
+                denominator = factor.getDenom();
+            }
+        }
+        return denominator;
+    }
+
+    private void decompress(BufferedImage bi) throws IOException {
         // Using local variables to avoid changing the internal state
+        final TJPool pool = TJPool.getInstance();
         TJDecompressor decompressor = null;
         try {
-            decompressor = new TJDecompressor(data, data.length);
+            decompressor = pool.getDecompressor();
+            decompressor.setJPEGImage(data, data.length);
             decompressor.decompress(bi, flags);
         } catch (Exception e) {
             throw new IOException("Exception while decompressing:", e);
         } finally {
-            if (decompressor != null) {
-                try {
-                    decompressor.close();
-                    decompressor = null;
-                } catch (Exception ex) {
-                    // Eat exception. There is nothing else we can do
-                    if (LOGGER.isLoggable(Level.FINE)) {
-                        LOGGER.fine("Exception occurred while closing the decompressor: "
-                                + ex.getLocalizedMessage());
-                    }
+            pool.release(decompressor);
+        }
+    }
+
+    private static void close(TJDecompressor decompressor) {
+        if (decompressor != null) {
+            try {
+                decompressor.close();
+            } catch (Exception ex) {
+                // Eat exception. There is nothing else we can do
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Exception occurred while closing the decompressor: "
+                            + ex.getLocalizedMessage());
                 }
             }
         }
-        return bi;
     }
 
     @Override
@@ -197,7 +320,7 @@ public class TurboJpegImageReader extends ImageReader {
                 data = baos.toByteArray();
             }
             flags = EXTERNAL_FLAGS > 0 ? EXTERNAL_FLAGS : flags;
-            decompressor = new TJDecompressor();
+            decompressor = TJPool.getInstance().getDecompressor();
             decompressor.setJPEGImage(data, data.length);
             width = decompressor.getWidth();
             height = decompressor.getHeight();
@@ -207,15 +330,7 @@ public class TurboJpegImageReader extends ImageReader {
             throw new RuntimeException("Error creating jpegturbo decompressor: " + ex.getMessage(),
                     ex);
         } finally {
-
-            if (decompressor != null) {
-                try {
-                    decompressor.close();
-                    decompressor = null;
-                } catch (Exception ex) {
-                    // Eat exception. There is nothing else we can do
-                }
-            }
+            TJPool.getInstance().release(decompressor);
         }
         super.setInput(input, seekForwardOnly, ignoreMetadata);
         // CHECKME: should we mark the position?
@@ -31,7 +31,6 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.imageio.IIOImage;
@@ -183,7 +182,9 @@ public class TurboJpegImageWriter extends ImageWriter
         final int height = srcImage.getHeight();
         final int pitch = pixelsize * width;
         
+        final TJPool pool = TJPool.getInstance();
         TJCompressor compressor = null;
+        byte[] outputImageData = null;
         try
         {
 //            final long jsize = TurboJpegUtilities.bufSize(width, height);
@@ -192,14 +193,14 @@ public class TurboJpegImageWriter extends ImageWriter
             Raster data = srcImage.getData(rect);
             final byte[] inputImageData = ((DataBufferByte) data.getDataBuffer()).getData();
             
-            final byte[] outputImageData;
             try {
-                compressor = new TJCompressor();
+                compressor = pool.getCompressor();
                 compressor.setSourceImage(inputImageData, width, pitch, height, pf);
                 compressor.setJPEGQuality(quality);
                 compressor.setSubsamp(componentSampling);
                 
-                outputImageData = compressor.compress(TJ.FLAG_FASTDCT);                
+                outputImageData = pool.getBuffer(TJ.bufSize(width, height, componentSampling));
+                compressor.compress(outputImageData, TJ.FLAG_FASTDCT);
             } catch (Exception ex) {
                 throw new IOException("Error in turbojpeg comressor: " + ex.getMessage(), ex);
             }            
@@ -219,16 +220,8 @@ public class TurboJpegImageWriter extends ImageWriter
 
         finally
         {
-            if(compressor != null) {
-                try
-                {
-                    compressor.close();
-                }
-                catch (Exception t)
-                {
-                    LOGGER.log(Level.SEVERE, t.getLocalizedMessage(), t);
-                }
-            }
+            pool.release(compressor);
+            pool.release(outputImageData);
         }
     }
 
@@ -2,14 +2,18 @@ package it.geosolutions.imageio.plugins.turbojpeg;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 import it.geosolutions.imageio.utilities.ImageIOUtilities;
 import it.geosolutions.resources.TestData;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 import java.io.File;
 import java.util.logging.Logger;
 
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.FileImageInputStream;
 
@@ -116,4 +120,86 @@ public class JPEGReaderTest {
             }
         }
     }
+
+    @Test
+    public void readRegionSubsampled() throws Exception {
+        final File file = TestData.file(this, FILENAME);
+        if (!TurboJpegUtilities.isTurboJpegAvailable()) {
+            LOGGER.warning("Unable to find native libs. Tests are skipped");
+            assumeTrue(false);
+            return;
+        }
+
+        final ImageReader reader = new TurboJpegImageReaderSpi().createReaderInstance();
+        final FileImageInputStream fis = new FileImageInputStream(file);
+        try {
+            reader.setInput(fis);
+            final Raster full = reader.read(0, null).getRaster();
+
+            final Rectangle region = new Rectangle(37, 21, 150, 70);
+            final int[][] subsamplings = new int[][] { {1, 1}, {2, 2}, {4, 3}, {8, 8}, {3, 5} };
+            for (int[] subsampling : subsamplings) {
+                final ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(subsampling[0], subsampling[1], 0, 0);
+                final Raster read = reader.read(0, param).getRaster();
+                final int width = (region.width + subsampling[0] - 1) / subsampling[0];
+                final int height = (region.height + subsampling[1] - 1) / subsampling[1];
+                assertEquals(width, read.getWidth());
+                assertEquals(height, read.getHeight());
+                assertEquals(3, read.getNumBands());
+
+                // scaled decoding averages the pixels, compare on average only
+                long error = 0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        for (int b = 0; b < 3; b++) {
+                            error += Math.abs(read.getSample(x, y, b) - full.getSample(
+                                    region.x + x * subsampling[0], region.y + y * subsampling[1], b));
+                        }
+                    }
+                }
+                final double meanError = error / (3.0 * width * height);
+                if (subsampling[0] == 1 && subsampling[1] == 1) {
+                    // lossless cropping, same pixels
+                    assertTrue(meanError < 1);
+                } else {
+                    assertTrue(meanError < 48);
+                }
+            }
+        } finally {
+            reader.dispose();
+            fis.close();
+        }
+    }
+
+    @Test
+    public void readPooled() throws Exception {
+        final File file = TestData.file(this, FILENAME);
+        if (!TurboJpegUtilities.isTurboJpegAvailable()) {
+            LOGGER.warning("Unable to find native libs. Tests are skipped");
+            assumeTrue(false);
+            return;
+        }
+
+        final TJPool pool = TJPool.getInstance();
+        final long reused = pool.getHandlesReused();
+        final ImageReader reader = new TurboJpegImageReaderSpi().createReaderInstance();
+        for (int i = 0; i < 3; i++) {
+            final FileImageInputStream fis = new FileImageInputStream(file);
+            try {
+                reader.setInput(fis);
+                final BufferedImage image = reader.read(0, null);
+                assertEquals(227, image.getWidth());
+                assertEquals(103, image.getHeight());
+            } finally {
+                reader.dispose();
+                fis.close();
+            }
+        }
+
+        // the handles opened to read the header and the image are recycled
+        assertTrue(pool.getHandlesReused() >= reused + 5);
+        assertTrue(pool.getIdleDecompressors() > 0);
+    }
 }